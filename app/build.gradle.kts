@@ -1,6 +1,8 @@
 plugins {
     // Apply the application plugin to add support for building a CLI application in Java.
     application
+    // Microbenchmarks live in src/jmh/java and run with `./gradlew jmh`.
+    alias(libs.plugins.jmh)
 }
 
 val lwjglNatives = Pair(
@@ -50,6 +52,17 @@ tasks.withType<JavaCompile>().configureEach {
     options.compilerArgs.addAll(listOf("-Xlint:all,-classfile", "-Werror"))
 }
 
+jmh {
+    jmhVersion = libs.versions.jmh
+    // Restrict a run with e.g. `./gradlew jmh -Pjmh.includes=ImageFlipBenchmark`.
+    providers.gradleProperty("jmh.includes").orNull?.let { includes.add(it) }
+}
+
+tasks.named<JavaCompile>("jmhCompileGeneratedClasses") {
+    // The JMH annotation processor emits code we do not control; keep -Werror for our own sources.
+    options.compilerArgs.removeAll(listOf("-Werror"))
+}
+
 tasks.clean {
     delete += setOf("bin")
 }
@@ -60,6 +73,15 @@ testing {
         getByName<JvmTestSuite>("test") {
             // Use JUnit Jupiter test framework
             useJUnitJupiter(libs.versions.junit.jupiter)
+
+            targets.configureEach {
+                testTask.configure {
+                    // Tests that need an OpenGL context run on Mesa's llvmpipe software renderer,
+                    // so results do not depend on the GPU of the machine running them.
+                    environment("LIBGL_ALWAYS_SOFTWARE", "true")
+                    environment("GALLIUM_DRIVER", "llvmpipe")
+                }
+            }
         }
     }
 }
@@ -76,3 +98,15 @@ application {
     mainClass = "net.fredrikmeyer.opengl.algsurface.App"
     applicationDefaultJvmArgs = listOf("-XstartOnFirstThread")
 }
+
+// Renders a scene offscreen at a fixed time step, for example
+// ./gradlew renderBatch --args="chladni 1920 1080 600 0.0166667 png"
+tasks.register<JavaExec>("renderBatch") {
+    group = "application"
+    description = "Renders frames of a scene offscreen straight to disk."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass = "net.fredrikmeyer.opengl.batch.App"
+    if (System.getProperty("os.name").startsWith("Mac")) {
+        jvmArgs("-XstartOnFirstThread")
+    }
+}
@@ -0,0 +1,124 @@
+package net.fredrikmeyer.opengl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.lwjgl.BufferUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast each lossless recording format can sustain writing 600x600 frames to disk.
+ *
+ * <p>Every invocation records 60 frames, three seconds at the recording frame rate, into a
+ * temporary directory and waits until they are on disk. The primary score is recordings per
+ * second; the {@code megabytes} counter is the rate of the uncompressed RGBA input in MB/s, which
+ * makes the formats comparable with each other and with the 20 fps × 1.44 MB = 29 MB/s a
+ * recording needs to keep up with.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameRecorderBenchmark {
+
+    private static final int FRAMES = 60;
+    private static final int SIZE = 600;
+    private static final int FRAMES_PER_SECOND = 20;
+    private static final int FRAME_BYTES = SIZE * SIZE * ImageFlipper.BYTES_PER_PIXEL;
+
+    /**
+     * Counts the uncompressed megabytes recorded, reported as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    @Param({"RAW_RGBA", "Y4M", "PNG_SEQUENCE"})
+    public RecordingFormat format;
+
+    private final ByteBuffer[] frames = new ByteBuffer[4];
+    private Path directory;
+    private ExecutorService executor;
+    private int recordings = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        for (int f = 0; f < frames.length; f++) {
+            frames[f] = BufferUtils.createByteBuffer(FRAME_BYTES);
+            double phase = f * 0.4;
+            for (int y = 0; y < SIZE; y++) {
+                for (int x = 0; x < SIZE; x++) {
+                    // A moving interference pattern, similar to the Chladni scene
+                    double wave = Math.sin(x * 0.04 + phase) * Math.sin(y * 0.05 - phase);
+                    int level = (int) ((wave + 1) * 127.5);
+                    frames[f].putInt((y * SIZE + x) * 4,
+                        (level << 24) | ((255 - level) << 16) | (96 << 8) | 0xFF);
+                }
+            }
+        }
+        directory = Files.createTempDirectory("frame-recorder-benchmark");
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteRecordings() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                if (!file.equals(directory)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public String record(Throughput throughput) {
+        Path base = directory.resolve("recording_" + recordings++);
+        FrameRecorder recorder = switch (format) {
+            case RAW_RGBA -> new RawFrameRecorder(base, FRAMES_PER_SECOND);
+            case Y4M -> new Y4mFrameRecorder(Path.of(base + ".y4m"), FRAMES_PER_SECOND);
+            case PNG_SEQUENCE -> new PngSequenceRecorder(base, executor, 3);
+            case GIF -> throw new IllegalArgumentException("GIF is measured by GifEncodeBenchmark");
+        };
+        for (int f = 0; f < FRAMES; f++) {
+            recorder.accept(frames[f % frames.length], SIZE, SIZE);
+        }
+        String path = recorder.finish().join();
+        throughput.megabytes += FRAMES * (double) FRAME_BYTES / 1_000_000;
+        return path;
+    }
+}
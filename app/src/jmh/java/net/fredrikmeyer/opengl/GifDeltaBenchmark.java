@@ -0,0 +1,105 @@
+package net.fredrikmeyer.opengl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares full-size GIF frames with delta frames, in encode time and in output size.
+ *
+ * <p>Each invocation encodes a 40-frame, 600x600 recording. In the {@code mostly-static} scene a
+ * small ball moves over a detailed still background, like the Chladni and ray marching scenes
+ * when the camera is still; in {@code full-motion} every pixel changes every frame, which is the
+ * worst case for delta frames. The size of the last recording is printed when the trial ends.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GifDeltaBenchmark {
+
+    private static final int FRAMES = 40;
+    private static final int SIZE = 600;
+    private static final int FRAME_DELAY_MS = 50;
+
+    @Param({"mostly-static", "full-motion"})
+    public String scene;
+
+    private final ByteBuffer[] frames = new ByteBuffer[FRAMES];
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream(1 << 22);
+    private String lastRun;
+
+    @Setup
+    public void setUp() {
+        boolean fullMotion = scene.equals("full-motion");
+        for (int f = 0; f < FRAMES; f++) {
+            ByteBuffer rgba = ByteBuffer.allocate(SIZE * SIZE * 4);
+            double phase = fullMotion ? f * 0.15 : 0;
+            double ballX = SIZE * (0.2 + 0.6 * f / FRAMES);
+            double ballY = SIZE * 0.5;
+            for (int y = 0; y < SIZE; y++) {
+                for (int x = 0; x < SIZE; x++) {
+                    double wave = Math.sin(x * 0.04 + phase) * Math.sin(y * 0.05 - phase);
+                    int level = (int) ((wave + 1) * 127.5);
+                    int r = level;
+                    int g = 255 - level;
+                    int b = 96;
+                    double dx = x - ballX;
+                    double dy = y - ballY;
+                    if (dx * dx + dy * dy < 30 * 30) {
+                        r = 255;
+                        g = 220;
+                        b = 40;
+                    }
+                    rgba.putInt((y * SIZE + x) * 4, (r << 24) | (g << 16) | (b << 8) | 0xFF);
+                }
+            }
+            frames[f] = rgba;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.println();
+        System.out.println(lastRun);
+    }
+
+    @Benchmark
+    public int fullFrames() throws IOException {
+        return encode(false);
+    }
+
+    @Benchmark
+    public int deltaFrames() throws IOException {
+        return encode(true);
+    }
+
+    private int encode(boolean deltaFrames) throws IOException {
+        output.reset();
+        GifEncoder encoder = new GifEncoder(output, FRAME_DELAY_MS, true, GifEncoder.Dither.NONE,
+            deltaFrames);
+        for (ByteBuffer frame : frames) {
+            encoder.writeFrame(frame, SIZE, SIZE);
+        }
+        encoder.finish();
+        lastRun = String.format("%s, %s: %d frames, %d KiB", scene,
+            deltaFrames ? "delta frames" : "full frames", FRAMES, output.size() / 1024);
+        return output.size();
+    }
+}
@@ -0,0 +1,217 @@
+package net.fredrikmeyer.opengl;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures GIF encoding throughput in frames per second, comparing the JDK {@code ImageWriter}
+ * that {@link GifSequenceWriter} used to wrap with {@link GifEncoder} in each dithering mode.
+ *
+ * <p>Each invocation writes a short animation of smoothly shaded frames, similar to what the
+ * scenes render, to a stream that discards its output.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GifEncodeBenchmark {
+
+    private static final int FRAMES = 8;
+    private static final int FRAME_DELAY_MS = 50;
+
+    @Param({"600x600", "1280x720"})
+    public String resolution;
+
+    private int width;
+    private int height;
+    private final BufferedImage[] images = new BufferedImage[FRAMES];
+    private final ByteBuffer[] pixels = new ByteBuffer[FRAMES];
+
+    @Setup
+    public void setUp() {
+        String[] parts = resolution.split("x");
+        width = Integer.parseInt(parts[0]);
+        height = Integer.parseInt(parts[1]);
+
+        for (int f = 0; f < FRAMES; f++) {
+            images[f] = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            int[] argb = ((DataBufferInt) images[f].getRaster().getDataBuffer()).getData();
+            pixels[f] = ByteBuffer.allocate(width * height * 4);
+            double centerX = width * (0.3 + 0.05 * f);
+            double centerY = height * 0.5;
+            double radius = Math.min(width, height) * 0.3;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    double dx = (x - centerX) / radius;
+                    double dy = (y - centerY) / radius;
+                    double d = dx * dx + dy * dy;
+                    int r;
+                    int g;
+                    int b;
+                    if (d < 1) {
+                        // A lit sphere
+                        double shade = Math.max(0, 0.3 + 0.7 * (Math.sqrt(1 - d) - 0.5 * dx));
+                        r = (int) Math.min(255, 230 * shade);
+                        g = (int) Math.min(255, 120 * shade);
+                        b = (int) Math.min(255, 60 * shade);
+                    } else {
+                        // A vertical sky gradient
+                        r = 40 + 60 * y / height;
+                        g = 60 + 80 * y / height;
+                        b = 120 + 100 * y / height;
+                    }
+                    int i = y * width + x;
+                    argb[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+                    pixels[f].putInt(i * 4, (r << 24) | (g << 16) | (b << 8) | 0xFF);
+                }
+            }
+        }
+    }
+
+    /**
+     * The JDK GIF writer, configured as {@code GifSequenceWriter} used to configure it.
+     */
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void imageIoWriter() throws IOException {
+        ImageOutputStream stream = new MemoryCacheImageOutputStream(OutputStream.nullOutputStream());
+        ImageIoGifWriter writer = new ImageIoGifWriter(stream, BufferedImage.TYPE_INT_ARGB,
+            FRAME_DELAY_MS);
+        for (BufferedImage image : images) {
+            writer.write(image);
+        }
+        writer.close();
+        stream.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void gifEncoderNoDither() throws IOException {
+        encode(GifEncoder.Dither.NONE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void gifEncoderOrdered() throws IOException {
+        encode(GifEncoder.Dither.ORDERED);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void gifEncoderFloydSteinberg() throws IOException {
+        encode(GifEncoder.Dither.FLOYD_STEINBERG);
+    }
+
+    /**
+     * {@link GifSequenceWriter} as the recorder uses it, including the ARGB to RGBA conversion.
+     */
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void gifSequenceWriter() throws IOException {
+        GifSequenceWriter writer = new GifSequenceWriter(OutputStream.nullOutputStream(),
+            FRAME_DELAY_MS, true);
+        for (BufferedImage image : images) {
+            writer.writeToSequence(image);
+        }
+        writer.close();
+    }
+
+    private void encode(GifEncoder.Dither dither) throws IOException {
+        GifEncoder encoder = new GifEncoder(OutputStream.nullOutputStream(), FRAME_DELAY_MS, true,
+            dither);
+        for (ByteBuffer frame : pixels) {
+            encoder.writeFrame(frame, width, height);
+        }
+        encoder.finish();
+    }
+
+    /**
+     * The ImageIO-based writer that {@code GifSequenceWriter} was before it used
+     * {@link GifEncoder}.
+     */
+    private static final class ImageIoGifWriter {
+        private final ImageWriter gifWriter;
+        private final ImageWriteParam imageWriteParam;
+        private final IIOMetadata imageMetaData;
+
+        ImageIoGifWriter(ImageOutputStream outputStream, int imageType, int delayMs)
+            throws IOException {
+            Iterator<ImageWriter> iter = ImageIO.getImageWritersBySuffix("gif");
+            gifWriter = iter.next();
+            imageWriteParam = gifWriter.getDefaultWriteParam();
+            ImageTypeSpecifier imageTypeSpecifier =
+                ImageTypeSpecifier.createFromBufferedImageType(imageType);
+            imageMetaData = gifWriter.getDefaultImageMetadata(imageTypeSpecifier,
+                imageWriteParam);
+
+            String metaFormatName = imageMetaData.getNativeMetadataFormatName();
+            IIOMetadataNode root = (IIOMetadataNode) imageMetaData.getAsTree(metaFormatName);
+
+            IIOMetadataNode graphicsControl = getNode(root, "GraphicControlExtension");
+            graphicsControl.setAttribute("disposalMethod", "none");
+            graphicsControl.setAttribute("userInputFlag", "FALSE");
+            graphicsControl.setAttribute("transparentColorFlag", "FALSE");
+            graphicsControl.setAttribute("delayTime", Integer.toString(delayMs / 10));
+            graphicsControl.setAttribute("transparentColorIndex", "0");
+
+            IIOMetadataNode appExtensions = getNode(root, "ApplicationExtensions");
+            IIOMetadataNode child = new IIOMetadataNode("ApplicationExtension");
+            child.setAttribute("applicationID", "NETSCAPE");
+            child.setAttribute("authenticationCode", "2.0");
+            child.setUserObject(new byte[]{0x1, 0, 0});
+            appExtensions.appendChild(child);
+
+            imageMetaData.setFromTree(metaFormatName, root);
+            gifWriter.setOutput(outputStream);
+            gifWriter.prepareWriteSequence(null);
+        }
+
+        void write(BufferedImage image) throws IOException {
+            gifWriter.writeToSequence(new IIOImage(image, null, imageMetaData), imageWriteParam);
+        }
+
+        void close() throws IOException {
+            gifWriter.endWriteSequence();
+            gifWriter.dispose();
+        }
+
+        private static IIOMetadataNode getNode(IIOMetadataNode rootNode, String nodeName) {
+            for (int i = 0; i < rootNode.getLength(); i++) {
+                if (rootNode.item(i).getNodeName().equalsIgnoreCase(nodeName)) {
+                    return (IIOMetadataNode) rootNode.item(i);
+                }
+            }
+            IIOMetadataNode node = new IIOMetadataNode(nodeName);
+            rootNode.appendChild(node);
+            return node;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package net.fredrikmeyer.opengl;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.lwjgl.BufferUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the per-pixel flip loops that {@link ScreenshotManager} used to run with the row-based
+ * conversions in {@link ImageFlipper}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageFlipBenchmark {
+
+    @Param({"1920x1080", "2560x1440", "3840x2160"})
+    public String resolution;
+
+    private int width;
+    private int height;
+    private ByteBuffer source;
+    private ByteBuffer destination;
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() {
+        String[] parts = resolution.split("x");
+        width = Integer.parseInt(parts[0]);
+        height = Integer.parseInt(parts[1]);
+
+        byte[] noise = new byte[width * height * 4];
+        ThreadLocalRandom.current().nextBytes(noise);
+        source = BufferUtils.createByteBuffer(noise.length).put(noise).flip();
+        destination = BufferUtils.createByteBuffer(noise.length);
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * The flip loop from the original {@code takeScreenshot}.
+     */
+    @Benchmark
+    public ByteBuffer perPixelFlip() {
+        for (int y = 0; y < height; y++) {
+            int srcRow = height - 1 - y;
+            for (int x = 0; x < width; x++) {
+                int srcIndex = (srcRow * width + x) * 4;
+                int dstIndex = (y * width + x) * 4;
+
+                source.position(srcIndex);
+                destination.position(dstIndex);
+
+                destination.put(source.get());
+                destination.put(source.get());
+                destination.put(source.get());
+                destination.put(source.get());
+            }
+        }
+        destination.position(0);
+        return destination;
+    }
+
+    @Benchmark
+    public ByteBuffer bulkRowFlip() {
+        ImageFlipper.flipRows(source, destination, width * 4, height);
+        return destination;
+    }
+
+    /**
+     * The conversion loop from the original {@code captureFrame}.
+     */
+    @Benchmark
+    public BufferedImage perPixelToArgb() {
+        for (int y = 0; y < height; y++) {
+            int srcRow = height - 1 - y;
+            for (int x = 0; x < width; x++) {
+                source.position((srcRow * width + x) * 4);
+                int r = source.get() & 0xFF;
+                int g = source.get() & 0xFF;
+                int b = source.get() & 0xFF;
+                int a = source.get() & 0xFF;
+                image.setRGB(x, y, (a << 24) | (r << 16) | (g << 8) | b);
+            }
+        }
+        source.position(0);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage bulkRowToArgb() {
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        ImageFlipper.flipRowsToArgb(source, pixels, width, height);
+        return image;
+    }
+}
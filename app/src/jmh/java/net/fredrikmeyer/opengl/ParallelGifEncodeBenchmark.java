@@ -0,0 +1,95 @@
+package net.fredrikmeyer.opengl;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how saving a long recording scales with the number of worker threads.
+ *
+ * <p>Each invocation saves a 600-frame, 600x600 recording, the size of a 30 second capture from
+ * the default window, once with {@link ParallelGifEncoder} on a pool of the given size and once
+ * sequentially with {@link GifEncoder} for reference. The recording cycles through a handful of
+ * distinct frames to keep the heap small; every frame is still compressed separately.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ParallelGifEncodeBenchmark {
+
+    private static final int FRAMES = 600;
+    private static final int DISTINCT_FRAMES = 12;
+    private static final int SIZE = 600;
+    private static final int FRAME_DELAY_MS = 50;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private final List<BufferedImage> recording = new ArrayList<>(FRAMES);
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        BufferedImage[] distinct = new BufferedImage[DISTINCT_FRAMES];
+        for (int f = 0; f < DISTINCT_FRAMES; f++) {
+            distinct[f] = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+            int[] argb = ((DataBufferInt) distinct[f].getRaster().getDataBuffer()).getData();
+            double phase = f * 2 * Math.PI / DISTINCT_FRAMES;
+            for (int y = 0; y < SIZE; y++) {
+                for (int x = 0; x < SIZE; x++) {
+                    // A moving interference pattern, similar to the Chladni scene
+                    double u = x * 0.03;
+                    double v = y * 0.03;
+                    double wave = Math.sin(u + phase) * Math.cos(v - phase) + Math.sin(u * v * 0.1);
+                    int level = (int) ((wave + 2) * 63.75);
+                    argb[y * SIZE + x] = 0xFF000000 | (level << 16) | ((255 - level) << 8) | 128;
+                }
+            }
+        }
+        for (int i = 0; i < FRAMES; i++) {
+            recording.add(distinct[i % DISTINCT_FRAMES]);
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public void parallel() throws IOException {
+        new ParallelGifEncoder(pool, FRAME_DELAY_MS, true, GifEncoder.Dither.NONE, false)
+            .encode(recording, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void sequential() throws IOException {
+        GifEncoder encoder = new GifEncoder(OutputStream.nullOutputStream(), FRAME_DELAY_MS, true,
+            GifEncoder.Dither.NONE);
+        for (BufferedImage frame : recording) {
+            encoder.writeFrame(frame);
+        }
+        encoder.finish();
+    }
+}
@@ -0,0 +1,135 @@
+package net.fredrikmeyer.opengl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import org.lwjgl.BufferUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures loading a binary resource of 1 KB to 500 MB, from a directory and from a jar,
+ * comparing the growing buffer {@code Utils.loadResourceByteBuffer} used to fill with
+ * {@link Utils#loadResourceByteBuffer}, which maps files and reads jar entries into one buffer of
+ * their size. The mapped resource is read to the end, as a texture decoder would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// The growing buffers are only freed by the garbage collector, so give them room
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=4g")
+public class ResourceLoadBenchmark {
+
+    private static final String RESOURCE = "resource.bin";
+
+    @Param({"1024", "65536", "1048576", "33554432", "524288000"})
+    public int size;
+
+    @Param({"directory", "jar"})
+    public String source;
+
+    private Path root;
+    private URLClassLoader classLoader;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("resource-benchmark");
+        Path directory = Files.createDirectories(root.resolve("classes"));
+        Path jar = root.resolve("resources.jar");
+        if (source.equals("directory")) {
+            try (OutputStream output = Files.newOutputStream(directory.resolve(RESOURCE))) {
+                writeNoise(output);
+            }
+        } else {
+            try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+                output.putNextEntry(new JarEntry(RESOURCE));
+                writeNoise(output);
+                output.closeEntry();
+            }
+        }
+        Path classPath = source.equals("directory") ? directory : jar;
+        classLoader = new URLClassLoader(new URL[]{classPath.toUri().toURL()}, null);
+    }
+
+    private void writeNoise(OutputStream output) throws IOException {
+        Random random = new Random(1);
+        byte[] chunk = new byte[1024 * 1024];
+        for (int written = 0; written < size; written += chunk.length) {
+            random.nextBytes(chunk);
+            output.write(chunk, 0, Math.min(chunk.length, size - written));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        classLoader.close();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * The loop from the original {@code loadResourceByteBuffer}: an 8 KB buffer that grows by
+     * half whenever it fills.
+     */
+    @Benchmark
+    public long growingBuffer() throws IOException {
+        try (InputStream inputStream = classLoader.getResourceAsStream(RESOURCE);
+            ReadableByteChannel channel = Channels.newChannel(inputStream)) {
+            ByteBuffer buffer = BufferUtils.createByteBuffer(8 * 1024);
+            while (channel.read(buffer) != -1) {
+                if (buffer.remaining() == 0) {
+                    ByteBuffer grown = BufferUtils.createByteBuffer(buffer.capacity() * 3 / 2);
+                    buffer.flip();
+                    grown.put(buffer);
+                    buffer = grown;
+                }
+            }
+            buffer.flip();
+            return checksum(buffer);
+        }
+    }
+
+    @Benchmark
+    public long sizedLoad() {
+        try (SharedBuffer loaded = Utils.loadResourceByteBuffer(classLoader, RESOURCE)) {
+            return checksum(loaded.buffer());
+        }
+    }
+
+    // Touches every page, so a mapping is paid for as well as set up
+    private static long checksum(ByteBuffer buffer) {
+        long sum = 0;
+        for (int i = buffer.position(); i < buffer.limit(); i += 4096) {
+            sum += buffer.get(i);
+        }
+        return sum + buffer.remaining();
+    }
+}
@@ -0,0 +1,97 @@
+package net.fredrikmeyer.opengl;
+
+import static org.lwjgl.stb.STBImageWrite.nstbi_write_png_to_func;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.stb.STBIWriteCallback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to encode a 1920x1080 screenshot, comparing stb's single-threaded PNG writer,
+ * which {@code takeScreenshot} used to run on the render thread, with {@link ParallelPngEncoder}
+ * on pools of different sizes. Both write to a sink that discards the output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScreenshotEncodeBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ByteBuffer pixels;
+    private ForkJoinPool pool;
+    private ParallelPngEncoder encoder;
+    private STBIWriteCallback discard;
+
+    @Setup
+    public void setUp() {
+        pixels = BufferUtils.createByteBuffer(WIDTH * HEIGHT * 4);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // A lit sphere over a sky gradient, as in the ray marching scene
+                double dx = (x - WIDTH * 0.5) / (HEIGHT * 0.3);
+                double dy = (y - HEIGHT * 0.5) / (HEIGHT * 0.3);
+                double d = dx * dx + dy * dy;
+                int r;
+                int g;
+                int b;
+                if (d < 1) {
+                    double shade = Math.max(0, 0.3 + 0.7 * (Math.sqrt(1 - d) - 0.5 * dx));
+                    r = (int) Math.min(255, 230 * shade);
+                    g = (int) Math.min(255, 120 * shade);
+                    b = (int) Math.min(255, 60 * shade);
+                } else {
+                    r = 40 + 60 * y / HEIGHT;
+                    g = 60 + 80 * y / HEIGHT;
+                    b = 120 + 100 * y / HEIGHT;
+                }
+                pixels.putInt((y * WIDTH + x) * 4, (r << 24) | (g << 16) | (b << 8) | 0xFF);
+            }
+        }
+        pool = new ForkJoinPool(threads);
+        encoder = new ParallelPngEncoder(pool);
+        discard = STBIWriteCallback.create((context, data, size) -> {
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdownNow();
+        discard.free();
+    }
+
+    @Benchmark
+    public int stb() {
+        int rowBytes = WIDTH * ImageFlipper.BYTES_PER_PIXEL;
+        return nstbi_write_png_to_func(discard.address(), 0L, WIDTH, HEIGHT, 4,
+            ImageFlipper.lastRowAddress(pixels, rowBytes, HEIGHT), -rowBytes);
+    }
+
+    @Benchmark
+    public void parallelPngEncoder() throws IOException {
+        encoder.encode(pixels, WIDTH, HEIGHT, OutputStream.nullOutputStream());
+    }
+}
@@ -1,5 +1,6 @@
 package net.fredrikmeyer.opengl;
 
+import java.nio.file.Path;
 import org.joml.Vector3f;
 import org.lwjgl.Version;
 import org.lwjgl.glfw.GLFWErrorCallback;
@@ -44,6 +45,10 @@ public class App {
         window = new Window(WindowDimensions.of(600, 600), "Hello World!", true);
         window.init();
 
+        // Load the shader programs linked by earlier runs instead of compiling them
+        Shader.setProgramCache(
+            new ProgramBinaryCache(Path.of(ProgramBinaryCache.DEFAULT_DIRECTORY)));
+
         // Create resource loader
         resourceLoader = new ResourceLoader();
 
@@ -53,30 +58,34 @@ public class App {
         // Create the scene with the window's aspect ratio
         float aspectRatio = (float) window.getWidth() / window.getHeight();
         Camera camera = new Camera(aspectRatio, new Vector3f(0f, 0f, 2f));
-        scene = new Scene(resourceLoader, camera);
+        scene = new Scene(resourceLoader);
 
         // Create the input handler
         inputHandler = InputHandler.create(window, screenshotManager, camera);
 
         // Create renderer
         renderer = new Renderer(window, scene, screenshotManager);
+        renderer.setCamera(camera);
     }
 
     /**
      * Runs the main application loop.
      */
     private void mainLoop() {
-        // Run the rendering loop
-        renderer.renderLoop();
+        // Render on a dedicated thread while this thread handles window events
+        renderer.renderLoopThreaded();
     }
 
     /**
      * Cleans up resources used by the application.
      */
     private void cleanup() {
+        System.out.println("Resource cache: " + ResourceLoader.sharedCache());
+        renderer.cleanup();
         scene.cleanup();
-        window.destroy();
+        // Ends a recording, which reads back its last frames with the context
         screenshotManager.cleanup();
+        window.destroy();
     }
 
     /**
@@ -0,0 +1,25 @@
+package net.fredrikmeyer.opengl;
+
+/**
+ * What a streaming recorder does with new frames when its encoder falls behind and the frame
+ * queue fills up.
+ */
+public enum BackpressurePolicy {
+    /**
+     * Discard the new frame. The render thread never waits, but the recording skips frames.
+     */
+    DROP,
+
+    /**
+     * Wait until the encoder has made room. Every frame is kept, at the cost of stalling the
+     * render thread.
+     */
+    BLOCK,
+
+    /**
+     * Once the queue is half full, queue new frames at half resolution, which takes a quarter of
+     * the space. Frames are scaled back up when written, so the recording keeps its frame rate at
+     * reduced detail. A frame is only dropped if even the reduced copy does not fit.
+     */
+    DOWNSCALE
+}
@@ -0,0 +1,126 @@
+package net.fredrikmeyer.opengl;
+
+/**
+ * Renders a fixed number of frames of a scene straight into a {@link FrameRecorder}, for
+ * producing animations offline rather than recording them in real time.
+ *
+ * <p>Every frame advances the scene by the same time step, so a run renders the same frames no
+ * matter how long each one takes. Nothing waits for the display: frames are rendered as fast as
+ * the GPU allows, read back through a ring of pixel buffer objects and handed to the recorder, so
+ * readback and encoding overlap with rendering when the recorder works on background threads,
+ * such as {@link PngSequenceRecorder} or a {@link PipelinedFrameRecorder}. Use it with a
+ * {@link Window#headless(WindowDimensions) headless} window to render at any resolution.
+ *
+ * <p>All methods must be called on the thread that owns the OpenGL context.
+ */
+public class BatchRenderer {
+
+    /**
+     * The outcome of a batch render.
+     *
+     * @param frames      the number of frames rendered
+     * @param renderNanos the time until the last frame was rendered and read back
+     * @param totalNanos  the time until the last frame was written by the recorder
+     * @param output      the path of the recording, or null if writing failed
+     */
+    public record Result(int frames, long renderNanos, long totalNanos, String output) {
+
+        /**
+         * Returns how many frames were rendered per second.
+         *
+         * @return the rendered frame rate
+         */
+        public double renderedFramesPerSecond() {
+            return framesPerSecond(renderNanos);
+        }
+
+        /**
+         * Returns how many frames were rendered and written per second, over the whole run.
+         *
+         * @return the encoded frame rate
+         */
+        public double encodedFramesPerSecond() {
+            return framesPerSecond(totalNanos);
+        }
+
+        private double framesPerSecond(long nanos) {
+            return nanos > 0 ? frames * 1_000_000_000.0 / nanos : 0;
+        }
+    }
+
+    private final Window window;
+    private final Renderer renderer;
+    private final int readbackRingDepth;
+
+    /**
+     * Creates a batch renderer that reads frames back through
+     * {@value RecordingConfig#DEFAULT_READBACK_RING_DEPTH} pixel buffer objects.
+     *
+     * @param window   the window the renderer draws into
+     * @param renderer renders the scene
+     */
+    public BatchRenderer(Window window, Renderer renderer) {
+        this(window, renderer, RecordingConfig.DEFAULT_READBACK_RING_DEPTH);
+    }
+
+    /**
+     * Creates a batch renderer.
+     *
+     * @param window            the window the renderer draws into
+     * @param renderer          renders the scene
+     * @param readbackRingDepth the number of frames that may be read back at once, or 0 for
+     *                          synchronous readback
+     */
+    public BatchRenderer(Window window, Renderer renderer, int readbackRingDepth) {
+        if (readbackRingDepth < 0) {
+            throw new IllegalArgumentException(
+                "readbackRingDepth must be non-negative, was " + readbackRingDepth);
+        }
+        this.window = window;
+        this.renderer = renderer;
+        this.readbackRingDepth = readbackRingDepth;
+    }
+
+    /**
+     * Renders frames, passes each one to the recorder, and waits until the recorder has written
+     * them all. The renderer is left as it was, so it can render again; whoever created it calls
+     * {@link Renderer#cleanup()} once it is done.
+     *
+     * @param frameCount the number of frames to render
+     * @param deltaTime  the time step each frame advances the scene by, in seconds
+     * @param recorder   receives every frame, and is finished at the end
+     * @return the frame count, timings and output of the run
+     * @throws IllegalArgumentException if the frame count is negative or the time step is not
+     *                                  positive
+     */
+    public Result render(int frameCount, float deltaTime, FrameRecorder recorder) {
+        if (frameCount < 0) {
+            throw new IllegalArgumentException(
+                "Frame count must not be negative, was " + frameCount);
+        }
+        if (!(deltaTime > 0)) {
+            throw new IllegalArgumentException("Time step must be positive, was " + deltaTime);
+        }
+
+        int width = window.getWidth();
+        int height = window.getHeight();
+        FrameReadback readback = new FrameReadback(readbackRingDepth, new ImageFlipper());
+        long start = System.nanoTime();
+        try {
+            for (int frame = 0; frame < frameCount; frame++) {
+                renderer.render(deltaTime);
+                readback.capture(width, height, recorder);
+            }
+        } finally {
+            readback.cleanup();
+        }
+        long rendered = System.nanoTime();
+        String output = recorder.finish().join();
+        long written = System.nanoTime();
+
+        renderer.getGpuProfiler().collect();
+        renderer.getMetrics().logSummary();
+
+        return new Result(frameCount, rendered - start, written - start, output);
+    }
+}
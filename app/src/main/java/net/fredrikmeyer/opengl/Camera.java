@@ -1,18 +1,22 @@
 package net.fredrikmeyer.opengl;
 
-import java.nio.FloatBuffer;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
-import org.lwjgl.BufferUtils;
 
 public class Camera {
 
     private static final Vector3f UP = new Vector3f(0, 1, 0);
+    // The lens of projectionMatrix
+    private static final float FOV = 45f;
+    private static final float NEAR_PLANE = 0.1f;
+    private static final float FAR_PLANE = 100f;
 
     private final Vector3f position;
     private final Vector3f initialPosition;
     private final float aspectRatio;
     private float zoom = 1.0f;
+    // Counts the changes to the view, so a renderer can tell when it must redraw
+    private long version = 0;
 
     // Camera orientation
     private final Vector3f orientation = new Vector3f(0, 0, -1);
@@ -27,6 +31,16 @@ public class Camera {
         return new Vector3f(position);
     }
 
+    /**
+     * Copies the current position of the camera into a vector, without allocating.
+     *
+     * @param dest the vector to store the position in
+     * @return dest
+     */
+    public Vector3f position(Vector3f dest) {
+        return dest.set(position);
+    }
+
     /**
      * Gets the current zoom level of the camera.
      *
@@ -45,28 +59,54 @@ public class Camera {
         return new Vector3f(orientation);
     }
 
+    /**
+     * Copies the current orientation of the camera into a vector, without allocating.
+     *
+     * @param dest the vector to store the orientation in
+     * @return dest
+     */
+    public Vector3f orientation(Vector3f dest) {
+        return dest.set(orientation);
+    }
+
+    /**
+     * Gets a number that changes whenever the camera moves, rotates or zooms.
+     *
+     * @return the current version of the view
+     */
+    public long getVersion() {
+        return version;
+    }
+
     public Camera(float aspectRatio, Vector3f position) {
         this.aspectRatio = aspectRatio;
         this.position = position;
         this.initialPosition = new Vector3f(position);
     }
 
-    Matrix4f matrix(float fovDeg, float nearPlane, float farPlane) {
-        var view = new Matrix4f().lookAt(position, position.add(orientation, new Vector3f()),
-            UP);
-
-        // Apply zoom by adjusting the field of view
-        float zoomedFov = fovDeg / zoom;
-        var projection = new Matrix4f().perspective(zoomedFov, aspectRatio, nearPlane,
-            farPlane);
-
-        return projection.mul(view);
+    /**
+     * Computes the view matrix, which takes world coordinates to camera coordinates: x to the
+     * right, y up and the camera looking down negative z.
+     *
+     * @param dest the matrix to store the result in
+     * @return dest
+     */
+    public Matrix4f viewMatrix(Matrix4f dest) {
+        return dest.setLookAt(position.x, position.y, position.z, position.x + orientation.x,
+            position.y + orientation.y, position.z + orientation.z, UP.x, UP.y, UP.z);
     }
 
-    FloatBuffer matrixBuffer(float fovDeg, float nearPlane, float farPlane) {
-        var fb = BufferUtils.createFloatBuffer(16);
-        matrix(fovDeg, nearPlane, farPlane).get(fb);
-        return fb;
+    /**
+     * Computes the projection matrix, which takes camera coordinates to clip coordinates, with
+     * the field of view narrowed by the zoom.
+     *
+     * @param dest the matrix to store the result in
+     * @return dest
+     */
+    public Matrix4f projectionMatrix(Matrix4f dest) {
+        // Apply zoom by adjusting the field of view
+        float zoomedFov = FOV / zoom;
+        return dest.setPerspective(zoomedFov, aspectRatio, NEAR_PLANE, FAR_PLANE);
     }
 
     /**
@@ -76,6 +116,7 @@ public class Camera {
      */
     public void zoom(float amount) {
         zoom += amount;
+        version++;
         // Ensure zoom doesn't go below a minimum value to prevent issues
         if (zoom < 0.1f) {
             zoom = 0.1f;
@@ -89,6 +130,7 @@ public class Camera {
         position.set(initialPosition);
         orientation.set(initialOrientation);
         zoom = 1.0f;
+        version++;
     }
 
     /**
@@ -102,6 +144,7 @@ public class Camera {
         rotated.rotateY(angle);
         orientation.set(rotated);
         orientation.normalize(); // Ensure the orientation vector stays normalized
+        version++;
     }
 
 
@@ -119,21 +162,26 @@ public class Camera {
         rotated.rotateAxis(-angle, right.x, right.y, right.z);
         orientation.set(rotated);
         orientation.normalize(); // Ensure the orientation vector stays normalized
+        version++;
     }
 
     void moveForward(float amount) {
         position.add(orientation.mul(amount, new Vector3f()));
+        version++;
     }
 
     void moveBackward(float amount) {
         position.sub(orientation.mul(amount, new Vector3f()));
+        version++;
     }
 
     void moveLeft(float amount) {
         position.sub(orientation.cross(UP, new Vector3f()).mul(amount, new Vector3f()));
+        version++;
     }
 
     void moveRight(float amount) {
         position.add(orientation.cross(UP, new Vector3f()).mul(amount, new Vector3f()));
+        version++;
     }
 }
@@ -0,0 +1,144 @@
+package net.fredrikmeyer.opengl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Base class for recorders that append every frame to a single file through a
+ * {@link FileChannel}.
+ *
+ * <p>Frames are written on the calling thread, straight from the buffer they arrive in, so
+ * nothing is queued or copied onto the Java heap. The file is created when the first frame
+ * arrives, which fixes the size of the recording; later frames of a different size, for example
+ * after the window was resized, are skipped.
+ */
+abstract class ChannelFrameRecorder implements FrameRecorder {
+
+    private FileChannel channel;
+    private Path file;
+    private int width;
+    private int height;
+    private int frames = 0;
+    private int skippedFrames = 0;
+    private boolean failed = false;
+    private boolean finished = false;
+
+    /**
+     * Returns the file to write a recording of the given frame size to.
+     *
+     * @param width  the frame width in pixels
+     * @param height the frame height in pixels
+     * @return the output file
+     */
+    protected abstract Path outputFile(int width, int height);
+
+    /**
+     * Writes whatever precedes the first frame. Does nothing by default.
+     *
+     * @param channel the channel to write to
+     * @param width   the frame width in pixels
+     * @param height  the frame height in pixels
+     * @throws IOException if writing fails
+     */
+    protected void writeHeader(FileChannel channel, int width, int height) throws IOException {
+    }
+
+    /**
+     * Appends one frame to the file.
+     *
+     * @param channel the channel to write to
+     * @param pixels  the frame as tightly packed RGBA bytes, bottom row first
+     * @param width   the frame width in pixels
+     * @param height  the frame height in pixels
+     * @throws IOException if writing fails
+     */
+    protected abstract void writeFrame(FileChannel channel, ByteBuffer pixels, int width,
+        int height) throws IOException;
+
+    @Override
+    public final void accept(ByteBuffer pixels, int width, int height) {
+        if (failed || finished) {
+            return;
+        }
+        try {
+            if (channel == null) {
+                this.width = width;
+                this.height = height;
+                file = outputFile(width, height);
+                channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                writeHeader(channel, width, height);
+            } else if (width != this.width || height != this.height) {
+                skippedFrames++;
+                return;
+            }
+            writeFrame(channel, pixels, width, height);
+            frames++;
+        } catch (IOException e) {
+            failed = true;
+            System.err.println("Failed to write recording: " + e.getMessage());
+            e.printStackTrace();
+            closeChannel();
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> finish() {
+        if (finished) {
+            throw new IllegalStateException("Recording already finished");
+        }
+        finished = true;
+        if (channel == null) {
+            System.out.println("No frames to save");
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!closeChannel() || failed) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (skippedFrames > 0) {
+            System.out.println("Skipped " + skippedFrames + " frames that were not " + width
+                + "x" + height);
+        }
+        System.out.println("Recording of " + frames + " frames saved to: " + file);
+        return CompletableFuture.completedFuture(file.toString());
+    }
+
+    /**
+     * Returns the number of frames written so far.
+     *
+     * @return the frame count
+     */
+    public int frameCount() {
+        return frames;
+    }
+
+    /**
+     * Writes all remaining bytes of the buffers, retrying until the channel has taken them all.
+     *
+     * @param channel the channel to write to
+     * @param buffers the buffers to write, in order
+     * @throws IOException if writing fails
+     */
+    protected static void writeFully(FileChannel channel, ByteBuffer... buffers)
+        throws IOException {
+        ByteBuffer last = buffers[buffers.length - 1];
+        while (last.hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+
+    private boolean closeChannel() {
+        try {
+            channel.close();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Failed to close recording: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package net.fredrikmeyer.opengl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.lwjgl.BufferUtils;
+
+/**
+ * A bounded pool of off-heap buffers for handing frames from the OpenGL thread to background
+ * encoders.
+ *
+ * <p>Buffers are allocated on demand, up to the pool size. Once they are all in use,
+ * {@link #acquire(int)} blocks until an encoder releases one, which keeps memory use fixed and
+ * slows the caller down when the encoders cannot keep up; a caller that must not wait uses
+ * {@link #tryAcquire(int)} instead. Buffers may be acquired on one thread and released on another.
+ */
+final class DirectBufferPool {
+
+    private final int maxBuffers;
+    private final ArrayBlockingQueue<ByteBuffer> freeBuffers;
+    private final AtomicInteger allocatedBuffers = new AtomicInteger();
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param maxBuffers the number of buffers that may be in use at once
+     */
+    DirectBufferPool(int maxBuffers) {
+        if (maxBuffers < 1) {
+            throw new IllegalArgumentException("maxBuffers must be positive, was " + maxBuffers);
+        }
+        this.maxBuffers = maxBuffers;
+        this.freeBuffers = new ArrayBlockingQueue<>(maxBuffers);
+    }
+
+    /**
+     * Returns a buffer with position 0 and limit {@code size}, waiting for one to be released if
+     * they are all in use. A free buffer that is too small is replaced by a larger one.
+     *
+     * @param size the number of bytes needed
+     * @return the buffer, to be given back with {@link #release(ByteBuffer)}
+     */
+    ByteBuffer acquire(int size) {
+        ByteBuffer buffer = tryAcquire(size);
+        return buffer != null ? buffer : fit(take(), size);
+    }
+
+    /**
+     * Returns a buffer like {@link #acquire(int)}, or null instead of waiting if they are all in
+     * use.
+     *
+     * @param size the number of bytes needed
+     * @return the buffer, to be given back with {@link #release(ByteBuffer)}, or null
+     */
+    ByteBuffer tryAcquire(int size) {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer != null) {
+            return fit(buffer, size);
+        }
+        if (allocatedBuffers.getAndUpdate(n -> n < maxBuffers ? n + 1 : n) < maxBuffers) {
+            return BufferUtils.createByteBuffer(size);
+        }
+        return null;
+    }
+
+    // Replaces a free buffer that is too small, and sets the position and limit
+    private static ByteBuffer fit(ByteBuffer buffer, int size) {
+        if (buffer.capacity() < size) {
+            buffer = BufferUtils.createByteBuffer(size);
+        }
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool.
+     *
+     * @param buffer a buffer obtained from {@link #acquire(int)}
+     */
+    void release(ByteBuffer buffer) {
+        freeBuffers.offer(buffer);
+    }
+
+    /**
+     * Waits until every buffer handed out so far has been released.
+     */
+    void awaitReleased() {
+        int allocated = allocatedBuffers.get();
+        ByteBuffer[] buffers = new ByteBuffer[allocated];
+        for (int i = 0; i < allocated; i++) {
+            buffers[i] = take();
+        }
+        for (ByteBuffer buffer : buffers) {
+            freeBuffers.offer(buffer);
+        }
+    }
+
+    private ByteBuffer take() {
+        try {
+            return freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a buffer", e);
+        }
+    }
+}
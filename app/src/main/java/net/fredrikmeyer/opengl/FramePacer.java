@@ -0,0 +1,197 @@
+package net.fredrikmeyer.opengl;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides how fast the render loop produces frames.
+ *
+ * <p>The {@link Mode#VSYNC} modes leave pacing to the display by setting the swap interval of the
+ * window. {@link Mode#LIMITED} paces frames itself: after each frame, {@link #awaitNextFrame()}
+ * sleeps until shortly before the next frame is due, because sleeping can overshoot by a
+ * millisecond or more, and spins for the rest, which hits the deadline to within microseconds.
+ * Deadlines are spaced exactly one period apart, so an occasional late frame does not lower the
+ * average rate; only after falling more than a whole period behind does the schedule start over.
+ *
+ * <p>Use the limiter to save power on laptops, and {@link Mode#UNCAPPED} to measure throughput.
+ */
+public final class FramePacer {
+
+    /**
+     * The ways of pacing frames.
+     */
+    public enum Mode {
+        /**
+         * Wait for vertical sync on every buffer swap.
+         */
+        VSYNC,
+
+        /**
+         * Wait for vertical sync, but swap at once when a frame misses it, which tears briefly
+         * instead of stalling for a whole refresh. Falls back to {@link #VSYNC} without
+         * {@code EXT_swap_control_tear}.
+         */
+        ADAPTIVE_VSYNC,
+
+        /**
+         * Never wait, so frames are produced as fast as possible.
+         */
+        UNCAPPED,
+
+        /**
+         * Wait between frames to hold a target frame rate, without vertical sync.
+         */
+        LIMITED
+    }
+
+    /**
+     * How long before a deadline the limiter stops sleeping and starts spinning.
+     */
+    static final long SPIN_NANOS = 1_500_000;
+
+    private final Mode mode;
+    private final long periodNanos;
+    private final LongSupplier clock;
+    private final LongConsumer sleeper;
+    private long deadline;
+    private boolean started = false;
+
+    FramePacer(Mode mode, long periodNanos, LongSupplier clock, LongConsumer sleeper) {
+        this.mode = mode;
+        this.periodNanos = periodNanos;
+        this.clock = clock;
+        this.sleeper = sleeper;
+    }
+
+    private FramePacer(Mode mode, long periodNanos) {
+        this(mode, periodNanos, System::nanoTime, LockSupport::parkNanos);
+    }
+
+    /**
+     * Creates a pacer that waits for vertical sync.
+     *
+     * @return the pacer
+     */
+    public static FramePacer vsync() {
+        return new FramePacer(Mode.VSYNC, 0);
+    }
+
+    /**
+     * Creates a pacer that waits for vertical sync unless a frame is late.
+     *
+     * @return the pacer
+     */
+    public static FramePacer adaptiveVsync() {
+        return new FramePacer(Mode.ADAPTIVE_VSYNC, 0);
+    }
+
+    /**
+     * Creates a pacer that never waits.
+     *
+     * @return the pacer
+     */
+    public static FramePacer uncapped() {
+        return new FramePacer(Mode.UNCAPPED, 0);
+    }
+
+    /**
+     * Creates a pacer that holds a target frame rate.
+     *
+     * @param framesPerSecond the target frame rate
+     * @return the pacer
+     * @throws IllegalArgumentException if the frame rate is not positive
+     */
+    public static FramePacer limited(double framesPerSecond) {
+        if (!(framesPerSecond > 0)) {
+            throw new IllegalArgumentException(
+                "Frame rate must be positive, was " + framesPerSecond);
+        }
+        return new FramePacer(Mode.LIMITED, Math.round(1_000_000_000.0 / framesPerSecond));
+    }
+
+    /**
+     * Gets the pacing mode.
+     *
+     * @return the mode
+     */
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Gets the time between frames the limiter aims for.
+     *
+     * @return the frame period in nanoseconds, or 0 if this pacer does not limit the frame rate
+     */
+    public long periodNanos() {
+        return periodNanos;
+    }
+
+    /**
+     * Returns the swap interval that implements this pacing mode.
+     *
+     * @param tearControlSupported whether the context supports {@code EXT_swap_control_tear}
+     * @return 1 to wait for vertical sync, -1 for adaptive vertical sync, or 0 to never wait
+     */
+    public int swapInterval(boolean tearControlSupported) {
+        return switch (mode) {
+            case VSYNC -> 1;
+            case ADAPTIVE_VSYNC -> tearControlSupported ? -1 : 1;
+            case UNCAPPED, LIMITED -> 0;
+        };
+    }
+
+    /**
+     * Sets the swap interval of a window to match this pacing mode.
+     *
+     * @param window an initialized window
+     */
+    public void apply(Window window) {
+        window.setSwapInterval(swapInterval(window.isSwapControlTearSupported()));
+    }
+
+    /**
+     * Waits until the next frame is due. Call once per frame, after the buffer swap. Does nothing
+     * unless the mode is {@link Mode#LIMITED}.
+     *
+     * @return how late the wait ended, in nanoseconds, or -1 if nothing was waited for because
+     * the frame was already due or the frame rate is not limited
+     */
+    public long awaitNextFrame() {
+        if (mode != Mode.LIMITED) {
+            return -1;
+        }
+        long now = clock.getAsLong();
+        if (!started) {
+            deadline = now;
+            started = true;
+        }
+        deadline += periodNanos;
+        if (now - deadline >= 0) {
+            // Late frames keep the schedule, unless so late that catching up would mean a burst
+            if (now - deadline > periodNanos) {
+                deadline = now;
+            }
+            return -1;
+        }
+
+        while (deadline - now > SPIN_NANOS) {
+            sleeper.accept(deadline - now - SPIN_NANOS);
+            now = clock.getAsLong();
+        }
+        while (deadline - now > 0) {
+            Thread.onSpinWait();
+            now = clock.getAsLong();
+        }
+        return now - deadline;
+    }
+
+    /**
+     * Starts a new schedule on the next call to {@link #awaitNextFrame()}, for example after the
+     * render loop was paused.
+     */
+    public void reset() {
+        started = false;
+    }
+}
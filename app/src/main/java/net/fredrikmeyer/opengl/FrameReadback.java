@@ -0,0 +1,199 @@
+package net.fredrikmeyer.opengl;
+
+import static org.lwjgl.opengl.GL11.GL_RGBA;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
+import static org.lwjgl.opengl.GL11.glReadPixels;
+import static org.lwjgl.opengl.GL15.GL_STREAM_READ;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL15.glUnmapBuffer;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_PACK_BUFFER;
+import static org.lwjgl.opengl.GL30.GL_MAP_READ_BIT;
+import static org.lwjgl.opengl.GL30.glMapBufferRange;
+import static org.lwjgl.opengl.GL32.GL_ALREADY_SIGNALED;
+import static org.lwjgl.opengl.GL32.GL_CONDITION_SATISFIED;
+import static org.lwjgl.opengl.GL32.GL_SYNC_GPU_COMMANDS_COMPLETE;
+import static org.lwjgl.opengl.GL32.glClientWaitSync;
+import static org.lwjgl.opengl.GL32.glDeleteSync;
+import static org.lwjgl.opengl.GL32.glFenceSync;
+
+import java.nio.ByteBuffer;
+import org.lwjgl.opengl.GL;
+
+/**
+ * Reads frames back from the current framebuffer.
+ *
+ * <p>With a ring depth greater than zero, each capture starts an asynchronous
+ * {@code glReadPixels} into one of a ring of pixel buffer objects and returns immediately. The
+ * pixels are handed to the consumer once the GPU has finished, at the latest when the ring wraps
+ * around {@code ringDepth} captures later, so capturing never waits for the frame that was just
+ * rendered. With a depth of zero, or when the context lacks the required features, every capture
+ * reads synchronously into a reused scratch buffer.
+ *
+ * <p>All methods must be called on the thread that owns the OpenGL context.
+ */
+public class FrameReadback {
+
+    /**
+     * Receives a frame once its pixels are available.
+     */
+    @FunctionalInterface
+    public interface FrameConsumer {
+
+        /**
+         * Called with the pixels of a captured frame. The buffer holds tightly packed RGBA bytes,
+         * bottom row first, and is only valid for the duration of the call.
+         *
+         * @param pixels the frame pixels
+         * @param width  the frame width in pixels
+         * @param height the frame height in pixels
+         */
+        void accept(ByteBuffer pixels, int width, int height);
+    }
+
+    private static final class Slot {
+
+        private final int pbo;
+        private long capacity;
+        private long fence;
+        private int width;
+        private int height;
+        private FrameConsumer consumer;
+
+        private Slot(int pbo) {
+            this.pbo = pbo;
+        }
+    }
+
+    private final Slot[] slots;
+    private final ImageFlipper imageFlipper;
+    private int oldest = 0;
+    private int pending = 0;
+
+    /**
+     * Creates a new FrameReadback.
+     *
+     * @param ringDepth    the number of pixel buffer objects to cycle through, or 0 for
+     *                     synchronous readback
+     * @param imageFlipper supplies the scratch buffer used for synchronous readback
+     */
+    public FrameReadback(int ringDepth, ImageFlipper imageFlipper) {
+        this.imageFlipper = imageFlipper;
+        boolean supported = GL.getCapabilities().OpenGL32;
+        this.slots = new Slot[supported ? ringDepth : 0];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(glGenBuffers());
+        }
+    }
+
+    /**
+     * Checks if this instance reads frames through pixel buffer objects.
+     *
+     * @return true if readback is asynchronous, false if every capture blocks
+     */
+    public boolean isAsynchronous() {
+        return slots.length > 0;
+    }
+
+    /**
+     * Returns the number of captures whose pixels have not yet been delivered.
+     *
+     * @return the number of readbacks in flight
+     */
+    public int pendingFrames() {
+        return pending;
+    }
+
+    /**
+     * Captures the lower-left {@code width x height} region of the current read framebuffer.
+     * Frames are always delivered to their consumers in capture order.
+     *
+     * @param width    the width of the region in pixels
+     * @param height   the height of the region in pixels
+     * @param consumer receives the pixels once they are available
+     */
+    public void capture(int width, int height, FrameConsumer consumer) {
+        if (!isAsynchronous()) {
+            ByteBuffer buffer = imageFlipper.scratchBuffer(width, height);
+            glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
+            consumer.accept(buffer, width, height);
+            return;
+        }
+
+        // Hand over everything the GPU has already finished, then make room for this frame
+        while (pending > 0 && isSignaled(slots[oldest])) {
+            deliverOldest();
+        }
+        if (pending == slots.length) {
+            deliverOldest();
+        }
+
+        Slot slot = slots[(oldest + pending) % slots.length];
+        long size = (long) width * height * ImageFlipper.BYTES_PER_PIXEL;
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, slot.pbo);
+        if (slot.capacity != size) {
+            glBufferData(GL_PIXEL_PACK_BUFFER, size, GL_STREAM_READ);
+            slot.capacity = size;
+        }
+        glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, 0L);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+
+        slot.fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        slot.width = width;
+        slot.height = height;
+        slot.consumer = consumer;
+        pending++;
+    }
+
+    /**
+     * Delivers all pending frames, waiting for the GPU if necessary.
+     */
+    public void flush() {
+        while (pending > 0) {
+            deliverOldest();
+        }
+    }
+
+    /**
+     * Delivers any pending frames and deletes the pixel buffer objects.
+     */
+    public void cleanup() {
+        flush();
+        for (Slot slot : slots) {
+            glDeleteBuffers(slot.pbo);
+        }
+    }
+
+    private static boolean isSignaled(Slot slot) {
+        int status = glClientWaitSync(slot.fence, 0, 0);
+        return status == GL_ALREADY_SIGNALED || status == GL_CONDITION_SATISFIED;
+    }
+
+    private void deliverOldest() {
+        Slot slot = slots[oldest];
+        oldest = (oldest + 1) % slots.length;
+        pending--;
+
+        glDeleteSync(slot.fence);
+        slot.fence = 0;
+        FrameConsumer consumer = slot.consumer;
+        slot.consumer = null;
+
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, slot.pbo);
+        ByteBuffer pixels = glMapBufferRange(GL_PIXEL_PACK_BUFFER, 0, slot.capacity,
+            GL_MAP_READ_BIT);
+        try {
+            if (pixels == null) {
+                throw new IllegalStateException("Failed to map pixel buffer object " + slot.pbo);
+            }
+            consumer.accept(pixels, slot.width, slot.height);
+        } finally {
+            if (pixels != null) {
+                glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+            }
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+        }
+    }
+}
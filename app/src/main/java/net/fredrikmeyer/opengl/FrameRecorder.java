@@ -0,0 +1,23 @@
+package net.fredrikmeyer.opengl;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A recording backend that writes the frames captured while recording.
+ *
+ * <p>Frames arrive on the render thread through
+ * {@link FrameReadback.FrameConsumer#accept(java.nio.ByteBuffer, int, int)} as bottom-up RGBA
+ * pixels, straight from the readback buffer, and are only valid during the call. A recorder
+ * that fails to write stops recording and reports the failure from {@link #finish()} rather than
+ * throwing into the render loop.
+ */
+public interface FrameRecorder extends FrameReadback.FrameConsumer {
+
+    /**
+     * Completes the recording. No frames may be added afterwards.
+     *
+     * @return a future completed with the path of the recording once everything is written, or
+     * with null if there were no frames or writing failed
+     */
+    CompletableFuture<String> finish();
+}
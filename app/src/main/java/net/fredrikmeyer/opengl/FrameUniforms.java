@@ -0,0 +1,140 @@
+package net.fredrikmeyer.opengl;
+
+import static org.lwjgl.opengl.GL15.GL_STREAM_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL30.glBindBufferBase;
+import static org.lwjgl.opengl.GL31.GL_UNIFORM_BUFFER;
+
+import java.nio.ByteBuffer;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.lwjgl.BufferUtils;
+
+/**
+ * The camera and frame state every shader shares, in one uniform buffer that the
+ * {@link Renderer} fills once per frame.
+ *
+ * <p>Shaders read it by declaring the block below; {@link Shader} binds a block named
+ * {@value #BLOCK_NAME} to {@link #BINDING} when it links the program, so nothing else is needed.
+ * The members are then available as plain uniforms, and scenes no longer set them one by one.
+ *
+ * <pre>{@code
+ * layout(std140) uniform Frame {
+ *     mat4 uView;               // world to camera coordinates
+ *     mat4 uProjection;         // camera to clip coordinates
+ *     vec3 uCameraPosition;
+ *     float uTime;              // seconds of scene time
+ *     vec3 uCameraOrientation;  // the direction the camera looks in
+ *     vec2 uResolution;         // the viewport size in pixels
+ * };
+ * }</pre>
+ *
+ * <p>The values are written into one direct buffer, allocated once, at their std140 offsets and
+ * uploaded with a single call that also orphans the previous storage, so the upload does not wait
+ * for draws that still read last frame's values.
+ *
+ * <p>All methods but {@link #write} must be called on the thread that owns the OpenGL context.
+ */
+public final class FrameUniforms {
+
+    /**
+     * The name of the uniform block in the shaders.
+     */
+    public static final String BLOCK_NAME = "Frame";
+
+    /**
+     * The uniform buffer binding point the block is read from.
+     */
+    public static final int BINDING = 0;
+
+    static final int VIEW_OFFSET = 0;
+    static final int PROJECTION_OFFSET = 64;
+    static final int CAMERA_POSITION_OFFSET = 128;
+    // A float packs into the last four bytes of the vec3 before it
+    static final int TIME_OFFSET = 140;
+    static final int CAMERA_ORIENTATION_OFFSET = 144;
+    // A vec2 is aligned to eight bytes, so it starts after the padding that follows the vec3
+    static final int RESOLUTION_OFFSET = 160;
+    // The block is padded to a multiple of the size of a vec4
+    static final int SIZE = 176;
+
+    private static final Vector3f NO_POSITION = new Vector3f();
+    private static final Vector3f NO_ORIENTATION = new Vector3f(0, 0, -1);
+
+    private final ByteBuffer data = BufferUtils.createByteBuffer(SIZE);
+    private final Matrix4f view = new Matrix4f();
+    private final Matrix4f projection = new Matrix4f();
+    private final Vector3f position = new Vector3f();
+    private final Vector3f orientation = new Vector3f();
+    private final int buffer;
+
+    /**
+     * Creates the uniform buffer and binds it to {@link #BINDING}.
+     */
+    public FrameUniforms() {
+        buffer = glGenBuffers();
+        glBindBuffer(GL_UNIFORM_BUFFER, buffer);
+        glBufferData(GL_UNIFORM_BUFFER, SIZE, GL_STREAM_DRAW);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+        glBindBufferBase(GL_UNIFORM_BUFFER, BINDING, buffer);
+    }
+
+    /**
+     * Uploads the state of a frame.
+     *
+     * @param camera the camera the frame is viewed through, or null for an identity view from
+     *               the origin
+     * @param time   the scene time in seconds
+     * @param width  the viewport width in pixels
+     * @param height the viewport height in pixels
+     */
+    public void update(Camera camera, float time, int width, int height) {
+        if (camera != null) {
+            camera.viewMatrix(view);
+            camera.projectionMatrix(projection);
+            write(data, view, projection, camera.position(position),
+                camera.orientation(orientation), time, width, height);
+        } else {
+            write(data, view.identity(), projection.identity(), NO_POSITION, NO_ORIENTATION, time,
+                width, height);
+        }
+        glBindBuffer(GL_UNIFORM_BUFFER, buffer);
+        glBufferData(GL_UNIFORM_BUFFER, data, GL_STREAM_DRAW);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+        // Bound again in case something else used the binding point
+        glBindBufferBase(GL_UNIFORM_BUFFER, BINDING, buffer);
+    }
+
+    /**
+     * Deletes the uniform buffer.
+     */
+    public void delete() {
+        glDeleteBuffers(buffer);
+    }
+
+    /**
+     * Writes the block in std140 layout, without changing the buffer's position.
+     *
+     * @param data        a buffer of at least {@link #SIZE} bytes in native order
+     * @param view        the view matrix
+     * @param projection  the projection matrix
+     * @param position    the camera position
+     * @param orientation the camera orientation
+     * @param time        the scene time in seconds
+     * @param width       the viewport width in pixels
+     * @param height      the viewport height in pixels
+     */
+    static void write(ByteBuffer data, Matrix4f view, Matrix4f projection, Vector3f position,
+        Vector3f orientation, float time, int width, int height) {
+        view.get(VIEW_OFFSET, data);
+        projection.get(PROJECTION_OFFSET, data);
+        position.get(CAMERA_POSITION_OFFSET, data);
+        data.putFloat(TIME_OFFSET, time);
+        orientation.get(CAMERA_ORIENTATION_OFFSET, data);
+        data.putFloat(RESOLUTION_OFFSET, width);
+        data.putFloat(RESOLUTION_OFFSET + Float.BYTES, height);
+    }
+}
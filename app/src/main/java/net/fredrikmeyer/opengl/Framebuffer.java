@@ -0,0 +1,240 @@
+package net.fredrikmeyer.opengl;
+
+import static org.lwjgl.opengl.GL11.GL_COLOR_BUFFER_BIT;
+import static org.lwjgl.opengl.GL11.GL_LINEAR;
+import static org.lwjgl.opengl.GL11.GL_NEAREST;
+import static org.lwjgl.opengl.GL11.GL_RGBA;
+import static org.lwjgl.opengl.GL11.GL_RGBA8;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MAG_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MIN_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_S;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_T;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL11.glDeleteTextures;
+import static org.lwjgl.opengl.GL11.glGenTextures;
+import static org.lwjgl.opengl.GL11.glTexImage2D;
+import static org.lwjgl.opengl.GL11.glTexParameteri;
+import static org.lwjgl.opengl.GL11.glViewport;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL30.GL_COLOR_ATTACHMENT0;
+import static org.lwjgl.opengl.GL30.GL_DEPTH_ATTACHMENT;
+import static org.lwjgl.opengl.GL30.GL_DEPTH_COMPONENT24;
+import static org.lwjgl.opengl.GL30.GL_DRAW_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER_COMPLETE;
+import static org.lwjgl.opengl.GL30.GL_READ_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_RENDERBUFFER;
+import static org.lwjgl.opengl.GL30.glBindFramebuffer;
+import static org.lwjgl.opengl.GL30.glBindRenderbuffer;
+import static org.lwjgl.opengl.GL30.glBlitFramebuffer;
+import static org.lwjgl.opengl.GL30.glCheckFramebufferStatus;
+import static org.lwjgl.opengl.GL30.glDeleteFramebuffers;
+import static org.lwjgl.opengl.GL30.glDeleteRenderbuffers;
+import static org.lwjgl.opengl.GL30.glFramebufferRenderbuffer;
+import static org.lwjgl.opengl.GL30.glFramebufferTexture2D;
+import static org.lwjgl.opengl.GL30.glGenFramebuffers;
+import static org.lwjgl.opengl.GL30.glGenRenderbuffers;
+import static org.lwjgl.opengl.GL30.glRenderbufferStorage;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * An offscreen render target: a framebuffer object with a color texture, RGBA8 unless another
+ * format is requested, and a 24-bit depth renderbuffer.
+ *
+ * <p>While it is bound, everything drawn, cleared or read back with {@code glReadPixels} goes to
+ * the framebuffer instead of the window. The color texture can also be sampled by a later pass.
+ *
+ * <p>All methods must be called on the thread that owns the OpenGL context.
+ */
+public final class Framebuffer {
+
+    private final int framebufferId;
+    private final int colorTexture;
+    private final int depthRenderbuffer;
+    private final int colorFormat;
+    private int width;
+    private int height;
+
+    /**
+     * Creates a framebuffer of the given size with an RGBA8 color texture. The previously bound
+     * framebuffer is unbound.
+     *
+     * @param width  the width in pixels
+     * @param height the height in pixels
+     * @throws IllegalArgumentException if a dimension is not positive
+     * @throws IllegalStateException    if the driver cannot render to the framebuffer
+     */
+    public Framebuffer(int width, int height) {
+        this(width, height, GL_RGBA8);
+    }
+
+    /**
+     * Creates a framebuffer of the given size and color format, such as {@code GL_RGBA16F} for
+     * values that must not be rounded to 8 bits. The previously bound framebuffer is unbound.
+     *
+     * @param width       the width in pixels
+     * @param height      the height in pixels
+     * @param colorFormat the sized internal format of the color texture
+     * @throws IllegalArgumentException if a dimension is not positive
+     * @throws IllegalStateException    if the driver cannot render to the framebuffer
+     */
+    public Framebuffer(int width, int height, int colorFormat) {
+        this.colorFormat = colorFormat;
+        framebufferId = glGenFramebuffers();
+        colorTexture = glGenTextures();
+        depthRenderbuffer = glGenRenderbuffers();
+
+        glBindTexture(GL_TEXTURE_2D, colorTexture);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        glBindTexture(GL_TEXTURE_2D, 0);
+
+        try {
+            resize(width, height);
+        } catch (RuntimeException e) {
+            delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Reallocates the attachments at a new size. The contents become undefined, and the default
+     * framebuffer is bound afterwards, so call {@link #bind()} again to keep rendering into it.
+     *
+     * @param width  the new width in pixels
+     * @param height the new height in pixels
+     * @throws IllegalArgumentException if a dimension is not positive
+     * @throws IllegalStateException    if the driver cannot render to the framebuffer
+     */
+    public void resize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(
+                "Framebuffer size must be positive, was " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+
+        glBindTexture(GL_TEXTURE_2D, colorTexture);
+        glTexImage2D(GL_TEXTURE_2D, 0, colorFormat, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE,
+            NULL);
+        glBindTexture(GL_TEXTURE_2D, 0);
+
+        glBindRenderbuffer(GL_RENDERBUFFER, depthRenderbuffer);
+        glRenderbufferStorage(GL_RENDERBUFFER, GL_DEPTH_COMPONENT24, width, height);
+        glBindRenderbuffer(GL_RENDERBUFFER, 0);
+
+        glBindFramebuffer(GL_FRAMEBUFFER, framebufferId);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, colorTexture,
+            0);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_RENDERBUFFER,
+            depthRenderbuffer);
+        int status = glCheckFramebufferStatus(GL_FRAMEBUFFER);
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+        if (status != GL_FRAMEBUFFER_COMPLETE) {
+            throw new IllegalStateException(
+                "Framebuffer is incomplete, status 0x" + Integer.toHexString(status));
+        }
+    }
+
+    /**
+     * Binds the framebuffer for drawing and reading, and sets the viewport to cover it.
+     */
+    public void bind() {
+        glBindFramebuffer(GL_FRAMEBUFFER, framebufferId);
+        glViewport(0, 0, width, height);
+    }
+
+    /**
+     * Binds the default framebuffer again. The viewport is left unchanged.
+     */
+    public void unbind() {
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    /**
+     * Copies the color attachment into the default framebuffer, stretched to the given size.
+     * Afterwards the default framebuffer is bound for drawing and this one for reading.
+     *
+     * @param targetWidth  the width of the area to fill, in pixels
+     * @param targetHeight the height of the area to fill, in pixels
+     */
+    public void blitToWindow(int targetWidth, int targetHeight) {
+        blit(width, height, 0, targetWidth, targetHeight);
+    }
+
+    /**
+     * Copies the lower left corner of the color attachment into the lower left corner of any
+     * framebuffer, such as one found bound with {@code GL_DRAW_FRAMEBUFFER_BINDING}. Afterwards
+     * the target is bound for drawing and this framebuffer for reading.
+     *
+     * @param targetFramebuffer the OpenGL name of the target, or 0 for the window
+     * @param width             the width of the area to copy, in pixels
+     * @param height            the height of the area to copy, in pixels
+     */
+    public void blitTo(int targetFramebuffer, int width, int height) {
+        blit(width, height, targetFramebuffer, width, height);
+    }
+
+    /**
+     * Copies the lower left corner of the color attachment into another framebuffer, stretched
+     * to cover it, with bilinear filtering when the sizes differ. Used to upscale a frame that was
+     * rendered into part of this framebuffer. Afterwards the target is bound for drawing and this
+     * framebuffer for reading.
+     *
+     * @param target       the framebuffer to fill
+     * @param sourceWidth  the width of the corner to copy, in pixels
+     * @param sourceHeight the height of the corner to copy, in pixels
+     */
+    public void blitTo(Framebuffer target, int sourceWidth, int sourceHeight) {
+        blit(sourceWidth, sourceHeight, target.framebufferId, target.width, target.height);
+    }
+
+    private void blit(int sourceWidth, int sourceHeight, int targetFramebuffer, int targetWidth,
+        int targetHeight) {
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, framebufferId);
+        glBindFramebuffer(GL_DRAW_FRAMEBUFFER, targetFramebuffer);
+        boolean sameSize = targetWidth == sourceWidth && targetHeight == sourceHeight;
+        glBlitFramebuffer(0, 0, sourceWidth, sourceHeight, 0, 0, targetWidth, targetHeight,
+            GL_COLOR_BUFFER_BIT, sameSize ? GL_NEAREST : GL_LINEAR);
+    }
+
+    /**
+     * Deletes the framebuffer and its attachments.
+     */
+    public void delete() {
+        glDeleteFramebuffers(framebufferId);
+        glDeleteTextures(colorTexture);
+        glDeleteRenderbuffers(depthRenderbuffer);
+    }
+
+    /**
+     * Gets the color texture the framebuffer renders into.
+     *
+     * @return the OpenGL texture name
+     */
+    public int getColorTexture() {
+        return colorTexture;
+    }
+
+    /**
+     * Gets the width of the framebuffer.
+     *
+     * @return the width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the framebuffer.
+     *
+     * @return the height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+}
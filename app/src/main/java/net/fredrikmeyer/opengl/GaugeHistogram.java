@@ -0,0 +1,130 @@
+package net.fredrikmeyer.opengl;
+
+import java.util.Arrays;
+
+/**
+ * Records a gauge, a value sampled once per frame such as a resolution scale, and answers
+ * percentile queries, without allocating.
+ *
+ * <p>Values are counted in buckets of equal width from zero up to a highest tracked value, so
+ * percentiles are exact to within one bucket width, in the unit of the values. Larger values are
+ * counted in the last bucket and negative ones in the first, though {@link #min()} and
+ * {@link #max()} are always exact. Recording is an array increment.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public final class GaugeHistogram {
+
+    private final double bucketWidth;
+    private final long[] counts;
+    private long totalCount = 0;
+    private double sum = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param highest     the highest value that is told apart from larger ones
+     * @param bucketWidth the precision of the percentiles
+     * @throws IllegalArgumentException if the bucket width is not positive or above the highest
+     *                                  value
+     */
+    public GaugeHistogram(double highest, double bucketWidth) {
+        if (!(bucketWidth > 0) || !(bucketWidth <= highest)) {
+            throw new IllegalArgumentException("Bucket width must satisfy 0 < width <= highest,"
+                + " was " + bucketWidth + " with highest " + highest);
+        }
+        this.bucketWidth = bucketWidth;
+        this.counts = new long[(int) Math.ceil(highest / bucketWidth) + 1];
+    }
+
+    /**
+     * Records one value.
+     *
+     * @param value the value
+     */
+    public void record(double value) {
+        int index = (int) Math.max(0, Math.min(value / bucketWidth, counts.length - 1));
+        counts[index]++;
+        totalCount++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the count
+     */
+    public long count() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the smallest recorded value.
+     *
+     * @return the minimum, or 0 if nothing was recorded
+     */
+    public double min() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return the maximum, or 0 if nothing was recorded
+     */
+    public double max() {
+        return totalCount == 0 ? 0 : max;
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return the mean, or 0 if nothing was recorded
+     */
+    public double mean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * Returns the value that the given percentage of recorded values do not exceed. The result
+     * is the upper end of the bucket the percentile falls in, kept between {@link #min()} and
+     * {@link #max()}.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the value, or 0 if nothing was recorded
+     */
+    public double percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException(
+                "percentile must be between 0 and 100, was " + percentile);
+        }
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        // The last bucket also holds every larger value, so its percentiles are the maximum
+        for (int i = 0; i < counts.length - 1; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(min, Math.min((i + 1) * bucketWidth, max));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Forgets all recorded values.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+}
@@ -0,0 +1,323 @@
+package net.fredrikmeyer.opengl;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Writes GIF89a animations from raw RGBA pixels.
+ *
+ * <p>Frames share one global palette. Unless a palette is given up front, it is built with
+ * median cut from the first frame; a later frame with colors the palette misses gets a local color
+ * table of its own. Each frame is mapped to its palette with optional dithering and compressed by
+ * a {@link GifFrameCompressor}. Work buffers are kept between frames, so
+ * encoding a sequence of same-sized frames does not allocate. {@link ParallelGifEncoder}
+ * compresses several frames at once.
+ *
+ * <p>An encoder is not thread-safe. Frames are written to the stream as they are added, and
+ * {@link #finish()} writes the trailer; the stream itself is left open.
+ */
+public class GifEncoder {
+
+    /**
+     * How colors that are not in the palette are approximated.
+     */
+    public enum Dither {
+        /**
+         * Map every pixel to its nearest palette color. Fastest, but gradients show bands.
+         */
+        NONE,
+
+        /**
+         * Offset pixels by a 4x4 Bayer matrix before mapping. Cheap, stable between frames and
+         * compresses well.
+         */
+        ORDERED,
+
+        /**
+         * Diffuse each pixel's error to its neighbours. The most accurate colors, but noisy
+         * between frames and slower to compress.
+         */
+        FLOYD_STEINBERG
+    }
+
+    // Pixels sampled over all frames of a recording to build its palette
+    private static final int PALETTE_SAMPLES = 1 << 20;
+
+    private final OutputStream out;
+    private final int delayCentiseconds;
+    private final boolean loop;
+    private final Dither dither;
+    private final boolean deltaFrames;
+
+    private GifPalette palette;
+    private GifFrameCompressor compressor;
+    private int width = -1;
+    private int height = -1;
+    private ByteBuffer rgbaScratch;
+    private ByteBuffer previousFrame;
+    private boolean finished = false;
+
+    /**
+     * Creates an encoder that builds its palette from the first frame.
+     *
+     * @param out          the stream to write to
+     * @param frameDelayMs the time between frames in milliseconds
+     * @param loop         whether the animation loops forever
+     * @param dither       how colors outside the palette are approximated
+     */
+    public GifEncoder(OutputStream out, int frameDelayMs, boolean loop, Dither dither) {
+        this(out, frameDelayMs, loop, dither, false, null);
+    }
+
+    /**
+     * Creates an encoder that builds its palette from the first frame, optionally writing delta
+     * frames.
+     *
+     * @param out          the stream to write to
+     * @param frameDelayMs the time between frames in milliseconds
+     * @param loop         whether the animation loops forever
+     * @param dither       how colors outside the palette are approximated
+     * @param deltaFrames  whether to write only the changed region of each frame
+     */
+    public GifEncoder(OutputStream out, int frameDelayMs, boolean loop, Dither dither,
+        boolean deltaFrames) {
+        this(out, frameDelayMs, loop, dither, deltaFrames, null);
+    }
+
+    /**
+     * Creates an encoder with a fixed global palette.
+     *
+     * @param out          the stream to write to
+     * @param frameDelayMs the time between frames in milliseconds
+     * @param loop         whether the animation loops forever
+     * @param dither       how colors outside the palette are approximated
+     * @param palette      the global palette, or null to build it from the first frame
+     */
+    public GifEncoder(OutputStream out, int frameDelayMs, boolean loop, Dither dither,
+        GifPalette palette) {
+        this(out, frameDelayMs, loop, dither, false, palette);
+    }
+
+    /**
+     * Creates an encoder.
+     *
+     * <p>With delta frames, every frame after the first only covers the bounding rectangle of
+     * the pixels that changed, and unchanged pixels inside it are transparent, so the previous
+     * frame shows through. The transparent color takes one palette entry, so a palette built by
+     * the encoder has at most 255 colors, and a given palette must not have more.
+     *
+     * @param out          the stream to write to
+     * @param frameDelayMs the time between frames in milliseconds
+     * @param loop         whether the animation loops forever
+     * @param dither       how colors outside the palette are approximated
+     * @param deltaFrames  whether to write only the changed region of each frame
+     * @param palette      the global palette, or null to build it from the first frame
+     */
+    public GifEncoder(OutputStream out, int frameDelayMs, boolean loop, Dither dither,
+        boolean deltaFrames, GifPalette palette) {
+        if (frameDelayMs < 0) {
+            throw new IllegalArgumentException(
+                "frameDelayMs must be non-negative, was " + frameDelayMs);
+        }
+        this.out = out;
+        this.delayCentiseconds = delayCentiseconds(frameDelayMs);
+        this.loop = loop;
+        this.dither = dither;
+        this.deltaFrames = deltaFrames;
+        this.palette = palette;
+    }
+
+    /**
+     * Returns the global palette, or null if no frame has been written yet and none was given.
+     *
+     * @return the palette
+     */
+    public GifPalette palette() {
+        return palette;
+    }
+
+    /**
+     * Encodes and writes one frame. The first frame fixes the size of the animation.
+     *
+     * @param rgba   the pixels as top-down RGBA bytes, starting at the buffer's position; alpha is
+     *               ignored and the buffer's position is not changed
+     * @param width  the frame width in pixels
+     * @param height the frame height in pixels
+     * @throws IOException if writing fails
+     */
+    public void writeFrame(ByteBuffer rgba, int width, int height) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("GIF has already been finished");
+        }
+        if (width < 1 || height < 1 || width > 0xFFFF || height > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid frame size " + width + "x" + height);
+        }
+        if (rgba.remaining() < width * height * 4) {
+            throw new IllegalArgumentException("Frame needs " + width * height * 4
+                + " bytes, buffer has " + rgba.remaining());
+        }
+
+        if (this.width < 0) {
+            if (palette == null) {
+                palette = new GifPalette.Builder().add(rgba, width * height, 1)
+                    .build(maxColors(deltaFrames));
+            }
+            compressor = new GifFrameCompressor(palette, dither, width, height,
+                delayCentiseconds, deltaFrames);
+            this.width = width;
+            this.height = height;
+            writeHeader(out, width, height, palette, deltaFrames, loop);
+            compressor.compress(rgba, null, out);
+        } else if (width != this.width || height != this.height) {
+            throw new IllegalArgumentException("Frame is " + width + "x" + height
+                + " but the animation is " + this.width + "x" + this.height);
+        } else {
+            compressor.compress(rgba, previousFrame, out);
+        }
+
+        if (deltaFrames) {
+            int frameBytes = width * height * 4;
+            if (previousFrame == null) {
+                previousFrame = ByteBuffer.allocate(frameBytes);
+            }
+            previousFrame.put(0, rgba, rgba.position(), frameBytes);
+        }
+    }
+
+    /**
+     * Encodes and writes one frame given as an image. The pixels are converted to RGBA in a
+     * buffer that is reused between frames.
+     *
+     * @param image the frame
+     * @throws IOException if writing fails
+     */
+    public void writeFrame(BufferedImage image) throws IOException {
+        rgbaScratch = GifFrameCompressor.toRgba(image, rgbaScratch);
+        writeFrame(rgbaScratch, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Writes the GIF trailer and flushes the stream. Does nothing if no frame was written.
+     *
+     * @throws IOException if writing fails
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (this.width >= 0) {
+            out.write(0x3B);
+        }
+        out.flush();
+    }
+
+    /**
+     * Converts a frame delay to the centiseconds GIF stores.
+     */
+    static int delayCentiseconds(int frameDelayMs) {
+        return Math.min(frameDelayMs / 10, 0xFFFF);
+    }
+
+    /**
+     * Returns the number of colors a palette built for an animation may have.
+     */
+    static int maxColors(boolean deltaFrames) {
+        return deltaFrames ? 255 : 256;
+    }
+
+    /**
+     * Returns the bits per index of the global color table, which has one extra entry for the
+     * transparent color when delta frames are written.
+     */
+    static int tableDepth(GifPalette palette, boolean deltaFrames) {
+        int colors = palette.size() + (deltaFrames ? 1 : 0);
+        int bits = 1;
+        while ((1 << bits) < colors) {
+            bits++;
+        }
+        return bits;
+    }
+
+    /**
+     * Writes the GIF signature, logical screen descriptor, global color table and, if requested,
+     * the looping extension.
+     */
+    static void writeHeader(OutputStream out, int width, int height, GifPalette palette,
+        boolean deltaFrames, boolean loop) throws IOException {
+        int depth = tableDepth(palette, deltaFrames);
+        out.write(new byte[]{'G', 'I', 'F', '8', '9', 'a'});
+
+        // Logical screen descriptor with a global color table
+        GifFrameCompressor.writeShort(out, width);
+        GifFrameCompressor.writeShort(out, height);
+        out.write(0x80 | ((depth - 1) << 4) | (depth - 1));
+        out.write(0);
+        out.write(0);
+
+        writeColorTable(out, palette, depth);
+
+        if (loop) {
+            // NETSCAPE2.0 application extension, looping forever
+            out.write(new byte[]{0x21, (byte) 0xFF, 0x0B,
+                'N', 'E', 'T', 'S', 'C', 'A', 'P', 'E', '2', '.', '0',
+                0x03, 0x01, 0x00, 0x00, 0x00});
+        }
+    }
+
+    /**
+     * Writes a color table of {@code 1 << depth} entries, padded with black.
+     */
+    static void writeColorTable(OutputStream out, GifPalette palette, int depth)
+        throws IOException {
+        byte[] table = new byte[3 << depth];
+        for (int i = 0; i < palette.size(); i++) {
+            int color = palette.color(i);
+            table[i * 3] = (byte) (color >> 16);
+            table[i * 3 + 1] = (byte) (color >> 8);
+            table[i * 3 + 2] = (byte) color;
+        }
+        out.write(table);
+    }
+
+    /**
+     * Builds the palette of a recording whose frames are all known, from a sample of the pixels
+     * of every frame, so colors that only appear later in the recording get entries too.
+     *
+     * @param frames      the frames, all of the same size
+     * @param deltaFrames whether the palette must leave room for the transparent color
+     * @return the palette
+     */
+    static GifPalette paletteOf(List<BufferedImage> frames, boolean deltaFrames) {
+        int pixelCount = frames.get(0).getWidth() * frames.get(0).getHeight();
+        int step = (int) Math.max(1, (long) pixelCount * frames.size() / PALETTE_SAMPLES);
+        GifPalette.Builder builder = new GifPalette.Builder();
+        ByteBuffer rgba = null;
+        for (BufferedImage frame : frames) {
+            rgba = GifFrameCompressor.toRgba(frame, rgba);
+            builder.add(rgba, pixelCount, step);
+        }
+        return builder.build(maxColors(deltaFrames));
+    }
+
+    /**
+     * Builds the palette of a recording of top-down RGBA frames, from a sample of the pixels of
+     * every frame.
+     *
+     * @param frames      the frames, each holding the pixels from its position on
+     * @param pixelCount  the number of pixels in each frame
+     * @param deltaFrames whether the palette must leave room for the transparent color
+     * @return the palette
+     */
+    static GifPalette paletteOf(List<ByteBuffer> frames, int pixelCount, boolean deltaFrames) {
+        int step = (int) Math.max(1, (long) pixelCount * frames.size() / PALETTE_SAMPLES);
+        GifPalette.Builder builder = new GifPalette.Builder();
+        for (ByteBuffer frame : frames) {
+            builder.add(frame, pixelCount, step);
+        }
+        return builder.build(maxColors(deltaFrames));
+    }
+}
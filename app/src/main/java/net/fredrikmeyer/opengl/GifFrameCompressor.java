@@ -0,0 +1,376 @@
+package net.fredrikmeyer.opengl;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Turns one RGBA frame into a complete GIF image block: graphic control extension, image
+ * descriptor and LZW-compressed palette indices.
+ *
+ * <p>Frames are independent once the palette is fixed, so several compressors can work on
+ * different frames of the same animation at once. Delta frames only need the previous frame's
+ * pixels, not its encoding: an unchanged pixel simply keeps the color it was given before, which
+ * without error diffusion is the color it would get anyway. A compressor keeps its work buffers
+ * between frames and is not thread-safe.
+ *
+ * <p>A frame whose colors the global palette misses, such as the first colorful frame after a
+ * fade from black that the palette was built from, is written with a local color table built from
+ * the frame itself. Whether a frame needs one only depends on its pixels, so every compressor
+ * decides the same.
+ */
+final class GifFrameCompressor {
+
+    // Pixels are offset by 2 * t - 15, about one palette step of a 256 color palette
+    private static final int[] BAYER_4X4 = {
+        0, 8, 2, 10,
+        12, 4, 14, 6,
+        3, 11, 1, 9,
+        15, 7, 13, 5
+    };
+
+    // Pixels sampled to decide whether a frame needs a palette of its own
+    private static final int MATCH_SAMPLES = 4096;
+    // A pixel whose palette color is off by more than this in some channel is poorly matched
+    private static final int POOR_MATCH_ERROR = 48;
+    // The share of poorly matched samples above which a frame gets a local color table
+    private static final double POOR_MATCH_SHARE = 0.01;
+
+    private final GifPalette globalPalette;
+    private final GifEncoder.Dither dither;
+    private final int width;
+    private final int height;
+    private final int delayCentiseconds;
+    private final boolean deltaFrames;
+    private final int globalDepth;
+    private final byte[] indices;
+    private final LzwEncoder lzw = new LzwEncoder();
+    private int[] errorRows;
+
+    // The palette of the current frame, global or local
+    private GifPalette palette;
+    private boolean localPalette;
+    private int transparentIndex;
+    private int tableDepth;
+
+    // The region of the current frame being encoded
+    private int regionX;
+    private int regionY;
+    private int regionWidth;
+    private int regionHeight;
+
+    /**
+     * Creates a compressor for frames of one animation.
+     *
+     * @param palette           the global palette
+     * @param dither            how colors outside the palette are approximated
+     * @param width             the frame width
+     * @param height            the frame height
+     * @param delayCentiseconds the frame delay as stored in the GIF
+     * @param deltaFrames       whether frames with a previous frame are reduced to the region
+     *                          that changed, with unchanged pixels made transparent; the
+     *                          transparent color takes the index after the last palette color
+     */
+    GifFrameCompressor(GifPalette palette, GifEncoder.Dither dither, int width, int height,
+        int delayCentiseconds, boolean deltaFrames) {
+        if (deltaFrames && palette.size() > 255) {
+            throw new IllegalArgumentException(
+                "Delta frames need a palette of at most 255 colors to add a transparent one");
+        }
+        this.globalPalette = palette;
+        this.dither = dither;
+        this.width = width;
+        this.height = height;
+        this.delayCentiseconds = delayCentiseconds;
+        this.deltaFrames = deltaFrames;
+        this.globalDepth = GifEncoder.tableDepth(palette, deltaFrames);
+        this.indices = new byte[width * height];
+        usePalette(palette, false);
+    }
+
+    private void usePalette(GifPalette framePalette, boolean local) {
+        palette = framePalette;
+        localPalette = local;
+        transparentIndex = deltaFrames ? framePalette.size() : -1;
+        tableDepth = local ? GifEncoder.tableDepth(framePalette, deltaFrames) : globalDepth;
+    }
+
+    /**
+     * Maps an RGBA frame to the palette and writes it as a GIF image block.
+     *
+     * @param rgba     top-down RGBA pixels starting at the buffer's position, which is not
+     *                 changed
+     * @param previous the previous frame in the same layout, or null for the first frame; only
+     *                 used with delta frames
+     * @param out      the stream to write the block to
+     * @throws IOException if writing fails
+     */
+    void compress(ByteBuffer rgba, ByteBuffer previous, OutputStream out) throws IOException {
+        ByteBuffer pixels = rgba.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (localPalette) {
+            usePalette(globalPalette, false);
+        }
+        ByteBuffer before = null;
+        if (transparentIndex >= 0 && previous != null) {
+            before = previous.duplicate().order(ByteOrder.BIG_ENDIAN);
+            if (!findChangedRegion(pixels, before)) {
+                // Nothing changed, but the frame is still needed for its delay
+                indices[0] = (byte) transparentIndex;
+                writeImage(out, 0, 0, 1, 1);
+                return;
+            }
+        } else {
+            regionX = 0;
+            regionY = 0;
+            regionWidth = width;
+            regionHeight = height;
+        }
+
+        if (matchesPoorly(pixels)) {
+            usePalette(new GifPalette.Builder().add(pixels, width * height, 1)
+                .build(GifEncoder.maxColors(deltaFrames)), true);
+        }
+        switch (dither) {
+            case NONE -> mapNearest(pixels, before);
+            case ORDERED -> mapOrdered(pixels, before);
+            case FLOYD_STEINBERG -> mapFloydSteinberg(pixels, before);
+        }
+        writeImage(out, regionX, regionY, regionWidth, regionHeight);
+    }
+
+    /**
+     * Copies an image into an RGBA buffer, reusing {@code scratch} if it is large enough.
+     *
+     * @return the buffer holding the pixels, with position 0
+     */
+    static ByteBuffer toRgba(BufferedImage image, ByteBuffer scratch) {
+        int pixelCount = image.getWidth() * image.getHeight();
+        BufferedImage argb = image;
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB
+            && image.getType() != BufferedImage.TYPE_INT_RGB) {
+            argb = new BufferedImage(image.getWidth(), image.getHeight(),
+                BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = argb.createGraphics();
+            graphics.drawImage(image, 0, 0, null);
+            graphics.dispose();
+        }
+        int[] pixels = ((DataBufferInt) argb.getRaster().getDataBuffer()).getData();
+
+        ByteBuffer rgba = scratch;
+        if (rgba == null || rgba.capacity() < pixelCount * 4) {
+            rgba = ByteBuffer.allocate(pixelCount * 4);
+        }
+        rgba.clear();
+        for (int i = 0; i < pixelCount; i++) {
+            rgba.putInt(i * 4, Integer.rotateLeft(pixels[i], 8));
+        }
+        return rgba;
+    }
+
+    /**
+     * Checks a sample of the frame's pixels against the global palette.
+     *
+     * @return true if too many of them have no close palette color
+     */
+    private boolean matchesPoorly(ByteBuffer pixels) {
+        int pixelCount = width * height;
+        int step = Math.max(1, pixelCount / MATCH_SAMPLES);
+        int base = pixels.position();
+        int samples = 0;
+        int poor = 0;
+        for (int i = 0; i < pixelCount; i += step) {
+            int rgba = pixels.getInt(base + i * 4);
+            int r = rgba >>> 24;
+            int g = (rgba >>> 16) & 0xFF;
+            int b = (rgba >>> 8) & 0xFF;
+            int color = globalPalette.color(globalPalette.map(r, g, b));
+            int error = Math.max(Math.abs(r - ((color >> 16) & 0xFF)),
+                Math.max(Math.abs(g - ((color >> 8) & 0xFF)), Math.abs(b - (color & 0xFF))));
+            samples++;
+            if (error > POOR_MATCH_ERROR) {
+                poor++;
+            }
+        }
+        return poor > samples * POOR_MATCH_SHARE;
+    }
+
+    /**
+     * Finds the bounding rectangle of the pixels that differ from the previous frame.
+     *
+     * @return false if the frames are identical
+     */
+    private boolean findChangedRegion(ByteBuffer pixels, ByteBuffer previous) {
+        int rowBytes = width * 4;
+        int base = pixels.position();
+        int previousBase = previous.position();
+        int minX = width;
+        int maxX = -1;
+        int minY = -1;
+        int maxY = -1;
+
+        for (int y = 0; y < height; y++) {
+            int row = base + y * rowBytes;
+            int previousRow = previousBase + y * rowBytes;
+            int mismatch = pixels.slice(row, rowBytes).mismatch(
+                previous.slice(previousRow, rowBytes));
+            if (mismatch < 0) {
+                continue;
+            }
+            if (minY < 0) {
+                minY = y;
+            }
+            maxY = y;
+            minX = Math.min(minX, mismatch / 4);
+            // Only changes right of the current rectangle can widen it
+            for (int x = width - 1; x > maxX; x--) {
+                if (pixels.getInt(row + x * 4) != previous.getInt(previousRow + x * 4)) {
+                    maxX = x;
+                    break;
+                }
+            }
+        }
+
+        if (minY < 0) {
+            return false;
+        }
+        regionX = minX;
+        regionY = minY;
+        regionWidth = maxX - minX + 1;
+        regionHeight = maxY - minY + 1;
+        return true;
+    }
+
+    private void mapNearest(ByteBuffer pixels, ByteBuffer previous) {
+        int base = pixels.position();
+        int previousBase = previous == null ? 0 : previous.position();
+        for (int y = 0; y < regionHeight; y++) {
+            int offset = ((regionY + y) * width + regionX) * 4;
+            int out = y * regionWidth;
+            for (int x = 0; x < regionWidth; x++, offset += 4) {
+                int rgba = pixels.getInt(base + offset);
+                if (previous != null && rgba == previous.getInt(previousBase + offset)) {
+                    indices[out + x] = (byte) transparentIndex;
+                } else {
+                    indices[out + x] = (byte) palette.map(rgba >>> 24, (rgba >>> 16) & 0xFF,
+                        (rgba >>> 8) & 0xFF);
+                }
+            }
+        }
+    }
+
+    private void mapOrdered(ByteBuffer pixels, ByteBuffer previous) {
+        int base = pixels.position();
+        int previousBase = previous == null ? 0 : previous.position();
+        for (int y = 0; y < regionHeight; y++) {
+            int offset = ((regionY + y) * width + regionX) * 4;
+            int out = y * regionWidth;
+            // The matrix is anchored to the screen so unchanged pixels keep their index
+            int matrixRow = ((regionY + y) & 3) * 4;
+            for (int x = 0; x < regionWidth; x++, offset += 4) {
+                int rgba = pixels.getInt(base + offset);
+                if (previous != null && rgba == previous.getInt(previousBase + offset)) {
+                    indices[out + x] = (byte) transparentIndex;
+                    continue;
+                }
+                int threshold = BAYER_4X4[matrixRow + ((regionX + x) & 3)] * 2 - 15;
+                indices[out + x] = (byte) palette.map(
+                    clamp((rgba >>> 24) + threshold),
+                    clamp(((rgba >>> 16) & 0xFF) + threshold),
+                    clamp(((rgba >>> 8) & 0xFF) + threshold));
+            }
+        }
+    }
+
+    private void mapFloydSteinberg(ByteBuffer pixels, ByteBuffer previous) {
+        // Two rows of RGB error, each padded by one pixel on both sides
+        int stride = (regionWidth + 2) * 3;
+        if (errorRows == null || errorRows.length < stride * 2) {
+            errorRows = new int[stride * 2];
+        } else {
+            Arrays.fill(errorRows, 0);
+        }
+        int base = pixels.position();
+        int previousBase = previous == null ? 0 : previous.position();
+        int current = 0;
+        int next = stride;
+
+        for (int y = 0; y < regionHeight; y++) {
+            int offset = ((regionY + y) * width + regionX) * 4;
+            int out = y * regionWidth;
+            for (int x = 0; x < regionWidth; x++, offset += 4) {
+                int rgba = pixels.getInt(base + offset);
+                if (previous != null && rgba == previous.getInt(previousBase + offset)) {
+                    // The error carries on unchanged past transparent pixels
+                    indices[out + x] = (byte) transparentIndex;
+                    continue;
+                }
+                int e = current + (x + 1) * 3;
+                // Errors are kept in sixteenths
+                int r = clamp((rgba >>> 24) + (errorRows[e] >> 4));
+                int g = clamp(((rgba >>> 16) & 0xFF) + (errorRows[e + 1] >> 4));
+                int b = clamp(((rgba >>> 8) & 0xFF) + (errorRows[e + 2] >> 4));
+
+                int index = palette.map(r, g, b);
+                indices[out + x] = (byte) index;
+
+                int color = palette.color(index);
+                diffuse(errorRows, e, next + (x + 1) * 3, r - ((color >> 16) & 0xFF));
+                diffuse(errorRows, e + 1, next + (x + 1) * 3 + 1, g - ((color >> 8) & 0xFF));
+                diffuse(errorRows, e + 2, next + (x + 1) * 3 + 2, b - (color & 0xFF));
+            }
+            Arrays.fill(errorRows, current, current + stride, 0);
+            int swap = current;
+            current = next;
+            next = swap;
+        }
+    }
+
+    private static void diffuse(int[] errors, int here, int below, int error) {
+        errors[here + 3] += error * 7;
+        errors[below - 3] += error * 3;
+        errors[below] += error * 5;
+        errors[below + 3] += error;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : Math.min(value, 255);
+    }
+
+    private void writeImage(OutputStream out, int x, int y, int imageWidth, int imageHeight)
+        throws IOException {
+        // Graphic control extension. Delta frames are drawn over the previous frame, which is
+        // kept, and are transparent where nothing changed.
+        out.write(0x21);
+        out.write(0xF9);
+        out.write(4);
+        out.write(transparentIndex >= 0 ? (1 << 2) | 1 : 0);
+        writeShort(out, delayCentiseconds);
+        out.write(Math.max(transparentIndex, 0));
+        out.write(0);
+
+        // Image descriptor, followed by the frame's own color table if it has one
+        out.write(0x2C);
+        writeShort(out, x);
+        writeShort(out, y);
+        writeShort(out, imageWidth);
+        writeShort(out, imageHeight);
+        if (localPalette) {
+            out.write(0x80 | (tableDepth - 1));
+            GifEncoder.writeColorTable(out, palette, tableDepth);
+        } else {
+            out.write(0);
+        }
+
+        lzw.encode(indices, imageWidth * imageHeight, tableDepth, out);
+    }
+
+    static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+    }
+}
@@ -0,0 +1,322 @@
+package net.fredrikmeyer.opengl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A color palette of at most 256 entries for GIF encoding, built with median cut.
+ *
+ * <p>Colors are first counted in a histogram with 5 bits per channel. The histogram also keeps
+ * the exact sum of every channel per bin, so a palette entry is the true average of the colors it
+ * stands for. Images with at most {@code maxColors} distinct colors, no two of which share a
+ * bin, are therefore reproduced exactly. Colors that do share a bin, such as {@code 0x000000} and
+ * {@code 0x070707}, become one entry with their average.
+ *
+ * <p>Colors are mapped to palette indices per bin: a bin that went into a median-cut box maps to
+ * that box's color, and any other bin maps to the color nearest its center. The mapping depends
+ * only on the color, never on which colors were mapped before, so frames encode the same way on
+ * any thread. Palettes can be shared between threads.
+ */
+public final class GifPalette {
+
+    private static final int BINS = 1 << 15;
+
+    private final int[] colors;
+    // Palette index + 1 for every color bin, 0 when not looked up yet. Concurrent lookups may
+    // race to fill a bin, but they always store the same value.
+    private final short[] binIndices = new short[BINS];
+
+    private GifPalette(int[] colors) {
+        this.colors = colors;
+    }
+
+    /**
+     * Creates a palette from explicit colors.
+     *
+     * @param rgbColors the colors as {@code 0xRRGGBB} ints, at most 256 of them
+     * @return the palette
+     */
+    public static GifPalette of(int... rgbColors) {
+        if (rgbColors.length == 0 || rgbColors.length > 256) {
+            throw new IllegalArgumentException(
+                "A GIF palette needs between 1 and 256 colors, got " + rgbColors.length);
+        }
+        GifPalette palette = new GifPalette(rgbColors.clone());
+        for (int i = rgbColors.length - 1; i >= 0; i--) {
+            int color = rgbColors[i];
+            palette.binIndices[bin(color >> 16, (color >> 8) & 0xFF, color & 0xFF)] =
+                (short) (i + 1);
+        }
+        return palette;
+    }
+
+    /**
+     * Returns the number of colors in the palette.
+     *
+     * @return the palette size
+     */
+    public int size() {
+        return colors.length;
+    }
+
+    /**
+     * Returns a color of the palette.
+     *
+     * @param index the palette index
+     * @return the color as a {@code 0xRRGGBB} int
+     */
+    public int color(int index) {
+        return colors[index];
+    }
+
+    /**
+     * Returns the number of bits needed to address every entry, which is at least 1.
+     *
+     * @return the palette depth in bits
+     */
+    public int bitDepth() {
+        int bits = 1;
+        while ((1 << bits) < colors.length) {
+            bits++;
+        }
+        return bits;
+    }
+
+    /**
+     * Returns the palette index whose color is closest to the given color.
+     *
+     * @param r the red component, 0-255
+     * @param g the green component, 0-255
+     * @param b the blue component, 0-255
+     * @return the nearest palette index
+     */
+    public int nearest(int r, int g, int b) {
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < colors.length; i++) {
+            int dr = ((colors[i] >> 16) & 0xFF) - r;
+            int dg = ((colors[i] >> 8) & 0xFF) - g;
+            int db = (colors[i] & 0xFF) - b;
+            int distance = 2 * dr * dr + 4 * dg * dg + 3 * db * db;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the palette index for a color.
+     *
+     * @param r the red component, 0-255
+     * @param g the green component, 0-255
+     * @param b the blue component, 0-255
+     * @return the palette index
+     */
+    public int map(int r, int g, int b) {
+        int bin = bin(r, g, b);
+        int index = binIndices[bin];
+        if (index == 0) {
+            index = nearest(((bin >> 10) << 3) | 4, (((bin >> 5) & 31) << 3) | 4,
+                ((bin & 31) << 3) | 4) + 1;
+            binIndices[bin] = (short) index;
+        }
+        return index - 1;
+    }
+
+    /**
+     * Accumulates the colors of one or more images and builds a palette from them.
+     */
+    public static final class Builder {
+
+        private final int[] counts = new int[BINS];
+        private final long[] redSums = new long[BINS];
+        private final long[] greenSums = new long[BINS];
+        private final long[] blueSums = new long[BINS];
+
+        /**
+         * Adds the colors of an RGBA image to the histogram. Alpha is ignored.
+         *
+         * @param rgba       the pixels as RGBA bytes, starting at the buffer's position
+         * @param pixelCount the number of pixels to read
+         * @param step       only every {@code step}-th pixel is counted; use 1 to count all
+         * @return this builder
+         */
+        public Builder add(ByteBuffer rgba, int pixelCount, int step) {
+            ByteBuffer pixels = rgba.duplicate().order(ByteOrder.BIG_ENDIAN);
+            int base = pixels.position();
+            for (int i = 0; i < pixelCount; i += step) {
+                int rgbaValue = pixels.getInt(base + i * 4);
+                int r = rgbaValue >>> 24;
+                int g = (rgbaValue >>> 16) & 0xFF;
+                int b = (rgbaValue >>> 8) & 0xFF;
+                int bin = bin(r, g, b);
+                counts[bin]++;
+                redSums[bin] += r;
+                greenSums[bin] += g;
+                blueSums[bin] += b;
+            }
+            return this;
+        }
+
+        /**
+         * Builds a palette with median cut.
+         *
+         * @param maxColors the maximum number of colors, between 1 and 256
+         * @return the palette
+         */
+        public GifPalette build(int maxColors) {
+            if (maxColors < 1 || maxColors > 256) {
+                throw new IllegalArgumentException(
+                    "maxColors must be between 1 and 256, was " + maxColors);
+            }
+
+            int used = 0;
+            for (int count : counts) {
+                if (count > 0) {
+                    used++;
+                }
+            }
+            if (used == 0) {
+                return GifPalette.of(0);
+            }
+            int[] bins = new int[used];
+            for (int bin = 0, i = 0; bin < BINS; bin++) {
+                if (counts[bin] > 0) {
+                    bins[i++] = bin;
+                }
+            }
+
+            // Each box is a range of the bins array: [starts[i], ends[i])
+            int[] starts = new int[maxColors];
+            int[] ends = new int[maxColors];
+            int boxes = 1;
+            starts[0] = 0;
+            ends[0] = used;
+
+            while (boxes < maxColors) {
+                int box = pickBoxToSplit(bins, starts, ends, boxes);
+                if (box < 0) {
+                    break;
+                }
+                int split = splitBox(bins, starts[box], ends[box]);
+                starts[boxes] = split;
+                ends[boxes] = ends[box];
+                ends[box] = split;
+                boxes++;
+            }
+
+            int[] colors = new int[boxes];
+            for (int i = 0; i < boxes; i++) {
+                colors[i] = averageColor(bins, starts[i], ends[i]);
+            }
+            GifPalette palette = new GifPalette(colors);
+            for (int i = 0; i < boxes; i++) {
+                for (int j = starts[i]; j < ends[i]; j++) {
+                    palette.binIndices[bins[j]] = (short) (i + 1);
+                }
+            }
+            return palette;
+        }
+
+        // Picks the box with the largest population times extent, or -1 if none can be split
+        private int pickBoxToSplit(int[] bins, int[] starts, int[] ends, int boxes) {
+            int best = -1;
+            long bestScore = 0;
+            for (int i = 0; i < boxes; i++) {
+                if (ends[i] - starts[i] < 2) {
+                    continue;
+                }
+                long population = 0;
+                for (int j = starts[i]; j < ends[i]; j++) {
+                    population += counts[bins[j]];
+                }
+                long score = population * (longestAxisExtent(bins, starts[i], ends[i]) + 1);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        private static int longestAxisExtent(int[] bins, int start, int end) {
+            int longest = 0;
+            for (int shift = 0; shift <= 10; shift += 5) {
+                int min = 31;
+                int max = 0;
+                for (int j = start; j < end; j++) {
+                    int component = (bins[j] >> shift) & 31;
+                    min = Math.min(min, component);
+                    max = Math.max(max, component);
+                }
+                longest = Math.max(longest, max - min);
+            }
+            return longest;
+        }
+
+        // Sorts the box along its longest axis and returns the index of the population median
+        private int splitBox(int[] bins, int start, int end) {
+            int bestShift = 0;
+            int longest = -1;
+            for (int shift = 0; shift <= 10; shift += 5) {
+                int min = 31;
+                int max = 0;
+                for (int j = start; j < end; j++) {
+                    int component = (bins[j] >> shift) & 31;
+                    min = Math.min(min, component);
+                    max = Math.max(max, component);
+                }
+                if (max - min > longest) {
+                    longest = max - min;
+                    bestShift = shift;
+                }
+            }
+
+            // Sort by the chosen component, carrying the bin in the low 15 bits
+            for (int j = start; j < end; j++) {
+                bins[j] = (((bins[j] >> bestShift) & 31) << 15) | bins[j];
+            }
+            Arrays.sort(bins, start, end);
+            long population = 0;
+            for (int j = start; j < end; j++) {
+                bins[j] &= BINS - 1;
+                population += counts[bins[j]];
+            }
+
+            long half = population / 2;
+            long running = 0;
+            for (int j = start; j < end - 1; j++) {
+                running += counts[bins[j]];
+                if (running >= half) {
+                    return j + 1;
+                }
+            }
+            return end - 1;
+        }
+
+        private int averageColor(int[] bins, int start, int end) {
+            long population = 0;
+            long r = 0;
+            long g = 0;
+            long b = 0;
+            for (int j = start; j < end; j++) {
+                int bin = bins[j];
+                population += counts[bin];
+                r += redSums[bin];
+                g += greenSums[bin];
+                b += blueSums[bin];
+            }
+            int red = (int) ((r + population / 2) / population);
+            int green = (int) ((g + population / 2) / population);
+            int blue = (int) ((b + population / 2) / population);
+            return (red << 16) | (green << 8) | blue;
+        }
+    }
+
+    private static int bin(int r, int g, int b) {
+        return ((r >> 3) << 10) | ((g >> 3) << 5) | (b >> 3);
+    }
+}
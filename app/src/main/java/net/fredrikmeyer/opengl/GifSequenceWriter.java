@@ -1,77 +1,64 @@
 package net.fredrikmeyer.opengl;
 
-import javax.imageio.*;
-import javax.imageio.metadata.*;
-import javax.imageio.stream.*;
-import java.awt.image.*;
-import java.io.*;
-import java.util.Iterator;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Utility class for creating GIF animations from a sequence of BufferedImage frames.
- * Based on the GifSequenceWriter by Elliot Kroo (<a href="http://elliot.kroo.net/software/java/GifSequenceWriter/">...</a>).
+ * Frames are converted to RGBA and written with a {@link GifEncoder}.
  */
 public class GifSequenceWriter {
-    protected ImageWriter gifWriter;
-    protected ImageWriteParam imageWriteParam;
-    protected IIOMetadata imageMetaData;
+    private final GifEncoder encoder;
 
     /**
-     * Creates a new GifSequenceWriter.
+     * Creates a new GifSequenceWriter without dithering.
      *
-     * @param outputStream the ImageOutputStream to be written to
-     * @param imageType one of the imageTypes specified in BufferedImage
+     * @param outputStream the stream to be written to
      * @param timeBetweenFramesMS the time between frames in milliseconds
      * @param loopContinuously whether the gif should loop repeatedly
-     * @throws IIOException if no gif ImageWriters are found
      */
     public GifSequenceWriter(
-            ImageOutputStream outputStream,
-            int imageType,
+            OutputStream outputStream,
             int timeBetweenFramesMS,
-            boolean loopContinuously) throws IOException {
-        // Get the first available GIF ImageWriter
-        Iterator<ImageWriter> iter = ImageIO.getImageWritersBySuffix("gif");
-        if (!iter.hasNext()) {
-            throw new IIOException("No GIF Image Writers Found");
-        }
-        gifWriter = iter.next();
-        imageWriteParam = gifWriter.getDefaultWriteParam();
-        ImageTypeSpecifier imageTypeSpecifier =
-                ImageTypeSpecifier.createFromBufferedImageType(imageType);
-
-        // Get the metadata
-        imageMetaData = gifWriter.getDefaultImageMetadata(imageTypeSpecifier, imageWriteParam);
-
-        // Configure the metadata for looping
-        String metaFormatName = imageMetaData.getNativeMetadataFormatName();
-        IIOMetadataNode root = (IIOMetadataNode) imageMetaData.getAsTree(metaFormatName);
-
-        IIOMetadataNode graphicsControlExtensionNode = getNode(root, "GraphicControlExtension");
-        graphicsControlExtensionNode.setAttribute("disposalMethod", "none");
-        graphicsControlExtensionNode.setAttribute("userInputFlag", "FALSE");
-        graphicsControlExtensionNode.setAttribute("transparentColorFlag", "FALSE");
-        graphicsControlExtensionNode.setAttribute("delayTime", Integer.toString(timeBetweenFramesMS / 10));
-        graphicsControlExtensionNode.setAttribute("transparentColorIndex", "0");
-
-        IIOMetadataNode commentsNode = getNode(root, "CommentExtensions");
-        commentsNode.setAttribute("CommentExtension", "Created by GifSequenceWriter");
-
-        IIOMetadataNode appExtensionsNode = getNode(root, "ApplicationExtensions");
-        IIOMetadataNode child = new IIOMetadataNode("ApplicationExtension");
-        child.setAttribute("applicationID", "NETSCAPE");
-        child.setAttribute("authenticationCode", "2.0");
-
-        int loop = loopContinuously ? 0 : 1;
-        byte[] loopBytes = new byte[]{0x1, (byte) (loop & 0xFF), (byte) ((loop >> 8) & 0xFF)};
-        child.setUserObject(loopBytes);
-        appExtensionsNode.appendChild(child);
+            boolean loopContinuously) {
+        this(outputStream, timeBetweenFramesMS, loopContinuously, GifEncoder.Dither.NONE);
+    }
 
-        imageMetaData.setFromTree(metaFormatName, root);
+    /**
+     * Creates a new GifSequenceWriter.
+     *
+     * @param outputStream the stream to be written to
+     * @param timeBetweenFramesMS the time between frames in milliseconds
+     * @param loopContinuously whether the gif should loop repeatedly
+     * @param dither how colors outside the palette are approximated
+     */
+    public GifSequenceWriter(
+            OutputStream outputStream,
+            int timeBetweenFramesMS,
+            boolean loopContinuously,
+            GifEncoder.Dither dither) {
+        this(outputStream, timeBetweenFramesMS, loopContinuously, dither, false);
+    }
 
-        // Initialize the writer
-        gifWriter.setOutput(outputStream);
-        gifWriter.prepareWriteSequence(null);
+    /**
+     * Creates a new GifSequenceWriter.
+     *
+     * @param outputStream the stream to be written to
+     * @param timeBetweenFramesMS the time between frames in milliseconds
+     * @param loopContinuously whether the gif should loop repeatedly
+     * @param dither how colors outside the palette are approximated
+     * @param deltaFrames whether frames after the first only cover the region that changed
+     */
+    public GifSequenceWriter(
+            OutputStream outputStream,
+            int timeBetweenFramesMS,
+            boolean loopContinuously,
+            GifEncoder.Dither dither,
+            boolean deltaFrames) {
+        encoder = new GifEncoder(outputStream, timeBetweenFramesMS, loopContinuously, dither,
+                deltaFrames);
     }
 
     /**
@@ -81,34 +68,27 @@ public class GifSequenceWriter {
      * @throws IOException if an error occurs during writing
      */
     public void writeToSequence(BufferedImage img) throws IOException {
-        gifWriter.writeToSequence(new IIOImage(img, null, imageMetaData), imageWriteParam);
+        encoder.writeFrame(img);
     }
 
     /**
-     * Closes the GifSequenceWriter, flushing and closing the underlying stream.
+     * Writes the next frame to the GIF animation from raw pixels.
      *
-     * @throws IOException if an error occurs during closing
+     * @param pixels the frame as top-down RGBA bytes, starting at the buffer's position
+     * @param width the frame width in pixels
+     * @param height the frame height in pixels
+     * @throws IOException if an error occurs during writing
      */
-    public void close() throws IOException {
-        gifWriter.endWriteSequence();
+    public void writeToSequence(ByteBuffer pixels, int width, int height) throws IOException {
+        encoder.writeFrame(pixels, width, height);
     }
 
     /**
-     * Gets a node from the tree, creating it if it doesn't exist.
+     * Finishes the GIF animation and flushes the underlying stream, which is left open.
      *
-     * @param rootNode the root IIOMetadataNode
-     * @param nodeName the name of the node to get
-     * @return the node
+     * @throws IOException if an error occurs during closing
      */
-    private static IIOMetadataNode getNode(IIOMetadataNode rootNode, String nodeName) {
-        int nNodes = rootNode.getLength();
-        for (int i = 0; i < nNodes; i++) {
-            if (rootNode.item(i).getNodeName().equalsIgnoreCase(nodeName)) {
-                return (IIOMetadataNode) rootNode.item(i);
-            }
-        }
-        IIOMetadataNode node = new IIOMetadataNode(nodeName);
-        rootNode.appendChild(node);
-        return node;
+    public void close() throws IOException {
+        encoder.finish();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,246 @@
+package net.fredrikmeyer.opengl;
+
+import static org.lwjgl.opengl.GL15.GL_QUERY_RESULT;
+import static org.lwjgl.opengl.GL15.GL_QUERY_RESULT_AVAILABLE;
+import static org.lwjgl.opengl.GL15.glBeginQuery;
+import static org.lwjgl.opengl.GL15.glDeleteQueries;
+import static org.lwjgl.opengl.GL15.glEndQuery;
+import static org.lwjgl.opengl.GL15.glGenQueries;
+import static org.lwjgl.opengl.GL15.glGetQueryObjecti;
+import static org.lwjgl.opengl.GL33.GL_TIME_ELAPSED;
+import static org.lwjgl.opengl.GL33.glGetQueryObjecti64;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+/**
+ * Measures how long named parts of a frame take on the GPU, using {@code GL_TIME_ELAPSED} timer
+ * queries.
+ *
+ * <p>Each {@link Scope} owns a small ring of query objects. {@link #begin(Scope)} and
+ * {@link #end(Scope)} wrap the OpenGL calls to measure, and {@link #collect()}, called once per
+ * frame, records every result the GPU has finished into {@link RenderMetrics} as
+ * {@link RenderMetrics#recordGpu(String, long) GPU timings}, next to the CPU timings of the same
+ * frame stages. Results therefore arrive a frame or two late, but nothing ever waits for the GPU:
+ * if a scope's queries are all still in flight, that measurement is skipped instead.
+ *
+ * <p>Timer queries of the same kind cannot be nested, so only one scope may be open at a time.
+ * Without OpenGL 3.3 or {@code ARB_timer_query} every method does nothing.
+ *
+ * <p>All methods must be called on the thread that owns the OpenGL context.
+ */
+public class GpuProfiler {
+
+    /**
+     * Default number of query objects per scope.
+     */
+    public static final int DEFAULT_QUERY_DEPTH = 2;
+
+    /**
+     * A named part of the frame, timed with its own ring of queries.
+     */
+    public static final class Scope {
+
+        private final String name;
+        private final int[] queries;
+        private int oldest = 0;
+        private int pending = 0;
+        private boolean measuring = false;
+        private long skipped = 0;
+        private long collected = 0;
+        private long lastNanos = 0;
+
+        private Scope(String name, int depth, boolean supported) {
+            this.name = name;
+            this.queries = new int[supported ? depth : 0];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = glGenQueries();
+            }
+        }
+
+        /**
+         * Returns the name the timings are recorded under.
+         *
+         * @return the scope name
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Returns the number of measurements skipped because every query was still in flight.
+         *
+         * @return the skipped count
+         */
+        public long skippedMeasurements() {
+            return skipped;
+        }
+
+        /**
+         * Returns the number of measurements collected so far, which tells whether
+         * {@link #lastNanos()} is new.
+         *
+         * @return the collected count
+         */
+        public long collectedMeasurements() {
+            return collected;
+        }
+
+        /**
+         * Returns the most recently collected measurement.
+         *
+         * @return the GPU time in nanoseconds, or 0 if nothing was collected yet
+         */
+        public long lastNanos() {
+            return lastNanos;
+        }
+    }
+
+    private final RenderMetrics metrics;
+    private final int depth;
+    private final boolean supported;
+    private final Map<String, Scope> scopes = new LinkedHashMap<>();
+    private final List<Scope> scopeList = new ArrayList<>();
+    private Scope open;
+
+    /**
+     * Creates a profiler with {@value #DEFAULT_QUERY_DEPTH} queries per scope.
+     *
+     * @param metrics receives the GPU timings
+     */
+    public GpuProfiler(RenderMetrics metrics) {
+        this(metrics, DEFAULT_QUERY_DEPTH);
+    }
+
+    /**
+     * Creates a profiler.
+     *
+     * @param metrics receives the GPU timings
+     * @param depth   the number of measurements of a scope that may be in flight at once
+     */
+    public GpuProfiler(RenderMetrics metrics, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be positive, was " + depth);
+        }
+        GLCapabilities capabilities = GL.getCapabilities();
+        this.metrics = metrics;
+        this.depth = depth;
+        this.supported = capabilities.OpenGL33 || capabilities.GL_ARB_timer_query;
+    }
+
+    /**
+     * Checks if the context supports timer queries.
+     *
+     * @return true if scopes are measured, false if the profiler does nothing
+     */
+    public boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Returns the scope with the given name, creating it on first use. Look scopes up once and
+     * keep them, rather than every frame.
+     *
+     * @param name the name the timings are recorded under
+     * @return the scope
+     */
+    public Scope scope(String name) {
+        Scope scope = scopes.get(name);
+        if (scope == null) {
+            scope = new Scope(name, depth, supported);
+            scopes.put(name, scope);
+            scopeList.add(scope);
+        }
+        return scope;
+    }
+
+    /**
+     * Starts measuring a scope. Everything the GPU does until {@link #end(Scope)} is counted.
+     *
+     * @param scope the scope to measure
+     * @throws IllegalStateException if another scope is open
+     */
+    public void begin(Scope scope) {
+        if (open != null) {
+            throw new IllegalStateException(
+                "Cannot begin " + scope.name + " while " + open.name + " is open");
+        }
+        open = scope;
+        if (!supported) {
+            return;
+        }
+        // Hand over finished results first, so the ring only fills when the GPU is behind
+        poll(scope);
+        if (scope.pending == scope.queries.length) {
+            scope.skipped++;
+            return;
+        }
+        int slot = (scope.oldest + scope.pending) % scope.queries.length;
+        glBeginQuery(GL_TIME_ELAPSED, scope.queries[slot]);
+        scope.pending++;
+        scope.measuring = true;
+    }
+
+    /**
+     * Stops measuring the open scope.
+     *
+     * @param scope the scope passed to {@link #begin(Scope)}
+     * @throws IllegalStateException if the scope is not open
+     */
+    public void end(Scope scope) {
+        if (open != scope) {
+            throw new IllegalStateException(scope.name + " is not open");
+        }
+        open = null;
+        if (scope.measuring) {
+            glEndQuery(GL_TIME_ELAPSED);
+            scope.measuring = false;
+        }
+    }
+
+    /**
+     * Records the results of all finished queries, without waiting for the others. Call once per
+     * frame.
+     */
+    public void collect() {
+        for (int i = 0; i < scopeList.size(); i++) {
+            Scope scope = scopeList.get(i);
+            if (scope != open) {
+                poll(scope);
+            }
+        }
+    }
+
+    /**
+     * Deletes the query objects. Results still in flight are discarded.
+     */
+    public void cleanup() {
+        for (Scope scope : scopeList) {
+            if (scope.queries.length > 0) {
+                glDeleteQueries(scope.queries);
+            }
+            scope.pending = 0;
+        }
+        scopes.clear();
+        scopeList.clear();
+        open = null;
+    }
+
+    private void poll(Scope scope) {
+        while (scope.pending > 0) {
+            int query = scope.queries[scope.oldest];
+            if (glGetQueryObjecti(query, GL_QUERY_RESULT_AVAILABLE) == 0) {
+                return;
+            }
+            scope.lastNanos = glGetQueryObjecti64(query, GL_QUERY_RESULT);
+            scope.collected++;
+            metrics.recordGpu(scope.name, scope.lastNanos);
+            scope.oldest = (scope.oldest + 1) % scope.queries.length;
+            scope.pending--;
+        }
+    }
+}
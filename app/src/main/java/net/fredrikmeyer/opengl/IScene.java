@@ -17,6 +17,29 @@ public interface IScene {
      */
     void render();
 
+    /**
+     * Tells whether the scene changes over time on its own. A scene that only changes in response
+     * to input or the camera returns false, which lets a renderer that
+     * {@link Renderer#setRenderOnDemand(boolean) renders on demand} stop drawing frames while
+     * nothing happens.
+     *
+     * @return true if every frame may look different, which is the default
+     */
+    default boolean isAnimated() {
+        return true;
+    }
+
+    /**
+     * Tells whether the scene is refining a still view over several frames, which cost less than
+     * drawing the view in full. The renderer keeps the resolution scale while it does, as a
+     * new resolution would start the refinement over.
+     *
+     * @return true while refining, false by default
+     */
+    default boolean isRefining() {
+        return false;
+    }
+
     /**
      * Cleans up resources used by the scene.
      */
@@ -0,0 +1,95 @@
+package net.fredrikmeyer.opengl;
+
+import static org.lwjgl.system.MemoryUtil.memAddress;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import org.lwjgl.BufferUtils;
+
+/**
+ * Converts bottom-up framebuffer readbacks into top-down images.
+ *
+ * <p>{@code glReadPixels} returns the bottom row first, while PNG files and
+ * {@link java.awt.image.BufferedImage} expect the top row first. All conversions here work a whole
+ * row at a time instead of pixel by pixel.
+ *
+ * <p>An instance owns a single off-heap scratch buffer that is sized to the largest framebuffer
+ * seen so far and reused for every capture. It is not thread-safe and is meant to be used from the
+ * OpenGL thread only.
+ */
+public class ImageFlipper {
+
+    /**
+     * Bytes per pixel for {@code GL_RGBA} / {@code GL_UNSIGNED_BYTE} readbacks.
+     */
+    public static final int BYTES_PER_PIXEL = 4;
+
+    private ByteBuffer scratch = BufferUtils.createByteBuffer(0);
+
+    /**
+     * Returns the shared scratch buffer, large enough to hold a {@code width x height} RGBA image.
+     * The buffer is only reallocated when the requested size exceeds its current capacity.
+     *
+     * @param width  the image width in pixels
+     * @param height the image height in pixels
+     * @return the scratch buffer with position 0 and limit set to the image size in bytes
+     */
+    public ByteBuffer scratchBuffer(int width, int height) {
+        int size = width * height * BYTES_PER_PIXEL;
+        if (scratch.capacity() < size) {
+            scratch = BufferUtils.createByteBuffer(size);
+        }
+        scratch.clear().limit(size);
+        return scratch;
+    }
+
+    /**
+     * Copies {@code src} into {@code dst} with the row order reversed. Neither buffer's position
+     * is modified.
+     *
+     * @param src      the source pixels, bottom row first
+     * @param dst      the destination buffer, receives the top row first
+     * @param rowBytes the number of bytes in one row
+     * @param rows     the number of rows
+     */
+    public static void flipRows(ByteBuffer src, ByteBuffer dst, int rowBytes, int rows) {
+        for (int y = 0; y < rows; y++) {
+            dst.put(y * rowBytes, src, (rows - 1 - y) * rowBytes, rowBytes);
+        }
+    }
+
+    /**
+     * Converts RGBA bytes into packed ARGB ints, reversing the row order. The destination layout
+     * matches the data array of a {@link java.awt.image.BufferedImage#TYPE_INT_ARGB} image.
+     *
+     * @param src    the source pixels as RGBA bytes, bottom row first
+     * @param dst    the destination array of at least {@code width * height} ints
+     * @param width  the image width in pixels
+     * @param height the image height in pixels
+     */
+    public static void flipRowsToArgb(ByteBuffer src, int[] dst, int width, int height) {
+        // Read RGBA as big-endian ints (0xRRGGBBAA), then rotate alpha into the top byte
+        IntBuffer pixels = src.duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            pixels.get((height - 1 - y) * width, dst, offset, width);
+            for (int x = offset; x < offset + width; x++) {
+                dst[x] = Integer.rotateRight(dst[x], 8);
+            }
+        }
+    }
+
+    /**
+     * Returns the address of the last row of a bottom-up image. Together with a negative stride of
+     * {@code -rowBytes}, this lets native writers walk the image top-down without flipping it.
+     *
+     * @param buffer   the direct buffer holding the image
+     * @param rowBytes the number of bytes in one row
+     * @param rows     the number of rows
+     * @return the address of the first byte of the last row
+     */
+    public static long lastRowAddress(ByteBuffer buffer, int rowBytes, int rows) {
+        return memAddress(buffer, 0) + (long) (rows - 1) * rowBytes;
+    }
+}
@@ -0,0 +1,237 @@
+package net.fredrikmeyer.opengl;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free queue of input events from one producer thread to one consumer thread.
+ *
+ * <p>With a dedicated render thread, GLFW delivers input on the main thread, which
+ * {@link Window} turns into calls to the {@code offer} methods; the render thread hands the
+ * events to its callbacks with {@link #drain(Handler)} once per frame. Events are stored in
+ * preallocated arrays, so neither side allocates or locks. The producer never blocks either:
+ * when the consumer has fallen a whole ring behind, new events are dropped and counted. A
+ * consumer with nothing to do may block in {@link #await(long, TimeUnit)} until the producer
+ * offers an event or calls {@link #wakeConsumer()}.
+ *
+ * <p>Each {@code offer} method must only be called from the producer thread, and
+ * {@link #drain(Handler)} and {@link #await(long, TimeUnit)} only from the consumer thread.
+ */
+public final class InputEventRing {
+
+    /**
+     * Receives drained events, on the consumer thread.
+     */
+    public interface Handler {
+
+        void key(int key, int scancode, int action, int mods);
+
+        void mouseButton(int button, int action, int mods);
+
+        void cursorPos(double xpos, double ypos);
+
+        void scroll(double xoffset, double yoffset);
+    }
+
+    private static final int KEY = 0;
+    private static final int MOUSE_BUTTON = 1;
+    private static final int CURSOR_POS = 2;
+    private static final int SCROLL = 3;
+
+    private static final int INTS_PER_EVENT = 4;
+    private static final int DOUBLES_PER_EVENT = 2;
+
+    private final int mask;
+    private final int[] kinds;
+    private final int[] ints;
+    private final double[] doubles;
+
+    // Published positions: the next event to read, and the next slot to write
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // The thread that last called await, for the producer to unpark
+    private volatile Thread consumer;
+
+    // Producer-only state: its own position, and the last head it saw
+    private long producerTail = 0;
+    private long cachedHead = 0;
+
+    /**
+     * Creates an empty ring.
+     *
+     * @param capacity the number of events that fit, a power of two
+     * @throws IllegalArgumentException if the capacity is not a positive power of two
+     */
+    public InputEventRing(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(
+                "capacity must be a positive power of two, was " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.kinds = new int[capacity];
+        this.ints = new int[capacity * INTS_PER_EVENT];
+        this.doubles = new double[capacity * DOUBLES_PER_EVENT];
+    }
+
+    /**
+     * Queues a key event.
+     *
+     * @return false if the ring was full and the event was dropped
+     */
+    public boolean offerKey(int key, int scancode, int action, int mods) {
+        if (!hasRoom()) {
+            return false;
+        }
+        int slot = (int) producerTail & mask;
+        kinds[slot] = KEY;
+        int i = slot * INTS_PER_EVENT;
+        ints[i] = key;
+        ints[i + 1] = scancode;
+        ints[i + 2] = action;
+        ints[i + 3] = mods;
+        publish();
+        return true;
+    }
+
+    /**
+     * Queues a mouse button event.
+     *
+     * @return false if the ring was full and the event was dropped
+     */
+    public boolean offerMouseButton(int button, int action, int mods) {
+        if (!hasRoom()) {
+            return false;
+        }
+        int slot = (int) producerTail & mask;
+        kinds[slot] = MOUSE_BUTTON;
+        int i = slot * INTS_PER_EVENT;
+        ints[i] = button;
+        ints[i + 1] = action;
+        ints[i + 2] = mods;
+        publish();
+        return true;
+    }
+
+    /**
+     * Queues a cursor position event.
+     *
+     * @return false if the ring was full and the event was dropped
+     */
+    public boolean offerCursorPos(double xpos, double ypos) {
+        return offerDoubles(CURSOR_POS, xpos, ypos);
+    }
+
+    /**
+     * Queues a scroll event.
+     *
+     * @return false if the ring was full and the event was dropped
+     */
+    public boolean offerScroll(double xoffset, double yoffset) {
+        return offerDoubles(SCROLL, xoffset, yoffset);
+    }
+
+    /**
+     * Hands every queued event to the handler, oldest first.
+     *
+     * @param handler receives the events
+     * @return the number of events handled
+     */
+    public int drain(Handler handler) {
+        long first = head.get();
+        long last = tail.get();
+        for (long position = first; position < last; position++) {
+            int slot = (int) position & mask;
+            int i = slot * INTS_PER_EVENT;
+            int d = slot * DOUBLES_PER_EVENT;
+            switch (kinds[slot]) {
+                case KEY -> handler.key(ints[i], ints[i + 1], ints[i + 2], ints[i + 3]);
+                case MOUSE_BUTTON -> handler.mouseButton(ints[i], ints[i + 1], ints[i + 2]);
+                case CURSOR_POS -> handler.cursorPos(doubles[d], doubles[d + 1]);
+                case SCROLL -> handler.scroll(doubles[d], doubles[d + 1]);
+                default -> throw new IllegalStateException("Unknown event kind " + kinds[slot]);
+            }
+        }
+        // The slots may be reused only once the handler is done with them
+        head.lazySet(last);
+        return (int) (last - first);
+    }
+
+    /**
+     * Blocks the consumer until an event is queued, {@link #wakeConsumer()} is called, or the
+     * timeout passes. Returns at once if events are already queued, or if the consumer was woken
+     * since it last waited. May also return early for no reason, like
+     * {@link LockSupport#parkNanos(long)}, so callers check for work again afterwards.
+     *
+     * @param timeout the longest time to wait
+     * @param unit    the unit of the timeout
+     */
+    public void await(long timeout, TimeUnit unit) {
+        // Publishing the consumer before checking for events pairs with the fence in signal
+        consumer = Thread.currentThread();
+        if (head.get() == tail.get()) {
+            LockSupport.parkNanos(this, unit.toNanos(timeout));
+        }
+    }
+
+    /**
+     * Wakes the consumer if it is blocked in {@link #await(long, TimeUnit)}, and otherwise makes
+     * its next call return at once. May be called from any thread.
+     */
+    public void wakeConsumer() {
+        Thread thread = consumer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Returns the number of events dropped because the ring was full.
+     *
+     * @return the dropped count
+     */
+    public long droppedEvents() {
+        return dropped.get();
+    }
+
+    private boolean offerDoubles(int kind, double first, double second) {
+        if (!hasRoom()) {
+            return false;
+        }
+        int slot = (int) producerTail & mask;
+        kinds[slot] = kind;
+        int d = slot * DOUBLES_PER_EVENT;
+        doubles[d] = first;
+        doubles[d + 1] = second;
+        publish();
+        return true;
+    }
+
+    private boolean hasRoom() {
+        if (producerTail - cachedHead > mask) {
+            // Only look at the consumer's position when the ring seems full
+            cachedHead = head.get();
+            if (producerTail - cachedHead > mask) {
+                dropped.lazySet(dropped.get() + 1);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void publish() {
+        // A release store: the consumer sees the event's fields before the new tail
+        producerTail++;
+        tail.lazySet(producerTail);
+        signal();
+    }
+
+    private void signal() {
+        // Keeps the new tail from being ordered after reading the consumer, which could otherwise
+        // miss a consumer that found the ring empty and is about to park
+        VarHandle.fullFence();
+        wakeConsumer();
+    }
+}
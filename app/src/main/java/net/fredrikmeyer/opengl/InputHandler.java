@@ -78,10 +78,14 @@ public class InputHandler {
     protected final void installCallbacks() {
         // Set up a key callback
         window.setKeyCallback((windowHandle, key, scancode, action, mods) -> {
+            // Keys may change more than the camera, such as the settings of the scene, so any key
+            // redraws a window that renders on demand; camera changes are tracked by the camera
+            window.requestRedraw();
+
             if (key == GLFW_KEY_ESCAPE && action == GLFW_RELEASE) {
                 window.setShouldClose(true);
             } else if (key == GLFW_KEY_F2 && action == GLFW_RELEASE) {
-                screenshotManager.takeScreenshot(window.getWindowHandle());
+                screenshotManager.takeScreenshot(window);
             } else if (key == GLFW_KEY_F3 && action == GLFW_RELEASE) {
                 // Start recording GIF
                 screenshotManager.startRecording();
@@ -0,0 +1,139 @@
+package net.fredrikmeyer.opengl;
+
+import java.util.Arrays;
+
+/**
+ * Records durations in nanoseconds and answers percentile queries, without allocating.
+ *
+ * <p>Buckets are laid out like HdrHistogram's: values below {@value #SUB_BUCKETS} nanoseconds
+ * get a bucket each, and every power of two above that is split into
+ * {@value #HALF_SUB_BUCKETS} equal buckets, so every recorded value is kept with a relative error
+ * below 1/{@value #HALF_SUB_BUCKETS}, about 1.6 %. Recording is an array increment. Durations up
+ * to {@link #HIGHEST_TRACKABLE_NANOS} are tracked; longer ones are counted as that value, though
+ * {@link #max()} is always exact.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The longest duration that is told apart from longer ones, about 68 seconds.
+     */
+    public static final long HIGHEST_TRACKABLE_NANOS = (1L << 36) - 1;
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private final long[] counts = new long[indexOf(HIGHEST_TRACKABLE_NANOS) + 1];
+    private long totalCount = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    /**
+     * Records one duration. Negative durations are recorded as zero.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[indexOf(Math.min(value, HIGHEST_TRACKABLE_NANOS))]++;
+        totalCount++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return the count
+     */
+    public long count() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the shortest recorded duration.
+     *
+     * @return the minimum in nanoseconds, or 0 if nothing was recorded
+     */
+    public long min() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    /**
+     * Returns the longest recorded duration.
+     *
+     * @return the maximum in nanoseconds, or 0 if nothing was recorded
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the recorded durations.
+     *
+     * @return the mean in nanoseconds, or 0 if nothing was recorded
+     */
+    public double mean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * Returns the duration that the given percentage of recorded durations do not exceed. The
+     * result is the upper end of the bucket the percentile falls in, but never above
+     * {@link #max()}.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the duration in nanoseconds, or 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException(
+                "percentile must be between 0 and 100, was " + percentile);
+        }
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Forgets all recorded durations.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // Keep the top SUB_BUCKET_BITS bits of the value; the shift picks the power of two
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        long subBucket = index % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,144 @@
+package net.fredrikmeyer.opengl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Variable-length LZW compression as used by GIF image data.
+ *
+ * <p>The string table is an open-addressing hash table of primitive arrays, and output is packed
+ * into a reused 255-byte sub-block, so encoding a frame allocates nothing. An encoder is not
+ * thread-safe; use one per thread.
+ */
+final class LzwEncoder {
+
+    private static final int MAX_BITS = 12;
+    private static final int MAX_CODES = 1 << MAX_BITS;
+    // A prime somewhat larger than MAX_CODES keeps probe chains short
+    private static final int HASH_SIZE = 5003;
+    private static final int HASH_SHIFT = 4;
+
+    private final int[] hashKeys = new int[HASH_SIZE];
+    private final short[] hashCodes = new short[HASH_SIZE];
+    private final byte[] block = new byte[256];
+
+    private OutputStream out;
+    private int blockLength;
+    private long bitBuffer;
+    private int bitCount;
+    private int codeSize;
+
+    /**
+     * Compresses color indices and writes them as a GIF image data block: the minimum code size,
+     * the data sub-blocks and the block terminator.
+     *
+     * @param indices      the palette index of every pixel
+     * @param length       the number of indices to encode
+     * @param paletteDepth the number of bits per palette index, 1 to 8
+     * @param out          the stream to write to
+     * @throws IOException if writing fails
+     */
+    void encode(byte[] indices, int length, int paletteDepth, OutputStream out)
+        throws IOException {
+        int minCodeSize = Math.max(2, paletteDepth);
+        int clearCode = 1 << minCodeSize;
+        int endCode = clearCode + 1;
+
+        this.out = out;
+        blockLength = 0;
+        bitBuffer = 0;
+        bitCount = 0;
+        out.write(minCodeSize);
+
+        resetTable();
+        codeSize = minCodeSize + 1;
+        int nextCode = clearCode + 2;
+        writeCode(clearCode);
+
+        if (length > 0) {
+            int prefix = indices[0] & 0xFF;
+            outer:
+            for (int i = 1; i < length; i++) {
+                int c = indices[i] & 0xFF;
+                int key = (c << MAX_BITS) | prefix;
+                int slot = (c << HASH_SHIFT) ^ prefix;
+
+                if (hashKeys[slot] == key) {
+                    prefix = hashCodes[slot];
+                    continue;
+                }
+                if (hashKeys[slot] >= 0) {
+                    int step = slot == 0 ? 1 : HASH_SIZE - slot;
+                    do {
+                        slot -= step;
+                        if (slot < 0) {
+                            slot += HASH_SIZE;
+                        }
+                        if (hashKeys[slot] == key) {
+                            prefix = hashCodes[slot];
+                            continue outer;
+                        }
+                    } while (hashKeys[slot] >= 0);
+                }
+
+                writeCode(prefix);
+                // The decoder widens its codes one code later than the table grows
+                if (nextCode > (1 << codeSize) - 1 && codeSize < MAX_BITS) {
+                    codeSize++;
+                }
+                prefix = c;
+                if (nextCode < MAX_CODES) {
+                    hashKeys[slot] = key;
+                    hashCodes[slot] = (short) nextCode++;
+                } else {
+                    writeCode(clearCode);
+                    resetTable();
+                    codeSize = minCodeSize + 1;
+                    nextCode = clearCode + 2;
+                }
+            }
+            writeCode(prefix);
+            if (nextCode > (1 << codeSize) - 1 && codeSize < MAX_BITS) {
+                codeSize++;
+            }
+        }
+        writeCode(endCode);
+
+        if (bitCount > 0) {
+            writeByte((int) bitBuffer);
+        }
+        flushBlock();
+        out.write(0);
+        this.out = null;
+    }
+
+    private void resetTable() {
+        Arrays.fill(hashKeys, -1);
+    }
+
+    private void writeCode(int code) throws IOException {
+        bitBuffer |= (long) code << bitCount;
+        bitCount += codeSize;
+        while (bitCount >= 8) {
+            writeByte((int) bitBuffer);
+            bitBuffer >>>= 8;
+            bitCount -= 8;
+        }
+    }
+
+    private void writeByte(int value) throws IOException {
+        block[++blockLength] = (byte) value;
+        if (blockLength == 255) {
+            flushBlock();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockLength > 0) {
+            block[0] = (byte) blockLength;
+            out.write(block, 0, blockLength + 1);
+            blockLength = 0;
+        }
+    }
+}
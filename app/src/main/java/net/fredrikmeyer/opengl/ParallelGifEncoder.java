@@ -0,0 +1,314 @@
+package net.fredrikmeyer.opengl;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Writes a recorded GIF animation, quantizing and compressing frames in parallel.
+ *
+ * <p>When all frames are known up front, the global palette is built from a sample of all of them.
+ * When they are added one at a time, it is built from the first frame, as {@link GifEncoder}
+ * does, and frames it misses get a local color table. Every frame is
+ * then compressed by its own task on a fork-join pool, while the calling thread acts as a
+ * sequencer: it writes the finished image blocks to the stream in frame order and submits the
+ * next frame whenever one is written. Delta frames are compared with the previous frame's pixels,
+ * so they are compressed in parallel too. Only a small window of frames is in flight at a time, so
+ * compressed blocks never pile up. The output is byte for byte what {@link GifEncoder} writes for
+ * the same frames and palette.
+ *
+ * <p>Frames can also be added one at a time through a {@link Sequence}, as a recording produces
+ * them. Frames given as RGBA bytes, as read back from the framebuffer, are compressed without
+ * being converted, and can be handed back for reuse once they are encoded.
+ */
+public class ParallelGifEncoder {
+
+    // Frames in flight per worker, enough to keep workers busy while the sequencer waits
+    private static final int FRAMES_IN_FLIGHT_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final int frameDelayMs;
+    private final boolean loop;
+    private final GifEncoder.Dither dither;
+    private final boolean deltaFrames;
+
+    /**
+     * Creates an encoder that compresses frames on the given pool.
+     *
+     * @param pool         the pool that runs the compression tasks
+     * @param frameDelayMs the time between frames in milliseconds
+     * @param loop         whether the animation loops forever
+     * @param dither       how colors outside the palette are approximated
+     * @param deltaFrames  whether to write only the changed region of each frame, as
+     *                     {@link GifEncoder} does
+     */
+    public ParallelGifEncoder(ForkJoinPool pool, int frameDelayMs, boolean loop,
+        GifEncoder.Dither dither, boolean deltaFrames) {
+        if (frameDelayMs < 0) {
+            throw new IllegalArgumentException(
+                "frameDelayMs must be non-negative, was " + frameDelayMs);
+        }
+        this.pool = pool;
+        this.frameDelayMs = frameDelayMs;
+        this.loop = loop;
+        this.dither = dither;
+        this.deltaFrames = deltaFrames;
+    }
+
+    /**
+     * Encodes the frames as a complete GIF file. Blocks until everything is written.
+     *
+     * @param frames the frames, all of the same size
+     * @param out    the stream to write to; it is flushed but left open
+     * @throws IOException if writing fails
+     */
+    public void encode(List<BufferedImage> frames, OutputStream out) throws IOException {
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("No frames to encode");
+        }
+        int width = frames.get(0).getWidth();
+        int height = frames.get(0).getHeight();
+        for (BufferedImage frame : frames) {
+            if (frame.getWidth() != width || frame.getHeight() != height) {
+                throw sizeMismatch(frame, width, height);
+            }
+        }
+
+        GifPalette palette = GifEncoder.paletteOf(frames, deltaFrames);
+        try (Sequence sequence = start(palette, width, height, out)) {
+            for (BufferedImage frame : frames) {
+                sequence.add(frame);
+            }
+            sequence.finish();
+        }
+    }
+
+    /**
+     * Encodes frames given as top-down RGBA bytes as a complete GIF file. Blocks until everything
+     * is written.
+     *
+     * @param frames the frames, each holding {@code width * height} pixels from its position on
+     * @param width  the width of the frames in pixels
+     * @param height the height of the frames in pixels
+     * @param out    the stream to write to; it is flushed but left open
+     * @throws IOException if writing fails
+     */
+    public void encode(List<ByteBuffer> frames, int width, int height, OutputStream out)
+        throws IOException {
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("No frames to encode");
+        }
+        for (ByteBuffer frame : frames) {
+            if (frame.remaining() < width * height * 4) {
+                throw sizeMismatch(frame, width, height);
+            }
+        }
+
+        GifPalette palette = GifEncoder.paletteOf(frames, width * height, deltaFrames);
+        try (Sequence sequence = start(palette, width, height, out)) {
+            for (ByteBuffer frame : frames) {
+                sequence.add(frame, null);
+            }
+            sequence.finish();
+        }
+    }
+
+    /**
+     * Starts an animation whose frames are added one at a time, for frames that arrive while
+     * earlier ones are being encoded. The header is written right away, with the palette built
+     * from the first frame, which still has to be added.
+     *
+     * @param first the first frame, which sets the size of the animation
+     * @param out   the stream to write to; it is flushed but left open
+     * @return the animation, to add frames to
+     * @throws IOException if writing the header fails
+     */
+    public Sequence start(BufferedImage first, OutputStream out) throws IOException {
+        return start(GifFrameCompressor.toRgba(first, null), first.getWidth(), first.getHeight(),
+            out);
+    }
+
+    /**
+     * Starts an animation whose frames are added one at a time, with the palette built from a
+     * first frame given as top-down RGBA bytes, which still has to be added.
+     *
+     * @param first  the first frame's pixels, from its position on
+     * @param width  the width of the animation in pixels
+     * @param height the height of the animation in pixels
+     * @param out    the stream to write to; it is flushed but left open
+     * @return the animation, to add frames to
+     * @throws IOException if writing the header fails
+     */
+    public Sequence start(ByteBuffer first, int width, int height, OutputStream out)
+        throws IOException {
+        GifPalette palette = new GifPalette.Builder().add(first, width * height, 1)
+            .build(GifEncoder.maxColors(deltaFrames));
+        return start(palette, width, height, out);
+    }
+
+    private Sequence start(GifPalette palette, int width, int height, OutputStream out)
+        throws IOException {
+        GifEncoder.writeHeader(out, width, height, palette, deltaFrames, loop);
+        return new Sequence(out, palette, width, height);
+    }
+
+    private static IllegalArgumentException sizeMismatch(BufferedImage frame, int width,
+        int height) {
+        return new IllegalArgumentException("Frame is " + frame.getWidth() + "x"
+            + frame.getHeight() + " but the animation is " + width + "x" + height);
+    }
+
+    private static IllegalArgumentException sizeMismatch(ByteBuffer frame, int width,
+        int height) {
+        return new IllegalArgumentException("Frame has " + frame.remaining()
+            + " bytes but the animation is " + width + "x" + height);
+    }
+
+    // A frame being compressed, and who to hand its pixels to once nothing reads them
+    private record Block(CompletableFuture<byte[]> bytes, ByteBuffer frame,
+                         Consumer<ByteBuffer> done) {
+
+        void release() {
+            if (done != null) {
+                done.accept(frame);
+            }
+        }
+    }
+
+    /**
+     * An animation being written. Each added frame is compressed by its own task, and the thread
+     * adding frames writes the finished blocks in order, waiting for the oldest one whenever the
+     * window of frames in flight is full. Closing it cancels frames that were not written, whose
+     * pixels are not handed back, as a cancelled task may still be reading them.
+     */
+    public final class Sequence implements AutoCloseable {
+
+        private final OutputStream out;
+        private final GifPalette palette;
+        private final int width;
+        private final int height;
+        private final int delay = GifEncoder.delayCentiseconds(frameDelayMs);
+        private final int window = Math.max(2, pool.getParallelism() * FRAMES_IN_FLIGHT_PER_THREAD);
+        // Compressors are handed from task to task so there is at most one per worker
+        private final ConcurrentLinkedQueue<GifFrameCompressor> idle =
+            new ConcurrentLinkedQueue<>();
+        private final ArrayDeque<Block> inFlight = new ArrayDeque<>();
+        private ByteBuffer previous;
+        // With delta frames, the last written frame is still read by the next frame's task
+        private Block written;
+
+        private Sequence(OutputStream out, GifPalette palette, int width, int height) {
+            this.out = out;
+            this.palette = palette;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * Adds the next frame, first writing the oldest frame in flight if the window is full.
+         *
+         * @param frame the frame, of the animation's size; it must not be modified afterwards
+         * @throws IOException if writing fails
+         */
+        public void add(BufferedImage frame) throws IOException {
+            if (frame.getWidth() != width || frame.getHeight() != height) {
+                throw sizeMismatch(frame, width, height);
+            }
+            add(GifFrameCompressor.toRgba(frame, null), null);
+        }
+
+        /**
+         * Adds the next frame as top-down RGBA bytes, first writing the oldest frame in flight if
+         * the window is full.
+         *
+         * @param rgba the frame's pixels, from its position on; they must not be modified until
+         *             they are handed to {@code done}
+         * @param done receives the pixels once they are no longer read, so their buffer can be
+         *             reused, or null
+         * @throws IOException if writing fails
+         */
+        public void add(ByteBuffer rgba, Consumer<ByteBuffer> done) throws IOException {
+            if (rgba.remaining() < width * height * 4) {
+                throw sizeMismatch(rgba, width, height);
+            }
+            if (inFlight.size() >= window) {
+                writeOldest();
+            }
+            inFlight.add(new Block(submit(rgba, previous), rgba, done));
+            previous = rgba;
+        }
+
+        /**
+         * Writes the frames still in flight and the trailer, and flushes the stream.
+         *
+         * @throws IOException if writing fails
+         */
+        public void finish() throws IOException {
+            while (!inFlight.isEmpty()) {
+                writeOldest();
+            }
+            if (written != null) {
+                written.release();
+                written = null;
+            }
+            out.write(0x3B);
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+            inFlight.forEach(block -> block.bytes().cancel(false));
+            inFlight.clear();
+        }
+
+        private void writeOldest() throws IOException {
+            Block block = inFlight.poll();
+            try {
+                out.write(block.bytes().join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException io) {
+                    throw io.getCause();
+                }
+                throw e;
+            }
+            // The block's task is done, and so is the one that compared with the frame before
+            if (!deltaFrames) {
+                block.release();
+                return;
+            }
+            if (written != null) {
+                written.release();
+            }
+            written = block;
+        }
+
+        private CompletableFuture<byte[]> submit(ByteBuffer frame, ByteBuffer before) {
+            return CompletableFuture.supplyAsync(() -> {
+                GifFrameCompressor compressor = idle.poll();
+                if (compressor == null) {
+                    compressor = new GifFrameCompressor(palette, dither, width, height, delay,
+                        deltaFrames);
+                }
+                try {
+                    ByteArrayOutputStream block = new ByteArrayOutputStream(width * height / 4);
+                    compressor.compress(frame, before, block);
+                    return block.toByteArray();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    idle.offer(compressor);
+                }
+            }, pool);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package net.fredrikmeyer.opengl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes PNG files, filtering and compressing bands of rows in parallel.
+ *
+ * <p>The image is cut into bands of {@value #BAND_ROWS} rows. Each band is filtered and deflated
+ * by its own task on a fork-join pool, the way {@code pigz} splits a gzip stream: every band but
+ * the last ends with a sync flush, so the compressed bands can simply be concatenated into one
+ * zlib stream, and their Adler-32 checksums are combined rather than recomputed. Each band goes
+ * into its own {@code IDAT} chunk as soon as it and the bands before it are done. Rows are
+ * filtered like stb does, with whichever of the five PNG filters gives the smallest sum of
+ * absolute differences.
+ *
+ * <p>Bands do not share a deflate window, which costs a little compression at each boundary. The
+ * band size does not depend on the pool, so the output is the same on every machine.
+ */
+public class ParallelPngEncoder {
+
+    /**
+     * The number of rows filtered and compressed by one task.
+     */
+    public static final int BAND_ROWS = 64;
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    // Deflate with a 32 KiB window and the default compression level
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9C};
+    private static final int ADLER_BASE = 65521;
+    private static final int BYTES_PER_PIXEL = ImageFlipper.BYTES_PER_PIXEL;
+
+    private record Band(byte[] data, int length, long adler, long rawLength) {
+    }
+
+    private final ForkJoinPool pool;
+    private final int compressionLevel;
+
+    /**
+     * Creates an encoder that compresses at the default deflate level.
+     *
+     * @param pool the pool that runs the band tasks
+     */
+    public ParallelPngEncoder(ForkJoinPool pool) {
+        this(pool, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates an encoder with a custom deflate level.
+     *
+     * @param pool             the pool that runs the band tasks
+     * @param compressionLevel the deflate level from 0 to 9, or -1 for the default
+     */
+    public ParallelPngEncoder(ForkJoinPool pool, int compressionLevel) {
+        if (compressionLevel < -1 || compressionLevel > 9) {
+            throw new IllegalArgumentException(
+                "compressionLevel must be between -1 and 9, was " + compressionLevel);
+        }
+        this.pool = pool;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Encodes a framebuffer readback as an RGBA PNG image. Blocks until everything is written.
+     *
+     * @param pixels the pixels as tightly packed RGBA bytes, bottom row first, as
+     *               {@code glReadPixels} returns them; must not change until this method returns
+     * @param width  the image width in pixels
+     * @param height the image height in pixels
+     * @param out    the stream to write to; it is flushed but left open
+     * @throws IOException if writing fails
+     */
+    public void encode(ByteBuffer pixels, int width, int height, OutputStream out)
+        throws IOException {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException(
+                "Image must be at least 1x1, was " + width + "x" + height);
+        }
+        if (pixels.capacity() < width * height * BYTES_PER_PIXEL) {
+            throw new IllegalArgumentException("Buffer is too small for a " + width + "x"
+                + height + " image");
+        }
+
+        int bandCount = (height + BAND_ROWS - 1) / BAND_ROWS;
+        List<CompletableFuture<Band>> bands = new ArrayList<>(bandCount);
+        for (int i = 0; i < bandCount; i++) {
+            int firstRow = i * BAND_ROWS;
+            int rows = Math.min(BAND_ROWS, height - firstRow);
+            boolean last = i == bandCount - 1;
+            bands.add(CompletableFuture.supplyAsync(
+                () -> compressBand(pixels, width, height, firstRow, rows, last), pool));
+        }
+
+        try {
+            out.write(SIGNATURE);
+            ByteBuffer header = ByteBuffer.allocate(13)
+                .putInt(width).putInt(height)
+                .put((byte) 8)  // bit depth
+                .put((byte) 6)  // color type: RGBA
+                .put((byte) 0)  // deflate
+                .put((byte) 0)  // adaptive filtering
+                .put((byte) 0); // no interlacing
+            writeChunk(out, "IHDR", header.array(), 0, 13, null, null);
+
+            long adler = 1;
+            for (int i = 0; i < bandCount; i++) {
+                Band band = bands.get(i).join();
+                adler = combineAdler32(adler, band.adler(), band.rawLength());
+                byte[] prefix = i == 0 ? ZLIB_HEADER : null;
+                byte[] suffix = i == bandCount - 1
+                    ? ByteBuffer.allocate(4).putInt((int) adler).array()
+                    : null;
+                writeChunk(out, "IDAT", band.data(), 0, band.length(), prefix, suffix);
+            }
+            writeChunk(out, "IEND", new byte[0], 0, 0, null, null);
+            out.flush();
+        } finally {
+            bands.forEach(band -> band.cancel(false));
+        }
+    }
+
+    /**
+     * Filters and deflates the rows {@code firstRow} to {@code firstRow + rows - 1}, counted from
+     * the top of the image.
+     */
+    private Band compressBand(ByteBuffer pixels, int width, int height, int firstRow, int rows,
+        boolean last) {
+        int rowBytes = width * BYTES_PER_PIXEL;
+        byte[] filtered = new byte[rows * (rowBytes + 1)];
+        byte[] previous = new byte[rowBytes];
+        byte[] current = new byte[rowBytes];
+        if (firstRow > 0) {
+            // The row above the band, read from the bottom-up source
+            pixels.get((height - firstRow) * rowBytes, previous, 0, rowBytes);
+        }
+        for (int r = 0; r < rows; r++) {
+            pixels.get((height - 1 - firstRow - r) * rowBytes, current, 0, rowBytes);
+            filterRow(current, previous, filtered, r * (rowBytes + 1));
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        Adler32 adler = new Adler32();
+        adler.update(filtered);
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(filtered.length / 4);
+            byte[] chunk = new byte[Math.max(1024, filtered.length / 8)];
+            deflater.setInput(filtered);
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(chunk, 0, deflater.deflate(chunk));
+                }
+            } else {
+                // A sync flush ends the band on a byte boundary without ending the stream
+                int length;
+                do {
+                    length = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+                    compressed.write(chunk, 0, length);
+                } while (length == chunk.length);
+            }
+            return new Band(compressed.toByteArray(), compressed.size(), adler.getValue(),
+                filtered.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Writes the filter type byte and the filtered bytes of one row at {@code offset}, using the
+     * filter with the smallest sum of absolute differences.
+     */
+    static void filterRow(byte[] current, byte[] previous, byte[] out, int offset) {
+        long sumNone = 0;
+        long sumSub = 0;
+        long sumUp = 0;
+        long sumAverage = 0;
+        long sumPaeth = 0;
+        for (int i = 0; i < current.length; i++) {
+            int x = current[i] & 0xFF;
+            int a = i >= BYTES_PER_PIXEL ? current[i - BYTES_PER_PIXEL] & 0xFF : 0;
+            int b = previous[i] & 0xFF;
+            int c = i >= BYTES_PER_PIXEL ? previous[i - BYTES_PER_PIXEL] & 0xFF : 0;
+            sumNone += Math.abs((byte) x);
+            sumSub += Math.abs((byte) (x - a));
+            sumUp += Math.abs((byte) (x - b));
+            sumAverage += Math.abs((byte) (x - ((a + b) >> 1)));
+            sumPaeth += Math.abs((byte) (x - paeth(a, b, c)));
+        }
+
+        int filter = 0;
+        long best = sumNone;
+        long[] sums = {sumSub, sumUp, sumAverage, sumPaeth};
+        for (int f = 0; f < sums.length; f++) {
+            if (sums[f] < best) {
+                best = sums[f];
+                filter = f + 1;
+            }
+        }
+
+        out[offset] = (byte) filter;
+        for (int i = 0; i < current.length; i++) {
+            int x = current[i] & 0xFF;
+            int a = i >= BYTES_PER_PIXEL ? current[i - BYTES_PER_PIXEL] & 0xFF : 0;
+            int b = previous[i] & 0xFF;
+            int c = i >= BYTES_PER_PIXEL ? previous[i - BYTES_PER_PIXEL] & 0xFF : 0;
+            int predicted = switch (filter) {
+                case 1 -> a;
+                case 2 -> b;
+                case 3 -> (a + b) >> 1;
+                case 4 -> paeth(a, b, c);
+                default -> 0;
+            };
+            out[offset + 1 + i] = (byte) (x - predicted);
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * Returns the Adler-32 checksum of two byte sequences joined together, given the checksum of
+     * each and the length of the second, as zlib's {@code adler32_combine} does.
+     *
+     * @param first        the checksum of the first sequence
+     * @param second       the checksum of the second sequence
+     * @param secondLength the length of the second sequence
+     * @return the checksum of both sequences
+     */
+    static long combineAdler32(long first, long second, long secondLength) {
+        long remainder = secondLength % ADLER_BASE;
+        long sum1 = first & 0xFFFF;
+        long sum2 = remainder * sum1 % ADLER_BASE;
+        sum1 += (second & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((first >>> 16) & 0xFFFF) + ((second >>> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= 2L * ADLER_BASE) {
+            sum2 -= 2L * ADLER_BASE;
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * Writes a chunk whose data is {@code prefix}, then {@code length} bytes of {@code data}, then
+     * {@code suffix}. The prefix and suffix may be null.
+     */
+    private static void writeChunk(OutputStream out, String type, byte[] data, int offset,
+        int length, byte[] prefix, byte[] suffix) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        int prefixLength = prefix != null ? prefix.length : 0;
+        int suffixLength = suffix != null ? suffix.length : 0;
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+
+        out.write(ByteBuffer.allocate(4).putInt(prefixLength + length + suffixLength).array());
+        out.write(typeBytes);
+        if (prefix != null) {
+            crc.update(prefix);
+            out.write(prefix);
+        }
+        crc.update(data, offset, length);
+        out.write(data, offset, length);
+        if (suffix != null) {
+            crc.update(suffix);
+            out.write(suffix);
+        }
+        out.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+}
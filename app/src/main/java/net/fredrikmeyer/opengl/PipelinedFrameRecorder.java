@@ -0,0 +1,66 @@
+package net.fredrikmeyer.opengl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Moves another recorder off the render thread.
+ *
+ * <p>Recorders such as {@link Y4mFrameRecorder} convert and write each frame on the thread that
+ * delivers it. Wrapped in this class, each frame is only copied into one of a small pool of
+ * off-heap buffers on the render thread, and handed to the wrapped recorder on a writer thread of
+ * its own, in capture order. When every buffer is waiting to be written, the next frame blocks
+ * until one is free, so a slow disk slows rendering down rather than using more memory.
+ */
+public class PipelinedFrameRecorder implements FrameRecorder {
+
+    private final FrameRecorder recorder;
+    private final DirectBufferPool buffers;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private boolean finished = false;
+
+    /**
+     * Creates a recorder that forwards frames to another one on a background thread.
+     *
+     * @param recorder    the recorder to write the frames with
+     * @param bufferCount the number of frames that may wait to be written
+     */
+    public PipelinedFrameRecorder(FrameRecorder recorder, int bufferCount) {
+        if (bufferCount < 1) {
+            throw new IllegalArgumentException("bufferCount must be positive, was " + bufferCount);
+        }
+        this.recorder = recorder;
+        this.buffers = new DirectBufferPool(bufferCount);
+    }
+
+    @Override
+    public void accept(ByteBuffer pixels, int width, int height) {
+        if (finished) {
+            return;
+        }
+        int size = width * height * ImageFlipper.BYTES_PER_PIXEL;
+        ByteBuffer buffer = buffers.acquire(size).put(0, pixels, 0, size);
+        writer.execute(() -> {
+            try {
+                recorder.accept(buffer, width, height);
+            } finally {
+                buffers.release(buffer);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> finish() {
+        if (finished) {
+            throw new IllegalStateException("Recording already finished");
+        }
+        finished = true;
+        // Runs after every queued frame, since the writer is a single thread
+        CompletableFuture<String> result = CompletableFuture.supplyAsync(recorder::finish, writer)
+            .thenCompose(path -> path);
+        writer.shutdown();
+        return result;
+    }
+}
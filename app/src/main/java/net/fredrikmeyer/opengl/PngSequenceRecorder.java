@@ -0,0 +1,152 @@
+package net.fredrikmeyer.opengl;
+
+import static org.lwjgl.stb.STBImageWrite.nstbi_write_png_to_func;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.lwjgl.stb.STBIWriteCallback;
+
+/**
+ * Records frames as a directory of numbered PNG files, {@code frame_00000.png} and onwards, which
+ * ffmpeg reads with {@code -i frame_%05d.png}.
+ *
+ * <p>PNG compression is too slow for the render thread, so each frame is copied into one of a
+ * small pool of off-heap buffers and encoded on the given executor. stb walks the bottom-up rows
+ * in reverse, so they are never flipped, and its compressed output goes straight into the
+ * frame's {@link FileChannel}. When every buffer is waiting to be encoded, the next frame blocks
+ * until one is free, so a slow disk slows recording down rather than using more memory.
+ */
+public class PngSequenceRecorder implements FrameRecorder {
+
+    private final Path directory;
+    private final Executor executor;
+    private final DirectBufferPool buffers;
+    private int width;
+    private int height;
+    private int frames = 0;
+    private int skippedFrames = 0;
+    private volatile boolean failed = false;
+    private boolean finished = false;
+
+    /**
+     * Creates a recorder that writes into the given directory, creating it if needed.
+     *
+     * @param directory   the directory to write the frames to
+     * @param executor    runs the PNG encoding
+     * @param bufferCount the number of frames that may wait to be encoded
+     */
+    public PngSequenceRecorder(Path directory, Executor executor, int bufferCount) {
+        if (bufferCount < 1) {
+            throw new IllegalArgumentException("bufferCount must be positive, was " + bufferCount);
+        }
+        this.directory = directory;
+        this.executor = executor;
+        this.buffers = new DirectBufferPool(bufferCount);
+    }
+
+    @Override
+    public void accept(ByteBuffer pixels, int width, int height) {
+        if (failed || finished) {
+            return;
+        }
+        if (frames == 0) {
+            this.width = width;
+            this.height = height;
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+        } else if (width != this.width || height != this.height) {
+            skippedFrames++;
+            return;
+        }
+
+        int size = width * height * ImageFlipper.BYTES_PER_PIXEL;
+        ByteBuffer buffer = buffers.acquire(size).put(0, pixels, 0, size);
+        Path file = directory.resolve(String.format("frame_%05d.png", frames++));
+        executor.execute(() -> {
+            try {
+                if (!failed) {
+                    writePng(file, buffer, width, height);
+                }
+            } catch (IOException e) {
+                fail(e);
+            } finally {
+                buffers.release(buffer);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> finish() {
+        if (finished) {
+            throw new IllegalStateException("Recording already finished");
+        }
+        finished = true;
+        if (frames == 0) {
+            System.out.println("No frames to save");
+            return CompletableFuture.completedFuture(null);
+        }
+        int frameCount = frames;
+        int skipped = skippedFrames;
+        return CompletableFuture.supplyAsync(() -> {
+            // Every buffer is back once the last frame is written
+            buffers.awaitReleased();
+            if (failed) {
+                return null;
+            }
+            if (skipped > 0) {
+                System.out.println("Skipped " + skipped + " frames that were not " + width
+                    + "x" + height);
+            }
+            System.out.println("Recording of " + frameCount + " frames saved to: " + directory);
+            return directory.toString();
+        }, executor);
+    }
+
+    /**
+     * Encodes a bottom-up RGBA frame as a PNG file.
+     */
+    private static void writePng(Path file, ByteBuffer pixels, int width, int height)
+        throws IOException {
+        int rowBytes = width * ImageFlipper.BYTES_PER_PIXEL;
+        // stb cannot be told to stop, so a write error is kept and thrown once it returns
+        IOException[] writeError = new IOException[1];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             STBIWriteCallback callback = STBIWriteCallback.create((context, data, size) -> {
+                 ByteBuffer chunk = STBIWriteCallback.getData(data, size);
+                 try {
+                     while (writeError[0] == null && chunk.hasRemaining()) {
+                         channel.write(chunk);
+                     }
+                 } catch (IOException e) {
+                     writeError[0] = e;
+                 }
+             })) {
+            // As for screenshots, start at the last row and walk upwards with a negative stride
+            int written = nstbi_write_png_to_func(callback.address(), 0L, width, height, 4,
+                ImageFlipper.lastRowAddress(pixels, rowBytes, height), -rowBytes);
+            if (writeError[0] != null) {
+                throw writeError[0];
+            }
+            if (written == 0) {
+                throw new IOException("stbi_write_png failed for " + file);
+            }
+        }
+    }
+
+    private void fail(Exception e) {
+        failed = true;
+        System.err.println("Failed to write recording: " + e.getMessage());
+        e.printStackTrace();
+    }
+}
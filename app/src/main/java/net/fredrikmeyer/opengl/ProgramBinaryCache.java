@@ -0,0 +1,254 @@
+package net.fredrikmeyer.opengl;
+
+import static org.lwjgl.opengl.GL11.GL_RENDERER;
+import static org.lwjgl.opengl.GL11.GL_VENDOR;
+import static org.lwjgl.opengl.GL11.GL_VERSION;
+import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL11.glGetString;
+import static org.lwjgl.opengl.GL20.GL_LINK_STATUS;
+import static org.lwjgl.opengl.GL20.glCreateProgram;
+import static org.lwjgl.opengl.GL20.glDeleteProgram;
+import static org.lwjgl.opengl.GL20.glGetProgrami;
+import static org.lwjgl.opengl.GL41.GL_NUM_PROGRAM_BINARY_FORMATS;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_LENGTH;
+import static org.lwjgl.opengl.GL41.glGetProgramBinary;
+import static org.lwjgl.opengl.GL41.glProgramBinary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.opengl.GL20;
+
+/**
+ * Keeps linked shader programs on disk, so later runs load them with {@code glProgramBinary}
+ * instead of compiling the sources again.
+ *
+ * <p>Each program is stored in its own file, named by a hash of the vertex and fragment source
+ * and of the GL vendor, renderer and version strings. A driver update or a changed shader
+ * therefore looks up another file, and a binary the driver rejects anyway is deleted and the
+ * program compiled again. Program binaries need OpenGL 4.1 or {@code ARB_get_program_binary} and
+ * a driver that offers at least one binary format; without them the cache does nothing.
+ *
+ * <p>Failing to read or write the directory never fails a shader: the program is compiled as if
+ * there were no cache. The instance methods must be called on the thread that owns the OpenGL
+ * context.
+ */
+public final class ProgramBinaryCache {
+
+    /**
+     * The directory the applications keep their programs in, relative to the working directory.
+     */
+    public static final String DEFAULT_DIRECTORY = "shader-cache";
+
+    // Marks a file as a program binary written by this class, in this layout
+    private static final int MAGIC = 0x50424E31;
+    // The magic, the binary format and the binary length
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    private static final String EXTENSION = ".bin";
+
+    /**
+     * A program binary as the driver returned it.
+     *
+     * @param format the driver's binary format
+     * @param binary the binary
+     */
+    record Entry(int format, byte[] binary) {
+    }
+
+    private final Path directory;
+    private Boolean supported;
+    private String driver;
+
+    /**
+     * Creates a cache in a directory, which is created when the first program is stored.
+     *
+     * @param directory the directory to keep the program binaries in
+     */
+    public ProgramBinaryCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Checks whether the driver can return and load program binaries.
+     *
+     * @return true if programs are cached
+     */
+    public boolean isSupported() {
+        if (supported == null) {
+            GLCapabilities capabilities = GL.getCapabilities();
+            supported = (capabilities.OpenGL41 || capabilities.GL_ARB_get_program_binary)
+                && glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+        }
+        return supported;
+    }
+
+    /**
+     * Loads the program of two shaders, if an earlier run stored it for the same driver.
+     *
+     * @param vertexShader   the vertex shader source
+     * @param fragmentShader the fragment shader source
+     * @return the linked program, or 0 if it must be compiled
+     */
+    public int load(String vertexShader, String fragmentShader) {
+        if (!isSupported()) {
+            return 0;
+        }
+        Path file = file(vertexShader, fragmentShader);
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+        Entry entry;
+        try {
+            entry = readEntry(file);
+        } catch (IOException e) {
+            System.err.println("Failed to read cached shader program: " + e.getMessage());
+            return 0;
+        }
+
+        int program = 0;
+        if (entry != null) {
+            ByteBuffer binary = BufferUtils.createByteBuffer(entry.binary().length);
+            binary.put(entry.binary()).flip();
+            program = glCreateProgram();
+            glProgramBinary(program, entry.format(), binary);
+            if (glGetProgrami(program, GL_LINK_STATUS) == GL20.GL_FALSE) {
+                glDeleteProgram(program);
+                program = 0;
+            }
+        }
+        if (program == 0) {
+            // Corrupt, or from a driver that no longer accepts it though its strings are equal
+            deleteQuietly(file);
+        }
+        return program;
+    }
+
+    /**
+     * Stores a linked program for later runs. The program must have been linked with
+     * {@code GL_PROGRAM_BINARY_RETRIEVABLE_HINT} set, or some drivers return no binary.
+     *
+     * @param vertexShader   the vertex shader source
+     * @param fragmentShader the fragment shader source
+     * @param program        the program linked from them
+     */
+    public void store(String vertexShader, String fragmentShader, int program) {
+        if (!isSupported()) {
+            return;
+        }
+        int length = glGetProgrami(program, GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) {
+            return;
+        }
+        ByteBuffer binary = BufferUtils.createByteBuffer(length);
+        int[] format = new int[1];
+        glGetProgramBinary(program, null, format, binary);
+        byte[] bytes = new byte[length];
+        binary.get(bytes);
+        try {
+            writeEntry(file(vertexShader, fragmentShader), new Entry(format[0], bytes));
+        } catch (IOException e) {
+            System.err.println("Failed to cache shader program: " + e.getMessage());
+        }
+    }
+
+    private Path file(String vertexShader, String fragmentShader) {
+        if (driver == null) {
+            driver = glGetString(GL_VENDOR) + "\n" + glGetString(GL_RENDERER) + "\n"
+                + glGetString(GL_VERSION);
+        }
+        return directory.resolve(key(vertexShader, fragmentShader, driver) + EXTENSION);
+    }
+
+    /**
+     * Computes the key of a program: a SHA-256 hash of its sources and the driver that links it.
+     *
+     * @param vertexShader   the vertex shader source
+     * @param fragmentShader the fragment shader source
+     * @param driver         the GL vendor, renderer and version strings
+     * @return the key, as 64 lowercase hex digits
+     */
+    static String key(String vertexShader, String fragmentShader, String driver) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        for (String part : new String[]{vertexShader, fragmentShader, driver}) {
+            byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+            // The length keeps text that moves from one part to the next from hashing the same
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+            digest.update(bytes);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Writes an entry to a file, replacing it as a whole so that a reader never sees part of it.
+     *
+     * @param file  the file
+     * @param entry the entry
+     * @throws IOException if the file cannot be written
+     */
+    static void writeEntry(Path file, Entry entry) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(HEADER_BYTES + entry.binary().length)
+            .putInt(MAGIC)
+            .putInt(entry.format())
+            .putInt(entry.binary().length)
+            .put(entry.binary());
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, "program", ".tmp");
+        try {
+            Files.write(temporary, data.array());
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads an entry written by {@link #writeEntry}.
+     *
+     * @param file the file
+     * @return the entry, or null if the file does not hold one
+     * @throws IOException if the file cannot be read
+     */
+    static Entry readEntry(Path file) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (data.remaining() < HEADER_BYTES || data.getInt() != MAGIC) {
+            return null;
+        }
+        int format = data.getInt();
+        int length = data.getInt();
+        if (length != data.remaining()) {
+            return null;
+        }
+        byte[] binary = new byte[length];
+        data.get(binary);
+        return new Entry(format, binary);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete stale shader program: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package net.fredrikmeyer.opengl;
+
+import static org.lwjgl.opengl.GL11.GL_BLEND;
+import static org.lwjgl.opengl.GL11.GL_DEPTH_TEST;
+import static org.lwjgl.opengl.GL11.GL_SCISSOR_TEST;
+import static org.lwjgl.opengl.GL11.GL_VIEWPORT;
+import static org.lwjgl.opengl.GL11.glBlendFunc;
+import static org.lwjgl.opengl.GL11.glDisable;
+import static org.lwjgl.opengl.GL11.glEnable;
+import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL11.glGetIntegerv;
+import static org.lwjgl.opengl.GL11.glIsEnabled;
+import static org.lwjgl.opengl.GL11.glScissor;
+import static org.lwjgl.opengl.GL11.glViewport;
+import static org.lwjgl.opengl.GL14.GL_CONSTANT_ALPHA;
+import static org.lwjgl.opengl.GL14.GL_ONE_MINUS_CONSTANT_ALPHA;
+import static org.lwjgl.opengl.GL14.glBlendColor;
+import static org.lwjgl.opengl.GL30.GL_DRAW_FRAMEBUFFER_BINDING;
+import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_RGBA16F;
+import static org.lwjgl.opengl.GL30.glBindFramebuffer;
+
+import java.util.Arrays;
+
+/**
+ * Refines a still image over several frames by averaging jittered samples, for scenes that are
+ * expensive to draw and only change when the view does.
+ *
+ * <p>The first frame after a {@link #reset()} draws one sample per pixel at the pixel centers,
+ * which costs as much as drawing the scene normally. Each later frame draws one more sample into
+ * {@value #TILES_PER_FRAME} of the {@value #TILE_COLUMNS}x{@value #TILE_ROWS} screen tiles,
+ * taking turns, so refining costs half a normal frame. Samples are offset within their pixel along
+ * a Halton sequence and blended into a running average in a 16-bit float framebuffer, which
+ * converges to an anti-aliased image; once every tile has the maximum number of samples, the
+ * image is {@link #isConverged() converged} and drawing it again adds nothing. A resolution
+ * scaler must not react to the cheaper refining frames, see {@link #isRefining()}, or resizing the
+ * viewport starts refinement over before it converges.
+ *
+ * <p>All methods but the constructor and the queries must be called on the thread that owns the
+ * OpenGL context.
+ */
+public final class ProgressiveAccumulator {
+
+    /**
+     * Draws the scene once, with every pixel's sample offset by the given jitter.
+     */
+    @FunctionalInterface
+    public interface SamplePass {
+
+        /**
+         * Draws one sample per pixel.
+         *
+         * @param jitterX the horizontal offset in normalized device coordinates
+         * @param jitterY the vertical offset in normalized device coordinates
+         */
+        void draw(float jitterX, float jitterY);
+    }
+
+    static final int TILE_COLUMNS = 4;
+    static final int TILE_ROWS = 4;
+    static final int TILES_PER_FRAME = 8;
+
+    private final int maxSamples;
+    // Samples averaged so far in each tile, row by row from the bottom left
+    private final int[] samples = new int[TILE_COLUMNS * TILE_ROWS];
+    private final int[] scheduled = new int[TILE_COLUMNS * TILE_ROWS];
+    private final int[] viewport = new int[4];
+    private int nextTile = 0;
+    private Framebuffer accumulation;
+
+    /**
+     * Creates an accumulator with nothing accumulated.
+     *
+     * @param maxSamples the number of samples per pixel at which the image is converged
+     * @throws IllegalArgumentException if the sample count is not positive
+     */
+    public ProgressiveAccumulator(int maxSamples) {
+        if (maxSamples < 1) {
+            throw new IllegalArgumentException(
+                "maxSamples must be positive, was " + maxSamples);
+        }
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * Discards the accumulated samples, so the next frame starts over with one sample per pixel.
+     * Call whenever the image changes.
+     */
+    public void reset() {
+        Arrays.fill(samples, 0);
+        nextTile = 0;
+    }
+
+    /**
+     * Checks if every pixel has the maximum number of samples.
+     *
+     * @return true if drawing again would not change the image
+     */
+    public boolean isConverged() {
+        return sampleCount() >= maxSamples;
+    }
+
+    /**
+     * Checks if frames only add samples to an image that was drawn in full, so they cost less
+     * than drawing the scene.
+     *
+     * @return true between the first frame after a {@link #reset()} and convergence
+     */
+    public boolean isRefining() {
+        int count = sampleCount();
+        return count > 0 && count < maxSamples;
+    }
+
+    /**
+     * Returns the number of samples every pixel has at least.
+     *
+     * @return the smallest sample count of any tile
+     */
+    public int sampleCount() {
+        int min = Integer.MAX_VALUE;
+        for (int count : samples) {
+            min = Math.min(min, count);
+        }
+        return min;
+    }
+
+    /**
+     * Draws the samples of this frame into the accumulated image, then copies the image into the
+     * viewport of the framebuffer that was bound. The framebuffer and viewport are bound again
+     * afterwards. A viewport of another size than the last one starts over.
+     *
+     * @param pass draws the scene with a given jitter
+     */
+    public void render(SamplePass pass) {
+        int target = glGetInteger(GL_DRAW_FRAMEBUFFER_BINDING);
+        glGetIntegerv(GL_VIEWPORT, viewport);
+        int width = viewport[2];
+        int height = viewport[3];
+        if (accumulation == null) {
+            accumulation = new Framebuffer(width, height, GL_RGBA16F);
+            reset();
+        } else if (accumulation.getWidth() != width || accumulation.getHeight() != height) {
+            accumulation.resize(width, height);
+            reset();
+        }
+
+        boolean depthTest = glIsEnabled(GL_DEPTH_TEST);
+        accumulation.bind();
+        glDisable(GL_DEPTH_TEST);
+        glEnable(GL_SCISSOR_TEST);
+        glEnable(GL_BLEND);
+        // A running average: the n-th sample is weighted 1/n against the ones before it
+        glBlendFunc(GL_CONSTANT_ALPHA, GL_ONE_MINUS_CONSTANT_ALPHA);
+        int tiles = scheduleTiles();
+        for (int i = 0; i < tiles; i++) {
+            int tile = scheduled[i];
+            int column = tile % TILE_COLUMNS;
+            int row = tile / TILE_COLUMNS;
+            int x = column * width / TILE_COLUMNS;
+            int y = row * height / TILE_ROWS;
+            glScissor(x, y, (column + 1) * width / TILE_COLUMNS - x,
+                (row + 1) * height / TILE_ROWS - y);
+            // The tile's count already includes the sample being drawn
+            int sample = samples[tile] - 1;
+            glBlendColor(0, 0, 0, 1.0f / (sample + 1));
+            pass.draw(jitter(sample, 2) * 2 / width, jitter(sample, 3) * 2 / height);
+        }
+        glDisable(GL_BLEND);
+        glDisable(GL_SCISSOR_TEST);
+        if (depthTest) {
+            glEnable(GL_DEPTH_TEST);
+        }
+
+        accumulation.blitTo(target, width, height);
+        glBindFramebuffer(GL_FRAMEBUFFER, target);
+        glViewport(viewport[0], viewport[1], width, height);
+    }
+
+    /**
+     * Deletes the accumulation framebuffer.
+     */
+    public void delete() {
+        if (accumulation != null) {
+            accumulation.delete();
+            accumulation = null;
+        }
+    }
+
+    /**
+     * Chooses the tiles to draw a sample into this frame, all of them when starting over and
+     * otherwise the next unconverged ones in turn, and counts the samples as drawn.
+     *
+     * @return the number of tiles written to {@link #scheduled}
+     */
+    int scheduleTiles() {
+        int count = 0;
+        boolean startingOver = sampleCount() == 0;
+        for (int i = 0; i < samples.length && (startingOver || count < TILES_PER_FRAME); i++) {
+            int tile = nextTile;
+            nextTile = (nextTile + 1) % samples.length;
+            if (startingOver ? samples[tile] == 0 : samples[tile] < maxSamples) {
+                scheduled[count++] = tile;
+                samples[tile]++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the offset of a sample from its pixel center, in pixels. The first sample is at the
+     * center, and the others follow the Halton sequence of the given base.
+     *
+     * @param sample the index of the sample
+     * @param base   2 for horizontal and 3 for vertical offsets
+     * @return the offset, between -0.5 and 0.5
+     */
+    static float jitter(int sample, int base) {
+        if (sample == 0) {
+            return 0;
+        }
+        float result = 0;
+        float fraction = 1;
+        for (int index = sample; index > 0; index /= base) {
+            fraction /= base;
+            result += fraction * (index % base);
+        }
+        return result - 0.5f;
+    }
+}
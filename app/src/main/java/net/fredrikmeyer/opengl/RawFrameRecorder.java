@@ -0,0 +1,55 @@
+package net.fredrikmeyer.opengl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Records frames as raw RGBA bytes, top row first, one frame after the other and without any
+ * header. The frame size and rate are put in the file name, for example
+ * {@code recording_600x600_20fps.rgba}, so the file can be converted with
+ * {@code ffmpeg -f rawvideo -pixel_format rgba -video_size 600x600 -framerate 20 -i ...}.
+ *
+ * <p>This is the cheapest way to record: frames are written straight from the readback buffer
+ * with one gathering write per frame, which also puts the rows back in top-down order.
+ */
+public class RawFrameRecorder extends ChannelFrameRecorder {
+
+    private final String baseName;
+    private final int framesPerSecond;
+    private ByteBuffer[] rows = new ByteBuffer[0];
+
+    /**
+     * Creates a recorder that writes next to the given base name.
+     *
+     * @param baseName        the path of the recording without the frame size and extension
+     * @param framesPerSecond the frame rate to put in the file name
+     */
+    public RawFrameRecorder(Path baseName, int framesPerSecond) {
+        if (framesPerSecond < 1) {
+            throw new IllegalArgumentException(
+                "framesPerSecond must be positive, was " + framesPerSecond);
+        }
+        this.baseName = baseName.toString();
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    @Override
+    protected Path outputFile(int width, int height) {
+        return Path.of(baseName + "_" + width + "x" + height + "_" + framesPerSecond + "fps.rgba");
+    }
+
+    @Override
+    protected void writeFrame(FileChannel channel, ByteBuffer pixels, int width, int height)
+        throws IOException {
+        if (rows.length != height) {
+            rows = new ByteBuffer[height];
+        }
+        int rowBytes = width * ImageFlipper.BYTES_PER_PIXEL;
+        for (int y = 0; y < height; y++) {
+            rows[y] = pixels.slice((height - 1 - y) * rowBytes, rowBytes);
+        }
+        writeFully(channel, rows);
+    }
+}
@@ -0,0 +1,154 @@
+package net.fredrikmeyer.opengl;
+
+/**
+ * Settings for frame capture while recording.
+ *
+ * @param readbackRingDepth the number of pixel buffer objects used to read frames back
+ *                          asynchronously, or 0 to read every frame synchronously with
+ *                          {@code glReadPixels}
+ * @param streaming         whether frames are encoded while recording instead of being kept in
+ *                          memory until recording stops
+ * @param queueCapacity     the number of full-size frames that may wait for the streaming encoder
+ * @param backpressure      what to do with new frames when the streaming encoder falls behind
+ * @param dither            how the GIF encoder approximates colors outside its palette
+ * @param deltaFrames       whether GIF frames after the first only cover the region that changed,
+ *                          with unchanged pixels left transparent
+ * @param format            the file format recordings are written in; the streaming, queue,
+ *                          backpressure, dither and delta frame settings only apply to
+ *                          {@link RecordingFormat#GIF}
+ */
+public record RecordingConfig(int readbackRingDepth, boolean streaming, int queueCapacity,
+                              BackpressurePolicy backpressure, GifEncoder.Dither dither,
+                              boolean deltaFrames, RecordingFormat format) {
+
+    /**
+     * Default number of frames a readback may be in flight before it is mapped.
+     */
+    public static final int DEFAULT_READBACK_RING_DEPTH = 3;
+
+    /**
+     * Default number of full-size frames that may wait for the streaming encoder.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    public RecordingConfig {
+        if (readbackRingDepth < 0) {
+            throw new IllegalArgumentException(
+                "readbackRingDepth must be non-negative, was " + readbackRingDepth);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException(
+                "queueCapacity must be positive, was " + queueCapacity);
+        }
+        if (backpressure == null) {
+            throw new IllegalArgumentException("backpressure must not be null");
+        }
+        if (dither == null) {
+            throw new IllegalArgumentException("dither must not be null");
+        }
+        if (format == null) {
+            throw new IllegalArgumentException("format must not be null");
+        }
+    }
+
+    /**
+     * Returns the default configuration: asynchronous readback through a ring of
+     * {@value #DEFAULT_READBACK_RING_DEPTH} pixel buffer objects, and streaming encoding with room
+     * for {@value #DEFAULT_QUEUE_CAPACITY} frames that downscales frames when the encoder falls
+     * behind. Recordings are GIF animations whose frames are not dithered and are written as
+     * delta frames.
+     *
+     * @return the default configuration
+     */
+    public static RecordingConfig defaults() {
+        return new RecordingConfig(DEFAULT_READBACK_RING_DEPTH, true, DEFAULT_QUEUE_CAPACITY,
+            BackpressurePolicy.DOWNSCALE, GifEncoder.Dither.NONE, true, RecordingFormat.GIF);
+    }
+
+    /**
+     * Returns a copy of this configuration with a different readback ring depth.
+     *
+     * @param readbackRingDepth the new ring depth, or 0 for synchronous readback
+     * @return the new configuration
+     */
+    public RecordingConfig withReadbackRingDepth(int readbackRingDepth) {
+        return new RecordingConfig(readbackRingDepth, streaming, queueCapacity, backpressure,
+            dither, deltaFrames, format);
+    }
+
+    /**
+     * Returns a copy of this configuration with streaming encoding turned on or off.
+     *
+     * @param streaming true to encode while recording, false to buffer all frames in memory
+     * @return the new configuration
+     */
+    public RecordingConfig withStreaming(boolean streaming) {
+        return new RecordingConfig(readbackRingDepth, streaming, queueCapacity, backpressure,
+            dither, deltaFrames, format);
+    }
+
+    /**
+     * Returns a copy of this configuration with a different streaming queue capacity.
+     *
+     * @param queueCapacity the number of full-size frames that may wait for the encoder
+     * @return the new configuration
+     */
+    public RecordingConfig withQueueCapacity(int queueCapacity) {
+        return new RecordingConfig(readbackRingDepth, streaming, queueCapacity, backpressure,
+            dither, deltaFrames, format);
+    }
+
+    /**
+     * Returns a copy of this configuration with a different backpressure policy.
+     *
+     * @param backpressure what to do with new frames when the encoder falls behind
+     * @return the new configuration
+     */
+    public RecordingConfig withBackpressure(BackpressurePolicy backpressure) {
+        return new RecordingConfig(readbackRingDepth, streaming, queueCapacity, backpressure,
+            dither, deltaFrames, format);
+    }
+
+    /**
+     * Returns a copy of this configuration with a different dithering mode.
+     *
+     * @param dither how the GIF encoder approximates colors outside its palette
+     * @return the new configuration
+     */
+    public RecordingConfig withDither(GifEncoder.Dither dither) {
+        return new RecordingConfig(readbackRingDepth, streaming, queueCapacity, backpressure,
+            dither, deltaFrames, format);
+    }
+
+    /**
+     * Returns a copy of this configuration with delta frames turned on or off.
+     *
+     * @param deltaFrames true to write only the changed region of each frame, false to write
+     *                    every frame in full
+     * @return the new configuration
+     */
+    public RecordingConfig withDeltaFrames(boolean deltaFrames) {
+        return new RecordingConfig(readbackRingDepth, streaming, queueCapacity, backpressure,
+            dither, deltaFrames, format);
+    }
+
+    /**
+     * Returns a copy of this configuration with a different recording format.
+     *
+     * @param format the file format recordings are written in
+     * @return the new configuration
+     */
+    public RecordingConfig withFormat(RecordingFormat format) {
+        return new RecordingConfig(readbackRingDepth, streaming, queueCapacity, backpressure,
+            dither, deltaFrames, format);
+    }
+
+    /**
+     * Checks if frames are read back through pixel buffer objects.
+     *
+     * @return true if readback is asynchronous, false if it is synchronous
+     */
+    public boolean asynchronousReadback() {
+        return readbackRingDepth > 0;
+    }
+}
@@ -0,0 +1,29 @@
+package net.fredrikmeyer.opengl;
+
+/**
+ * The file formats {@link ScreenshotManager} can record to.
+ */
+public enum RecordingFormat {
+    /**
+     * An animated GIF. Small and easy to share, but limited to 256 colors and slow to encode.
+     */
+    GIF,
+
+    /**
+     * A YUV4MPEG2 video with 4:2:0 chroma subsampling, which video tools such as ffmpeg read
+     * directly. Lossless in brightness, and 3/8 of the size of raw RGBA.
+     */
+    Y4M,
+
+    /**
+     * Headerless top-down RGBA frames, one after the other. The frame size and rate are part of
+     * the file name. The cheapest format to write and fully lossless.
+     */
+    RAW_RGBA,
+
+    /**
+     * A directory of numbered PNG files, one per frame. Lossless and compressed, at the cost of
+     * encoding every frame.
+     */
+    PNG_SEQUENCE
+}
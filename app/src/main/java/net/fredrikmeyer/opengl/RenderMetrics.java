@@ -0,0 +1,363 @@
+package net.fredrikmeyer.opengl;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Frame timing statistics for the render loop.
+ *
+ * <p>Each {@link Stage} of a frame has two {@link LatencyHistogram}s: one for the whole run and one
+ * for the current reporting interval, which {@link #logInterval()} prints and clears. Recording a
+ * duration never allocates, so the metrics can stay on all the time; only building a summary or
+ * a log line does.
+ *
+ * <p>Next to the CPU stages, GPU timings of named scopes can be recorded, usually by a
+ * {@link GpuProfiler}. They are kept the same way and reported after the CPU stages, followed by
+ * the pacing jitter of a {@link FramePacer}: how far past its deadline each limited frame
+ * started, reported in microseconds, the scale a {@link ResolutionScaler} rendered each frame
+ * at, and the average number of ray marching steps per pixel a {@link TemporalReprojection}
+ * measured. The last two are not durations, and are kept in {@link GaugeHistogram}s. The
+ * summary ends with how long after the start of the process the first frame was shown, which
+ * includes loading or compiling the shaders.
+ *
+ * <p>All methods must be called on the render thread.
+ */
+public class RenderMetrics {
+
+    /**
+     * The parts of a frame that are timed.
+     */
+    public enum Stage {
+        /**
+         * The time from the start of one frame to the start of the next.
+         */
+        FRAME,
+
+        /**
+         * Time spent in {@link IScene#update(float)}.
+         */
+        UPDATE,
+
+        /**
+         * Time spent in {@link IScene#render()}.
+         */
+        RENDER,
+
+        /**
+         * Time spent capturing a frame for a recording, on the frames that are captured.
+         */
+        CAPTURE,
+
+        /**
+         * Time spent in {@link Window#swapBuffers()}, which includes waiting for vsync.
+         */
+        SWAP,
+
+        /**
+         * Time spent waiting in {@link FramePacer#awaitNextFrame()} to hold a target frame rate.
+         */
+        PACE;
+
+        private String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Percentiles of one stage's durations, in milliseconds.
+     *
+     * @param count the number of recorded durations
+     * @param p50   the median
+     * @param p95   the 95th percentile
+     * @param p99   the 99th percentile
+     * @param max   the longest duration
+     * @param mean  the mean duration
+     */
+    public record Summary(long count, double p50, double p95, double p99, double max,
+                          double mean) {
+
+        private static Summary of(LatencyHistogram histogram) {
+            return new Summary(histogram.count(), millis(histogram.percentile(50)),
+                millis(histogram.percentile(95)), millis(histogram.percentile(99)),
+                millis(histogram.max()), histogram.mean() / 1_000_000);
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+
+    private final LatencyHistogram[] total = new LatencyHistogram[Stage.values().length];
+    private final LatencyHistogram[] interval = new LatencyHistogram[Stage.values().length];
+    // The whole-run and interval histogram of each GPU scope, in the order they were first seen
+    private final Map<String, LatencyHistogram[]> gpuScopes = new LinkedHashMap<>();
+    private final LatencyHistogram totalJitter = new LatencyHistogram();
+    private final LatencyHistogram intervalJitter = new LatencyHistogram();
+    private final GaugeHistogram totalScale = scaleHistogram();
+    private final GaugeHistogram intervalScale = scaleHistogram();
+    private double lastScale = 1.0;
+    // Average ray marching steps per pixel
+    private final GaugeHistogram totalSteps = stepsHistogram();
+    private final GaugeHistogram intervalSteps = stepsHistogram();
+    private long timeToFirstFrameNanos = -1;
+
+    /**
+     * Creates empty metrics.
+     */
+    public RenderMetrics() {
+        for (int i = 0; i < total.length; i++) {
+            total[i] = new LatencyHistogram();
+            interval[i] = new LatencyHistogram();
+        }
+    }
+
+    // Scales up to four times the window size, to a thousandth
+    private static GaugeHistogram scaleHistogram() {
+        return new GaugeHistogram(4.0, 0.001);
+    }
+
+    // Ray marchers give up long before a thousand steps
+    private static GaugeHistogram stepsHistogram() {
+        return new GaugeHistogram(1000.0, 0.25);
+    }
+
+    /**
+     * Records how long a stage took.
+     *
+     * @param stage the stage
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(Stage stage, long nanos) {
+        total[stage.ordinal()].record(nanos);
+        interval[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records how long a named scope took on the GPU.
+     *
+     * @param scope the scope name
+     * @param nanos the GPU time in nanoseconds
+     */
+    public void recordGpu(String scope, long nanos) {
+        LatencyHistogram[] histograms = gpuScopes.get(scope);
+        if (histograms == null) {
+            histograms = new LatencyHistogram[]{new LatencyHistogram(), new LatencyHistogram()};
+            gpuScopes.put(scope, histograms);
+        }
+        histograms[0].record(nanos);
+        histograms[1].record(nanos);
+    }
+
+    /**
+     * Records how late a paced frame started, compared to its deadline.
+     *
+     * @param nanos the lateness in nanoseconds
+     */
+    public void recordPacingJitter(long nanos) {
+        totalJitter.record(nanos);
+        intervalJitter.record(nanos);
+    }
+
+    /**
+     * Records the resolution scale a frame was rendered at.
+     *
+     * @param scale the scale factor, relative to the window size
+     */
+    public void recordResolutionScale(double scale) {
+        totalScale.record(scale);
+        intervalScale.record(scale);
+        lastScale = scale;
+    }
+
+    /**
+     * Returns the resolution scale of the most recent frame.
+     *
+     * @return the scale factor, or 1 if none was recorded
+     */
+    public double resolutionScale() {
+        return lastScale;
+    }
+
+    /**
+     * Returns the median resolution scale since the metrics were created.
+     *
+     * @return the scale factor, or 1 if none was recorded
+     */
+    public double medianResolutionScale() {
+        return totalScale.count() > 0 ? totalScale.percentile(50) : 1.0;
+    }
+
+    /**
+     * Records the average number of steps a ray marcher took per pixel in one frame.
+     *
+     * @param steps the average over all pixels
+     */
+    public void recordMarchSteps(double steps) {
+        totalSteps.record(steps);
+        intervalSteps.record(steps);
+    }
+
+    /**
+     * Returns the median of the average steps per pixel since the metrics were created.
+     *
+     * @return the steps, or 0 if none were recorded
+     */
+    public double medianMarchSteps() {
+        return totalSteps.percentile(50);
+    }
+
+    /**
+     * Records how long after the process started the first frame was shown.
+     *
+     * @param nanos the time in nanoseconds
+     */
+    public void recordTimeToFirstFrame(long nanos) {
+        timeToFirstFrameNanos = nanos;
+    }
+
+    /**
+     * Returns how long after the process started the first frame was shown.
+     *
+     * @return the time in nanoseconds, or -1 if no frame was shown yet
+     */
+    public long timeToFirstFrame() {
+        return timeToFirstFrameNanos;
+    }
+
+    /**
+     * Returns the statistics of a stage since the metrics were created.
+     *
+     * @param stage the stage
+     * @return the summary
+     */
+    public Summary summary(Stage stage) {
+        return Summary.of(total[stage.ordinal()]);
+    }
+
+    /**
+     * Returns the statistics of every stage since the metrics were created.
+     *
+     * @return the summaries, in stage order
+     */
+    public Map<Stage, Summary> summaries() {
+        Map<Stage, Summary> summaries = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            summaries.put(stage, summary(stage));
+        }
+        return summaries;
+    }
+
+    /**
+     * Returns the GPU statistics of every scope since the metrics were created.
+     *
+     * @return the summaries by scope name, in the order the scopes were first recorded
+     */
+    public Map<String, Summary> gpuSummaries() {
+        Map<String, Summary> summaries = new LinkedHashMap<>();
+        gpuScopes.forEach((scope, histograms) -> summaries.put(scope, Summary.of(histograms[0])));
+        return summaries;
+    }
+
+    /**
+     * Returns the pacing jitter since the metrics were created.
+     *
+     * @return the summary, in milliseconds like the others
+     */
+    public Summary pacingJitter() {
+        return Summary.of(totalJitter);
+    }
+
+    /**
+     * Prints one line with the statistics of the current interval, then starts a new interval.
+     */
+    public void logInterval() {
+        System.out.println(formatLine("Frame times", interval));
+        for (LatencyHistogram histogram : interval) {
+            histogram.reset();
+        }
+        for (LatencyHistogram[] histograms : gpuScopes.values()) {
+            histograms[1].reset();
+        }
+        intervalJitter.reset();
+        intervalScale.reset();
+        intervalSteps.reset();
+    }
+
+    /**
+     * Prints the statistics of the whole run, one line per stage.
+     */
+    public void logSummary() {
+        System.out.println("Frame time summary (ms):");
+        for (Stage stage : Stage.values()) {
+            Summary summary = summary(stage);
+            printSummary(stage.label(), summary);
+        }
+        gpuSummaries().forEach((scope, summary) -> printSummary("gpu " + scope, summary));
+        if (totalJitter.count() > 0) {
+            System.out.printf(Locale.ROOT,
+                "  %-14s n=%d p50=%d p95=%d p99=%d max=%d (us)%n", "pacing jitter",
+                totalJitter.count(), micros(totalJitter.percentile(50)),
+                micros(totalJitter.percentile(95)), micros(totalJitter.percentile(99)),
+                micros(totalJitter.max()));
+        }
+        if (totalScale.count() > 0) {
+            System.out.printf(Locale.ROOT, "  %-14s n=%d p50=%.3f min=%.3f max=%.3f%n",
+                "resolution", totalScale.count(), totalScale.percentile(50), totalScale.min(),
+                totalScale.max());
+        }
+        if (totalSteps.count() > 0) {
+            System.out.printf(Locale.ROOT, "  %-14s n=%d p50=%.1f min=%.1f max=%.1f%n",
+                "march steps", totalSteps.count(), totalSteps.percentile(50), totalSteps.min(),
+                totalSteps.max());
+        }
+        if (timeToFirstFrameNanos >= 0) {
+            System.out.printf(Locale.ROOT, "  %-14s %.1f ms after start%n", "first frame",
+                timeToFirstFrameNanos / 1e6);
+        }
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1_000;
+    }
+
+    private static void printSummary(String label, Summary summary) {
+        System.out.printf(Locale.ROOT,
+            "  %-14s n=%d p50=%.2f p95=%.2f p99=%.2f max=%.2f mean=%.2f%n", label,
+            summary.count(), summary.p50(), summary.p95(), summary.p99(), summary.max(),
+            summary.mean());
+    }
+
+    private String formatLine(String title, LatencyHistogram[] histograms) {
+        StringBuilder line = new StringBuilder(title).append(" (ms, p50/p95/p99/max):");
+        for (Stage stage : Stage.values()) {
+            appendSummary(line, stage.label(), histograms[stage.ordinal()]);
+        }
+        gpuScopes.forEach((scope, gpu) -> appendSummary(line, "gpu " + scope, gpu[1]));
+        if (intervalJitter.count() > 0) {
+            line.append(String.format(Locale.ROOT, " jitter(us) %d/%d/%d/%d",
+                micros(intervalJitter.percentile(50)), micros(intervalJitter.percentile(95)),
+                micros(intervalJitter.percentile(99)), micros(intervalJitter.max())));
+        }
+        if (intervalScale.count() > 0) {
+            line.append(String.format(Locale.ROOT, " scale(p50/min/max) %.2f/%.2f/%.2f",
+                intervalScale.percentile(50), intervalScale.min(), intervalScale.max()));
+        }
+        if (intervalSteps.count() > 0) {
+            line.append(String.format(Locale.ROOT, " steps(p50/min/max) %.1f/%.1f/%.1f",
+                intervalSteps.percentile(50), intervalSteps.min(), intervalSteps.max()));
+        }
+        return line.toString();
+    }
+
+    private static void appendSummary(StringBuilder line, String label,
+        LatencyHistogram histogram) {
+        if (histogram.count() == 0) {
+            return;
+        }
+        Summary summary = Summary.of(histogram);
+        line.append(String.format(Locale.ROOT, " %s %.2f/%.2f/%.2f/%.2f", label,
+            summary.p50(), summary.p95(), summary.p99(), summary.max()));
+    }
+}
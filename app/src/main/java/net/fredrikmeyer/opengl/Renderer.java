@@ -3,10 +3,16 @@ package net.fredrikmeyer.opengl;
 import static org.lwjgl.opengl.GL11.GL_COLOR_BUFFER_BIT;
 import static org.lwjgl.opengl.GL11.GL_DEPTH_BUFFER_BIT;
 import static org.lwjgl.opengl.GL11.GL_DEPTH_TEST;
+import static org.lwjgl.opengl.GL11.GL_VIEWPORT;
 import static org.lwjgl.opengl.GL11.glClear;
 import static org.lwjgl.opengl.GL11.glEnable;
+import static org.lwjgl.opengl.GL11.glGetIntegerv;
+import static org.lwjgl.opengl.GL11.glViewport;
 import static org.lwjgl.opengl.GL11C.glClearColor;
 
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
 /**
  * Responsible for rendering the scene.
  */
@@ -14,13 +20,44 @@ public class Renderer {
     private final Window window;
     private final IScene scene;
     private final ScreenshotManager screenshotManager;
+    private final RenderMetrics metrics = new RenderMetrics();
+    private GpuProfiler gpuProfiler;
+    private GpuProfiler.Scope gpuRender;
+    private GpuProfiler.Scope gpuCapture;
+    private FrameUniforms frameUniforms;
+    // The sum of the time steps the scene was updated with
+    private float sceneTime = 0;
+    private final int[] viewport = new int[4];
+    private FramePacer framePacer;
+    private boolean renderOnDemand = false;
+    private Camera camera;
+    private long renderedCameraVersion;
+    private ShaderWatcher shaderWatcher;
+    // Whether a shader was reloaded in the last frame, or is still compiling
+    private boolean shadersReloading;
+    // The last frame at window size, kept to present it again without rendering
+    private Framebuffer lastFrame;
+    private ResolutionScaler resolutionScaler;
+    private long scaledMeasurements;
+    // The scene at a scaled resolution, drawn into the lower left sceneWidth x sceneHeight pixels
+    private Framebuffer sceneFrame;
+    private int sceneWidth;
+    private int sceneHeight;
     private int frameCounter = 0;
+    private boolean firstFrameShown = false;
     private static final int FRAME_CAPTURE_INTERVAL = 2; // Capture every 2nd frame to reduce file size
+    private static final long METRICS_LOG_INTERVAL_NANOS = 10_000_000_000L;
+    // Input events that may arrive between two frames of the render thread
+    private static final int INPUT_QUEUE_CAPACITY = 1024;
+    // How often the main thread checks whether the render thread has finished
+    private static final double EVENT_WAIT_SECONDS = 0.1;
+    // How long an idle render loop waits for events before it checks for changes again
+    private static final double IDLE_WAIT_SECONDS = 0.5;
 
     /**
      * Creates a new Renderer for the specified window and scene.
      *
-     * @param window the window to render to
+     * @param window the window to render to, which may be {@link Window#headless headless}
      * @param scene the scene to render
      * @param screenshotManager the screenshot manager for taking screenshots and recording GIFs
      */
@@ -31,12 +68,125 @@ public class Renderer {
         init();
     }
 
+    /**
+     * Selects the file format of the next recording, for example a lossless
+     * {@link RecordingFormat#Y4M} video instead of a GIF animation.
+     *
+     * @param recordingFormat the format to record in
+     */
+    public void setRecordingFormat(RecordingFormat recordingFormat) {
+        screenshotManager.setRecordingFormat(recordingFormat);
+    }
+
+    /**
+     * Selects how the render loop paces frames, and sets the window's swap interval to match.
+     * By default a window waits for v-sync and a headless window is uncapped.
+     *
+     * @param framePacer the pacing policy
+     */
+    public void setFramePacer(FramePacer framePacer) {
+        this.framePacer = framePacer;
+        framePacer.apply(window);
+    }
+
+    /**
+     * Makes the render loop draw a frame only when something may have changed: the scene
+     * {@link IScene#isAnimated() is animated}, the {@link #setCamera(Camera) camera} moved, the
+     * window {@link Window#requestRedraw() requested a redraw}, or a recording is running. In
+     * between, the loop waits for events instead of drawing the same frame again, which saves
+     * power while a still image is shown. Frames are then drawn into an offscreen framebuffer and
+     * copied to the window, so the last one can be shown again without rendering the scene when
+     * the window is uncovered. Off by default.
+     *
+     * @param renderOnDemand true to skip frames while nothing changes
+     */
+    public void setRenderOnDemand(boolean renderOnDemand) {
+        this.renderOnDemand = renderOnDemand;
+    }
+
+    /**
+     * Sets the camera the scene is viewed through. Its state goes into the shaders'
+     * {@link FrameUniforms} every frame, and rendering on demand draws a new frame whenever it
+     * changes.
+     *
+     * @param camera the camera, or null if the view never changes
+     */
+    public void setCamera(Camera camera) {
+        this.camera = camera;
+    }
+
+    /**
+     * Reloads shaders when their sources are edited. Each frame starts with
+     * {@link ShaderWatcher#update()}, and rendering on demand draws frames while a new program
+     * is on its way. The renderer closes the watcher in {@link #cleanup()}.
+     *
+     * @param shaderWatcher the watcher, or null to keep the shaders as they were compiled
+     */
+    public void setShaderWatcher(ShaderWatcher shaderWatcher) {
+        this.shaderWatcher = shaderWatcher;
+        if (shaderWatcher != null) {
+            shaderWatcher.setChangeListener(window::requestRedraw);
+        }
+    }
+
+    /**
+     * Renders the scene at a resolution that adapts to its GPU time, and upscales each frame to
+     * the window with bilinear filtering. The scaler sees the GPU time of the {@code render} scope
+     * a frame or two after it was measured, so it needs timer query support to adapt; without
+     * it, the scene stays at the scaler's initial scale. The chosen scale is recorded in the
+     * {@link #getMetrics() metrics}. Off by default.
+     *
+     * @param resolutionScaler the scaler, or null to render at the window's resolution
+     */
+    public void setResolutionScaler(ResolutionScaler resolutionScaler) {
+        this.resolutionScaler = resolutionScaler;
+        scaledMeasurements = gpuRender.collectedMeasurements();
+    }
+
+    /**
+     * Returns the pacing policy of the render loop.
+     *
+     * @return the frame pacer
+     */
+    public FramePacer getFramePacer() {
+        return framePacer;
+    }
+
+    /**
+     * Returns the frame timing statistics. They are logged every ten seconds while the render
+     * loop runs, and summarized when it ends.
+     *
+     * @return the metrics, to be read on the render thread
+     */
+    public RenderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the GPU profiler. The renderer times the scene's render pass and frame capture on
+     * the GPU under the names {@code render} and {@code capture}; scenes can add scopes of their
+     * own, which are reported the same way.
+     *
+     * @return the profiler, to be used on the render thread
+     */
+    public GpuProfiler getGpuProfiler() {
+        return gpuProfiler;
+    }
+
     /**
      * Initializes the renderer.
      */
     private void init() {
         // Enable depth testing
         glEnable(GL_DEPTH_TEST);
+
+        gpuProfiler = new GpuProfiler(metrics);
+        gpuRender = gpuProfiler.scope("render");
+        gpuCapture = gpuProfiler.scope("capture");
+        frameUniforms = new FrameUniforms();
+
+        // Matches the swap interval the window starts with
+        framePacer = window.isHeadless() ? FramePacer.uncapped() : FramePacer.vsync();
     }
 
     /**
@@ -45,54 +195,359 @@ public class Renderer {
      * @param deltaTime the time elapsed since the last frame
      */
     public void render(float deltaTime) {
+        // Record the GPU timings of earlier frames that have finished
+        gpuProfiler.collect();
+        if (shaderWatcher != null) {
+            shadersReloading = shaderWatcher.update();
+        }
+
+        updateResolutionScale();
+        bindRenderTarget();
+        if (camera != null) {
+            renderedCameraVersion = camera.getVersion();
+        }
+
         // Clear the screen
         glClearColor(0.07f, 0.13f, 0.17f, 1.0f);
         glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
 
         // Update and render the scene
+        long start = System.nanoTime();
         scene.update(deltaTime);
+        sceneTime += deltaTime;
+        long updated = System.nanoTime();
+        glGetIntegerv(GL_VIEWPORT, viewport);
+        frameUniforms.update(camera, sceneTime, viewport[2], viewport[3]);
+        gpuProfiler.begin(gpuRender);
         scene.render();
+        gpuProfiler.end(gpuRender);
+        long rendered = System.nanoTime();
+        metrics.record(RenderMetrics.Stage.UPDATE, updated - start);
+        metrics.record(RenderMetrics.Stage.RENDER, rendered - updated);
+        if (sceneFrame != null) {
+            upscale();
+        }
 
-        // Capture frame for GIF if recording is active
+        // Capture frame for the recording if recording is active
         if (screenshotManager.isRecording()) {
             frameCounter++;
             if (frameCounter % FRAME_CAPTURE_INTERVAL == 0) {
-                screenshotManager.captureFrame(window.getWindowHandle());
+                long captureStart = System.nanoTime();
+                gpuProfiler.begin(gpuCapture);
+                screenshotManager.captureFrame(window);
+                gpuProfiler.end(gpuCapture);
+                metrics.record(RenderMetrics.Stage.CAPTURE, System.nanoTime() - captureStart);
             }
         }
 
         // Swap buffers and poll events
-        window.swapBuffers();
+        long swapStart = System.nanoTime();
+        present();
+        metrics.record(RenderMetrics.Stage.SWAP, System.nanoTime() - swapStart);
+        if (!firstFrameShown) {
+            firstFrameShown = true;
+            recordTimeToFirstFrame();
+        }
         window.pollEvents();
     }
 
+    /**
+     * Records and prints how long after the JVM started the first frame was shown, the time a
+     * user waits for the window's contents.
+     */
+    private void recordTimeToFirstFrame() {
+        long nanos = ManagementFactory.getRuntimeMXBean().getUptime() * 1_000_000L;
+        metrics.recordTimeToFirstFrame(nanos);
+        System.out.printf(Locale.ROOT, "First frame shown %.0f ms after start%n", nanos / 1e6);
+    }
+
+    /**
+     * Binds the framebuffer the scene is drawn into: {@link #sceneFrame} with the viewport at the
+     * current scale when the resolution is scaled, otherwise {@link #lastFrame} when rendering on
+     * demand, and otherwise the window's own. Offscreen targets follow the size of the window's
+     * framebuffer, and are deleted when no longer needed.
+     */
+    private void bindRenderTarget() {
+        int width = window.getFramebufferWidth();
+        int height = window.getFramebufferHeight();
+        // Nothing is shown while minimized, so draw into whatever is bound until it comes back
+        boolean visible = width > 0 && height > 0;
+        boolean scaled = resolutionScaler != null && visible;
+        lastFrame = fit(lastFrame,
+            visible && !window.isHeadless() && (renderOnDemand || scaled), width, height);
+        if (!scaled) {
+            boolean wasScaled = sceneFrame != null;
+            // Deleting the bound scene target binds the default framebuffer
+            sceneFrame = fit(sceneFrame, false, 0, 0);
+            if (lastFrame != null) {
+                lastFrame.bind();
+            } else if (wasScaled && window.isHeadless()) {
+                window.getFramebuffer().bind();
+            } else if (wasScaled) {
+                glViewport(0, 0, width, height);
+            }
+            return;
+        }
+
+        sceneFrame = fit(sceneFrame, true, resolutionScaler.maxScaledSize(width),
+            resolutionScaler.maxScaledSize(height));
+        sceneWidth = Math.min(resolutionScaler.scaledSize(width), sceneFrame.getWidth());
+        sceneHeight = Math.min(resolutionScaler.scaledSize(height), sceneFrame.getHeight());
+        sceneFrame.bind();
+        glViewport(0, 0, sceneWidth, sceneHeight);
+    }
+
+    /**
+     * Creates, resizes or deletes an offscreen target as needed.
+     */
+    private static Framebuffer fit(Framebuffer framebuffer, boolean needed, int width,
+        int height) {
+        if (!needed) {
+            if (framebuffer != null) {
+                framebuffer.delete();
+            }
+            return null;
+        }
+        if (framebuffer == null) {
+            return new Framebuffer(width, height);
+        }
+        if (framebuffer.getWidth() != width || framebuffer.getHeight() != height) {
+            framebuffer.resize(width, height);
+        }
+        return framebuffer;
+    }
+
+    /**
+     * Feeds the newest GPU time of the scene to the resolution scaler, and records the scale the
+     * next frame is drawn at.
+     */
+    private void updateResolutionScale() {
+        if (resolutionScaler == null) {
+            return;
+        }
+        long collected = gpuRender.collectedMeasurements();
+        if (collected != scaledMeasurements) {
+            scaledMeasurements = collected;
+            resolutionScaler.update(gpuRender.lastNanos(), scene.isRefining());
+        }
+        metrics.recordResolutionScale(resolutionScaler.scale());
+    }
+
+    /**
+     * Stretches a frame drawn at a reduced scale to the full size of the window, into
+     * {@link #lastFrame} or the framebuffer of a headless window, and binds that.
+     */
+    private void upscale() {
+        Framebuffer output = window.isHeadless() ? window.getFramebuffer() : lastFrame;
+        sceneFrame.blitTo(output, sceneWidth, sceneHeight);
+        output.bind();
+    }
+
+    /**
+     * Shows the frame just drawn. A frame drawn on demand is copied to the window first, and its
+     * framebuffer is bound again afterwards, so screenshots taken by input callbacks read it.
+     */
+    private void present() {
+        if (lastFrame == null) {
+            window.swapBuffers();
+            return;
+        }
+        lastFrame.blitToWindow(window.getFramebufferWidth(), window.getFramebufferHeight());
+        window.swapBuffers();
+        lastFrame.bind();
+    }
+
+    /**
+     * Decides whether the loop must draw a new frame when rendering on demand. If not, and the
+     * window asks to be drawn again, presents the last frame once more.
+     */
+    private boolean frameNeeded() {
+        boolean needed = window.consumeRedrawRequest();
+        if (scene.isAnimated() || screenshotManager.isRecording() || shadersReloading) {
+            needed = true;
+        }
+        if (camera != null && camera.getVersion() != renderedCameraVersion) {
+            needed = true;
+        }
+        if (!needed && window.consumeRefreshRequest()) {
+            if (lastFrame == null) {
+                return true;
+            }
+            present();
+        }
+        return needed;
+    }
+
+    /**
+     * Deletes the renderer's OpenGL objects and closes its shader watcher. Call once, after the
+     * last frame and before the window is destroyed, on the thread that owns the context. The
+     * render loop leaves them alone, so it can be run again until then.
+     */
+    public void cleanup() {
+        lastFrame = fit(lastFrame, false, 0, 0);
+        sceneFrame = fit(sceneFrame, false, 0, 0);
+        gpuProfiler.cleanup();
+        frameUniforms.delete();
+        if (shaderWatcher != null) {
+            shaderWatcher.close();
+        }
+    }
+
     /**
      * Runs the rendering loop until the window should close.
      */
     public void renderLoop() {
+        loop(Long.MAX_VALUE);
+    }
+
+    /**
+     * Renders a fixed number of frames, or fewer if the window closes first, then ends the loop
+     * as {@link #renderLoop()} does. With a {@link Window#headless(WindowDimensions) headless}
+     * window nothing waits for v-sync, so this measures how fast the scene can be rendered.
+     *
+     * @param frameCount the number of frames to render
+     * @throws IllegalArgumentException if the frame count is negative
+     */
+    public void renderFrames(long frameCount) {
+        if (frameCount < 0) {
+            throw new IllegalArgumentException(
+                "Frame count must not be negative, was " + frameCount);
+        }
+        loop(frameCount);
+    }
+
+    /**
+     * Runs the rendering loop on a dedicated render thread until the window should close, while
+     * the calling main thread only pumps window events. Input callbacks are queued through an
+     * {@link InputEventRing} and run on the render thread where each frame used to poll for
+     * events, so they may use OpenGL, the camera and the scene as before. A slow frame no longer
+     * delays event handling by the system, and slow event handling no longer delays rendering.
+     *
+     * <p>Must be called on the main thread, with the context current. The context is current on
+     * the calling thread again when this returns.
+     *
+     * @throws RuntimeException if rendering failed; the failure is the cause
+     */
+    public void renderLoopThreaded() {
+        InputEventRing inputEvents = new InputEventRing(INPUT_QUEUE_CAPACITY);
+        Throwable[] failure = new Throwable[1];
+        Thread renderThread = new Thread(() -> {
+            window.makeContextCurrent();
+            try {
+                renderLoop();
+            } catch (Throwable t) {
+                failure[0] = t;
+                window.setShouldClose(true);
+            } finally {
+                window.releaseContext();
+                window.wakeUp();
+            }
+        }, "render");
+
+        window.setInputEventQueue(inputEvents);
+        window.releaseContext();
+        renderThread.start();
+        try {
+            while (renderThread.isAlive()) {
+                window.waitEvents(EVENT_WAIT_SECONDS);
+            }
+            renderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            window.setShouldClose(true);
+            joinUninterruptibly(renderThread);
+        } finally {
+            window.setInputEventQueue(null);
+            window.makeContextCurrent();
+        }
+
+        if (inputEvents.droppedEvents() > 0) {
+            System.out.println("Dropped " + inputEvents.droppedEvents() + " input events");
+        }
+        if (failure[0] != null) {
+            throw new RuntimeException("Render thread failed", failure[0]);
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void pace() {
+        if (framePacer.mode() != FramePacer.Mode.LIMITED) {
+            return;
+        }
+        long start = System.nanoTime();
+        long lateness = framePacer.awaitNextFrame();
+        metrics.record(RenderMetrics.Stage.PACE, System.nanoTime() - start);
+        if (lateness >= 0) {
+            metrics.recordPacingJitter(lateness);
+        }
+    }
+
+    private void loop(long maxFrames) {
+        framePacer.reset();
+
         // Timing variables
         long lastFrameTime = System.nanoTime();
+        long lastMetricsLog = lastFrameTime;
         float deltaTime;
+        boolean firstFrame = true;
 
         // Run the rendering loop until the window should close
-        while (!window.shouldClose()) {
+        long frame = 0;
+        while (frame < maxFrames && !window.shouldClose()) {
+            if (renderOnDemand && !frameNeeded()) {
+                window.awaitEvents(IDLE_WAIT_SECONDS);
+                // The time spent waiting is not part of any frame
+                lastFrameTime = System.nanoTime();
+                firstFrame = true;
+                framePacer.reset();
+                continue;
+            }
+
             // Calculate delta time
             long currentTime = System.nanoTime();
             deltaTime = (currentTime - lastFrameTime) / 1_000_000_000.0f;
+            // The first frame has no previous frame to measure from
+            if (!firstFrame) {
+                metrics.record(RenderMetrics.Stage.FRAME, currentTime - lastFrameTime);
+            }
+            firstFrame = false;
             lastFrameTime = currentTime;
 
-            // Render a frame
+            if (currentTime - lastMetricsLog >= METRICS_LOG_INTERVAL_NANOS) {
+                metrics.logInterval();
+                lastMetricsLog = currentTime;
+            }
+
+            // Render a frame, then wait until the next one is due
             render(deltaTime);
+            pace();
+            frame++;
         }
 
-        // If recording is active when the window closes, save the GIF asynchronously
+        gpuProfiler.collect();
+        metrics.logSummary();
+
+        // If recording is active when the window closes, save the recording asynchronously
         if (screenshotManager.isRecording()) {
-            System.out.println("Window closed while recording, saving GIF asynchronously...");
+            System.out.println("Window closed while recording, saving recording asynchronously...");
             screenshotManager.stopRecording().thenAccept(filename -> {
                 if (filename != null) {
-                    System.out.println("GIF saved successfully to: " + filename);
+                    System.out.println("Recording saved successfully to: " + filename);
                 } else {
-                    System.out.println("Failed to save GIF");
+                    System.out.println("Failed to save recording");
                 }
             });
         }
@@ -0,0 +1,151 @@
+package net.fredrikmeyer.opengl;
+
+/**
+ * Chooses the resolution a scene is rendered at, to keep its GPU time within a budget.
+ *
+ * <p>Full-screen ray marching costs about the same for every pixel, so GPU time grows with the
+ * number of pixels, which is the square of the scale factor. The scale that would just meet the
+ * budget is therefore the current scale times the square root of the budget over the measured
+ * time. Each {@link #update(long)} moves part of the way there: quickly when over budget, so a
+ * slow frame is soon followed by cheaper ones, and slowly when there is room to grow, so the
+ * resolution does not oscillate. While the time is just under the budget the scale is left
+ * alone. GPU timings arrive a frame or two late, which the damping absorbs.
+ *
+ * <p>The scale is kept between a fixed minimum and maximum; a maximum above 1 supersamples when
+ * the GPU has time to spare.
+ */
+public final class ResolutionScaler {
+
+    /**
+     * The fraction of the way to the ideal scale that one update moves when over budget.
+     */
+    static final double SHRINK_GAIN = 0.5;
+
+    /**
+     * The fraction of the way to the ideal scale that one update moves when under budget.
+     */
+    static final double GROW_GAIN = 0.1;
+
+    /**
+     * GPU times between this fraction of the budget and the budget keep the current scale.
+     */
+    static final double HOLD_FRACTION = 0.85;
+
+    private final long budgetNanos;
+    private final double minScale;
+    private final double maxScale;
+    private double scale;
+
+    /**
+     * Creates a scaler that starts at full resolution, or at the nearest allowed scale.
+     *
+     * @param budgetNanos the GPU time a frame should take, in nanoseconds
+     * @param minScale    the smallest scale factor, relative to the window size
+     * @param maxScale    the largest scale factor, relative to the window size
+     * @throws IllegalArgumentException if the budget is not positive, or the scales are not
+     *                                  positive or out of order
+     */
+    public ResolutionScaler(long budgetNanos, double minScale, double maxScale) {
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("Budget must be positive, was " + budgetNanos);
+        }
+        if (!(minScale > 0) || !(maxScale >= minScale)) {
+            throw new IllegalArgumentException(
+                "Scales must satisfy 0 < min <= max, were " + minScale + " and " + maxScale);
+        }
+        this.budgetNanos = budgetNanos;
+        this.minScale = minScale;
+        this.maxScale = maxScale;
+        this.scale = clamp(1.0);
+    }
+
+    /**
+     * Adjusts the scale to a new GPU time measurement. Pass each measurement once.
+     *
+     * @param gpuNanos how long the GPU took to render a frame, in nanoseconds
+     * @return the new scale
+     */
+    public double update(long gpuNanos) {
+        if (gpuNanos <= 0 || (gpuNanos <= budgetNanos && gpuNanos >= HOLD_FRACTION * budgetNanos)) {
+            return scale;
+        }
+        double ideal = scale * Math.sqrt((double) budgetNanos / gpuNanos);
+        double gain = gpuNanos > budgetNanos ? SHRINK_GAIN : GROW_GAIN;
+        scale = clamp(scale + gain * (ideal - scale));
+        return scale;
+    }
+
+    /**
+     * Adjusts the scale to a new GPU time measurement, unless the frames being drawn only refine
+     * a still image. Refining frames cost less than drawing the scene, so growing on their times
+     * would change the resolution, which starts the refinement over before it converges.
+     *
+     * @param gpuNanos how long the GPU took to render a frame, in nanoseconds
+     * @param refining whether the scene is refining a still image
+     * @return the new scale
+     */
+    public double update(long gpuNanos, boolean refining) {
+        return refining ? scale : update(gpuNanos);
+    }
+
+    /**
+     * Gets the current scale factor.
+     *
+     * @return the scale, relative to the window size
+     */
+    public double scale() {
+        return scale;
+    }
+
+    /**
+     * Scales a window dimension by the current scale.
+     *
+     * @param size the width or height of the window, in pixels
+     * @return the scaled size, at least one pixel
+     */
+    public int scaledSize(int size) {
+        return Math.max(1, (int) Math.round(size * scale));
+    }
+
+    /**
+     * Scales a window dimension by the largest scale, to size a render target that every scale
+     * fits into.
+     *
+     * @param size the width or height of the window, in pixels
+     * @return the largest scaled size, at least one pixel
+     */
+    public int maxScaledSize(int size) {
+        return Math.max(1, (int) Math.ceil(size * maxScale));
+    }
+
+    /**
+     * Gets the GPU time a frame should take.
+     *
+     * @return the budget in nanoseconds
+     */
+    public long budgetNanos() {
+        return budgetNanos;
+    }
+
+    /**
+     * Gets the smallest scale factor.
+     *
+     * @return the minimum scale
+     */
+    public double minScale() {
+        return minScale;
+    }
+
+    /**
+     * Gets the largest scale factor.
+     *
+     * @return the maximum scale
+     */
+    public double maxScale() {
+        return maxScale;
+    }
+
+    private double clamp(double value) {
+        return Math.max(minScale, Math.min(maxScale, value));
+    }
+}
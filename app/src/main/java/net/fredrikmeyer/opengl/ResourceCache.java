@@ -0,0 +1,250 @@
+package net.fredrikmeyer.opengl;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Keeps loaded resources in memory, so that scenes loading the same shader source or texture
+ * share one copy instead of reading it from the classpath again.
+ *
+ * <p>The cache holds at most a budget of bytes, counting two bytes per character of text and the
+ * size of binary resources, and evicts the least recently used resources to stay within it. A
+ * resource larger than the whole budget is loaded and returned but not kept.
+ *
+ * <p>Requests for a resource that another thread is loading wait for that load instead of
+ * loading it again, and count as hits. A failed load is not cached, so the next request tries
+ * again. Binary resources are {@link SharedBuffer}s, of which the cache holds one reference while
+ * it keeps them, so evicting one frees its memory only after every caller released theirs.
+ *
+ * <p>The cache is thread safe.
+ */
+public final class ResourceCache {
+
+    /**
+     * The budget of the cache that {@link ResourceLoader}s share by default.
+     */
+    public static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+
+    // Text and binary resources of the same name are kept apart
+    private record Key(String name, boolean binary) {
+    }
+
+    private record Entry(Object value, long bytes) {
+    }
+
+    private final long budgetBytes;
+    private final Function<String, String> textLoader;
+    private final Function<String, SharedBuffer> binaryLoader;
+    // In order of last use, least recently used first
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, CompletableFuture<Object>> loading = new HashMap<>();
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache of classpath resources.
+     *
+     * @param budgetBytes the most bytes to keep
+     */
+    public ResourceCache(long budgetBytes) {
+        this(budgetBytes, Utils::loadResource, Utils::loadResourceByteBuffer);
+    }
+
+    /**
+     * Creates a cache that loads resources with the given functions.
+     *
+     * @param budgetBytes  the most bytes to keep
+     * @param textLoader   loads a text resource by name
+     * @param binaryLoader loads a binary resource by name, returning the only reference to it
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public ResourceCache(long budgetBytes, Function<String, String> textLoader,
+        Function<String, SharedBuffer> binaryLoader) {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException("Budget must not be negative: " + budgetBytes);
+        }
+        this.budgetBytes = budgetBytes;
+        this.textLoader = textLoader;
+        this.binaryLoader = binaryLoader;
+    }
+
+    /**
+     * Gets a text resource, loading it if it is not cached.
+     *
+     * @param name the name of the resource
+     * @return the text
+     */
+    public String text(String name) {
+        return (String) get(new Key(name, false));
+    }
+
+    /**
+     * Gets a binary resource, loading it if it is not cached.
+     *
+     * @param name the name of the resource
+     * @return a reference to the bytes, which the caller must release
+     */
+    public SharedBuffer binary(String name) {
+        return (SharedBuffer) get(new Key(name, true));
+    }
+
+    private Object get(Key key) {
+        while (true) {
+            CompletableFuture<Object> future;
+            boolean loads = false;
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry != null) {
+                    // The cache's own reference keeps it from having been freed
+                    retain(entry.value());
+                    hits++;
+                    return entry.value();
+                }
+                future = loading.get(key);
+                if (future == null) {
+                    future = new CompletableFuture<>();
+                    loading.put(key, future);
+                    loads = true;
+                    misses++;
+                } else {
+                    hits++;
+                }
+            }
+            if (loads) {
+                return load(key, future);
+            }
+
+            Object value;
+            try {
+                value = future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+            if (retain(value)) {
+                return value;
+            }
+            // Evicted and freed before this thread got to it
+        }
+    }
+
+    private Object load(Key key, CompletableFuture<Object> future) {
+        Object value;
+        try {
+            value = key.binary() ? binaryLoader.apply(key.name()) : textLoader.apply(key.name());
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                loading.remove(key);
+            }
+            future.completeExceptionally(e);
+            throw e;
+        }
+
+        synchronized (this) {
+            loading.remove(key);
+            long size = sizeOf(value);
+            // Keeping a resource larger than the budget would evict everything else, then it
+            if (size <= budgetBytes) {
+                // One reference for the cache and one for the caller
+                retain(value);
+                entries.put(key, new Entry(value, size));
+                bytes += size;
+                evict();
+            }
+        }
+        future.complete(value);
+        return value;
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (bytes > budgetBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            bytes -= entry.bytes();
+            evictions++;
+            release(entry.value());
+        }
+    }
+
+    /**
+     * Drops every resource. Binary resources are freed once their callers released them.
+     */
+    public synchronized void clear() {
+        entries.values().forEach(entry -> release(entry.value()));
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Gets the number of requests that were served without loading.
+     *
+     * @return the number of hits
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of requests that loaded the resource.
+     *
+     * @return the number of misses
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of resources dropped to stay within the budget.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the size of the resources that are kept.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long size() {
+        return bytes;
+    }
+
+    /**
+     * Describes the counters and the size, for logging.
+     *
+     * @return the description
+     */
+    @Override
+    public synchronized String toString() {
+        return hits + " hits, " + misses + " misses, " + evictions + " evictions, " + bytes
+            + " of " + budgetBytes + " bytes kept";
+    }
+
+    private static boolean retain(Object value) {
+        return !(value instanceof SharedBuffer buffer) || buffer.tryRetain();
+    }
+
+    private static void release(Object value) {
+        if (value instanceof SharedBuffer buffer) {
+            buffer.release();
+        }
+    }
+
+    private static long sizeOf(Object value) {
+        return value instanceof SharedBuffer buffer
+            ? buffer.size()
+            : (long) Character.BYTES * ((String) value).length();
+    }
+}
@@ -1,12 +1,50 @@
 package net.fredrikmeyer.opengl;
 
-import java.nio.ByteBuffer;
+import java.util.Map;
 
 /**
  * Responsible for loading resources such as shaders and textures.
+ *
+ * <p>Shader sources go through a {@link ShaderPreprocessor}, so they may {@code #include} other
+ * resources and be compiled with macros defined.
+ *
+ * <p>Resources are read through a {@link ResourceCache}. Loaders created with the default
+ * constructor share one, so the scenes of an application read each resource once.
  */
 public class ResourceLoader {
-    
+
+    private static final ResourceCache SHARED_CACHE =
+        new ResourceCache(ResourceCache.DEFAULT_BUDGET_BYTES);
+
+    private final ResourceCache cache;
+    private final ShaderPreprocessor preprocessor;
+
+    /**
+     * Creates a loader that uses the cache shared by the application.
+     */
+    public ResourceLoader() {
+        this(SHARED_CACHE);
+    }
+
+    /**
+     * Creates a loader that uses the given cache.
+     *
+     * @param cache the cache to read resources through
+     */
+    public ResourceLoader(ResourceCache cache) {
+        this.cache = cache;
+        this.preprocessor = new ShaderPreprocessor(cache::text);
+    }
+
+    /**
+     * Gets the cache of the shared loaders, for its hit, miss and eviction counts.
+     *
+     * @return the cache
+     */
+    public static ResourceCache sharedCache() {
+        return SHARED_CACHE;
+    }
+
     /**
      * Loads a text resource from the classpath.
      *
@@ -14,19 +52,30 @@ public class ResourceLoader {
      * @return the content of the resource as a string
      */
     public String loadTextResource(String resourcePath) {
-        return Utils.loadResource(resourcePath);
+        return cache.text(resourcePath);
     }
     
     /**
-     * Loads a binary resource from the classpath into a ByteBuffer.
+     * Loads a binary resource from the classpath.
      *
      * @param resourcePath the path to the resource
-     * @return the content of the resource as a ByteBuffer
+     * @return a reference to the content of the resource, which the caller must release
      */
-    public ByteBuffer loadBinaryResource(String resourcePath) {
-        return Utils.loadResourceByteBuffer(resourcePath);
+    public SharedBuffer loadBinaryResource(String resourcePath) {
+        return cache.binary(resourcePath);
     }
     
+    /**
+     * Loads a shader source from the classpath, with its includes resolved and macros defined.
+     *
+     * @param resourcePath the path to the shader source
+     * @param defines      the macros to define, by name, each with its replacement text
+     * @return the source to compile
+     */
+    public String loadShaderSource(String resourcePath, Map<String, String> defines) {
+        return preprocessor.process(resourcePath, defines).text();
+    }
+
     /**
      * Loads a shader from the classpath.
      *
@@ -35,10 +84,34 @@ public class ResourceLoader {
      * @return a new Shader object
      */
     public Shader loadShader(String vertexShaderPath, String fragmentShaderPath) {
-        String vertexShaderSource = loadTextResource(vertexShaderPath);
-        String fragmentShaderSource = loadTextResource(fragmentShaderPath);
+        return loadShader(vertexShaderPath, fragmentShaderPath, Map.of());
+    }
+
+    /**
+     * Loads a shader from the classpath, compiled with macros defined in both of its sources.
+     *
+     * @param vertexShaderPath the path to the vertex shader
+     * @param fragmentShaderPath the path to the fragment shader
+     * @param defines the macros to define, by name, each with its replacement text
+     * @return a new Shader object
+     */
+    public Shader loadShader(String vertexShaderPath, String fragmentShaderPath,
+        Map<String, String> defines) {
+        String vertexShaderSource = loadShaderSource(vertexShaderPath, defines);
+        String fragmentShaderSource = loadShaderSource(fragmentShaderPath, defines);
         return new Shader(vertexShaderSource, fragmentShaderSource);
     }
+
+    /**
+     * Prepares the variants of a shader, which are compiled as they are first used.
+     *
+     * @param vertexShaderPath the path to the vertex shader
+     * @param fragmentShaderPath the path to the fragment shader
+     * @return the variants
+     */
+    public ShaderVariants loadShaderVariants(String vertexShaderPath, String fragmentShaderPath) {
+        return new ShaderVariants(this, vertexShaderPath, fragmentShaderPath);
+    }
     
     /**
      * Loads a texture from the classpath.
@@ -47,7 +120,9 @@ public class ResourceLoader {
      * @return a new Texture object
      */
     public Texture loadTexture(String texturePath) {
-        ByteBuffer textureBuffer = loadBinaryResource(texturePath);
-        return new Texture(textureBuffer);
+        // The texture decodes the image as it is created, and keeps no reference to it
+        try (SharedBuffer textureBuffer = loadBinaryResource(texturePath)) {
+            return new Texture(textureBuffer.buffer());
+        }
     }
 }
\ No newline at end of file
@@ -4,22 +4,16 @@ import static org.lwjgl.opengl.GL11.GL_FLOAT;
 import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
 import static org.lwjgl.opengl.GL11.glDrawElements;
 import static org.lwjgl.opengl.GL11C.GL_TRIANGLES;
-import static org.lwjgl.opengl.GL20.glGetUniformLocation;
-import static org.lwjgl.opengl.GL20.glUniform3f;
-import static org.lwjgl.opengl.GL20.glUniform4f;
-import static org.lwjgl.opengl.GL20.glUniformMatrix4fv;
 
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
-import org.lwjgl.BufferUtils;
 
 /**
  * Represents a 3D scene with models, textures, and transformations.
  */
 public class Scene implements IScene {
 
-    private final Camera camera;
     private VertexArrayObject vao;
     private VertexBufferObject vbo;
     private ElementBufferObject ebo;
@@ -34,13 +28,12 @@ public class Scene implements IScene {
     private ElementBufferObject lightEbo;
 
     /**
-     * Constructs a new Scene instance, initializing the shader, geometry, texture, and camera for
-     * the scene.
+     * Constructs a new Scene instance, initializing the shader, geometry, and texture for the
+     * scene. It is viewed through the camera the {@link Renderer} puts in the frame uniforms.
      *
      * @param resourceLoader the ResourceLoader used to load shaders and textures
-     * @param camera         the Camera object used to define the view and orientation of the scene
      */
-    public Scene(ResourceLoader resourceLoader, Camera camera) {
+    public Scene(ResourceLoader resourceLoader) {
         // Load shader
         shader = resourceLoader.loadShader("triangle/vertex.glsl", "triangle/fragment.glsl");
         lightShader = resourceLoader.loadShader("triangle/lightVertex.glsl",
@@ -51,7 +44,6 @@ public class Scene implements IScene {
 
         // Load texture
         texture = resourceLoader.loadTexture("icon.png");
-        this.camera = camera;
     }
 
     /**
@@ -152,28 +144,20 @@ public class Scene implements IScene {
         var lightColor = new Vector4f(1.0f, 1.0f, 1.0f, 1.0f);
         var lightPos = new Vector3f(1.5f, 0.5f, 0.5f);
 
-        var lightModelBB = BufferUtils.createFloatBuffer(16);
         var lightModel = new Matrix4f().translate(lightPos);
-        lightModel.get(lightModelBB);
 
-        var pyramidModelBB = BufferUtils.createFloatBuffer(16);
         var pyramidPos = new Vector3f(0.0f, 0.0f, 0.0f);
         var pyramidModel = new Matrix4f().translate(pyramidPos);
-        pyramidModel.get(pyramidModelBB);
 
         lightShader.activate();
-        glUniformMatrix4fv(glGetUniformLocation(lightShader.shaderProgram(), "model"), false,
-            lightModelBB);
-        glUniform4f(glGetUniformLocation(lightShader.shaderProgram(), "lightColor"), lightColor.x,
-            lightColor.y, lightColor.z, lightColor.w);
+        lightShader.setUniform("model", lightModel);
+        lightShader.setUniform("lightColor", lightColor.x, lightColor.y, lightColor.z,
+            lightColor.w);
 
         shader.activate();
-        glUniformMatrix4fv(glGetUniformLocation(shader.shaderProgram(), "model"), false,
-            pyramidModelBB);
-        glUniform4f(glGetUniformLocation(shader.shaderProgram(), "lightColor"), lightColor.x,
-            lightColor.y, lightColor.z, lightColor.w);
-        glUniform3f(glGetUniformLocation(shader.shaderProgram(), "lightPos"), lightPos.x,
-            lightPos.y, lightPos.z);
+        shader.setUniform("model", pyramidModel);
+        shader.setUniform("lightColor", lightColor.x, lightColor.y, lightColor.z, lightColor.w);
+        shader.setUniform("lightPos", lightPos.x, lightPos.y, lightPos.z);
 
         lightVao.bind();
         glDrawElements(GL_TRIANGLES, lightIndices.length, GL_UNSIGNED_INT, 0);
@@ -194,17 +178,7 @@ public class Scene implements IScene {
      * Renders the scene.
      */
     public void render() {
-
-        // Set uniforms
-        var camMatrix = camera
-            .matrixBuffer(45f, 0.1f, 100f);
-//            .rotateY((float) Math.toRadians(rotation));
         shader.activate();
-        var cameraPosition = camera.getPosition();
-        glUniform3f(glGetUniformLocation(shader.shaderProgram(), "camPos"), cameraPosition.x,
-            cameraPosition.y, cameraPosition.z);
-        var camMatrixLoc = glGetUniformLocation(shader.shaderProgram(), "camMatrix");
-        glUniformMatrix4fv(camMatrixLoc, false, camMatrix);
 
         // Bind texture and VAO
         texture.bind();
@@ -214,8 +188,6 @@ public class Scene implements IScene {
         glDrawElements(GL_TRIANGLES, indices.length, GL_UNSIGNED_INT, 0);
 
         lightShader.activate();
-        glUniformMatrix4fv(glGetUniformLocation(lightShader.shaderProgram(), "camMatrix"),
-            false, camMatrix);
         lightVao.bind();
         glDrawElements(GL_TRIANGLES, indices.length, GL_UNSIGNED_INT, 0);
     }
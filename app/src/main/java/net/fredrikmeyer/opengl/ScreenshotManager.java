@@ -1,17 +1,17 @@
 package net.fredrikmeyer.opengl;
 
-import static org.lwjgl.glfw.GLFW.glfwGetFramebufferSize;
 import static org.lwjgl.opengl.GL11.GL_RGBA;
 import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
 import static org.lwjgl.opengl.GL11.glReadPixels;
-import static org.lwjgl.stb.STBImageWrite.stbi_write_png;
-import static org.lwjgl.system.MemoryStack.stackPush;
 
-import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -19,10 +19,7 @@ import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import javax.imageio.stream.FileImageOutputStream;
-import javax.imageio.stream.ImageOutputStream;
-import org.lwjgl.BufferUtils;
-import org.lwjgl.system.MemoryStack;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Utility class for taking screenshots in OpenGL applications.
@@ -31,9 +28,23 @@ public class ScreenshotManager {
 
     private final String screenshotsDirectory;
     private boolean isRecording = false;
-    private List<BufferedImage> recordedFrames = new ArrayList<>();
+    // Top-down RGBA frames of a GIF recording that is not streamed, all of the first one's size
+    private List<ByteBuffer> recordedFrames = new ArrayList<>();
+    private int recordedWidth;
+    private int recordedHeight;
     private static final int FRAME_DELAY_MS = 50; // 20 frames per second
+    private static final int FRAMES_PER_SECOND = 1000 / FRAME_DELAY_MS;
+    private static final int PNG_SEQUENCE_BUFFERS = 3;
+    private static final int SCREENSHOT_BUFFERS = 2;
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final ImageFlipper imageFlipper = new ImageFlipper();
+    private final DirectBufferPool screenshotBuffers = new DirectBufferPool(SCREENSHOT_BUFFERS);
+    private final ParallelPngEncoder pngEncoder = new ParallelPngEncoder(ForkJoinPool.commonPool());
+    private final RecordingConfig recordingConfig;
+    private FrameReadback frameReadback;
+    private StreamingGifEncoder streamingEncoder;
+    private RecordingFormat recordingFormat;
+    private FrameRecorder frameRecorder;
 
     /**
      * Creates a new ScreenshotManager with the default screenshots directory.
@@ -48,7 +59,19 @@ public class ScreenshotManager {
      * @param screenshotsDirectory The directory where screenshots will be saved
      */
     public ScreenshotManager(String screenshotsDirectory) {
+        this(screenshotsDirectory, RecordingConfig.defaults());
+    }
+
+    /**
+     * Creates a new ScreenshotManager with a custom screenshots directory and recording settings.
+     *
+     * @param screenshotsDirectory The directory where screenshots will be saved
+     * @param recordingConfig      The settings used while recording
+     */
+    public ScreenshotManager(String screenshotsDirectory, RecordingConfig recordingConfig) {
         this.screenshotsDirectory = screenshotsDirectory;
+        this.recordingConfig = recordingConfig;
+        this.recordingFormat = recordingConfig.format();
 
         // Create the screenshots directory if it doesn't exist
         File directory = new File(screenshotsDirectory);
@@ -58,89 +81,140 @@ public class ScreenshotManager {
     }
 
     /**
-     * Takes a screenshot of the current window and saves it as a PNG file. The file is saved in the
-     * screenshots directory with a timestamp in the filename.
+     * Takes a screenshot of the current window and saves it as a PNG file asynchronously. The
+     * file is saved in the screenshots directory with a timestamp in the filename.
+     *
+     * <p>Only the readback happens on the calling thread. The pixels are handed over in a pooled
+     * buffer and compressed in parallel by a {@link ParallelPngEncoder}, so the window keeps
+     * rendering while the file is written. While every pooled buffer holds a screenshot that is
+     * still being written, another one is skipped rather than making the caller wait.
      *
-     * @param window The GLFW window handle
-     * @return The path to the saved screenshot file, or null if the screenshot failed
+     * <p>The size comes from {@link Window#getFramebufferWidth()}, not from GLFW, so this can be
+     * called from the thread that renders, which need not be the main thread.
+     *
+     * @param window The window whose framebuffer to save
+     * @return A CompletableFuture that will be completed with the path to the saved screenshot
+     * file, or null if the screenshot failed
      */
-    public String takeScreenshot(long window) {
-        try (MemoryStack stack = stackPush()) {
-            IntBuffer widthBuffer = stack.mallocInt(1);
-            IntBuffer heightBuffer = stack.mallocInt(1);
-
-            // Get framebuffer size (actual size of the window content)
-            glfwGetFramebufferSize(window, widthBuffer, heightBuffer);
-            int width = widthBuffer.get(0);
-            int height = heightBuffer.get(0);
-
-            // Create buffer to store pixel data
-            ByteBuffer buffer = BufferUtils.createByteBuffer(
-                width * height * 4); // 4 bytes per pixel (RGBA)
-
-            // Read pixels from framebuffer
+    public CompletableFuture<Path> takeScreenshot(Window window) {
+        ByteBuffer buffer = null;
+        // Framebuffer size (actual size of the window content)
+        int width = window.getFramebufferWidth();
+        int height = window.getFramebufferHeight();
+        try {
+            // Read pixels from framebuffer into a buffer the encoder releases when it is done
+            buffer = screenshotBuffers.tryAcquire(width * height * ImageFlipper.BYTES_PER_PIXEL);
+            if (buffer == null) {
+                System.err.println("Screenshot skipped: " + SCREENSHOT_BUFFERS
+                    + " screenshots are still being saved");
+                return CompletableFuture.completedFuture(null);
+            }
             glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
+        } catch (Exception e) {
+            if (buffer != null) {
+                screenshotBuffers.release(buffer);
+            }
+            System.err.println("Failed to take screenshot: " + e.getMessage());
+            e.printStackTrace();
+            return CompletableFuture.completedFuture(null);
+        }
 
-            // Create a new buffer for the flipped image
-            ByteBuffer flippedBuffer = BufferUtils.createByteBuffer(width * height * 4);
-
-            // Flip the image vertically (OpenGL reads from bottom-left, but images typically start from top-left)
-            for (int y = 0; y < height; y++) {
-                int srcRow = height - 1 - y;
-                for (int x = 0; x < width; x++) {
-                    int srcIndex = (srcRow * width + x) * 4;
-                    int dstIndex = (y * width + x) * 4;
-
-                    // Set position and copy RGBA values
-                    buffer.position(srcIndex);
-                    flippedBuffer.position(dstIndex);
+        // Generate filename with timestamp
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
+        String timestamp = dateFormat.format(new Date());
+        Path file = Path.of(screenshotsDirectory, "screenshot_" + timestamp + ".png");
+        ByteBuffer pixels = buffer;
 
-                    flippedBuffer.put(buffer.get());  // R
-                    flippedBuffer.put(buffer.get());  // G
-                    flippedBuffer.put(buffer.get());  // B
-                    flippedBuffer.put(buffer.get());  // A
-                }
+        return CompletableFuture.supplyAsync(() -> {
+            // The encoder flips the bottom-up rows itself while filtering them
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                pngEncoder.encode(pixels, width, height, out);
+                System.out.println("Screenshot saved to: " + file);
+                return file;
+            } catch (IOException e) {
+                System.err.println("Failed to save screenshot: " + e.getMessage());
+                e.printStackTrace();
+                return null;
+            } finally {
+                screenshotBuffers.release(pixels);
             }
+        }, ForkJoinPool.commonPool());
+    }
 
-            // Reset position to the beginning of buffer
-            flippedBuffer.position(0);
-
-            // Generate filename with timestamp
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
-            String timestamp = dateFormat.format(new Date());
-            String filename = screenshotsDirectory + "/screenshot_" + timestamp + ".png";
+    /**
+     * Sets the file format of the next recording. A recording in progress is not affected.
+     *
+     * @param recordingFormat the format to record in
+     */
+    public void setRecordingFormat(RecordingFormat recordingFormat) {
+        if (recordingFormat == null) {
+            throw new IllegalArgumentException("recordingFormat must not be null");
+        }
+        this.recordingFormat = recordingFormat;
+    }
 
-            // Save the flipped image
-            stbi_write_png(filename, width, height, 4, flippedBuffer, width * 4);
+    /**
+     * Returns the file format that recordings are written in.
+     *
+     * @return the recording format
+     */
+    public RecordingFormat getRecordingFormat() {
+        return recordingFormat;
+    }
 
-            System.out.println("Screenshot saved to: " + filename);
-            return filename;
-        } catch (Exception e) {
-            System.err.println("Failed to take screenshot: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+    /**
+     * Starts recording frames in the current recording format.
+     */
+    public void startRecording() {
+        if (isRecording) {
+            return;
         }
+        if (recordingFormat != RecordingFormat.GIF) {
+            startRecording(newFrameRecorder(recordingFormat));
+            return;
+        }
+        isRecording = true;
+        recordedFrames.clear();
+        if (recordingConfig.streaming()) {
+            streamingEncoder = StreamingGifEncoder.start(newAnimationFile(), FRAME_DELAY_MS,
+                recordingConfig.queueCapacity(), recordingConfig.backpressure(),
+                recordingConfig.dither(), recordingConfig.deltaFrames(),
+                executorService, ForkJoinPool.commonPool());
+        }
+        System.out.println("GIF recording started");
     }
 
     /**
-     * Starts recording frames for a GIF animation.
+     * Starts recording frames into the given recorder. Captured frames are handed to it straight
+     * from the readback buffer, on the OpenGL thread.
+     *
+     * @param recorder the recorder that writes the frames
      */
-    public void startRecording() {
+    public void startRecording(FrameRecorder recorder) {
         if (!isRecording) {
             isRecording = true;
-            recordedFrames.clear();
-            System.out.println("GIF recording started");
+            frameRecorder = recorder;
+            System.out.println("Recording started");
         }
     }
 
     /**
-     * Stops recording frames and saves the GIF animation asynchronously.
+     * Stops recording frames and saves the recording asynchronously.
      * 
-     * @return A CompletableFuture that will be completed with the path to the saved GIF file, or null if saving failed
+     * @return A CompletableFuture that will be completed with the path to the saved recording, or null if saving failed
      */
     public CompletableFuture<String> stopRecording() {
         if (isRecording) {
             isRecording = false;
+            releaseFrameReadback();
+            if (frameRecorder != null) {
+                System.out.println("Recording stopped, finishing the written frames");
+                return finishFrameRecorder();
+            }
+            if (streamingEncoder != null) {
+                System.out.println("GIF recording stopped, finishing streamed animation");
+                return finishStreaming();
+            }
             System.out.println("GIF recording stopped, saving " + recordedFrames.size() + " frames asynchronously");
             return saveGifAsync();
         }
@@ -148,53 +222,25 @@ public class ScreenshotManager {
     }
 
     /**
-     * Captures a frame for the GIF animation if recording is active.
-     * 
-     * @param window The GLFW window handle
+     * Captures a frame for the recording if recording is active. With asynchronous readback
+     * (see {@link RecordingConfig#readbackRingDepth()}) this only starts the transfer; the frame
+     * is added to the recording a few frames later, or when recording stops.
+     *
+     * @param window The window whose framebuffer to capture
      */
-    public void captureFrame(long window) {
+    public void captureFrame(Window window) {
         if (isRecording) {
-            try (MemoryStack stack = stackPush()) {
-                IntBuffer widthBuffer = stack.mallocInt(1);
-                IntBuffer heightBuffer = stack.mallocInt(1);
-
-                // Get framebuffer size
-                glfwGetFramebufferSize(window, widthBuffer, heightBuffer);
-                int width = widthBuffer.get(0);
-                int height = heightBuffer.get(0);
-
-                // Create buffer to store pixel data
-                ByteBuffer buffer = BufferUtils.createByteBuffer(width * height * 4);
-
-                // Read pixels from framebuffer
-                glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
-
-                // Create a BufferedImage
-                BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-
-                // Flip the image vertically and copy pixel data
-                for (int y = 0; y < height; y++) {
-                    int srcRow = height - 1 - y;
-                    for (int x = 0; x < width; x++) {
-                        int srcIndex = (srcRow * width + x) * 4;
-
-                        // Set position and get RGBA values
-                        buffer.position(srcIndex);
-                        int r = buffer.get() & 0xFF;
-                        int g = buffer.get() & 0xFF;
-                        int b = buffer.get() & 0xFF;
-                        int a = buffer.get() & 0xFF;
-
-                        // Pack RGBA into a single int
-                        int rgba = (a << 24) | (r << 16) | (g << 8) | b;
-
-                        // Set pixel in the BufferedImage
-                        image.setRGB(x, y, rgba);
-                    }
-                }
+            try {
+                int width = window.getFramebufferWidth();
+                int height = window.getFramebufferHeight();
 
-                // Add the frame to the list
-                recordedFrames.add(image);
+                // Start the readback; the frame is added once its pixels are available
+                if (frameReadback == null) {
+                    frameReadback = new FrameReadback(recordingConfig.readbackRingDepth(),
+                        imageFlipper);
+                }
+                frameReadback.capture(width, height,
+                    frameRecorder != null ? frameRecorder : this::addRecordedFrame);
             } catch (Exception e) {
                 System.err.println("Failed to capture frame: " + e.getMessage());
                 e.printStackTrace();
@@ -202,6 +248,84 @@ public class ScreenshotManager {
         }
     }
 
+    /**
+     * Adds a bottom-up RGBA frame to the recording. Its rows are flipped into a buffer the GIF
+     * encoder reads as it is, taken from the streaming encoder's spare buffers when streaming.
+     */
+    private void addRecordedFrame(ByteBuffer pixels, int width, int height) {
+        int rowBytes = width * ImageFlipper.BYTES_PER_PIXEL;
+        if (streamingEncoder != null) {
+            ByteBuffer frame = streamingEncoder.frameBuffer(width, height);
+            ImageFlipper.flipRows(pixels, frame, rowBytes, height);
+            streamingEncoder.submit(frame, width, height);
+            return;
+        }
+        if (recordedFrames.isEmpty()) {
+            recordedWidth = width;
+            recordedHeight = height;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(rowBytes * height);
+        ImageFlipper.flipRows(pixels, frame, rowBytes, height);
+        recordedFrames.add(frame);
+    }
+
+    /**
+     * Tells the streaming encoder that the recording is complete.
+     *
+     * @return a future completed with the path to the GIF file once the queued frames are written
+     */
+    private CompletableFuture<String> finishStreaming() {
+        CompletableFuture<String> result = streamingEncoder.finish();
+        streamingEncoder = null;
+        return result;
+    }
+
+    /**
+     * Tells the frame recorder that the recording is complete.
+     *
+     * @return a future completed with the path to the recording once it is written
+     */
+    private CompletableFuture<String> finishFrameRecorder() {
+        CompletableFuture<String> result = frameRecorder.finish();
+        frameRecorder = null;
+        return result;
+    }
+
+    /**
+     * Creates the recorder for a recording in the given format, named after the current time.
+     */
+    private FrameRecorder newFrameRecorder(RecordingFormat format) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
+        String baseName = screenshotsDirectory + "/recording_" + dateFormat.format(new Date());
+        return switch (format) {
+            case Y4M -> new Y4mFrameRecorder(Path.of(baseName + ".y4m"), FRAMES_PER_SECOND);
+            case RAW_RGBA -> new RawFrameRecorder(Path.of(baseName), FRAMES_PER_SECOND);
+            case PNG_SEQUENCE -> new PngSequenceRecorder(Path.of(baseName), executorService,
+                PNG_SEQUENCE_BUFFERS);
+            case GIF -> throw new IllegalArgumentException("GIF recordings have no FrameRecorder");
+        };
+    }
+
+    /**
+     * Returns a new timestamped file in the screenshots directory for a GIF animation.
+     */
+    private File newAnimationFile() {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
+        String timestamp = dateFormat.format(new Date());
+        return new File(screenshotsDirectory + "/animation_" + timestamp + ".gif");
+    }
+
+    /**
+     * Delivers the frames still in flight and frees the pixel buffer objects. Must be called on
+     * the OpenGL thread.
+     */
+    private void releaseFrameReadback() {
+        if (frameReadback != null) {
+            frameReadback.cleanup();
+            frameReadback = null;
+        }
+    }
+
     /**
      * Saves the recorded frames as a GIF animation.
      * 
@@ -221,25 +345,25 @@ public class ScreenshotManager {
 
             // Create output stream
             File outputFile = new File(filename);
-            ImageOutputStream outputStream = new FileImageOutputStream(outputFile);
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(outputFile));
 
-            // Get dimensions from the first frame
-            BufferedImage firstFrame = recordedFrames.get(0);
-
-            // Create GIF writer
-            GifSequenceWriter gifWriter = new GifSequenceWriter(
+            // Create GIF encoder, with a palette for all the frames
+            GifEncoder gifEncoder = new GifEncoder(
                     outputStream,
-                    firstFrame.getType(),
                     FRAME_DELAY_MS,
-                    true);  // Loop continuously
+                    true,  // Loop continuously
+                    recordingConfig.dither(),
+                    recordingConfig.deltaFrames(),
+                    GifEncoder.paletteOf(recordedFrames, recordedWidth * recordedHeight,
+                        recordingConfig.deltaFrames()));
 
             // Write all frames
-            for (BufferedImage frame : recordedFrames) {
-                gifWriter.writeToSequence(frame);
+            for (ByteBuffer frame : recordedFrames) {
+                gifEncoder.writeFrame(frame, recordedWidth, recordedHeight);
             }
 
-            // Close the writer
-            gifWriter.close();
+            // Finish the animation
+            gifEncoder.finish();
             outputStream.close();
 
             System.out.println("GIF animation saved to: " + filename);
@@ -252,7 +376,8 @@ public class ScreenshotManager {
     }
 
     /**
-     * Saves the recorded frames as a GIF animation asynchronously.
+     * Saves the recorded frames as a GIF animation asynchronously. Frames are compressed in
+     * parallel by a {@link ParallelGifEncoder}.
      * 
      * @return A CompletableFuture that will be completed with the path to the saved GIF file, or null if saving failed
      */
@@ -263,7 +388,9 @@ public class ScreenshotManager {
         }
 
         // Create a copy of the frames to avoid concurrent modification
-        final List<BufferedImage> framesCopy = new ArrayList<>(recordedFrames);
+        final List<ByteBuffer> framesCopy = new ArrayList<>(recordedFrames);
+        final int width = recordedWidth;
+        final int height = recordedHeight;
 
         // Submit the task to the executor service
         return CompletableFuture.supplyAsync(() -> {
@@ -275,27 +402,20 @@ public class ScreenshotManager {
 
                 // Create output stream
                 File outputFile = new File(filename);
-                ImageOutputStream outputStream = new FileImageOutputStream(outputFile);
-
-                // Get dimensions from the first frame
-                BufferedImage firstFrame = framesCopy.get(0);
+                OutputStream outputStream =
+                        new BufferedOutputStream(new FileOutputStream(outputFile));
 
-                // Create GIF writer
-                GifSequenceWriter gifWriter = new GifSequenceWriter(
-                        outputStream,
-                        firstFrame.getType(),
+                // Compress frames on the fork-join pool; this thread writes them in order
+                ParallelGifEncoder gifEncoder = new ParallelGifEncoder(
+                        ForkJoinPool.commonPool(),
                         FRAME_DELAY_MS,
-                        true);  // Loop continuously
-
-                // Write all frames
-                for (BufferedImage frame : framesCopy) {
-                    gifWriter.writeToSequence(frame);
+                        true,  // Loop continuously
+                        recordingConfig.dither(),
+                        recordingConfig.deltaFrames());
+                try (outputStream) {
+                    gifEncoder.encode(framesCopy, width, height, outputStream);
                 }
 
-                // Close the writer
-                gifWriter.close();
-                outputStream.close();
-
                 System.out.println("GIF animation saved to: " + filename);
                 return filename;
             } catch (IOException e) {
@@ -317,9 +437,18 @@ public class ScreenshotManager {
 
     /**
      * Cleans up resources used by the ScreenshotManager.
-     * This should be called when the application is shutting down.
+     * This should be called when the application is shutting down, on the OpenGL thread before
+     * the window is destroyed, as a recording in progress is stopped like
+     * {@link #stopRecording()}: its frames still being read back are added and saved.
      */
     public void cleanup() {
+        // Deliver the frames in flight, free the pixel buffer objects and let the encoder write
+        // what it has, so the executor can shut down
+        if (isRecording) {
+            stopRecording();
+        }
+        // Let screenshots that are still being written finish
+        screenshotBuffers.awaitReleased();
         executorService.shutdown();
     }
 }
@@ -1,5 +1,10 @@
 package net.fredrikmeyer.opengl;
 
+import static org.lwjgl.opengl.GL11.GL_FALSE;
+import static org.lwjgl.opengl.GL11.GL_TRUE;
+import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL20.GL_ACTIVE_UNIFORMS;
+import static org.lwjgl.opengl.GL20.GL_CURRENT_PROGRAM;
 import static org.lwjgl.opengl.GL20.GL_FRAGMENT_SHADER;
 import static org.lwjgl.opengl.GL20.GL_LINK_STATUS;
 import static org.lwjgl.opengl.GL20.GL_VERTEX_SHADER;
@@ -9,19 +14,117 @@ import static org.lwjgl.opengl.GL20.glCreateProgram;
 import static org.lwjgl.opengl.GL20.glCreateShader;
 import static org.lwjgl.opengl.GL20.glDeleteProgram;
 import static org.lwjgl.opengl.GL20.glDeleteShader;
+import static org.lwjgl.opengl.GL20.glGetActiveUniform;
 import static org.lwjgl.opengl.GL20.glGetProgrami;
+import static org.lwjgl.opengl.GL20.glGetUniformLocation;
 import static org.lwjgl.opengl.GL20.glLinkProgram;
 import static org.lwjgl.opengl.GL20.glShaderSource;
+import static org.lwjgl.opengl.GL20.glUniform1f;
+import static org.lwjgl.opengl.GL20.glUniform1i;
+import static org.lwjgl.opengl.GL20.glUniform2f;
+import static org.lwjgl.opengl.GL20.glUniform3f;
+import static org.lwjgl.opengl.GL20.glUniform4f;
+import static org.lwjgl.opengl.GL20.glUniformMatrix4fv;
 import static org.lwjgl.opengl.GL20.glUseProgram;
+import static org.lwjgl.opengl.GL31.GL_INVALID_INDEX;
+import static org.lwjgl.opengl.GL31.glGetUniformBlockIndex;
+import static org.lwjgl.opengl.GL31.glUniformBlockBinding;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT;
+import static org.lwjgl.opengl.GL41.glProgramParameteri;
+import static org.lwjgl.opengl.KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR;
+import static org.lwjgl.opengl.KHRParallelShaderCompile.glMaxShaderCompilerThreadsKHR;
 
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import org.joml.Matrix4f;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
+import org.lwjgl.system.MemoryStack;
 
+/**
+ * A linked program of a vertex and a fragment shader.
+ *
+ * <p>The active uniforms are looked up once after linking, and the {@code setUniform} methods set
+ * them by name. Each setter remembers the value it set and skips the OpenGL call when the uniform
+ * already has it, so scenes can set every uniform every frame without paying for the ones that
+ * did not change. Names the program has no active uniform for are ignored, like location -1 is by
+ * {@code glUniform}, since the compiler drops uniforms the shaders do not use. The setters apply
+ * to the program in use, so call {@link #activate()} first.
+ *
+ * <p>A uniform block named {@value FrameUniforms#BLOCK_NAME} is bound to the buffer of
+ * {@link FrameUniforms}, which holds the camera and frame state.
+ *
+ * <p>With a {@link #setProgramCache(ProgramBinaryCache) program cache}, a program linked in an
+ * earlier run is loaded as a binary instead of being compiled again, and the time each program
+ * took is printed so the two can be compared.
+ *
+ * <p>The program can be {@link #reload(String, String) reloaded} from new sources while the
+ * application runs, as a {@link ShaderWatcher} does when the sources are edited.
+ */
 public class Shader {
 
-    private final int shaderProgram;
+    private static volatile ProgramBinaryCache programCache;
+
+    // The objects of a program that may still be compiling
+    private record PendingProgram(int program, int vertexShader, int fragmentShader) {
+    }
+
+    private int shaderProgram;
+    private UniformCache uniforms;
+    private final FloatBuffer matrixBuffer = BufferUtils.createFloatBuffer(16);
+    private PendingProgram reloading;
+    // Counts the programs that replaced the first one
+    private long version = 0;
 
     public Shader(String vertexShader, String fragmentShader) {
+        shaderProgram = createProgram(vertexShader, fragmentShader);
+        uniforms = activeUniforms(shaderProgram);
+        bindFrameBlock(shaderProgram);
+    }
+
+    /**
+     * Sets the cache that shaders created afterwards load their programs from, and store the
+     * programs they had to compile in.
+     *
+     * @param cache the cache, or null to always compile
+     */
+    public static void setProgramCache(ProgramBinaryCache cache) {
+        programCache = cache;
+    }
+
+    private static int createProgram(String vertexShader, String fragmentShader) {
+        ProgramBinaryCache cache = programCache;
+        boolean cached = cache != null && cache.isSupported();
+        long start = System.nanoTime();
+        int program = cached ? cache.load(vertexShader, fragmentShader) : 0;
+        boolean loaded = program != 0;
+        if (!loaded) {
+            program = compileProgram(vertexShader, fragmentShader, cached);
+        }
+        if (cached) {
+            if (!loaded) {
+                cache.store(vertexShader, fragmentShader, program);
+            }
+            System.out.printf(Locale.ROOT, "%s shader program in %.1f ms%n",
+                loaded ? "Loaded cached" : "Compiled and cached",
+                (System.nanoTime() - start) / 1e6);
+        }
+        return program;
+    }
+
+    private static int compileProgram(String vertexShader, String fragmentShader,
+        boolean retrievable) {
+        return finishProgram(startProgram(vertexShader, fragmentShader, retrievable));
+    }
+
+    // Compiles and links without asking for the results, so a driver may do both in the background
+    private static PendingProgram startProgram(String vertexShader, String fragmentShader,
+        boolean retrievable) {
         var vertexShaderId = glCreateShader(GL_VERTEX_SHADER);
         glShaderSource(vertexShaderId, vertexShader);
         glCompileShader(vertexShaderId);
@@ -30,11 +133,37 @@ public class Shader {
         glShaderSource(fragmentShaderId, fragmentShader);
         glCompileShader(fragmentShaderId);
 
-        shaderProgram = glCreateProgram();
+        int shaderProgram = glCreateProgram();
         glAttachShader(shaderProgram, vertexShaderId);
         glAttachShader(shaderProgram, fragmentShaderId);
+        if (retrievable) {
+            // Some drivers only keep a binary of programs that ask for one before linking
+            glProgramParameteri(shaderProgram, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+        }
         glLinkProgram(shaderProgram);
+        return new PendingProgram(shaderProgram, vertexShaderId, fragmentShaderId);
+    }
 
+    // Returns the linked program, or throws after deleting it if it failed to compile or link
+    private static int finishProgram(PendingProgram pending) {
+        int shaderProgram = pending.program();
+        int vertexShaderId = pending.vertexShader();
+        int fragmentShaderId = pending.fragmentShader();
+        try {
+            checkProgram(shaderProgram, vertexShaderId, fragmentShaderId);
+        } catch (RuntimeException e) {
+            glDeleteProgram(shaderProgram);
+            throw e;
+        } finally {
+            // Delete the now useless Vertex and Fragment Shader objects
+            glDeleteShader(vertexShaderId);
+            glDeleteShader(fragmentShaderId);
+        }
+        return shaderProgram;
+    }
+
+    private static void checkProgram(int shaderProgram, int vertexShaderId,
+        int fragmentShaderId) {
         int resultFrag = GL30.glGetShaderi(fragmentShaderId, GL20.GL_COMPILE_STATUS);
         if (resultFrag == GL20.GL_FALSE) {
             String logFrag = GL30.glGetShaderInfoLog(fragmentShaderId);
@@ -52,10 +181,155 @@ public class Shader {
             String log = GL30.glGetProgramInfoLog(shaderProgram);
             throw new RuntimeException("Failed to link program: " + log);
         }
+    }
+
+    private static UniformCache activeUniforms(int program) {
+        int count = glGetProgrami(program, GL_ACTIVE_UNIFORMS);
+        String[] names = new String[count];
+        int[] locations = new int[count];
+        int found = 0;
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer size = stack.mallocInt(1);
+            IntBuffer type = stack.mallocInt(1);
+            for (int i = 0; i < count; i++) {
+                String name = glGetActiveUniform(program, i, size, type);
+                // Arrays are reported by their first element, and set by their name
+                if (name.endsWith("[0]")) {
+                    name = name.substring(0, name.length() - 3);
+                }
+                int location = glGetUniformLocation(program, name);
+                // Members of uniform blocks have no location, and are set through their buffer
+                if (location >= 0) {
+                    names[found] = name;
+                    locations[found] = location;
+                    found++;
+                }
+            }
+        }
+        return new UniformCache(Arrays.copyOf(names, found), Arrays.copyOf(locations, found));
+    }
+
+    private static void bindFrameBlock(int program) {
+        int block = glGetUniformBlockIndex(program, FrameUniforms.BLOCK_NAME);
+        if (block != GL_INVALID_INDEX) {
+            glUniformBlockBinding(program, block, FrameUniforms.BINDING);
+        }
+    }
 
-        // Delete the now useless Vertex and Fragment Shader objects
-        glDeleteShader(vertexShaderId);
-        glDeleteShader(fragmentShaderId);
+    /**
+     * Starts replacing the program with one of new sources, for example after they were edited.
+     * Where the driver has {@code KHR_parallel_shader_compile}, the new program is compiled in
+     * the background; otherwise this compiles it at once. Either way the shader keeps using the
+     * current program until {@link #finishReload()} finds the new one ready. Replaces a reload
+     * that has not finished yet.
+     *
+     * @param vertexShader   the new vertex shader source
+     * @param fragmentShader the new fragment shader source
+     */
+    public void reload(String vertexShader, String fragmentShader) {
+        if (reloading != null) {
+            discard(reloading);
+        }
+        GLCapabilities capabilities = GL.getCapabilities();
+        if (capabilities.GL_KHR_parallel_shader_compile) {
+            // Let the driver use as many threads as it likes
+            glMaxShaderCompilerThreadsKHR(0xFFFFFFFF);
+        }
+        reloading = startProgram(vertexShader, fragmentShader, false);
+    }
+
+    /**
+     * Swaps in the program of the last {@link #reload}, if it has finished compiling and links.
+     * The new program gets the uniform values set on the old one, and the old one is deleted. A
+     * program that fails to compile or link is deleted and the error printed, and the old one
+     * stays in use.
+     *
+     * @return true if the program was replaced
+     */
+    public boolean finishReload() {
+        if (reloading == null) {
+            return false;
+        }
+        if (GL.getCapabilities().GL_KHR_parallel_shader_compile
+            && glGetProgrami(reloading.program(), GL_COMPLETION_STATUS_KHR) == GL_FALSE) {
+            return false;
+        }
+        PendingProgram pending = reloading;
+        reloading = null;
+        int program;
+        try {
+            program = finishProgram(pending);
+        } catch (RuntimeException e) {
+            System.err.println("Keeping the previous shader program: " + e.getMessage());
+            return false;
+        }
+
+        UniformCache programUniforms = activeUniforms(program);
+        bindFrameBlock(program);
+        int current = glGetInteger(GL_CURRENT_PROGRAM);
+        glUseProgram(program);
+        inheritUniforms(programUniforms);
+        glUseProgram(current == shaderProgram ? program : current);
+        glDeleteProgram(shaderProgram);
+        shaderProgram = program;
+        uniforms = programUniforms;
+        version++;
+        return true;
+    }
+
+    /**
+     * Checks whether a {@link #reload} has not finished yet.
+     *
+     * @return true while a new program is compiling
+     */
+    public boolean isReloading() {
+        return reloading != null;
+    }
+
+    /**
+     * Gets a number that changes whenever a reload replaces the program, so a scene can tell
+     * when images it kept from earlier frames are out of date.
+     *
+     * @return the current version of the program
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    // Sets the values of the current uniforms on the program in use, which has the given ones
+    private void inheritUniforms(UniformCache target) {
+        for (int slot = 0; slot < uniforms.size(); slot++) {
+            int targetSlot = target.slot(uniforms.name(slot));
+            if (uniforms.components(slot) == 0 || targetSlot < 0
+                || !target.copy(targetSlot, uniforms, slot)) {
+                continue;
+            }
+            int location = target.location(targetSlot);
+            switch (target.components(targetSlot)) {
+                case -1 -> glUniform1i(location,
+                    Float.floatToRawIntBits(target.value(targetSlot, 0)));
+                case 1 -> glUniform1f(location, target.value(targetSlot, 0));
+                case 2 -> glUniform2f(location, target.value(targetSlot, 0),
+                    target.value(targetSlot, 1));
+                case 3 -> glUniform3f(location, target.value(targetSlot, 0),
+                    target.value(targetSlot, 1), target.value(targetSlot, 2));
+                case 4 -> glUniform4f(location, target.value(targetSlot, 0),
+                    target.value(targetSlot, 1), target.value(targetSlot, 2),
+                    target.value(targetSlot, 3));
+                default -> {
+                    for (int i = 0; i < 16; i++) {
+                        matrixBuffer.put(i, target.value(targetSlot, i));
+                    }
+                    glUniformMatrix4fv(location, false, matrixBuffer);
+                }
+            }
+        }
+    }
+
+    private static void discard(PendingProgram pending) {
+        glDeleteShader(pending.vertexShader());
+        glDeleteShader(pending.fragmentShader());
+        glDeleteProgram(pending.program());
     }
 
     public int shaderProgram() {
@@ -66,7 +340,106 @@ public class Shader {
         glUseProgram(shaderProgram);
     }
 
+    /**
+     * Gets the location of an active uniform, looked up when the program was linked.
+     *
+     * @param name the uniform name
+     * @return the location, or -1 if the program has no active uniform by that name
+     */
+    public int uniformLocation(String name) {
+        int slot = uniforms.slot(name);
+        return slot >= 0 ? uniforms.location(slot) : -1;
+    }
+
+    /**
+     * Sets a {@code float} uniform, unless it already has the value.
+     *
+     * @param name the uniform name
+     * @param x    the value
+     */
+    public void setUniform(String name, float x) {
+        int slot = uniforms.slot(name);
+        if (slot >= 0 && uniforms.update(slot, x)) {
+            glUniform1f(uniforms.location(slot), x);
+        }
+    }
+
+    /**
+     * Sets a {@code vec2} uniform, unless it already has the value.
+     *
+     * @param name the uniform name
+     * @param x    the first component
+     * @param y    the second component
+     */
+    public void setUniform(String name, float x, float y) {
+        int slot = uniforms.slot(name);
+        if (slot >= 0 && uniforms.update(slot, x, y)) {
+            glUniform2f(uniforms.location(slot), x, y);
+        }
+    }
+
+    /**
+     * Sets a {@code vec3} uniform, unless it already has the value.
+     *
+     * @param name the uniform name
+     * @param x    the first component
+     * @param y    the second component
+     * @param z    the third component
+     */
+    public void setUniform(String name, float x, float y, float z) {
+        int slot = uniforms.slot(name);
+        if (slot >= 0 && uniforms.update(slot, x, y, z)) {
+            glUniform3f(uniforms.location(slot), x, y, z);
+        }
+    }
+
+    /**
+     * Sets a {@code vec4} uniform, unless it already has the value.
+     *
+     * @param name the uniform name
+     * @param x    the first component
+     * @param y    the second component
+     * @param z    the third component
+     * @param w    the fourth component
+     */
+    public void setUniform(String name, float x, float y, float z, float w) {
+        int slot = uniforms.slot(name);
+        if (slot >= 0 && uniforms.update(slot, x, y, z, w)) {
+            glUniform4f(uniforms.location(slot), x, y, z, w);
+        }
+    }
+
+    /**
+     * Sets an {@code int}, {@code bool} or sampler uniform, unless it already has the value.
+     *
+     * @param name  the uniform name
+     * @param value the value, or the texture unit of a sampler
+     */
+    public void setUniform(String name, int value) {
+        int slot = uniforms.slot(name);
+        if (slot >= 0 && uniforms.update(slot, value)) {
+            glUniform1i(uniforms.location(slot), value);
+        }
+    }
+
+    /**
+     * Sets a {@code mat4} uniform, unless it already has the value.
+     *
+     * @param name   the uniform name
+     * @param matrix the matrix
+     */
+    public void setUniform(String name, Matrix4f matrix) {
+        int slot = uniforms.slot(name);
+        if (slot >= 0 && uniforms.update(slot, matrix)) {
+            glUniformMatrix4fv(uniforms.location(slot), false, matrix.get(matrixBuffer));
+        }
+    }
+
     public void delete() {
+        if (reloading != null) {
+            discard(reloading);
+            reloading = null;
+        }
         glDeleteProgram(shaderProgram);
     }
 
@@ -0,0 +1,125 @@
+package net.fredrikmeyer.opengl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Expands GLSL sources before they are compiled: resolves {@code #include} directives and
+ * defines macros, so that shaders can share code and be specialized at compile time.
+ *
+ * <p>{@code #include "path"} is replaced by the source of another resource, whose path is given
+ * from the resource root like any other resource name. Each file is included at most once, so
+ * shared files need no include guards and including a file from itself does nothing. The macros
+ * are defined right after the {@code #version} line, in order of their names, so a source can
+ * give defaults with {@code #ifndef}.
+ *
+ * <p>Each file is its own source string in compile errors: after the macros and around each
+ * included file, {@code #line} directives number the files in the order they were first
+ * included, starting with 0 for the file that was processed.
+ */
+public final class ShaderPreprocessor {
+
+    private static final String INCLUDE = "#include";
+    private static final String VERSION = "#version";
+
+    /**
+     * An expanded source.
+     *
+     * @param text  the source to compile
+     * @param files the names of the files it was expanded from, in order of their source string
+     *              numbers
+     */
+    public record Source(String text, List<String> files) {
+    }
+
+    private final Function<String, String> sources;
+
+    /**
+     * Creates a preprocessor.
+     *
+     * @param sources looks up the source of a file by name
+     */
+    public ShaderPreprocessor(Function<String, String> sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * Expands a source.
+     *
+     * @param name    the name of the file
+     * @param defines the macros to define, by name, each with its replacement text
+     * @return the expanded source
+     * @throws IllegalArgumentException if an include is malformed or an included file has a
+     *                                  {@code #version}
+     */
+    public Source process(String name, Map<String, String> defines) {
+        List<String> files = new ArrayList<>();
+        files.add(name);
+        StringBuilder text = new StringBuilder();
+        String[] lines = sources.apply(name).split("\\R", -1);
+
+        int first = 0;
+        while (first < lines.length && lines[first].isBlank()) {
+            first++;
+        }
+        boolean versioned = first < lines.length && lines[first].trim().startsWith(VERSION);
+        int body = versioned ? first + 1 : 0;
+        if (versioned) {
+            for (int i = 0; i <= first; i++) {
+                text.append(lines[i]).append('\n');
+            }
+        }
+        if (!defines.isEmpty()) {
+            new TreeMap<>(defines).forEach((macro, value) ->
+                text.append("#define ").append(macro).append(' ').append(value).append('\n'));
+            text.append("#line ").append(body + 1).append(" 0\n");
+        }
+        append(text, name, lines, body, files);
+        return new Source(text.toString(), List.copyOf(files));
+    }
+
+    private void append(StringBuilder text, String name, String[] lines, int start,
+        List<String> files) {
+        int sourceNumber = files.indexOf(name);
+        for (int i = start; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (sourceNumber > 0 && line.startsWith(VERSION)) {
+                throw new IllegalArgumentException(
+                    "Included file " + name + " must not have a " + VERSION);
+            }
+            if (!line.startsWith(INCLUDE)) {
+                text.append(lines[i]);
+            } else {
+                String included = includedName(line, name, i + 1);
+                // A file included before leaves an empty line, which keeps the line numbers of
+                // the rest of the file
+                if (!files.contains(included)) {
+                    files.add(included);
+                    text.append("#line 1 ").append(files.size() - 1).append('\n');
+                    append(text, included, sources.apply(included).split("\\R", -1), 0, files);
+                    if (text.charAt(text.length() - 1) != '\n') {
+                        text.append('\n');
+                    }
+                    text.append("#line ").append(i + 2).append(' ').append(sourceNumber);
+                }
+            }
+            // The last line ends the file as it did, with or without a line break
+            if (i < lines.length - 1) {
+                text.append('\n');
+            }
+        }
+    }
+
+    private static String includedName(String line, String file, int lineNumber) {
+        String argument = line.substring(INCLUDE.length()).trim();
+        if (argument.length() < 3 || argument.charAt(0) != '"'
+            || argument.indexOf('"', 1) != argument.length() - 1) {
+            throw new IllegalArgumentException(
+                "Malformed " + INCLUDE + " in " + file + " line " + lineNumber + ": " + line);
+        }
+        return argument.substring(1, argument.length() - 1);
+    }
+}
@@ -0,0 +1,76 @@
+package net.fredrikmeyer.opengl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The variants of a shader, each compiled from the same sources with other macros defined.
+ *
+ * <p>Specializing a shader at compile time takes branches on uniforms that are the same for
+ * every pixel, such as whether the scene rotates, out of the fragment shader's inner loops. A
+ * variant is compiled the first time it is asked for and kept until {@link #delete()}, so
+ * switching back and forth between variants costs nothing after the first switch.
+ *
+ * <p>Each variant is a {@link Shader} of its own, with its own uniform values, so a scene that
+ * switches variants must set the uniforms on the one it uses. All methods must be called on the
+ * thread that owns the OpenGL context.
+ */
+public final class ShaderVariants {
+
+    private final ResourceLoader loader;
+    private final String vertexShader;
+    private final String fragmentShader;
+    private final Map<Map<String, String>, Shader> variants = new HashMap<>();
+    private ShaderWatcher watcher;
+
+    /**
+     * Creates the variants of a shader, none of which is compiled yet.
+     *
+     * @param loader         the loader of the sources
+     * @param vertexShader   the resource name of the vertex shader source
+     * @param fragmentShader the resource name of the fragment shader source
+     */
+    public ShaderVariants(ResourceLoader loader, String vertexShader, String fragmentShader) {
+        this.loader = loader;
+        this.vertexShader = vertexShader;
+        this.fragmentShader = fragmentShader;
+    }
+
+    /**
+     * Gets the variant with some macros defined, compiling it if it was not used before.
+     *
+     * @param defines the macros to define, by name, each with its replacement text
+     * @return the variant
+     */
+    public Shader get(Map<String, String> defines) {
+        Shader shader = variants.get(defines);
+        if (shader == null) {
+            Map<String, String> key = Map.copyOf(defines);
+            shader = loader.loadShader(vertexShader, fragmentShader, key);
+            variants.put(key, shader);
+            if (watcher != null) {
+                watcher.watch(shader, vertexShader, fragmentShader, key);
+            }
+        }
+        return shader;
+    }
+
+    /**
+     * Reloads every variant, including those compiled later, whenever the sources are edited.
+     *
+     * @param watcher the watcher of the shader sources
+     */
+    public void watch(ShaderWatcher watcher) {
+        this.watcher = watcher;
+        variants.forEach((defines, shader) ->
+            watcher.watch(shader, vertexShader, fragmentShader, defines));
+    }
+
+    /**
+     * Deletes the variants that were compiled.
+     */
+    public void delete() {
+        variants.values().forEach(Shader::delete);
+        variants.clear();
+    }
+}
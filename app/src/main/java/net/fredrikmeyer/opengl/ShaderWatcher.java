@@ -0,0 +1,320 @@
+package net.fredrikmeyer.opengl;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads shaders when their GLSL sources are edited, so that a shader can be tuned without
+ * restarting the application.
+ *
+ * <p>A background thread watches the directories of the {@link #watch watched} sources, and of
+ * the files they include, with a {@link WatchService}. When a file changes, it waits for the
+ * editor to finish writing, preprocesses the sources of every shader that uses it as the
+ * {@link ResourceLoader} does, and queues them. {@link #update()}, called on the
+ * render thread, starts a {@link Shader#reload reload} of each queued shader and swaps in the
+ * programs that are ready, so the frame never waits for a compile where the driver can compile
+ * in the background. A source with errors leaves the previous program running.
+ *
+ * <p>The sources are read from a source tree on disk rather than from the classpath, which only
+ * has copies of them.
+ */
+public final class ShaderWatcher implements AutoCloseable {
+
+    /**
+     * The directory of the shader sources, relative to the project directory the applications
+     * run in.
+     */
+    public static final String DEFAULT_SOURCE_DIRECTORY = "src/main/resources";
+
+    // How long the sources must stay unchanged before they are read, as editors often write a
+    // file in several steps
+    private static final long SETTLE_MILLIS = 100;
+
+    // A watched shader, and the files its sources were last expanded from
+    private static final class Registration {
+        final Shader shader;
+        final String vertexShader;
+        final String fragmentShader;
+        final Map<String, String> defines;
+        volatile Set<Path> files;
+
+        Registration(Shader shader, String vertexShader, String fragmentShader,
+            Map<String, String> defines) {
+            this.shader = shader;
+            this.vertexShader = vertexShader;
+            this.fragmentShader = fragmentShader;
+            this.defines = defines;
+        }
+    }
+
+    /**
+     * New sources of a shader, read after one of them changed.
+     *
+     * @param shader         the shader
+     * @param name           the sources' names, for messages
+     * @param vertexShader   the vertex shader source
+     * @param fragmentShader the fragment shader source
+     */
+    record Reload(Shader shader, String name, String vertexShader, String fragmentShader) {
+    }
+
+    private final Path sourceDirectory;
+    private final ShaderPreprocessor preprocessor;
+    private final WatchService watchService;
+    private final Thread thread;
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+    private final Set<Path> watchedDirectories = new HashSet<>();
+    private final BlockingQueue<Reload> reloads = new LinkedBlockingQueue<>();
+    // The shaders whose new program is compiling, only used on the render thread
+    private final List<Reload> compiling = new ArrayList<>();
+    private volatile Runnable changeListener = () -> {
+    };
+
+    private ShaderWatcher(Path sourceDirectory, WatchService watchService) {
+        this.sourceDirectory = sourceDirectory;
+        this.preprocessor = new ShaderPreprocessor(name -> read(sourceDirectory, name));
+        this.watchService = watchService;
+        this.thread = new Thread(this::watchLoop, "shader-watcher");
+    }
+
+    /**
+     * Starts watching sources in a directory.
+     *
+     * @param sourceDirectory the directory that shader resource names are resolved against
+     * @return the watcher, which must be {@link #close() closed}
+     * @throws UncheckedIOException if the file system cannot be watched
+     */
+    public static ShaderWatcher start(Path sourceDirectory) {
+        WatchService watchService;
+        try {
+            watchService = sourceDirectory.getFileSystem().newWatchService();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to watch " + sourceDirectory, e);
+        }
+        ShaderWatcher watcher = new ShaderWatcher(sourceDirectory, watchService);
+        watcher.thread.setDaemon(true);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    /**
+     * Reloads a shader whenever one of its sources changes.
+     *
+     * @param shader         the shader
+     * @param vertexShader   the resource name of the vertex shader source, as loaded from the
+     *                       classpath
+     * @param fragmentShader the resource name of the fragment shader source
+     * @throws UncheckedIOException if the directory of a source cannot be watched
+     */
+    public void watch(Shader shader, String vertexShader, String fragmentShader) {
+        watch(shader, vertexShader, fragmentShader, Map.of());
+    }
+
+    /**
+     * Reloads a shader compiled with macros defined whenever one of its sources, or a file they
+     * include, changes.
+     *
+     * @param shader         the shader
+     * @param vertexShader   the resource name of the vertex shader source, as loaded from the
+     *                       classpath
+     * @param fragmentShader the resource name of the fragment shader source
+     * @param defines        the macros the shader was compiled with
+     * @throws UncheckedIOException if the directory of a source cannot be watched
+     */
+    public void watch(Shader shader, String vertexShader, String fragmentShader,
+        Map<String, String> defines) {
+        Registration registration =
+            new Registration(shader, vertexShader, fragmentShader, defines);
+        Set<Path> files = new HashSet<>(List.of(file(vertexShader), file(fragmentShader)));
+        try {
+            files.addAll(expand(registration).files());
+        } catch (RuntimeException e) {
+            // Watch the sources themselves until they can be expanded
+            System.err.println("Failed to read shader sources: " + e.getMessage());
+        }
+        registration.files = files;
+        watchDirectories(files);
+        registrations.add(registration);
+    }
+
+    /**
+     * Sets what to do when new sources were read, such as waking a render loop that only draws
+     * when something changed. Called on the watcher's thread.
+     *
+     * @param changeListener the listener
+     */
+    public void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Starts reloading the shaders whose sources changed, and swaps in the new programs that
+     * are ready. Must be called on the thread that owns the OpenGL context.
+     *
+     * @return true if a program was replaced or is still compiling, so another frame is needed
+     */
+    public boolean update() {
+        Reload reload;
+        while ((reload = reloads.poll()) != null) {
+            Shader shader = reload.shader();
+            compiling.removeIf(pending -> pending.shader() == shader);
+            shader.reload(reload.vertexShader(), reload.fragmentShader());
+            compiling.add(reload);
+        }
+
+        boolean replaced = false;
+        for (Reload pending : compiling) {
+            if (pending.shader().finishReload()) {
+                System.out.println("Reloaded " + pending.name());
+                replaced = true;
+            }
+        }
+        compiling.removeIf(pending -> !pending.shader().isReloading());
+        return replaced || !compiling.isEmpty();
+    }
+
+    /**
+     * Stops watching. Shaders that are still compiling keep their previous program.
+     */
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Failed to stop watching shaders: " + e.getMessage());
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the queue of shaders whose sources were read but not yet passed to
+     * {@link #update()}.
+     *
+     * @return the queue
+     */
+    BlockingQueue<Reload> reloads() {
+        return reloads;
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                Set<Path> changed = new HashSet<>();
+                collect(watchService.take(), changed);
+                // Wait until the files stop changing
+                WatchKey key;
+                while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed);
+                }
+                queueReloads(changed);
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed
+        }
+    }
+
+    private static void collect(WatchKey key, Set<Path> changed) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path name) {
+                changed.add(directory.resolve(name));
+            }
+        }
+        key.reset();
+    }
+
+    private void queueReloads(Set<Path> changed) {
+        boolean queued = false;
+        for (Registration registration : registrations) {
+            if (registration.files.stream().noneMatch(changed::contains)) {
+                continue;
+            }
+            Expanded expanded;
+            try {
+                expanded = expand(registration);
+                // An edit may have added includes
+                watchDirectories(expanded.files());
+            } catch (RuntimeException e) {
+                System.err.println("Failed to read shader sources: " + e.getMessage());
+                continue;
+            }
+            registration.files = expanded.files();
+            reloads.add(new Reload(registration.shader,
+                registration.vertexShader + " and " + registration.fragmentShader,
+                expanded.vertexShader(), expanded.fragmentShader()));
+            queued = true;
+        }
+        if (queued) {
+            changeListener.run();
+        }
+    }
+
+    // The sources of a shader as the loader expands them, and the files they come from
+    private record Expanded(String vertexShader, String fragmentShader, Set<Path> files) {
+    }
+
+    private Expanded expand(Registration registration) {
+        ShaderPreprocessor.Source vertex =
+            preprocessor.process(registration.vertexShader, registration.defines);
+        ShaderPreprocessor.Source fragment =
+            preprocessor.process(registration.fragmentShader, registration.defines);
+        Set<Path> files = new HashSet<>();
+        for (String name : vertex.files()) {
+            files.add(file(name));
+        }
+        for (String name : fragment.files()) {
+            files.add(file(name));
+        }
+        return new Expanded(vertex.text(), fragment.text(), files);
+    }
+
+    private Path file(String name) {
+        return sourceDirectory.resolve(name).toAbsolutePath().normalize();
+    }
+
+    private void watchDirectories(Set<Path> files) {
+        for (Path file : files) {
+            Path directory = file.getParent();
+            synchronized (watchedDirectories) {
+                if (watchedDirectories.add(directory)) {
+                    try {
+                        directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+                    } catch (IOException e) {
+                        watchedDirectories.remove(directory);
+                        throw new UncheckedIOException("Failed to watch " + directory, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String read(Path sourceDirectory, String name) {
+        try {
+            return Files.readString(sourceDirectory.resolve(name));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + name, e);
+        }
+    }
+}
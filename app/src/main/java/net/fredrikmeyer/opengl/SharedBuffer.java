@@ -0,0 +1,99 @@
+package net.fredrikmeyer.opengl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Native memory with several owners, freed when the last of them releases it.
+ *
+ * <p>A {@link ResourceCache} holds one reference to each binary resource it keeps and hands out
+ * another to each caller, so evicting a resource frees its memory only once nobody reads it any
+ * more. The buffer is created with one reference, held by its creator. Releasing is what
+ * {@link #close()} does, so a reference can be held in a try-with-resources statement.
+ */
+public final class SharedBuffer implements AutoCloseable {
+
+    private final ByteBuffer buffer;
+    private final Runnable free;
+    private int references = 1;
+
+    /**
+     * Wraps a buffer, which the new instance owns.
+     *
+     * @param buffer the buffer
+     * @param free   frees the buffer's memory, run once when the last reference is released
+     */
+    public SharedBuffer(ByteBuffer buffer, Runnable free) {
+        this.buffer = buffer;
+        this.free = free;
+    }
+
+    /**
+     * Gets the bytes. The returned buffer has a position and limit of its own, and must not be
+     * read after this reference is released.
+     *
+     * @return the bytes, from position 0 to the size
+     * @throws IllegalStateException if the memory was freed
+     */
+    public synchronized ByteBuffer buffer() {
+        if (references == 0) {
+            throw new IllegalStateException("The buffer was freed");
+        }
+        return buffer.duplicate();
+    }
+
+    /**
+     * Gets the number of bytes.
+     *
+     * @return the size
+     */
+    public int size() {
+        return buffer.remaining();
+    }
+
+    /**
+     * Adds a reference, unless the memory was already freed.
+     *
+     * @return true if a reference was added, which must be released
+     */
+    public synchronized boolean tryRetain() {
+        if (references == 0) {
+            return false;
+        }
+        references++;
+        return true;
+    }
+
+    /**
+     * Releases a reference, and frees the memory if it was the last one.
+     *
+     * @throws IllegalStateException if every reference was already released
+     */
+    public void release() {
+        synchronized (this) {
+            if (references == 0) {
+                throw new IllegalStateException("The buffer was already freed");
+            }
+            if (--references > 0) {
+                return;
+            }
+        }
+        free.run();
+    }
+
+    /**
+     * Checks whether the last reference was released.
+     *
+     * @return true if the memory was freed
+     */
+    public synchronized boolean isFreed() {
+        return references == 0;
+    }
+
+    /**
+     * Releases a reference, as {@link #release()} does.
+     */
+    @Override
+    public void close() {
+        release();
+    }
+}
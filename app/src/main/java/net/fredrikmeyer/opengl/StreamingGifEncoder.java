@@ -0,0 +1,410 @@
+package net.fredrikmeyer.opengl;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Writes a GIF animation while it is being recorded.
+ *
+ * <p>Frames are put on a bounded queue and a background task drains the queue into a
+ * {@link ParallelGifEncoder.Sequence} as they arrive, which compresses them on a fork-join pool
+ * and writes them in order. Memory use depends on the queue capacity and the number of frames
+ * being compressed rather than on the length of the recording. When the encoder falls behind and
+ * the queue is full, the configured {@link BackpressurePolicy} decides what happens to new
+ * frames.
+ *
+ * <p>Frames are top-down RGBA bytes, which the compressors read as they are. Their buffers come
+ * from {@link #frameBuffer(int, int)} and go back to it once the frame is encoded or dropped, so a
+ * recording allocates about as many buffers as there are frames queued and in flight.
+ */
+public class StreamingGifEncoder {
+
+    // Queue space is counted in quarter frames so that downscaled frames take a quarter of a slot
+    private static final int FULL_FRAME_COST = 4;
+    private static final int DOWNSCALED_FRAME_COST = 1;
+
+    // A frame of the given size, whose pixels are halved in each direction if it was downscaled
+    private record QueuedFrame(ByteBuffer rgba, int width, int height, int cost) {
+
+        boolean downscaled() {
+            return cost == DOWNSCALED_FRAME_COST;
+        }
+    }
+
+    private static final QueuedFrame END_OF_STREAM = new QueuedFrame(null, 0, 0, 0);
+
+    private final File outputFile;
+    private final int capacity;
+    private final BackpressurePolicy policy;
+    private final ParallelGifEncoder gifEncoder;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<QueuedFrame> queue = new ArrayDeque<>();
+    // Buffers of frames that were written or dropped, for the next frames to reuse
+    private final ConcurrentLinkedQueue<ByteBuffer> spareBuffers = new ConcurrentLinkedQueue<>();
+    private final Consumer<ByteBuffer> recycle = spareBuffers::offer;
+    private int usedCapacity = 0;
+    private boolean finished = false;
+    private boolean failed = false;
+    private int droppedFrames = 0;
+    private int downscaledFrames = 0;
+
+    private CompletableFuture<String> result;
+
+    /**
+     * Starts a new encoder that writes to the given file on the given executor. The file is only
+     * created once the first frame arrives.
+     *
+     * @param outputFile    the GIF file to write
+     * @param frameDelayMs  the time between frames in milliseconds
+     * @param queueCapacity the number of full-size frames the queue can hold
+     * @param policy        what to do with new frames while the queue is full
+     * @param dither        how colors outside the GIF palette are approximated
+     * @param deltaFrames   whether frames after the first only cover the region that changed
+     * @param executor      runs the task that takes frames off the queue and writes them in
+     *                      order; it is occupied until {@link #finish()} is called
+     * @param pool          compresses the frames
+     * @return the running encoder
+     */
+    public static StreamingGifEncoder start(File outputFile, int frameDelayMs, int queueCapacity,
+        BackpressurePolicy policy, GifEncoder.Dither dither, boolean deltaFrames,
+        Executor executor, ForkJoinPool pool) {
+        StreamingGifEncoder encoder = new StreamingGifEncoder(outputFile, queueCapacity, policy,
+            new ParallelGifEncoder(pool, frameDelayMs, true, dither, deltaFrames));
+        encoder.result = CompletableFuture.supplyAsync(encoder::drain, executor);
+        return encoder;
+    }
+
+    private StreamingGifEncoder(File outputFile, int queueCapacity, BackpressurePolicy policy,
+        ParallelGifEncoder gifEncoder) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException(
+                "queueCapacity must be positive, was " + queueCapacity);
+        }
+        this.outputFile = outputFile;
+        this.capacity = queueCapacity * FULL_FRAME_COST;
+        this.policy = policy;
+        this.gifEncoder = gifEncoder;
+    }
+
+    /**
+     * Returns a buffer for the pixels of a frame to {@link #submit(ByteBuffer, int, int) submit},
+     * reusing the buffer of a frame that was written or dropped if there is one. It may be called
+     * from any thread.
+     *
+     * @param width  the width of the frame in pixels
+     * @param height the height of the frame in pixels
+     * @return a buffer with position 0 and room for exactly the frame's RGBA bytes
+     */
+    public ByteBuffer frameBuffer(int width, int height) {
+        int size = width * height * 4;
+        for (ByteBuffer spare = spareBuffers.poll(); spare != null; spare = spareBuffers.poll()) {
+            // Buffers from before a resize are too small, and are left to the garbage collector
+            if (spare.capacity() >= size) {
+                return spare.clear().limit(size);
+            }
+        }
+        return ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Queues an image for encoding, converting it to RGBA bytes first. See
+     * {@link #submit(ByteBuffer, int, int)}.
+     *
+     * @param frame the frame to add
+     * @return true if the frame was queued, false if it was dropped
+     */
+    public boolean submit(BufferedImage frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        ByteBuffer rgba = GifFrameCompressor.toRgba(frame, frameBuffer(width, height));
+        return submit(rgba.limit(width * height * 4), width, height);
+    }
+
+    /**
+     * Queues a frame for encoding, applying the backpressure policy if the queue is full. Frames
+     * are written in the order they are submitted, so submit them from one thread.
+     *
+     * @param rgba   the frame's pixels, top row first, from position 0; the buffer belongs to the
+     *               encoder afterwards, and is best obtained from {@link #frameBuffer(int, int)}
+     * @param width  the width of the frame in pixels
+     * @param height the height of the frame in pixels
+     * @return true if the frame was queued, false if it was dropped
+     */
+    public boolean submit(ByteBuffer rgba, int width, int height) {
+        int cost = FULL_FRAME_COST;
+
+        lock.lock();
+        try {
+            if (finished || failed) {
+                return false;
+            }
+            if (policy == BackpressurePolicy.DOWNSCALE && usedCapacity + cost > capacity / 2) {
+                // Past the high-water mark, trade detail for queue space
+                cost = DOWNSCALED_FRAME_COST;
+                if (usedCapacity + cost > capacity) {
+                    droppedFrames++;
+                    recycle.accept(rgba);
+                    return false;
+                }
+                // Reserve the space now and resample without the lock, which the encoder needs
+                // to take frames off the queue
+                usedCapacity += cost;
+            } else {
+                if (usedCapacity + cost > capacity) {
+                    if (policy == BackpressurePolicy.DROP) {
+                        droppedFrames++;
+                        recycle.accept(rgba);
+                        return false;
+                    }
+                    while (usedCapacity + cost > capacity && !failed) {
+                        notFull.await();
+                    }
+                    if (failed) {
+                        return false;
+                    }
+                }
+                queue.add(new QueuedFrame(rgba, width, height, cost));
+                usedCapacity += cost;
+                notEmpty.signal();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedFrames++;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+
+        ByteBuffer half;
+        try {
+            half = halve(rgba, width, height);
+        } catch (RuntimeException e) {
+            cancelReservation(cost);
+            throw e;
+        }
+        recycle.accept(rgba);
+        lock.lock();
+        try {
+            if (finished || failed) {
+                // Finished while resampling, so the end of the stream is already queued
+                cancelReservation(cost);
+                return false;
+            }
+            queue.add(new QueuedFrame(half, width, height, cost));
+            downscaledFrames++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Gives back queue space reserved for a frame that is not queued after all
+    private void cancelReservation(int cost) {
+        lock.lock();
+        try {
+            if (!failed) {
+                // A failure already emptied the queue and reset its space
+                usedCapacity -= cost;
+            }
+            droppedFrames++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Signals that no more frames will be submitted. Frames already queued are still written.
+     *
+     * @return a future completed with the path of the GIF file once it has been written, or with
+     * null if there were no frames or writing failed
+     */
+    public CompletableFuture<String> finish() {
+        lock.lock();
+        try {
+            if (!finished) {
+                finished = true;
+                queue.add(END_OF_STREAM);
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of frames that were discarded because the queue was full.
+     *
+     * @return the number of dropped frames
+     */
+    public int droppedFrames() {
+        lock.lock();
+        try {
+            return droppedFrames;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of frames that were queued at half resolution.
+     *
+     * @return the number of downscaled frames
+     */
+    public int downscaledFrames() {
+        lock.lock();
+        try {
+            return downscaledFrames;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private QueuedFrame take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (queue.isEmpty()) {
+                notEmpty.await();
+            }
+            QueuedFrame frame = queue.poll();
+            usedCapacity -= frame.cost();
+            notFull.signal();
+            return frame;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void markFailed() {
+        lock.lock();
+        try {
+            failed = true;
+            queue.clear();
+            usedCapacity = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String drain() {
+        OutputStream outputStream = null;
+        ParallelGifEncoder.Sequence sequence = null;
+        int framesWritten = 0;
+        try {
+            for (QueuedFrame frame = take(); frame != END_OF_STREAM; frame = take()) {
+                ByteBuffer rgba = frame.downscaled()
+                    ? doubleSize(frame.rgba(), frame.width(), frame.height())
+                    : frame.rgba();
+                if (sequence == null) {
+                    outputStream = new BufferedOutputStream(new FileOutputStream(outputFile));
+                    sequence = gifEncoder.start(rgba, frame.width(), frame.height(),
+                        outputStream);
+                }
+                sequence.add(rgba, recycle);
+                framesWritten++;
+            }
+
+            if (sequence == null) {
+                System.out.println("No frames to save");
+                return null;
+            }
+            sequence.finish();
+            outputStream.close();
+            outputStream = null;
+
+            System.out.println("GIF animation saved to: " + outputFile.getPath() + " ("
+                + framesWritten + " frames, " + droppedFrames() + " dropped, "
+                + downscaledFrames() + " downscaled)");
+            return outputFile.getPath();
+        } catch (IOException | InterruptedException e) {
+            markFailed();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            System.err.println("Failed to save GIF: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (sequence != null) {
+                sequence.close();
+            }
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close GIF output: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Downscales an RGBA frame by two in each direction, averaging each 2x2 block.
+     *
+     * @return a new buffer holding the half-size frame
+     */
+    static ByteBuffer halve(ByteBuffer source, int width, int height) {
+        int halfWidth = Math.max(1, width / 2);
+        int halfHeight = Math.max(1, height / 2);
+        ByteBuffer half = ByteBuffer.allocate(halfWidth * halfHeight * 4);
+        for (int y = 0; y < halfHeight; y++) {
+            int row0 = Math.min(2 * y, height - 1) * width;
+            int row1 = Math.min(2 * y + 1, height - 1) * width;
+            for (int x = 0; x < halfWidth; x++) {
+                int x0 = Math.min(2 * x, width - 1);
+                int x1 = Math.min(2 * x + 1, width - 1);
+                half.putInt((y * halfWidth + x) * 4, average(source.getInt((row0 + x0) * 4),
+                    source.getInt((row0 + x1) * 4), source.getInt((row1 + x0) * 4),
+                    source.getInt((row1 + x1) * 4)));
+            }
+        }
+        return half;
+    }
+
+    /**
+     * Scales a frame that {@link #halve(ByteBuffer, int, int)} downscaled back to its original
+     * size, repeating each pixel.
+     */
+    private ByteBuffer doubleSize(ByteBuffer half, int width, int height) {
+        int halfWidth = Math.max(1, width / 2);
+        int halfHeight = Math.max(1, height / 2);
+        ByteBuffer full = frameBuffer(width, height);
+        for (int y = 0; y < height; y++) {
+            int row = Math.min(y / 2, halfHeight - 1) * halfWidth;
+            for (int x = 0; x < width; x++) {
+                full.putInt((y * width + x) * 4,
+                    half.getInt((row + Math.min(x / 2, halfWidth - 1)) * 4));
+            }
+        }
+        return full;
+    }
+
+    private static int average(int a, int b, int c, int d) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int sum = ((a >>> shift) & 0xFF) + ((b >>> shift) & 0xFF) + ((c >>> shift) & 0xFF)
+                + ((d >>> shift) & 0xFF);
+            result |= ((sum + 2) >> 2) << shift;
+        }
+        return result;
+    }
+}
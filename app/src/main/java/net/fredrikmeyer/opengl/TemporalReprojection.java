@@ -0,0 +1,398 @@
+package net.fredrikmeyer.opengl;
+
+import static org.lwjgl.opengl.GL11.GL_COLOR_BUFFER_BIT;
+import static org.lwjgl.opengl.GL11.GL_DEPTH_BUFFER_BIT;
+import static org.lwjgl.opengl.GL11.GL_DEPTH_COMPONENT;
+import static org.lwjgl.opengl.GL11.GL_DEPTH_TEST;
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL11.GL_NEAREST;
+import static org.lwjgl.opengl.GL11.GL_NONE;
+import static org.lwjgl.opengl.GL11.GL_POINTS;
+import static org.lwjgl.opengl.GL11.GL_RGBA;
+import static org.lwjgl.opengl.GL11.GL_RGBA8;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MAG_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MIN_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_S;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_T;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
+import static org.lwjgl.opengl.GL11.GL_VIEWPORT;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL11.glClear;
+import static org.lwjgl.opengl.GL11.glDeleteTextures;
+import static org.lwjgl.opengl.GL11.glDisable;
+import static org.lwjgl.opengl.GL11.glDrawArrays;
+import static org.lwjgl.opengl.GL11.glDrawBuffer;
+import static org.lwjgl.opengl.GL11.glEnable;
+import static org.lwjgl.opengl.GL11.glGenTextures;
+import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL11.glGetIntegerv;
+import static org.lwjgl.opengl.GL11.glGetTexImage;
+import static org.lwjgl.opengl.GL11.glIsEnabled;
+import static org.lwjgl.opengl.GL11.glReadBuffer;
+import static org.lwjgl.opengl.GL11.glTexImage2D;
+import static org.lwjgl.opengl.GL11.glTexParameteri;
+import static org.lwjgl.opengl.GL11.glViewport;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL15.GL_STREAM_READ;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL15.glUnmapBuffer;
+import static org.lwjgl.opengl.GL20.glDrawBuffers;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_PACK_BUFFER;
+import static org.lwjgl.opengl.GL30.GL_COLOR;
+import static org.lwjgl.opengl.GL30.GL_COLOR_ATTACHMENT0;
+import static org.lwjgl.opengl.GL30.GL_COLOR_ATTACHMENT1;
+import static org.lwjgl.opengl.GL30.GL_DEPTH_ATTACHMENT;
+import static org.lwjgl.opengl.GL30.GL_DEPTH_COMPONENT32F;
+import static org.lwjgl.opengl.GL30.GL_DRAW_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_DRAW_FRAMEBUFFER_BINDING;
+import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER_COMPLETE;
+import static org.lwjgl.opengl.GL30.GL_MAP_READ_BIT;
+import static org.lwjgl.opengl.GL30.GL_READ_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_RG;
+import static org.lwjgl.opengl.GL30.GL_RG32F;
+import static org.lwjgl.opengl.GL30.glBindFramebuffer;
+import static org.lwjgl.opengl.GL30.glBlitFramebuffer;
+import static org.lwjgl.opengl.GL30.glCheckFramebufferStatus;
+import static org.lwjgl.opengl.GL30.glClearBufferfv;
+import static org.lwjgl.opengl.GL30.glDeleteFramebuffers;
+import static org.lwjgl.opengl.GL30.glFramebufferTexture2D;
+import static org.lwjgl.opengl.GL30.glGenFramebuffers;
+import static org.lwjgl.opengl.GL30.glGenerateMipmap;
+import static org.lwjgl.opengl.GL30.glMapBufferRange;
+import static org.lwjgl.opengl.GL32.GL_SYNC_GPU_COMMANDS_COMPLETE;
+import static org.lwjgl.opengl.GL32.GL_TIMEOUT_EXPIRED;
+import static org.lwjgl.opengl.GL32.GL_WAIT_FAILED;
+import static org.lwjgl.opengl.GL32.glClientWaitSync;
+import static org.lwjgl.opengl.GL32.glDeleteSync;
+import static org.lwjgl.opengl.GL32.glFenceSync;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.joml.Matrix4f;
+
+/**
+ * Lets a ray marcher start each pixel's march just before the surface it hit in the previous
+ * frame, instead of at the camera.
+ *
+ * <p>The ray marching shaders write, next to the color, how far along the ray they hit something
+ * and how many steps that took. At the start of the next frame, every pixel's hit is turned back
+ * into a point in the world with the previous camera's view matrix and projected into the current
+ * view as a single point, whose depth is its distance from the camera. The depth test keeps the
+ * nearest point landing on each pixel, and the shader starts marching a little before it.
+ * Pixels no point lands on, because they were off screen, hidden or showed the sky, start at the
+ * camera as before. So does a pixel whose starting point lies on the other side of the surface
+ * from the camera, which happens when something moved in front of it. During smooth camera motion
+ * nearly every pixel is covered, and marching from just before the surface takes a few steps
+ * where marching from the camera takes dozens.
+ *
+ * <p>The shader must use the ray of {@link #FOCAL_LENGTH}, stop at {@link #MAX_DISTANCE}, and
+ * declare:
+ *
+ * <pre>{@code
+ * layout(location = 0) out vec4 fragColor;
+ * layout(location = 1) out vec2 fragHit; // distance to the hit (MAX_DIST if none), steps taken
+ * uniform int uReproject;
+ * uniform sampler2D uStartDepth; // hit distance over MAX_DIST, 1.0 where none landed
+ * }</pre>
+ *
+ * <p>The geometry must not move between frames, only the camera. The average number of steps per
+ * pixel is recorded in {@link RenderMetrics#recordMarchSteps(double)}: the steps of every pixel
+ * are averaged by the GPU, as the smallest mipmap of the hit texture, and read back through a
+ * small ring of pixel buffers a frame or two later, so nothing waits for the GPU.
+ *
+ * <p>The render targets grow to the largest viewport drawn so far, and smaller viewports use
+ * their lower left corner. A {@link ResolutionScaler} changing the viewport from frame to frame
+ * therefore keeps the history: the previous frame's hits are reprojected from the viewport they
+ * were marched in, since the rays through a viewport do not depend on its size.
+ *
+ * <p>All methods but the constructor must be called on the thread that owns the OpenGL context,
+ * and the constructor on a thread where it is current.
+ */
+public final class TemporalReprojection {
+
+    /**
+     * The distance from the eye to the image plane of the ray marching shaders, whose rays
+     * leave the camera along {@code u * right + v * up + FOCAL_LENGTH * forward} for a pixel at
+     * normalized device coordinates {@code (u, v)}.
+     */
+    public static final float FOCAL_LENGTH = 1.5f;
+
+    /**
+     * The distance at which the ray marching shaders give up, their {@code MAX_DIST}.
+     */
+    public static final float MAX_DISTANCE = 100.0f;
+
+    /**
+     * The texture unit the start depths are bound to while the march is drawn.
+     */
+    public static final int START_DEPTH_UNIT = 0;
+
+    // Step averages that may be in flight at once
+    private static final int READBACK_DEPTH = 3;
+
+    private static final float[] NO_HITS = {0.0f, 0.0f, 0.0f, 0.0f};
+
+    private final RenderMetrics metrics;
+    private final Shader scatter;
+    private final VertexArrayObject points = new VertexArrayObject();
+    private final Matrix4f view = new Matrix4f();
+    private final Matrix4f previousCameraToWorld = new Matrix4f();
+    private final int[] viewport = new int[4];
+    private final int[] readbacks = new int[READBACK_DEPTH];
+    private final long[] fences = new long[READBACK_DEPTH];
+    // The share of the hit texture each readback's viewport covered
+    private final double[] coverage = new double[READBACK_DEPTH];
+    private int oldestReadback = 0;
+    private int pendingReadbacks = 0;
+
+    // Allocated at the size of the first viewport, and again whenever one does not fit
+    private int targetWidth = 0;
+    private int targetHeight = 0;
+    // The viewport of the current frame, and the one the history was marched in
+    private int width;
+    private int height;
+    private int previousWidth;
+    private int previousHeight;
+    private int colorTexture;
+    private int hitTexture;
+    private int startDepthTexture;
+    private int marchFramebuffer;
+    private int startFramebuffer;
+    private boolean hasHistory = false;
+
+    /**
+     * Creates the reprojection. The render targets are allocated on first use.
+     *
+     * @param metrics receives the average number of steps per pixel of each frame
+     */
+    public TemporalReprojection(RenderMetrics metrics) {
+        this.metrics = metrics;
+        scatter = new ResourceLoader().loadShader(
+            "reprojection/vertex.glsl", "reprojection/fragment.glsl");
+        scatter.activate();
+        scatter.setUniform("uPreviousHits", 0);
+        scatter.setUniform("uFocalLength", FOCAL_LENGTH);
+        scatter.setUniform("uMaxDistance", MAX_DISTANCE);
+
+        for (int i = 0; i < READBACK_DEPTH; i++) {
+            readbacks[i] = glGenBuffers();
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, readbacks[i]);
+            glBufferData(GL_PIXEL_PACK_BUFFER, 2 * Float.BYTES, GL_STREAM_READ);
+        }
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+    }
+
+    /**
+     * Forgets the previous frame, so the next one marches every pixel from the camera. Call when
+     * the geometry changes.
+     */
+    public void invalidate() {
+        hasHistory = false;
+    }
+
+    /**
+     * Draws the march into the viewport of the framebuffer that was bound, starting from the
+     * previous frame's hits. The march must bind its own program, with {@code uReproject} set to
+     * 1 and {@code uStartDepth} to {@link #START_DEPTH_UNIT}, since this replaces the program
+     * that was in use. The framebuffer and viewport are bound again afterwards. A viewport larger
+     * than any before reallocates the render targets and starts over.
+     *
+     * @param camera the camera the march is drawn from, which must be the one in the frame's
+     *               {@link FrameUniforms}
+     * @param march  draws the full-screen ray march
+     */
+    public void render(Camera camera, Runnable march) {
+        int target = glGetInteger(GL_DRAW_FRAMEBUFFER_BINDING);
+        glGetIntegerv(GL_VIEWPORT, viewport);
+        width = viewport[2];
+        height = viewport[3];
+        if (width > targetWidth || height > targetHeight) {
+            int grownWidth = Math.max(width, targetWidth);
+            int grownHeight = Math.max(height, targetHeight);
+            deleteTargets();
+            createTargets(grownWidth, grownHeight);
+        }
+        collectSteps();
+        camera.viewMatrix(view);
+
+        boolean depthTest = glIsEnabled(GL_DEPTH_TEST);
+        glBindFramebuffer(GL_FRAMEBUFFER, startFramebuffer);
+        glViewport(0, 0, width, height);
+        glClear(GL_DEPTH_BUFFER_BIT);
+        if (hasHistory) {
+            reproject();
+        }
+        glDisable(GL_DEPTH_TEST);
+
+        glBindFramebuffer(GL_FRAMEBUFFER, marchFramebuffer);
+        // Pixels outside the viewport take no steps, so the average over the texture can be
+        // scaled to the viewport
+        glClearBufferfv(GL_COLOR, 1, NO_HITS);
+        glActiveTexture(GL_TEXTURE0 + START_DEPTH_UNIT);
+        glBindTexture(GL_TEXTURE_2D, startDepthTexture);
+        march.run();
+        glBindTexture(GL_TEXTURE_2D, 0);
+        view.invert(previousCameraToWorld);
+        previousWidth = width;
+        previousHeight = height;
+        hasHistory = true;
+
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, marchFramebuffer);
+        glBindFramebuffer(GL_DRAW_FRAMEBUFFER, target);
+        glBlitFramebuffer(0, 0, width, height, 0, 0, width, height, GL_COLOR_BUFFER_BIT,
+            GL_NEAREST);
+        readSteps();
+
+        glBindFramebuffer(GL_FRAMEBUFFER, target);
+        glViewport(viewport[0], viewport[1], width, height);
+        if (depthTest) {
+            glEnable(GL_DEPTH_TEST);
+        }
+    }
+
+    /**
+     * Deletes the render targets, pixel buffers and shader.
+     */
+    public void delete() {
+        deleteTargets();
+        while (pendingReadbacks > 0) {
+            glDeleteSync(fences[oldestReadback]);
+            oldestReadback = (oldestReadback + 1) % READBACK_DEPTH;
+            pendingReadbacks--;
+        }
+        glDeleteBuffers(readbacks);
+        points.delete();
+        scatter.delete();
+    }
+
+    // Draws one point per pixel of the previous frame into the start depths
+    private void reproject() {
+        glEnable(GL_DEPTH_TEST);
+        scatter.activate();
+        scatter.setUniform("uPreviousCameraToWorld", previousCameraToWorld);
+        scatter.setUniform("uPreviousSize", previousWidth, previousHeight);
+        glActiveTexture(GL_TEXTURE0);
+        glBindTexture(GL_TEXTURE_2D, hitTexture);
+        points.bind();
+        glDrawArrays(GL_POINTS, 0, previousWidth * previousHeight);
+        glBindTexture(GL_TEXTURE_2D, 0);
+    }
+
+    // Averages the steps of every pixel into the smallest mipmap and starts reading it back
+    private void readSteps() {
+        if (pendingReadbacks == READBACK_DEPTH) {
+            return;
+        }
+        int slot = (oldestReadback + pendingReadbacks) % READBACK_DEPTH;
+        int smallestLevel = 31 - Integer.numberOfLeadingZeros(
+            Math.max(targetWidth, targetHeight));
+        glBindTexture(GL_TEXTURE_2D, hitTexture);
+        glGenerateMipmap(GL_TEXTURE_2D);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, readbacks[slot]);
+        glGetTexImage(GL_TEXTURE_2D, smallestLevel, GL_RG, GL_FLOAT, NULL);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+        glBindTexture(GL_TEXTURE_2D, 0);
+        fences[slot] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        coverage[slot] = (double) width * height / ((double) targetWidth * targetHeight);
+        pendingReadbacks++;
+    }
+
+    // Records the averages the GPU has finished, without waiting for the others
+    private void collectSteps() {
+        while (pendingReadbacks > 0) {
+            int status = glClientWaitSync(fences[oldestReadback], 0, 0);
+            if (status == GL_TIMEOUT_EXPIRED || status == GL_WAIT_FAILED) {
+                return;
+            }
+            glDeleteSync(fences[oldestReadback]);
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, readbacks[oldestReadback]);
+            ByteBuffer average = glMapBufferRange(GL_PIXEL_PACK_BUFFER, 0, 2 * Float.BYTES,
+                GL_MAP_READ_BIT);
+            if (average != null) {
+                // The second channel holds the steps
+                average.order(ByteOrder.nativeOrder());
+                metrics.recordMarchSteps(average.getFloat(Float.BYTES) / coverage[oldestReadback]);
+                glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+            }
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+            oldestReadback = (oldestReadback + 1) % READBACK_DEPTH;
+            pendingReadbacks--;
+        }
+    }
+
+    private void createTargets(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(
+                "Viewport size must be positive, was " + width + "x" + height);
+        }
+        targetWidth = width;
+        targetHeight = height;
+        hasHistory = false;
+        colorTexture = createTexture(width, height, GL_RGBA8, GL_RGBA, GL_UNSIGNED_BYTE);
+        hitTexture = createTexture(width, height, GL_RG32F, GL_RG, GL_FLOAT);
+        startDepthTexture = createTexture(width, height, GL_DEPTH_COMPONENT32F,
+            GL_DEPTH_COMPONENT, GL_FLOAT);
+
+        marchFramebuffer = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, marchFramebuffer);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, colorTexture,
+            0);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT1, GL_TEXTURE_2D, hitTexture,
+            0);
+        glDrawBuffers(new int[]{GL_COLOR_ATTACHMENT0, GL_COLOR_ATTACHMENT1});
+        glReadBuffer(GL_COLOR_ATTACHMENT0);
+        checkComplete();
+
+        startFramebuffer = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, startFramebuffer);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_TEXTURE_2D,
+            startDepthTexture, 0);
+        glDrawBuffer(GL_NONE);
+        glReadBuffer(GL_NONE);
+        checkComplete();
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    private static int createTexture(int width, int height, int internalFormat, int format,
+        int type) {
+        int texture = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, texture);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        glTexImage2D(GL_TEXTURE_2D, 0, internalFormat, width, height, 0, format, type, NULL);
+        glBindTexture(GL_TEXTURE_2D, 0);
+        return texture;
+    }
+
+    private static void checkComplete() {
+        int status = glCheckFramebufferStatus(GL_FRAMEBUFFER);
+        if (status != GL_FRAMEBUFFER_COMPLETE) {
+            glBindFramebuffer(GL_FRAMEBUFFER, 0);
+            throw new IllegalStateException(
+                "Framebuffer is incomplete, status 0x" + Integer.toHexString(status));
+        }
+    }
+
+    private void deleteTargets() {
+        if (targetWidth == 0) {
+            return;
+        }
+        glDeleteFramebuffers(marchFramebuffer);
+        glDeleteFramebuffers(startFramebuffer);
+        glDeleteTextures(colorTexture);
+        glDeleteTextures(hitTexture);
+        glDeleteTextures(startDepthTexture);
+        targetWidth = 0;
+        targetHeight = 0;
+    }
+}
@@ -0,0 +1,246 @@
+package net.fredrikmeyer.opengl;
+
+import org.joml.Matrix4f;
+
+/**
+ * The active uniforms of a linked program: their locations by name, and the value each was last
+ * set to, so that setting a uniform to the value it already has can be skipped.
+ *
+ * <p>Names are kept in an open-addressing table of strings and ints rather than a map of boxed
+ * integers, so a lookup never allocates. Values are compared bit for bit, and a uniform is only
+ * known to have a value once it was set through the cache, since the program starts with every
+ * uniform at zero and nothing here tracks values set with {@code glUniform} directly.
+ */
+final class UniformCache {
+
+    // The most components a cached value has, those of a 4x4 matrix
+    private static final int MAX_COMPONENTS = 16;
+
+    private final String[] names;
+    private final String[] table;
+    private final int[] tableSlots;
+    private final int[] locations;
+    private final float[] values;
+    // The number of components last set on each slot, 0 while unset
+    private final int[] components;
+    private final float[] scratch = new float[MAX_COMPONENTS];
+
+    /**
+     * Creates a cache of the given uniforms, none of which has a known value.
+     *
+     * @param names     the uniform names
+     * @param locations the location of each name
+     * @throws IllegalArgumentException if the arrays differ in length or a name repeats
+     */
+    UniformCache(String[] names, int[] locations) {
+        if (names.length != locations.length) {
+            throw new IllegalArgumentException(
+                names.length + " names but " + locations.length + " locations");
+        }
+        this.names = names.clone();
+        this.locations = locations.clone();
+        this.values = new float[names.length * MAX_COMPONENTS];
+        this.components = new int[names.length];
+        int capacity = Integer.highestOneBit(Math.max(1, names.length) * 2) * 2;
+        this.table = new String[capacity];
+        this.tableSlots = new int[capacity];
+        for (int slot = 0; slot < names.length; slot++) {
+            int index = indexOf(names[slot]);
+            if (table[index] != null) {
+                throw new IllegalArgumentException("Duplicate uniform " + names[slot]);
+            }
+            table[index] = names[slot];
+            tableSlots[index] = slot;
+        }
+    }
+
+    /**
+     * Looks up a uniform.
+     *
+     * @param name the uniform name
+     * @return the slot of the uniform, or -1 if the program has no active uniform by that name
+     */
+    int slot(String name) {
+        int index = indexOf(name);
+        return table[index] != null ? tableSlots[index] : -1;
+    }
+
+    /**
+     * Gets the location of a uniform.
+     *
+     * @param slot a slot returned by {@link #slot(String)}
+     * @return the location to pass to {@code glUniform}
+     */
+    int location(int slot) {
+        return locations[slot];
+    }
+
+    /**
+     * Gets the name of a uniform.
+     *
+     * @param slot a slot returned by {@link #slot(String)}
+     * @return the name
+     */
+    String name(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * Gets the kind of value a uniform was last set to.
+     *
+     * @param slot the slot of the uniform
+     * @return the number of float components, -1 for an int, or 0 if the value is unknown
+     */
+    int components(int slot) {
+        return components[slot];
+    }
+
+    /**
+     * Gets a component of the value a uniform was last set to. The component of an int holds
+     * its bits.
+     *
+     * @param slot      the slot of the uniform
+     * @param component the index of the component
+     * @return the component
+     */
+    float value(int slot, int component) {
+        return values[slot * MAX_COMPONENTS + component];
+    }
+
+    /**
+     * Records the value of a uniform of another cache, such as that of the program this one
+     * replaces.
+     *
+     * @param slot       the slot of the uniform
+     * @param source     the cache to copy from
+     * @param sourceSlot the slot of the uniform in that cache, which must have a known value
+     * @return true if it differs from the last value, so the uniform must be set
+     */
+    boolean copy(int slot, UniformCache source, int sourceSlot) {
+        int count = source.components[sourceSlot];
+        System.arraycopy(source.values, sourceSlot * MAX_COMPONENTS, scratch, 0,
+            Math.abs(count));
+        return store(slot, count);
+    }
+
+    /**
+     * Gets the number of uniforms.
+     *
+     * @return the number of slots
+     */
+    int size() {
+        return locations.length;
+    }
+
+    /**
+     * Records a float value.
+     *
+     * @param slot the slot of the uniform
+     * @param x    the value
+     * @return true if it differs from the last value, so the uniform must be set
+     */
+    boolean update(int slot, float x) {
+        scratch[0] = x;
+        return store(slot, 1);
+    }
+
+    /**
+     * Records a two-component value.
+     *
+     * @param slot the slot of the uniform
+     * @param x    the first component
+     * @param y    the second component
+     * @return true if it differs from the last value, so the uniform must be set
+     */
+    boolean update(int slot, float x, float y) {
+        scratch[0] = x;
+        scratch[1] = y;
+        return store(slot, 2);
+    }
+
+    /**
+     * Records a three-component value.
+     *
+     * @param slot the slot of the uniform
+     * @param x    the first component
+     * @param y    the second component
+     * @param z    the third component
+     * @return true if it differs from the last value, so the uniform must be set
+     */
+    boolean update(int slot, float x, float y, float z) {
+        scratch[0] = x;
+        scratch[1] = y;
+        scratch[2] = z;
+        return store(slot, 3);
+    }
+
+    /**
+     * Records a four-component value.
+     *
+     * @param slot the slot of the uniform
+     * @param x    the first component
+     * @param y    the second component
+     * @param z    the third component
+     * @param w    the fourth component
+     * @return true if it differs from the last value, so the uniform must be set
+     */
+    boolean update(int slot, float x, float y, float z, float w) {
+        scratch[0] = x;
+        scratch[1] = y;
+        scratch[2] = z;
+        scratch[3] = w;
+        return store(slot, 4);
+    }
+
+    /**
+     * Records an int value, such as a sampler's texture unit.
+     *
+     * @param slot  the slot of the uniform
+     * @param value the value
+     * @return true if it differs from the last value, so the uniform must be set
+     */
+    boolean update(int slot, int value) {
+        scratch[0] = Float.intBitsToFloat(value);
+        // Ints and floats of the same bits are told apart by the component count
+        return store(slot, -1);
+    }
+
+    /**
+     * Records a matrix value.
+     *
+     * @param slot   the slot of the uniform
+     * @param matrix the matrix
+     * @return true if it differs from the last value, so the uniform must be set
+     */
+    boolean update(int slot, Matrix4f matrix) {
+        matrix.get(scratch);
+        return store(slot, MAX_COMPONENTS);
+    }
+
+    // Compares the scratch values with the slot's and stores them if they differ
+    private boolean store(int slot, int count) {
+        int length = Math.abs(count);
+        int offset = slot * MAX_COMPONENTS;
+        boolean changed = components[slot] != count;
+        for (int i = 0; i < length && !changed; i++) {
+            changed = Float.floatToRawIntBits(values[offset + i])
+                != Float.floatToRawIntBits(scratch[i]);
+        }
+        if (changed) {
+            System.arraycopy(scratch, 0, values, offset, length);
+            components[slot] = count;
+        }
+        return changed;
+    }
+
+    // The index of the name in the table, or of the empty entry where it would go
+    private int indexOf(String name) {
+        int hash = name.hashCode();
+        int mask = table.length - 1;
+        int index = (hash ^ (hash >>> 16)) & mask;
+        while (table[index] != null && !table[index].equals(name)) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+}
@@ -1,18 +1,32 @@
 package net.fredrikmeyer.opengl;
 
-import static org.lwjgl.system.MemoryUtil.memSlice;
+import static org.lwjgl.system.MemoryUtil.memAlloc;
+import static org.lwjgl.system.MemoryUtil.memFree;
+import static org.lwjgl.system.MemoryUtil.memRealloc;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.Channels;
-import java.util.Objects;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
-import org.lwjgl.BufferUtils;
 
 public class Utils {
 
+    private static final AtomicLong NATIVE_RESOURCE_BYTES = new AtomicLong();
+
     public static String loadResource(String resource) {
         try (var inputStream = Utils.class.getClassLoader().getResourceAsStream(resource);
             var reader = new BufferedReader(new InputStreamReader(inputStream))) {
@@ -26,33 +40,113 @@ public class Utils {
     }
 
 
-    public static ByteBuffer loadResourceByteBuffer(String resource) {
-        try (var inputStream = Utils.class.getClassLoader().getResourceAsStream(resource);
-            var rbc = Channels.newChannel(Objects.requireNonNull(inputStream))) {
+    /**
+     * Loads a binary resource into native memory, which the returned buffer owns. A resource in
+     * a directory on the classpath is memory-mapped, and any other, such as a jar entry, is read
+     * into one allocation of its size. Releasing the buffer frees an allocation, and leaves a
+     * mapping to be unmapped by the garbage collector. {@link #nativeResourceBytes()} counts the
+     * memory until the buffer is released.
+     *
+     * @param resource the name of the resource
+     * @return the only reference to the bytes
+     */
+    public static SharedBuffer loadResourceByteBuffer(String resource) {
+        return loadResourceByteBuffer(Utils.class.getClassLoader(), resource);
+    }
 
-            ByteBuffer bb = BufferUtils.createByteBuffer(8 * 1024); // ???
-            while (true) {
-                int bytes = rbc.read(bb);
-                if (bytes == -1) {
-                    break;
-                }
-                if (bb.remaining() == 0) {
-                    bb = resizeBuffer(bb, bb.capacity() * 3 / 2); // 50%
-                }
+    static SharedBuffer loadResourceByteBuffer(ClassLoader classLoader, String resource) {
+        URL url = classLoader.getResource(resource);
+        if (url == null) {
+            throw new RuntimeException("Resource not found: " + resource);
+        }
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return map(Path.of(url.toURI()));
             }
-            bb.flip();
-
-            return memSlice(bb);
-        } catch (IOException e) {
+            URLConnection connection = url.openConnection();
+            // The size of a jar entry, from the jar's directory
+            long size = connection.getContentLengthLong();
+            try (InputStream inputStream = connection.getInputStream()) {
+                return size >= 0 ? read(inputStream, size) : readUnknownSize(inputStream);
+            }
+        } catch (IOException | URISyntaxException e) {
             throw new RuntimeException("Failed to load resource: " + resource, e);
         }
     }
 
-    private static ByteBuffer resizeBuffer(ByteBuffer buffer, int newCapacity) {
-        ByteBuffer newBuffer = BufferUtils.createByteBuffer(newCapacity);
-        buffer.flip();
-        newBuffer.put(buffer);
-        return newBuffer;
+    /**
+     * Gets the native memory held by the buffers {@link #loadResourceByteBuffer} returned that
+     * are not yet released, mapped or allocated.
+     *
+     * @return the size in bytes
+     */
+    public static long nativeResourceBytes() {
+        return NATIVE_RESOURCE_BYTES.get();
+    }
+
+    private static SharedBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.nativeOrder());
+            // The mapping goes away when the garbage collector finds no buffer using it. Unmapping
+            // it on release would crash on a duplicate a caller kept past its release
+            return owned(mapped, () -> {
+            });
+        }
+    }
+
+    private static SharedBuffer read(InputStream inputStream, long size) throws IOException {
+        int length = Math.toIntExact(size);
+        // An empty resource still gets an allocation, as memAlloc may return NULL for none
+        ByteBuffer buffer = memAlloc(Math.max(length, 1)).limit(length);
+        try {
+            ReadableByteChannel channel = Channels.newChannel(inputStream);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    throw new IOException(
+                        "Resource ended after " + buffer.position() + " of " + size + " bytes");
+                }
+            }
+            if (inputStream.read() != -1) {
+                throw new IOException("Resource is longer than its size of " + size + " bytes");
+            }
+        } catch (IOException | RuntimeException e) {
+            memFree(buffer);
+            throw e;
+        }
+        return owned(buffer.flip(), () -> memFree(buffer));
+    }
+
+    // Reads a resource whose size the connection does not tell, doubling the buffer as it fills
+    private static SharedBuffer readUnknownSize(InputStream inputStream) throws IOException {
+        ByteBuffer buffer = memAlloc(8 * 1024);
+        try {
+            ReadableByteChannel channel = Channels.newChannel(inputStream);
+            while (channel.read(buffer) != -1) {
+                if (!buffer.hasRemaining()) {
+                    int position = buffer.position();
+                    buffer = memRealloc(buffer, Math.multiplyExact(buffer.capacity(), 2));
+                    buffer.position(position);
+                }
+            }
+            // Give back what the last doubling did not use
+            int length = buffer.position();
+            buffer = memRealloc(buffer, Math.max(length, 1));
+            buffer.clear().limit(length);
+        } catch (IOException | RuntimeException e) {
+            memFree(buffer);
+            throw e;
+        }
+        ByteBuffer bytes = buffer;
+        return owned(bytes, () -> memFree(bytes));
     }
 
+    private static SharedBuffer owned(ByteBuffer buffer, Runnable free) {
+        long size = buffer.capacity();
+        NATIVE_RESOURCE_BYTES.addAndGet(size);
+        return new SharedBuffer(buffer, () -> {
+            free.run();
+            NATIVE_RESOURCE_BYTES.addAndGet(-size);
+        });
+    }
 }
@@ -1,34 +1,47 @@
 package net.fredrikmeyer.opengl;
 
 import static org.lwjgl.glfw.Callbacks.glfwFreeCallbacks;
+import static org.lwjgl.glfw.GLFW.GLFW_ANY_PLATFORM;
+import static org.lwjgl.glfw.GLFW.GLFW_CONTEXT_CREATION_API;
 import static org.lwjgl.glfw.GLFW.GLFW_CONTEXT_VERSION_MAJOR;
 import static org.lwjgl.glfw.GLFW.GLFW_CONTEXT_VERSION_MINOR;
 import static org.lwjgl.glfw.GLFW.GLFW_FALSE;
 import static org.lwjgl.glfw.GLFW.GLFW_OPENGL_CORE_PROFILE;
 import static org.lwjgl.glfw.GLFW.GLFW_OPENGL_FORWARD_COMPAT;
 import static org.lwjgl.glfw.GLFW.GLFW_OPENGL_PROFILE;
+import static org.lwjgl.glfw.GLFW.GLFW_OSMESA_CONTEXT_API;
+import static org.lwjgl.glfw.GLFW.GLFW_PLATFORM;
+import static org.lwjgl.glfw.GLFW.GLFW_PLATFORM_NULL;
 import static org.lwjgl.glfw.GLFW.GLFW_RESIZABLE;
 import static org.lwjgl.glfw.GLFW.GLFW_TRUE;
 import static org.lwjgl.glfw.GLFW.GLFW_VISIBLE;
 import static org.lwjgl.glfw.GLFW.glfwCreateWindow;
 import static org.lwjgl.glfw.GLFW.glfwDefaultWindowHints;
 import static org.lwjgl.glfw.GLFW.glfwDestroyWindow;
+import static org.lwjgl.glfw.GLFW.glfwExtensionSupported;
+import static org.lwjgl.glfw.GLFW.glfwGetFramebufferSize;
 import static org.lwjgl.glfw.GLFW.glfwGetPrimaryMonitor;
 import static org.lwjgl.glfw.GLFW.glfwGetVideoMode;
 import static org.lwjgl.glfw.GLFW.glfwGetWindowSize;
 import static org.lwjgl.glfw.GLFW.glfwInit;
+import static org.lwjgl.glfw.GLFW.glfwInitHint;
 import static org.lwjgl.glfw.GLFW.glfwMakeContextCurrent;
 import static org.lwjgl.glfw.GLFW.glfwPollEvents;
+import static org.lwjgl.glfw.GLFW.glfwPostEmptyEvent;
 import static org.lwjgl.glfw.GLFW.glfwSetCursorPosCallback;
+import static org.lwjgl.glfw.GLFW.glfwSetFramebufferSizeCallback;
 import static org.lwjgl.glfw.GLFW.glfwSetKeyCallback;
 import static org.lwjgl.glfw.GLFW.glfwSetMouseButtonCallback;
 import static org.lwjgl.glfw.GLFW.glfwSetScrollCallback;
+import static org.lwjgl.glfw.GLFW.glfwSetWindowCloseCallback;
 import static org.lwjgl.glfw.GLFW.glfwSetWindowPos;
+import static org.lwjgl.glfw.GLFW.glfwSetWindowRefreshCallback;
 import static org.lwjgl.glfw.GLFW.glfwSetWindowShouldClose;
 import static org.lwjgl.glfw.GLFW.glfwShowWindow;
 import static org.lwjgl.glfw.GLFW.glfwSwapBuffers;
 import static org.lwjgl.glfw.GLFW.glfwSwapInterval;
 import static org.lwjgl.glfw.GLFW.glfwTerminate;
+import static org.lwjgl.glfw.GLFW.glfwWaitEventsTimeout;
 import static org.lwjgl.glfw.GLFW.glfwWindowHint;
 import static org.lwjgl.glfw.GLFW.glfwWindowShouldClose;
 import static org.lwjgl.opengl.GL11.GL_TRUE;
@@ -36,13 +49,31 @@ import static org.lwjgl.system.MemoryStack.stackPush;
 import static org.lwjgl.system.MemoryUtil.NULL;
 
 import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
 import org.lwjgl.glfw.GLFWErrorCallback;
 import org.lwjgl.glfw.GLFWVidMode;
 import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
 import org.lwjgl.system.MemoryStack;
 
 /**
  * Manages the GLFW window and OpenGL context.
+ *
+ * <p>A {@link #headless(WindowDimensions) headless} window is never shown. It renders into an
+ * offscreen {@link Framebuffer} of the requested size, with v-sync off and no buffer swaps, so
+ * frames are produced as fast as the renderer can draw them. When no display is available, the
+ * context is created with GLFW's null platform and OSMesa instead.
+ *
+ * <p>GLFW delivers input on the main thread. To render on another thread, the main thread
+ * {@link #setInputEventQueue(InputEventRing) queues} input events and hands the context over with
+ * {@link #releaseContext()}; the render thread takes it with {@link #makeContextCurrent()}, and
+ * {@link #pollEvents()} then runs the input callbacks on the render thread instead of pumping
+ * events. Callbacks must be set before the render thread starts.
+ *
+ * <p>A render loop that only draws when something changed learns about it through
+ * {@link #consumeRedrawRequest()}, and about the system asking for the last frame to be shown
+ * again through {@link #consumeRefreshRequest()}. In between it idles in
+ * {@link #awaitEvents(double)}.
  */
 public class Window {
 
@@ -51,6 +82,22 @@ public class Window {
     private int height;
     private String title;
     private boolean resizable;
+    private boolean headless;
+    private Framebuffer framebuffer;
+    private int swapInterval = 1;
+    private GLCapabilities capabilities;
+    private InputEventRing inputEvents;
+    private final InputEventRing.Handler queuedInput = new QueuedInput();
+    private KeyCallback keyCallback;
+    private CursorPosCallback cursorPosCallback;
+    private MouseButtonCallback mouseButtonCallback;
+    private ScrollCallback scrollCallback;
+    // Set from any thread, cleared by the render loop
+    private volatile boolean redrawRequested = true;
+    private volatile boolean refreshRequested = false;
+    // Written by GLFW on the main thread, read by the render loop
+    private volatile int framebufferWidth;
+    private volatile int framebufferHeight;
 
     /**
      * Creates a new Window with the specified dimensions and title.
@@ -65,6 +112,18 @@ public class Window {
         this.resizable = resizable;
     }
 
+    /**
+     * Creates a headless window that renders offscreen at the given resolution.
+     *
+     * @param windowDimensions the size of the offscreen framebuffer
+     * @return the window, to be initialized with {@link #init()}
+     */
+    public static Window headless(WindowDimensions windowDimensions) {
+        Window window = new Window(windowDimensions, "headless", false);
+        window.headless = true;
+        return window;
+    }
+
     /**
      * Initializes GLFW and creates the window.
      */
@@ -72,19 +131,19 @@ public class Window {
         // Set up an error callback
         GLFWErrorCallback.createPrint(System.err).set();
 
+        if (headless) {
+            initHeadless();
+            return;
+        }
+
         // Initialize GLFW
         if (!glfwInit()) {
             throw new IllegalStateException("Unable to initialize GLFW");
         }
 
         // Configure GLFW
-        glfwDefaultWindowHints();
-        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+        setContextHints();
         glfwWindowHint(GLFW_RESIZABLE, resizable ? GLFW_TRUE : GLFW_FALSE);
-        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 3);
-        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 2);
-        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
-        glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GL_TRUE);
 
         // Create the window
         windowHandle = glfwCreateWindow(width, height, title, NULL, NULL);
@@ -99,14 +158,100 @@ public class Window {
         // Make the OpenGL context current
         glfwMakeContextCurrent(windowHandle);
 
-        // Enable v-sync
-        glfwSwapInterval(1);
+        // Enable v-sync, unless another swap interval was requested
+        glfwSwapInterval(swapInterval);
 
         // Make the window visible
         glfwShowWindow(windowHandle);
 
         // Initialize OpenGL capabilities
-        GL.createCapabilities();
+        capabilities = GL.createCapabilities();
+
+        trackFramebuffer();
+    }
+
+    /**
+     * Keeps the framebuffer size up to date and turns window damage and resizes into requests
+     * for the render loop.
+     */
+    private void trackFramebuffer() {
+        try (MemoryStack stack = stackPush()) {
+            IntBuffer pWidth = stack.mallocInt(1);
+            IntBuffer pHeight = stack.mallocInt(1);
+            glfwGetFramebufferSize(windowHandle, pWidth, pHeight);
+            framebufferWidth = pWidth.get(0);
+            framebufferHeight = pHeight.get(0);
+        }
+
+        glfwSetFramebufferSizeCallback(windowHandle, (window, newWidth, newHeight) -> {
+            framebufferWidth = newWidth;
+            framebufferHeight = newHeight;
+            requestRedraw();
+        });
+        glfwSetWindowRefreshCallback(windowHandle, window -> {
+            refreshRequested = true;
+            wakeRenderLoop();
+        });
+        // Lets an idle render thread notice at once that the window should close
+        glfwSetWindowCloseCallback(windowHandle, window -> wakeRenderLoop());
+    }
+
+    /**
+     * Creates a hidden window, falling back to the null platform with OSMesa when there is no
+     * display, and binds an offscreen framebuffer in place of the window's own.
+     */
+    private void initHeadless() {
+        windowHandle = tryCreateHiddenWindow(false);
+        if (windowHandle == NULL) {
+            windowHandle = tryCreateHiddenWindow(true);
+        }
+        if (windowHandle == NULL) {
+            throw new RuntimeException("Failed to create a headless OpenGL context");
+        }
+
+        glfwMakeContextCurrent(windowHandle);
+
+        // Nothing is presented, so never wait for v-sync
+        swapInterval = 0;
+        glfwSwapInterval(0);
+
+        capabilities = GL.createCapabilities();
+
+        framebuffer = new Framebuffer(width, height);
+        framebuffer.bind();
+        framebufferWidth = width;
+        framebufferHeight = height;
+    }
+
+    private long tryCreateHiddenWindow(boolean offscreen) {
+        glfwInitHint(GLFW_PLATFORM, offscreen ? GLFW_PLATFORM_NULL : GLFW_ANY_PLATFORM);
+        if (!glfwInit()) {
+            return NULL;
+        }
+
+        setContextHints();
+        glfwWindowHint(GLFW_RESIZABLE, GLFW_FALSE);
+        if (offscreen) {
+            glfwWindowHint(GLFW_CONTEXT_CREATION_API, GLFW_OSMESA_CONTEXT_API);
+        }
+
+        long handle = glfwCreateWindow(width, height, title, NULL, NULL);
+        if (handle == NULL) {
+            glfwTerminate();
+        }
+        return handle;
+    }
+
+    /**
+     * Requests a hidden window with an OpenGL 3.2 core context.
+     */
+    private static void setContextHints() {
+        glfwDefaultWindowHints();
+        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 3);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 2);
+        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+        glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GL_TRUE);
     }
 
     /**
@@ -133,7 +278,8 @@ public class Window {
     }
 
     /**
-     * Sets a key callback for the window.
+     * Sets a key callback for the window. The callback is always called by GLFW on the main
+     * thread, even when input events are queued.
      *
      * @param callback the key callback
      */
@@ -147,8 +293,14 @@ public class Window {
      * @param callback the key callback lambda
      */
     public void setKeyCallback(KeyCallback callback) {
-        glfwSetKeyCallback(windowHandle, (window, key, scancode, action, mods) ->
-            callback.invoke(window, key, scancode, action, mods));
+        keyCallback = callback;
+        glfwSetKeyCallback(windowHandle, (window, key, scancode, action, mods) -> {
+            if (inputEvents != null) {
+                inputEvents.offerKey(key, scancode, action, mods);
+            } else {
+                callback.invoke(window, key, scancode, action, mods);
+            }
+        });
     }
 
     /**
@@ -157,8 +309,14 @@ public class Window {
      * @param callback the cursor position callback lambda
      */
     public void setCursorPosCallback(CursorPosCallback callback) {
-        glfwSetCursorPosCallback(windowHandle, (window, xpos, ypos) ->
-            callback.invoke(window, xpos, ypos));
+        cursorPosCallback = callback;
+        glfwSetCursorPosCallback(windowHandle, (window, xpos, ypos) -> {
+            if (inputEvents != null) {
+                inputEvents.offerCursorPos(xpos, ypos);
+            } else {
+                callback.invoke(window, xpos, ypos);
+            }
+        });
     }
 
     /**
@@ -167,8 +325,14 @@ public class Window {
      * @param callback the mouse button callback lambda
      */
     public void setMouseButtonCallback(MouseButtonCallback callback) {
-        glfwSetMouseButtonCallback(windowHandle, (window, button, action, mods) ->
-            callback.invoke(window, button, action, mods));
+        mouseButtonCallback = callback;
+        glfwSetMouseButtonCallback(windowHandle, (window, button, action, mods) -> {
+            if (inputEvents != null) {
+                inputEvents.offerMouseButton(button, action, mods);
+            } else {
+                callback.invoke(window, button, action, mods);
+            }
+        });
     }
 
     /**
@@ -177,8 +341,121 @@ public class Window {
      * @param callback the scroll callback lambda
      */
     public void setScrollCallback(ScrollCallback callback) {
-        glfwSetScrollCallback(windowHandle, (window, xoffset, yoffset) ->
-            callback.invoke(window, xoffset, yoffset));
+        scrollCallback = callback;
+        glfwSetScrollCallback(windowHandle, (window, xoffset, yoffset) -> {
+            if (inputEvents != null) {
+                inputEvents.offerScroll(xoffset, yoffset);
+            } else {
+                callback.invoke(window, xoffset, yoffset);
+            }
+        });
+    }
+
+    /**
+     * Queues the input events of the lambda callbacks instead of calling them from GLFW, so they
+     * can be run on another thread by {@link #pollEvents()}. Must be called on the main thread
+     * while no other thread calls {@link #pollEvents()}.
+     *
+     * @param queue the queue to fill, or null to call the callbacks directly again
+     */
+    public void setInputEventQueue(InputEventRing queue) {
+        inputEvents = queue;
+    }
+
+    /**
+     * Makes the OpenGL context current on the calling thread.
+     */
+    public void makeContextCurrent() {
+        glfwMakeContextCurrent(windowHandle);
+        GL.setCapabilities(capabilities);
+    }
+
+    /**
+     * Detaches the OpenGL context from the calling thread, so another thread can make it current.
+     */
+    public void releaseContext() {
+        GL.setCapabilities(null);
+        glfwMakeContextCurrent(NULL);
+    }
+
+    /**
+     * Processes events on the main thread, waiting for up to the given time if there are none.
+     *
+     * @param timeoutSeconds the longest time to wait, in seconds
+     */
+    public void waitEvents(double timeoutSeconds) {
+        glfwWaitEventsTimeout(timeoutSeconds);
+    }
+
+    /**
+     * Wakes up the main thread if it is waiting in {@link #waitEvents(double)}. May be called
+     * from any thread.
+     */
+    public void wakeUp() {
+        glfwPostEmptyEvent();
+    }
+
+    /**
+     * Waits until there are events to handle, a redraw is requested, or the timeout passes, then
+     * handles the events, for a render loop with nothing to draw. While input events are queued,
+     * this waits for the queue on the calling thread, as {@link #pollEvents()} drains it; otherwise
+     * it processes events like {@link #waitEvents(double)}. May return early.
+     *
+     * @param timeoutSeconds the longest time to wait, in seconds
+     */
+    public void awaitEvents(double timeoutSeconds) {
+        InputEventRing queue = inputEvents;
+        if (queue != null) {
+            queue.await(Math.round(timeoutSeconds * 1e9), TimeUnit.NANOSECONDS);
+            queue.drain(queuedInput);
+        } else {
+            glfwWaitEventsTimeout(timeoutSeconds);
+        }
+    }
+
+    /**
+     * Marks what the window shows as out of date, so a render loop that renders on demand draws
+     * a new frame. May be called from any thread.
+     */
+    public void requestRedraw() {
+        redrawRequested = true;
+        wakeRenderLoop();
+    }
+
+    /**
+     * Checks whether a redraw was requested since the last call, and clears the request. A new
+     * window starts with a redraw requested, and resizing the window requests one.
+     *
+     * @return true if a new frame should be drawn
+     */
+    public boolean consumeRedrawRequest() {
+        if (!redrawRequested) {
+            return false;
+        }
+        redrawRequested = false;
+        return true;
+    }
+
+    /**
+     * Checks whether the system asked for the window contents to be drawn again since the last
+     * call, for example after the window was uncovered, and clears the request. Showing the last
+     * frame again is enough to satisfy it.
+     *
+     * @return true if the last frame should be presented again
+     */
+    public boolean consumeRefreshRequest() {
+        if (!refreshRequested) {
+            return false;
+        }
+        refreshRequested = false;
+        return true;
+    }
+
+    private void wakeRenderLoop() {
+        InputEventRing queue = inputEvents;
+        if (queue != null) {
+            queue.wakeConsumer();
+        }
     }
 
     /**
@@ -236,27 +513,148 @@ public class Window {
     }
 
     /**
-     * Swaps the front and back buffers.
+     * Swaps the front and back buffers. A headless window has nothing to present, so this does
+     * nothing.
      */
     public void swapBuffers() {
-        glfwSwapBuffers(windowHandle);
+        if (!headless) {
+            glfwSwapBuffers(windowHandle);
+        }
     }
 
     /**
-     * Polls for window events.
+     * Sets how many display refreshes a buffer swap waits for. Takes effect at once if the window
+     * is initialized, and otherwise when it is. A headless window never waits, so the interval is
+     * ignored.
+     *
+     * @param interval 1 for v-sync, 0 to never wait, or -1 for adaptive v-sync when
+     *                 {@link #isSwapControlTearSupported()}
+     */
+    public void setSwapInterval(int interval) {
+        if (headless) {
+            return;
+        }
+        swapInterval = interval;
+        if (windowHandle != NULL) {
+            glfwSwapInterval(interval);
+        }
+    }
+
+    /**
+     * Gets the swap interval.
+     *
+     * @return the number of refreshes a buffer swap waits for, or -1 for adaptive v-sync
+     */
+    public int getSwapInterval() {
+        return swapInterval;
+    }
+
+    /**
+     * Checks if the context supports negative swap intervals, which swap at once when a frame
+     * misses v-sync instead of waiting for the next refresh. Requires an initialized window.
+     *
+     * @return true if adaptive v-sync is available
+     */
+    public boolean isSwapControlTearSupported() {
+        return glfwExtensionSupported("WGL_EXT_swap_control_tear")
+            || glfwExtensionSupported("GLX_EXT_swap_control_tear");
+    }
+
+    /**
+     * Polls for window events. While input events are queued, runs the callbacks of the queued
+     * events instead, on the calling thread, and leaves pumping events to the main thread.
      */
     public void pollEvents() {
-        glfwPollEvents();
+        if (inputEvents != null) {
+            inputEvents.drain(queuedInput);
+        } else {
+            glfwPollEvents();
+        }
+    }
+
+    /**
+     * Runs the lambda callbacks for queued input events.
+     */
+    private final class QueuedInput implements InputEventRing.Handler {
+
+        @Override
+        public void key(int key, int scancode, int action, int mods) {
+            if (keyCallback != null) {
+                keyCallback.invoke(windowHandle, key, scancode, action, mods);
+            }
+        }
+
+        @Override
+        public void mouseButton(int button, int action, int mods) {
+            if (mouseButtonCallback != null) {
+                mouseButtonCallback.invoke(windowHandle, button, action, mods);
+            }
+        }
+
+        @Override
+        public void cursorPos(double xpos, double ypos) {
+            if (cursorPosCallback != null) {
+                cursorPosCallback.invoke(windowHandle, xpos, ypos);
+            }
+        }
+
+        @Override
+        public void scroll(double xoffset, double yoffset) {
+            if (scrollCallback != null) {
+                scrollCallback.invoke(windowHandle, xoffset, yoffset);
+            }
+        }
     }
 
     /**
      * Destroys the window and frees the callbacks.
      */
     public void destroy() {
+        if (framebuffer != null) {
+            framebuffer.delete();
+            framebuffer = null;
+        }
         glfwFreeCallbacks(windowHandle);
         glfwDestroyWindow(windowHandle);
     }
 
+    /**
+     * Checks if the window renders offscreen.
+     *
+     * @return true if the window was created with {@link #headless(WindowDimensions)}
+     */
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Gets the offscreen framebuffer of a headless window.
+     *
+     * @return the framebuffer, or null if the window is not headless or not initialized
+     */
+    public Framebuffer getFramebuffer() {
+        return framebuffer;
+    }
+
+    /**
+     * Gets the width of the window's framebuffer, which differs from the window width on
+     * high-density displays and follows the window when it is resized.
+     *
+     * @return the framebuffer width in pixels
+     */
+    public int getFramebufferWidth() {
+        return framebufferWidth;
+    }
+
+    /**
+     * Gets the height of the window's framebuffer.
+     *
+     * @return the framebuffer height in pixels
+     */
+    public int getFramebufferHeight() {
+        return framebufferHeight;
+    }
+
     /**
      * Gets the window handle.
      *
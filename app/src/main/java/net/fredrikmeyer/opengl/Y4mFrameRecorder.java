@@ -0,0 +1,155 @@
+package net.fredrikmeyer.opengl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.lwjgl.BufferUtils;
+
+/**
+ * Records frames as a YUV4MPEG2 ({@code .y4m}) video, which ffmpeg, mpv and most encoders read
+ * directly.
+ *
+ * <p>Frames are converted to full-range BT.601 YUV with 4:2:0 chroma subsampling: every pixel
+ * keeps its own brightness, while color is stored once per 2x2 block. That makes a frame 3/8 of
+ * the size of its RGBA original. The planes are assembled in a reused off-heap buffer and written
+ * to the file channel without passing through the Java heap.
+ */
+public class Y4mFrameRecorder extends ChannelFrameRecorder {
+
+    private static final byte[] FRAME_HEADER = "FRAME\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final Path file;
+    private final int framesPerSecond;
+    private final ByteBuffer frameHeader = BufferUtils.createByteBuffer(FRAME_HEADER.length)
+        .put(FRAME_HEADER).flip();
+    private ByteBuffer planes = BufferUtils.createByteBuffer(0);
+    private int[] upperRow = new int[0];
+    private int[] lowerRow = new int[0];
+
+    /**
+     * Creates a recorder that writes to the given file.
+     *
+     * @param file            the video file to write
+     * @param framesPerSecond the frame rate stored in the video header
+     */
+    public Y4mFrameRecorder(Path file, int framesPerSecond) {
+        if (framesPerSecond < 1) {
+            throw new IllegalArgumentException(
+                "framesPerSecond must be positive, was " + framesPerSecond);
+        }
+        this.file = file;
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    @Override
+    protected Path outputFile(int width, int height) {
+        return file;
+    }
+
+    @Override
+    protected void writeHeader(FileChannel channel, int width, int height) throws IOException {
+        String header = "YUV4MPEG2 W" + width + " H" + height + " F" + framesPerSecond
+            + ":1 Ip A1:1 C420jpeg XCOLORRANGE=FULL\n";
+        writeFully(channel, ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Override
+    protected void writeFrame(FileChannel channel, ByteBuffer pixels, int width, int height)
+        throws IOException {
+        toYuv420(pixels, width, height);
+        frameHeader.rewind();
+        writeFully(channel, frameHeader, planes);
+    }
+
+    /**
+     * Returns the size of one frame's Y, U and V planes together.
+     *
+     * @param width  the frame width in pixels
+     * @param height the frame height in pixels
+     * @return the size in bytes
+     */
+    static int planesSize(int width, int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    /**
+     * Converts a bottom-up RGBA frame into top-down Y, U and V planes in {@link #planes}.
+     */
+    private void toYuv420(ByteBuffer pixels, int width, int height) {
+        int size = planesSize(width, height);
+        if (planes.capacity() < size) {
+            planes = BufferUtils.createByteBuffer(size);
+        }
+        planes.clear().limit(size);
+        if (upperRow.length != width) {
+            upperRow = new int[width];
+            lowerRow = new int[width];
+        }
+
+        // Read RGBA as big-endian ints (0xRRGGBBAA)
+        IntBuffer source = pixels.duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        int uPlane = width * height;
+        int vPlane = uPlane + chromaWidth * chromaHeight;
+
+        for (int cy = 0; cy < chromaHeight; cy++) {
+            // An odd last row is paired with itself, as is an odd last column below
+            int upper = 2 * cy;
+            int lower = Math.min(upper + 1, height - 1);
+            source.get((height - 1 - upper) * width, upperRow, 0, width);
+            source.get((height - 1 - lower) * width, lowerRow, 0, width);
+            putLuma(upperRow, upper * width);
+            if (lower != upper) {
+                putLuma(lowerRow, lower * width);
+            }
+
+            for (int cx = 0; cx < chromaWidth; cx++) {
+                int left = 2 * cx;
+                int right = Math.min(left + 1, width - 1);
+                int p0 = upperRow[left];
+                int p1 = upperRow[right];
+                int p2 = lowerRow[left];
+                int p3 = lowerRow[right];
+                int r = (red(p0) + red(p1) + red(p2) + red(p3) + 2) >> 2;
+                int g = (green(p0) + green(p1) + green(p2) + green(p3) + 2) >> 2;
+                int b = (blue(p0) + blue(p1) + blue(p2) + blue(p3) + 2) >> 2;
+                int chroma = cy * chromaWidth + cx;
+                planes.put(uPlane + chroma, chroma(-43 * r - 85 * g + 128 * b));
+                planes.put(vPlane + chroma, chroma(128 * r - 107 * g - 21 * b));
+            }
+        }
+    }
+
+    private void putLuma(int[] row, int offset) {
+        for (int x = 0; x < row.length; x++) {
+            int p = row[x];
+            planes.put(offset + x,
+                (byte) ((77 * red(p) + 150 * green(p) + 29 * blue(p) + 128) >> 8));
+        }
+    }
+
+    /**
+     * Scales a chroma sum with weights in 256ths back to a byte centered on 128. Pure blue and
+     * pure red land just above 255 and are clamped.
+     */
+    private static byte chroma(int weighted) {
+        return (byte) Math.min(255, ((weighted + 128) >> 8) + 128);
+    }
+
+    private static int red(int rgba) {
+        return rgba >>> 24;
+    }
+
+    private static int green(int rgba) {
+        return (rgba >>> 16) & 0xFF;
+    }
+
+    private static int blue(int rgba) {
+        return (rgba >>> 8) & 0xFF;
+    }
+}
@@ -4,9 +4,6 @@ import static org.lwjgl.opengl.GL11.GL_FLOAT;
 import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
 import static org.lwjgl.opengl.GL11.glDrawElements;
 import static org.lwjgl.opengl.GL11C.GL_TRIANGLES;
-import static org.lwjgl.opengl.GL20.glGetUniformLocation;
-import static org.lwjgl.opengl.GL20.glUniform1f;
-import static org.lwjgl.opengl.GL20.glUniform2f;
 
 import net.fredrikmeyer.opengl.ElementBufferObject;
 import net.fredrikmeyer.opengl.IScene;
@@ -14,7 +11,6 @@ import net.fredrikmeyer.opengl.Shader;
 import net.fredrikmeyer.opengl.Utils;
 import net.fredrikmeyer.opengl.VertexArrayObject;
 import net.fredrikmeyer.opengl.VertexBufferObject;
-import org.lwjgl.glfw.GLFW;
 
 /**
  * A scene that renders an algebraic curve.
@@ -26,9 +22,7 @@ public class AlgCurveScene implements IScene {
     private ElementBufferObject ebo;
     private Shader shader;
     private int[] quadIndices;
-    private int uParam;
-    private int uRangeId;
-    private int uThresholdId;
+    private float time = 0;
 
     /**
      * Constructs a new AlgCurveScene instance, initializing the shader and geometry for the scene.
@@ -41,11 +35,6 @@ public class AlgCurveScene implements IScene {
 
         // Create geometry
         createGeometry();
-
-        // Get uniform locations
-        uParam = glGetUniformLocation(shader.shaderProgram(), "uParam");
-        uRangeId = glGetUniformLocation(shader.shaderProgram(), "uRange");
-        uThresholdId = glGetUniformLocation(shader.shaderProgram(), "uThreshold");
     }
 
     /**
@@ -78,7 +67,7 @@ public class AlgCurveScene implements IScene {
 
     @Override
     public void update(float deltaTime) {
-        // No updates needed for this scene
+        time += deltaTime;
     }
 
     @Override
@@ -86,13 +75,13 @@ public class AlgCurveScene implements IScene {
         shader.activate();
 
         // Set uniforms
-        glUniform1f(uParam,
-            (float) (Math.sin(GLFW.glfwGetTime() / 2) * Math.abs(Math.sin(GLFW.glfwGetTime() / 2))));
+        shader.setUniform("uParam",
+            (float) (Math.sin(time / 2) * Math.abs(Math.sin(time / 2))));
 
         // Define world range for x and y (e.g., -2 to 2)
-        glUniform2f(uRangeId, -2.0f, 2.0f);
+        shader.setUniform("uRange", -2.0f, 2.0f);
         // Define the threshold for floating-point precision
-        glUniform1f(uThresholdId, 0.01f);
+        shader.setUniform("uThreshold", 0.01f);
 
         vao.bind();
 
@@ -4,38 +4,51 @@ import static org.lwjgl.opengl.GL11.GL_FLOAT;
 import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
 import static org.lwjgl.opengl.GL11.glDrawElements;
 import static org.lwjgl.opengl.GL11C.GL_TRIANGLES;
-import static org.lwjgl.opengl.GL20.glGetUniformLocation;
-import static org.lwjgl.opengl.GL20.glUniform1f;
-import static org.lwjgl.opengl.GL20.glUniform3f;
 
 import net.fredrikmeyer.opengl.Camera;
 import net.fredrikmeyer.opengl.ElementBufferObject;
 import net.fredrikmeyer.opengl.IScene;
+import net.fredrikmeyer.opengl.ProgressiveAccumulator;
+import net.fredrikmeyer.opengl.ResourceLoader;
 import net.fredrikmeyer.opengl.Shader;
-import net.fredrikmeyer.opengl.Utils;
+import net.fredrikmeyer.opengl.ShaderWatcher;
+import net.fredrikmeyer.opengl.TemporalReprojection;
 import net.fredrikmeyer.opengl.VertexArrayObject;
 import net.fredrikmeyer.opengl.VertexBufferObject;
-import org.joml.Vector3f;
 import org.lwjgl.glfw.GLFW;
 
 /**
  * A scene that renders a 3D algebraic surface using ray marching.
  * The surface is defined by the equation: x³y+xz³+y³z+z³+7z²+5z=0
+ *
+ * <p>In {@link #setProgressive(boolean) progressive} mode, a still view is refined over the
+ * following frames into an anti-aliased image, and the scene counts as animated until it is.
+ * With a {@link #setReprojection(TemporalReprojection) reprojection}, frames drawn while the view
+ * moves start marching near the previous frame's hits.
  */
 public class AlgSurfaceScene implements IScene {
 
+    private static final String VERTEX_SHADER = "algsurface/vertex.glsl";
+    private static final String FRAGMENT_SHADER = "algsurface/fragment.glsl";
+
     private VertexArrayObject vao;
     private VertexBufferObject vbo;
     private ElementBufferObject ebo;
     private Shader shader;
     private int[] quadIndices;
-    private int uTimeId;
-    private int uCameraPositionId;
-    private int uCameraOrientationId;
-    private int uLightPositionId;
-    private int uAutoRotateId;
     private Camera camera;
     private boolean autoRotate = false;
+    // Samples per pixel of a fully refined still image
+    private static final int MAX_SAMPLES = 16;
+    private final ProgressiveAccumulator accumulator = new ProgressiveAccumulator(MAX_SAMPLES);
+    private final ProgressiveAccumulator.SamplePass samplePass = this::drawSample;
+    private boolean progressive = false;
+    // The view the accumulated samples were drawn from
+    private long accumulatedCameraVersion = -1;
+    private boolean accumulatedAutoRotate = false;
+    private long accumulatedShaderVersion = 0;
+    private TemporalReprojection reprojection;
+    private final Runnable marchPass = this::march;
 
     /**
      * Constructs a new AlgSurfaceScene instance, initializing the shader and geometry for the scene.
@@ -46,19 +59,13 @@ public class AlgSurfaceScene implements IScene {
         this.camera = camera;
 
         // Load shader
-        shader = new Shader(
-            Utils.loadResource("algsurface/vertex.glsl"),
-            Utils.loadResource("algsurface/fragment.glsl"));
+        shader = new ResourceLoader().loadShader(VERTEX_SHADER, FRAGMENT_SHADER);
 
         // Create geometry
         createGeometry();
 
-        // Get uniform locations
-        uTimeId = glGetUniformLocation(shader.shaderProgram(), "uTime");
-        uCameraPositionId = glGetUniformLocation(shader.shaderProgram(), "uCameraPosition");
-        uCameraOrientationId = glGetUniformLocation(shader.shaderProgram(), "uCameraOrientation");
-        uLightPositionId = glGetUniformLocation(shader.shaderProgram(), "uLightPosition");
-        uAutoRotateId = glGetUniformLocation(shader.shaderProgram(), "uAutoRotate");
+        shader.activate();
+        shader.setUniform("uStartDepth", TemporalReprojection.START_DEPTH_UNIT);
     }
 
     /**
@@ -94,6 +101,50 @@ public class AlgSurfaceScene implements IScene {
         // No updates needed for this scene
     }
 
+    @Override
+    public boolean isAnimated() {
+        // The surface only changes with the camera, as the rotation angle is fixed, but a still
+        // view keeps changing until it is fully refined
+        return progressive && !accumulator.isConverged();
+    }
+
+    @Override
+    public boolean isRefining() {
+        return progressive && accumulator.isRefining();
+    }
+
+    /**
+     * Sets whether a still view is refined over several frames. The first frame after the view
+     * changes costs as much as without refinement; the following ones add jittered samples to
+     * part of the image at a time until each pixel has 16 samples.
+     *
+     * @param progressive true to refine still views
+     */
+    public void setProgressive(boolean progressive) {
+        this.progressive = progressive;
+        accumulator.reset();
+    }
+
+    /**
+     * Sets the reprojection that starts each pixel's march near last frame's hit. In progressive
+     * mode it is used while the view changes, and refining starts over from a full march once
+     * the view is still. The scene deletes it in {@link #cleanup()}.
+     *
+     * @param reprojection the reprojection, or null to march every pixel from the camera
+     */
+    public void setReprojection(TemporalReprojection reprojection) {
+        this.reprojection = reprojection;
+    }
+
+    /**
+     * Reloads the scene's shader whenever its sources are edited.
+     *
+     * @param watcher the watcher of the shader sources
+     */
+    public void watchShaders(ShaderWatcher watcher) {
+        watcher.watch(shader, VERTEX_SHADER, FRAGMENT_SHADER);
+    }
+
     /**
      * Toggles the automatic rotation of the scene.
      * 
@@ -117,28 +168,47 @@ public class AlgSurfaceScene implements IScene {
     public void render() {
         shader.activate();
 
-        // Time uniform is no longer used for animation
-        // We still set it to 0.0 in case any code references it
-        glUniform1f(uTimeId, 0.0f);
-
-        // Set camera position from the Camera object
-        Vector3f cameraPosition = camera.getPosition();
-        glUniform3f(uCameraPositionId, cameraPosition.x, cameraPosition.y, cameraPosition.z);
-
-        // Set camera orientation from the Camera object
-        Vector3f cameraOrientation = camera.getOrientation();
-        glUniform3f(uCameraOrientationId, cameraOrientation.x, cameraOrientation.y, cameraOrientation.z);
-
-        // Set auto-rotate state (1 for enabled, 0 for disabled)
-        glUniform1f(uAutoRotateId, autoRotate ? 1.0f : 0.0f);
+        // The camera comes from the frame uniforms
 
         // Set light position (fixed position, not time-dependent)
         float lightX = 3.0f;
         float lightZ = 0.0f;
-        glUniform3f(uLightPositionId, lightX, 5.0f, lightZ);
+        shader.setUniform("uLightPosition", lightX, 5.0f, lightZ);
 
         vao.bind();
+        shader.setUniform("uReproject", 0);
+
+        boolean shaderChanged = shader.getVersion() != accumulatedShaderVersion;
+        boolean viewChanged = camera.getVersion() != accumulatedCameraVersion
+            || autoRotate != accumulatedAutoRotate || shaderChanged;
+        if (viewChanged) {
+            accumulatedCameraVersion = camera.getVersion();
+            accumulatedAutoRotate = autoRotate;
+            accumulatedShaderVersion = shader.getVersion();
+            accumulator.reset();
+        }
+        if (shaderChanged && reprojection != null) {
+            // The previous hits may be on a surface that is no longer there
+            reprojection.invalidate();
+        }
+        if (reprojection != null && (!progressive || viewChanged)) {
+            reprojection.render(camera, marchPass);
+        } else if (progressive) {
+            accumulator.render(samplePass);
+        } else {
+            drawSample(0, 0);
+        }
+    }
+
+    private void march() {
+        shader.activate();
+        vao.bind();
+        shader.setUniform("uReproject", 1);
+        drawSample(0, 0);
+    }
 
+    private void drawSample(float jitterX, float jitterY) {
+        shader.setUniform("uJitter", jitterX, jitterY);
         glDrawElements(GL_TRIANGLES, quadIndices.length, GL_UNSIGNED_INT, 0);
     }
 
@@ -148,5 +218,9 @@ public class AlgSurfaceScene implements IScene {
         vbo.delete();
         ebo.delete();
         shader.delete();
+        accumulator.delete();
+        if (reprojection != null) {
+            reprojection.delete();
+        }
     }
 }
@@ -0,0 +1,196 @@
+package net.fredrikmeyer.opengl.batch;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import net.fredrikmeyer.opengl.BatchRenderer;
+import net.fredrikmeyer.opengl.Camera;
+import net.fredrikmeyer.opengl.FrameRecorder;
+import net.fredrikmeyer.opengl.IScene;
+import net.fredrikmeyer.opengl.PipelinedFrameRecorder;
+import net.fredrikmeyer.opengl.PngSequenceRecorder;
+import net.fredrikmeyer.opengl.ProgramBinaryCache;
+import net.fredrikmeyer.opengl.RawFrameRecorder;
+import net.fredrikmeyer.opengl.RecordingFormat;
+import net.fredrikmeyer.opengl.Renderer;
+import net.fredrikmeyer.opengl.ScreenshotManager;
+import net.fredrikmeyer.opengl.Shader;
+import net.fredrikmeyer.opengl.Window;
+import net.fredrikmeyer.opengl.WindowDimensions;
+import net.fredrikmeyer.opengl.Y4mFrameRecorder;
+import net.fredrikmeyer.opengl.algcurve.AlgCurveScene;
+import net.fredrikmeyer.opengl.algsurface.AlgSurfaceScene;
+import net.fredrikmeyer.opengl.chladni.Schladni;
+import net.fredrikmeyer.opengl.raymarching.RayMarchingScene;
+import org.joml.Vector3f;
+import org.lwjgl.glfw.GLFWErrorCallback;
+
+/**
+ * Renders an animation of one of the scenes offline, without opening a window.
+ *
+ * <p>Usage: {@code App <scene> <width> <height> <frames> <deltaTime> [y4m|raw|png] [directory]}.
+ * The scene is advanced by exactly {@code deltaTime} seconds per frame, so the output does not
+ * depend on how fast the machine renders, and is written to {@code screenshots} by default.
+ */
+public class App {
+
+    private static final Map<String, Function<Camera, IScene>> SCENES = Map.of(
+        "algcurve", camera -> new AlgCurveScene(),
+        "algsurface", AlgSurfaceScene::new,
+        "chladni", camera -> new Schladni(),
+        "raymarching", RayMarchingScene::new);
+
+    // Frames that may wait for the writer thread of Y4M and raw recordings
+    private static final int WRITE_BUFFERS = 4;
+    // Frames that may wait to be PNG encoded, spread over the common pool
+    private static final int PNG_BUFFERS = 2 * ForkJoinPool.getCommonPoolParallelism() + 1;
+
+    private final String sceneName;
+    private final WindowDimensions dimensions;
+    private final int frameCount;
+    private final float deltaTime;
+    private final RecordingFormat format;
+    private final Path directory;
+
+    private App(String sceneName, WindowDimensions dimensions, int frameCount, float deltaTime,
+        RecordingFormat format, Path directory) {
+        this.sceneName = sceneName;
+        this.dimensions = dimensions;
+        this.frameCount = frameCount;
+        this.deltaTime = deltaTime;
+        this.format = format;
+        this.directory = directory;
+    }
+
+    /**
+     * Runs the batch render.
+     */
+    public void run() {
+        Window window = Window.headless(dimensions);
+        try {
+            window.init();
+
+            // Load the shader programs linked by earlier runs instead of compiling them
+            Shader.setProgramCache(
+                new ProgramBinaryCache(Path.of(ProgramBinaryCache.DEFAULT_DIRECTORY)));
+
+            float aspectRatio = (float) dimensions.width() / dimensions.height();
+            Camera camera = new Camera(aspectRatio, new Vector3f(0f, 0f, 5f));
+            IScene scene = SCENES.get(sceneName).apply(camera);
+            ScreenshotManager screenshotManager = new ScreenshotManager(directory.toString());
+            Renderer renderer = new Renderer(window, scene, screenshotManager);
+            renderer.setCamera(camera);
+
+            System.out.printf(Locale.ROOT, "Rendering %d frames of %s at %dx%d, %.4f s per frame%n",
+                frameCount, sceneName, dimensions.width(), dimensions.height(), deltaTime);
+            BatchRenderer.Result result = new BatchRenderer(window, renderer)
+                .render(frameCount, deltaTime, newRecorder());
+            System.out.printf(Locale.ROOT,
+                "Rendered %d frames in %.2f s (%.1f fps), encoded in %.2f s (%.1f fps)%n",
+                result.frames(), result.renderNanos() / 1e9, result.renderedFramesPerSecond(),
+                result.totalNanos() / 1e9, result.encodedFramesPerSecond());
+            System.out.println(result.output() != null
+                ? "Saved to: " + result.output() : "Failed to save the recording");
+
+            renderer.cleanup();
+            scene.cleanup();
+            // Ends a recording, which reads back its last frames with the context
+            screenshotManager.cleanup();
+            window.destroy();
+        } finally {
+            org.lwjgl.glfw.GLFW.glfwTerminate();
+            GLFWErrorCallback callback = org.lwjgl.glfw.GLFW.glfwSetErrorCallback(null);
+            if (callback != null) {
+                callback.free();
+            }
+        }
+    }
+
+    /**
+     * Creates the recorder for the chosen format. Y4M and raw frames are converted and written on
+     * a thread of their own; PNG frames are encoded in parallel.
+     */
+    private FrameRecorder newRecorder() {
+        String baseName = "batch_" + sceneName + "_" + dimensions.width() + "x"
+            + dimensions.height();
+        int fps = Math.max(1, Math.round(1 / deltaTime));
+        return switch (format) {
+            case Y4M -> new PipelinedFrameRecorder(
+                new Y4mFrameRecorder(directory.resolve(baseName + ".y4m"), fps), WRITE_BUFFERS);
+            case RAW_RGBA -> new PipelinedFrameRecorder(
+                new RawFrameRecorder(directory.resolve(baseName), fps), WRITE_BUFFERS);
+            case PNG_SEQUENCE -> new PngSequenceRecorder(directory.resolve(baseName),
+                ForkJoinPool.commonPool(), PNG_BUFFERS);
+            case GIF -> throw new IllegalArgumentException(
+                "GIF is not supported for batch renders");
+        };
+    }
+
+    /**
+     * Parses the command line.
+     *
+     * @param args the command line arguments
+     * @return the configured application
+     * @throws IllegalArgumentException if the arguments are invalid
+     */
+    static App parse(String[] args) {
+        if (args.length < 5 || args.length > 7) {
+            throw new IllegalArgumentException("Expected 5 to 7 arguments, got " + args.length);
+        }
+        String sceneName = args[0];
+        if (!SCENES.containsKey(sceneName)) {
+            throw new IllegalArgumentException(
+                "Unknown scene " + sceneName + ", expected one of " + SCENES.keySet());
+        }
+        int width = Integer.parseInt(args[1]);
+        int height = Integer.parseInt(args[2]);
+        int frameCount = Integer.parseInt(args[3]);
+        float deltaTime = Float.parseFloat(args[4]);
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(
+                "Resolution must be positive, was " + width + "x" + height);
+        }
+        if (frameCount < 0) {
+            throw new IllegalArgumentException(
+                "Frame count must not be negative, was " + frameCount);
+        }
+        if (!(deltaTime > 0)) {
+            throw new IllegalArgumentException("Time step must be positive, was " + deltaTime);
+        }
+        RecordingFormat format = args.length > 5 ? parseFormat(args[5]) : RecordingFormat.Y4M;
+        Path directory = Path.of(args.length > 6 ? args[6] : "screenshots");
+        return new App(sceneName, WindowDimensions.of(width, height), frameCount, deltaTime,
+            format, directory);
+    }
+
+    private static RecordingFormat parseFormat(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "y4m" -> RecordingFormat.Y4M;
+            case "raw" -> RecordingFormat.RAW_RGBA;
+            case "png" -> RecordingFormat.PNG_SEQUENCE;
+            default -> throw new IllegalArgumentException(
+                "Unknown format " + name + ", expected y4m, raw or png");
+        };
+    }
+
+    /**
+     * Application entry point.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        App app;
+        try {
+            app = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: App <scene> <width> <height> <frames> <deltaTime>"
+                + " [y4m|raw|png] [directory]");
+            System.exit(2);
+            return;
+        }
+        app.run();
+    }
+}
@@ -1,10 +1,13 @@
 package net.fredrikmeyer.opengl.chladni;
 
+import java.nio.file.Path;
 import net.fredrikmeyer.opengl.Camera;
 import net.fredrikmeyer.opengl.IScene;
 import net.fredrikmeyer.opengl.InputHandler;
+import net.fredrikmeyer.opengl.ProgramBinaryCache;
 import net.fredrikmeyer.opengl.Renderer;
 import net.fredrikmeyer.opengl.ScreenshotManager;
+import net.fredrikmeyer.opengl.Shader;
 import net.fredrikmeyer.opengl.Window;
 import net.fredrikmeyer.opengl.WindowDimensions;
 import org.joml.Vector3f;
@@ -49,6 +52,10 @@ public class App {
         window = new Window(WindowDimensions.of(600, 600), "Algebraic Curve Visualization", true);
         window.init();
 
+        // Load the shader programs linked by earlier runs instead of compiling them
+        Shader.setProgramCache(
+            new ProgramBinaryCache(Path.of(ProgramBinaryCache.DEFAULT_DIRECTORY)));
+
         // Create the scene
         scene = new Schladni();
 
@@ -77,17 +84,19 @@ public class App {
      * Runs the main application loop.
      */
     private void mainLoop() {
-        // Run the rendering loop
-        renderer.renderLoop();
+        // Render on a dedicated thread while this thread handles window events
+        renderer.renderLoopThreaded();
     }
 
     /**
      * Cleans up resources used by the application.
      */
     private void cleanup() {
+        renderer.cleanup();
         scene.cleanup();
-        window.destroy();
+        // Ends a recording, which reads back its last frames with the context
         screenshotManager.cleanup();
+        window.destroy();
     }
 
     /**
@@ -4,17 +4,13 @@ import static org.lwjgl.opengl.GL11.GL_FLOAT;
 import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
 import static org.lwjgl.opengl.GL11.glDrawElements;
 import static org.lwjgl.opengl.GL11C.GL_TRIANGLES;
-import static org.lwjgl.opengl.GL20.glGetUniformLocation;
-import static org.lwjgl.opengl.GL20.glUniform1f;
-import static org.lwjgl.opengl.GL20.glUniform2f;
 
 import net.fredrikmeyer.opengl.ElementBufferObject;
 import net.fredrikmeyer.opengl.IScene;
+import net.fredrikmeyer.opengl.ResourceLoader;
 import net.fredrikmeyer.opengl.Shader;
-import net.fredrikmeyer.opengl.Utils;
 import net.fredrikmeyer.opengl.VertexArrayObject;
 import net.fredrikmeyer.opengl.VertexBufferObject;
-import org.lwjgl.glfw.GLFW;
 
 /**
  * A scene that renders an algebraic curve.
@@ -26,9 +22,6 @@ public class Schladni implements IScene {
     private ElementBufferObject ebo;
     private final Shader shader;
     private int[] quadIndices;
-    private final int uParam;
-    private final int uRangeId;
-    private final int uTimeId;
     private float time = 0;
 
     /**
@@ -36,17 +29,10 @@ public class Schladni implements IScene {
      */
     public Schladni() {
         // Load shader
-        shader = new Shader(
-            Utils.loadResource("schladni/vertex.glsl"),
-            Utils.loadResource("schladni/fragment.glsl"));
+        shader = new ResourceLoader().loadShader("schladni/vertex.glsl", "schladni/fragment.glsl");
 
         // Create geometry
         createGeometry();
-
-        // Get uniform locations
-        uParam = glGetUniformLocation(shader.shaderProgram(), "uParam");
-        uRangeId = glGetUniformLocation(shader.shaderProgram(), "uRange");
-        uTimeId = glGetUniformLocation(shader.shaderProgram(), "uTime");
     }
 
     /**
@@ -87,13 +73,11 @@ public class Schladni implements IScene {
         shader.activate();
 
         // Set uniforms
-        glUniform1f(uParam,
-            (float) (Math.sin(GLFW.glfwGetTime() / 2) * Math.abs(Math.sin(GLFW.glfwGetTime() / 2))));
+        shader.setUniform("uParam",
+            (float) (Math.sin(time / 2) * Math.abs(Math.sin(time / 2))));
 
         // Define world range for x and y (e.g., -2 to 2)
-        glUniform2f(uRangeId, -2.0f, 2.0f);
-        // Define the threshold for floating-point precision
-        glUniform1f(uTimeId, time);
+        shader.setUniform("uRange", -2.0f, 2.0f);
 
         vao.bind();
 
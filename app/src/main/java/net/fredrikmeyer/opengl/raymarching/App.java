@@ -1,10 +1,17 @@
 package net.fredrikmeyer.opengl.raymarching;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import net.fredrikmeyer.opengl.Camera;
 import net.fredrikmeyer.opengl.IScene;
 import net.fredrikmeyer.opengl.InputHandler;
+import net.fredrikmeyer.opengl.ProgramBinaryCache;
 import net.fredrikmeyer.opengl.Renderer;
+import net.fredrikmeyer.opengl.ResolutionScaler;
 import net.fredrikmeyer.opengl.ScreenshotManager;
+import net.fredrikmeyer.opengl.Shader;
+import net.fredrikmeyer.opengl.ShaderWatcher;
+import net.fredrikmeyer.opengl.TemporalReprojection;
 import net.fredrikmeyer.opengl.Window;
 import net.fredrikmeyer.opengl.WindowDimensions;
 import org.joml.Vector3f;
@@ -17,6 +24,11 @@ import org.lwjgl.glfw.GLFWErrorCallback;
  */
 public class App {
 
+    // GPU time the ray marcher may take per frame, leaving room within a 60 Hz refresh
+    private static final long GPU_BUDGET_NANOS = 10_000_000;
+    private static final double MIN_RESOLUTION_SCALE = 0.5;
+    private static final double MAX_RESOLUTION_SCALE = 1.0;
+
     private Window window;
     private IScene scene;
     private Renderer renderer;
@@ -52,6 +64,10 @@ public class App {
         window = new Window(WindowDimensions.of(600, 600), "Ray Marching Visualization", true);
         window.init();
 
+        // Load the shader programs linked by earlier runs instead of compiling them
+        Shader.setProgramCache(
+            new ProgramBinaryCache(Path.of(ProgramBinaryCache.DEFAULT_DIRECTORY)));
+
         // Create the screenshot manager
         screenshotManager = new ScreenshotManager();
 
@@ -68,23 +84,42 @@ public class App {
 
         // Create renderer
         renderer = new Renderer(window, scene, screenshotManager);
+        renderer.setCamera(camera);
+
+        // Lower the resolution when the ray marcher cannot keep up with the window size
+        renderer.setResolutionScaler(new ResolutionScaler(GPU_BUDGET_NANOS,
+            MIN_RESOLUTION_SCALE, MAX_RESOLUTION_SCALE));
+
+        // Start each pixel's march near where last frame's hit moved to, and log the steps taken,
+        // while the prism is not rotating
+        rayMarchingScene.setReprojection(new TemporalReprojection(renderer.getMetrics()));
+
+        // Recompile the shader when its sources are edited, when run from the source tree
+        Path shaderSources = Path.of(ShaderWatcher.DEFAULT_SOURCE_DIRECTORY);
+        if (Files.isDirectory(shaderSources)) {
+            ShaderWatcher shaderWatcher = ShaderWatcher.start(shaderSources);
+            rayMarchingScene.watchShaders(shaderWatcher);
+            renderer.setShaderWatcher(shaderWatcher);
+        }
     }
 
     /**
      * Runs the main application loop.
      */
     private void mainLoop() {
-        // Run the rendering loop
-        renderer.renderLoop();
+        // Render on a dedicated thread while this thread handles window events
+        renderer.renderLoopThreaded();
     }
 
     /**
      * Cleans up resources used by the application.
      */
     private void cleanup() {
+        renderer.cleanup();
         scene.cleanup();
-        window.destroy();
+        // Ends a recording, which reads back its last frames with the context
         screenshotManager.cleanup();
+        window.destroy();
     }
 
     /**
@@ -4,37 +4,47 @@ import static org.lwjgl.opengl.GL11.GL_FLOAT;
 import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
 import static org.lwjgl.opengl.GL11.glDrawElements;
 import static org.lwjgl.opengl.GL11C.GL_TRIANGLES;
-import static org.lwjgl.opengl.GL20.glGetUniformLocation;
-import static org.lwjgl.opengl.GL20.glUniform1f;
-import static org.lwjgl.opengl.GL20.glUniform3f;
 
+import java.util.Map;
 import net.fredrikmeyer.opengl.Camera;
 import net.fredrikmeyer.opengl.ElementBufferObject;
 import net.fredrikmeyer.opengl.IScene;
+import net.fredrikmeyer.opengl.ResourceLoader;
 import net.fredrikmeyer.opengl.Shader;
-import net.fredrikmeyer.opengl.Utils;
+import net.fredrikmeyer.opengl.ShaderVariants;
+import net.fredrikmeyer.opengl.ShaderWatcher;
+import net.fredrikmeyer.opengl.TemporalReprojection;
 import net.fredrikmeyer.opengl.VertexArrayObject;
 import net.fredrikmeyer.opengl.VertexBufferObject;
-import org.joml.Vector3f;
-import org.lwjgl.glfw.GLFW;
 
 /**
  * A scene that renders a 3D hexagonal prism using ray marching with signed distance functions.
+ *
+ * <p>A {@link TemporalReprojection} needs geometry that stays put, so it is only used while the
+ * automatic rotation is off. A rotating prism is marched from the camera every frame, and the
+ * history starts over when the rotation stops.
  */
 public class RayMarchingScene implements IScene {
 
+    private static final String VERTEX_SHADER = "raymarching/vertex.glsl";
+    private static final String FRAGMENT_SHADER = "raymarching/fragment.glsl";
+    // The rotation is compiled into the shader rather than branched on per pixel
+    private static final Map<String, String> ROTATING = Map.of("AUTO_ROTATE", "1");
+    private static final Map<String, String> STILL = Map.of("AUTO_ROTATE", "0");
+
     private VertexArrayObject vao;
     private VertexBufferObject vbo;
     private ElementBufferObject ebo;
-    private Shader shader;
+    private final ShaderVariants shaders;
     private int[] quadIndices;
-    private int uTimeId;
-    private int uCameraPositionId;
-    private int uCameraOrientationId;
-    private int uLightPositionId;
-    private int uAutoRotateId;
     private Camera camera;
     private boolean autoRotate = true;
+    private float time = 0;
+    private TemporalReprojection reprojection;
+    private final Runnable marchPass = this::march;
+    // The variant and program the reprojection's history was marched with
+    private Shader marchedShader;
+    private long marchedShaderVersion = 0;
 
     /**
      * Constructs a new RayMarchingScene instance, initializing the shader and geometry for the scene.
@@ -45,19 +55,10 @@ public class RayMarchingScene implements IScene {
         this.camera = camera;
 
         // Load shader
-        shader = new Shader(
-            Utils.loadResource("raymarching/vertex.glsl"),
-            Utils.loadResource("raymarching/fragment.glsl"));
+        shaders = new ResourceLoader().loadShaderVariants(VERTEX_SHADER, FRAGMENT_SHADER);
 
         // Create geometry
         createGeometry();
-
-        // Get uniform locations
-        uTimeId = glGetUniformLocation(shader.shaderProgram(), "uTime");
-        uCameraPositionId = glGetUniformLocation(shader.shaderProgram(), "uCameraPosition");
-        uCameraOrientationId = glGetUniformLocation(shader.shaderProgram(), "uCameraOrientation");
-        uLightPositionId = glGetUniformLocation(shader.shaderProgram(), "uLightPosition");
-        uAutoRotateId = glGetUniformLocation(shader.shaderProgram(), "uAutoRotate");
     }
 
     /**
@@ -90,7 +91,28 @@ public class RayMarchingScene implements IScene {
 
     @Override
     public void update(float deltaTime) {
-        // No updates needed for this scene
+        // Advance the animation by the frame time, so a fixed time step renders the same frames
+        time += deltaTime;
+    }
+
+    /**
+     * Sets the reprojection that starts each pixel's march near last frame's hit. It is bypassed
+     * while the prism rotates, since last frame's hits have moved. The scene deletes it in
+     * {@link #cleanup()}.
+     *
+     * @param reprojection the reprojection, or null to march every pixel from the camera
+     */
+    public void setReprojection(TemporalReprojection reprojection) {
+        this.reprojection = reprojection;
+    }
+
+    /**
+     * Reloads the scene's shaders whenever their sources are edited.
+     *
+     * @param watcher the watcher of the shader sources
+     */
+    public void watchShaders(ShaderWatcher watcher) {
+        shaders.watch(watcher);
     }
 
     /**
@@ -114,30 +136,42 @@ public class RayMarchingScene implements IScene {
 
     @Override
     public void render() {
+        Shader shader = currentShader();
         shader.activate();
 
-        // Set time uniform for animation
-        float time = (float) GLFW.glfwGetTime();
-        glUniform1f(uTimeId, time);
-
-        // Set camera position from the Camera object
-        Vector3f cameraPosition = camera.getPosition();
-        glUniform3f(uCameraPositionId, cameraPosition.x, cameraPosition.y, cameraPosition.z);
-
-        // Set camera orientation from the Camera object
-        Vector3f cameraOrientation = camera.getOrientation();
-        glUniform3f(uCameraOrientationId, cameraOrientation.x, cameraOrientation.y, cameraOrientation.z);
-
-        // Set auto-rotate state (1 for enabled, 0 for disabled)
-        glUniform1f(uAutoRotateId, autoRotate ? 1.0f : 0.0f);
+        // The time and the camera come from the frame uniforms
+        shader.setUniform("uStartDepth", TemporalReprojection.START_DEPTH_UNIT);
 
         // Set light position
         float lightX = (float) (Math.sin(time) * 3.0);
         float lightZ = (float) (Math.cos(time) * 3.0);
-        glUniform3f(uLightPositionId, lightX, 5.0f, lightZ);
+        shader.setUniform("uLightPosition", lightX, 5.0f, lightZ);
+
+        // A rotating prism moves the hits, which the reprojection assumes stay put
+        boolean reproject = reprojection != null && !autoRotate;
+        shader.setUniform("uReproject", reproject ? 1 : 0);
+        if (reproject) {
+            if (shader != marchedShader || shader.getVersion() != marchedShaderVersion) {
+                // Hits marched with the previous program are no guide to the new one
+                marchedShader = shader;
+                marchedShaderVersion = shader.getVersion();
+                reprojection.invalidate();
+            }
+            reprojection.render(camera, marchPass);
+        } else {
+            // Forget the program, so the history is invalidated when reprojection resumes
+            marchedShader = null;
+            march();
+        }
+    }
 
-        vao.bind();
+    private Shader currentShader() {
+        return shaders.get(autoRotate ? ROTATING : STILL);
+    }
 
+    private void march() {
+        currentShader().activate();
+        vao.bind();
         glDrawElements(GL_TRIANGLES, quadIndices.length, GL_UNSIGNED_INT, 0);
     }
 
@@ -146,6 +180,9 @@ public class RayMarchingScene implements IScene {
         vao.delete();
         vbo.delete();
         ebo.delete();
-        shader.delete();
+        shaders.delete();
+        if (reprojection != null) {
+            reprojection.delete();
+        }
     }
 }
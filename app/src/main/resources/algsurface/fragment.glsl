@@ -1,17 +1,17 @@
 #version 330 core
 
 in vec2 fragCoord; // Input from the vertex shader
-out vec4 fragColor;
+layout(location = 0) out vec4 fragColor;
+layout(location = 1) out vec2 fragHit; // Distance to the hit (MAX_DIST if none) and steps taken
 
-uniform float uTime;
-uniform vec3 uCameraPosition;
-uniform vec3 uCameraOrientation;
-uniform vec3 uLightPosition;
-uniform int uAutoRotate; // 1 for auto-rotate enabled, 0 for disabled
+uniform vec2 uJitter; // Sub-pixel offset of this sample, for progressive anti-aliasing
 
-const int MAX_STEPS = 100;
-const float MAX_DIST = 100.0;
-const float EPSILON = 0.001;
+// The surface is thin near the singularity at the origin, so the march takes small steps
+#ifndef MAX_STEPS
+#define MAX_STEPS 200
+#endif
+
+#include "common/raymarch.glsl"
 
 // Signed distance function for the algebraic surface: x³y+xz³+y³z+z³+7z²+5z=0
 float sdAlgebraicSurface(vec3 p) {
@@ -41,50 +41,20 @@ float sdAlgebraicSurface(vec3 p) {
 
 // Scene SDF
 float sceneSDF(vec3 p) {
-    // Rotate the scene if auto-rotate is enabled
-    vec3 q;
-    if (uAutoRotate == 1) {
-        // Use a fixed angle instead of time-dependent angle
-        float angle = 0.0; // Fixed angle (no rotation)
-        float c = cos(angle);
-        float s = sin(angle);
-        q = vec3(
-            c * p.x + s * p.z,
-            p.y,
-            -s * p.x + c * p.z
-        );
-    } else {
-        q = p; // No rotation
-    }
-
     // Scale the scene to better show the 3D structure
     // Use a moderate scale factor to see more of the surface
-    q = q * 0.8;
+    vec3 q = p * 0.8;
 
     return sdAlgebraicSurface(q);
 }
 
-// Calculate normal at a point
-vec3 calcNormal(vec3 p) {
-    const float h = 0.0001;
-    const vec2 k = vec2(1, -1);
-    return normalize(
-        k.xyy * sceneSDF(p + k.xyy * h) +
-        k.yxy * sceneSDF(p + k.yxy * h) +
-        k.yyx * sceneSDF(p + k.yyx * h) +
-        k.xxx * sceneSDF(p + k.xxx * h)
-    );
-}
-
 // Ray marching with improved precision
-float rayMarch(vec3 ro, vec3 rd) {
-    float depth = 0.0;
+float rayMarch(vec3 ro, vec3 rd, float start, inout int steps) {
+    float depth = start;
     float epsilon = EPSILON;
 
-    // Increase max steps for better surface detail
-    const int IMPROVED_MAX_STEPS = 200;
-
-    for (int i = 0; i < IMPROVED_MAX_STEPS; i++) {
+    for (int i = 0; i < MAX_STEPS; i++) {
+        steps++;
         vec3 p = ro + depth * rd;
 
         // Adaptive precision: use smaller steps near the origin
@@ -149,44 +119,22 @@ vec3 phongShading(vec3 p, vec3 normal, vec3 viewDir) {
         specular *= 2.0;
     }
 
-    // Calculate shadows
-    float shadow = 1.0;
-    float distToLight = length(uLightPosition - p);
-    vec3 dirToLight = normalize(uLightPosition - p);
-
-    // March from point towards light
-    float t = 0.02; // Start a bit away from the surface
-    for (int i = 0; i < 32; i++) {
-        float h = sceneSDF(p + dirToLight * t);
-        if (h < 0.001) {
-            shadow = 0.1;
-            break;
-        }
-        if (t >= distToLight) break;
-        t += h;
-    }
-
-    return (ambient + shadow * (diffuse + 0.5 * specular)) * objectColor;
+    return (ambient + shadow(p) * (diffuse + 0.5 * specular)) * objectColor;
 }
 
 void main() {
     // Screen coordinates
-    vec2 uv = fragCoord;
+    vec2 uv = fragCoord + uJitter;
 
     // Camera setup
     vec3 ro = uCameraPosition; // Ray origin (camera position)
-    vec3 rd = normalize(vec3(uv, 1.0)); // Ray direction
-
-    // Use camera orientation
-    vec3 forward = uCameraOrientation;
-    vec3 up = vec3(0.0, 1.0, 0.0);
-    vec3 right = normalize(cross(forward, up));
-    vec3 cameraUp = normalize(cross(right, forward));
-
-    rd = normalize(uv.x * right + uv.y * cameraUp + 1.5 * forward);
+    vec3 rd = cameraRay(uv); // Ray direction
 
     // Ray marching
-    float dist = rayMarch(ro, rd);
+    int steps = 0;
+    float start = marchStart(ro, rd, steps);
+    float dist = rayMarch(ro, rd, start, steps);
+    fragHit = vec2(min(dist, MAX_DIST), float(steps));
 
     if (dist < MAX_DIST) {
         // Hit point
@@ -194,9 +142,7 @@ void main() {
 
         // Allow plotting in a larger region to see more of the surface
         if (abs(p.x) > 3.0 || abs(p.y) > 3.0 || abs(p.z) > 3.0) {
-            // Sky color
-            vec3 skyColor = vec3(0.1, 0.2, 0.3);
-            fragColor = vec4(skyColor, 1.0);
+            fragColor = vec4(SKY_COLOR, 1.0);
             return;
         }
 
@@ -216,8 +162,6 @@ void main() {
 
         fragColor = vec4(color, 1.0);
     } else {
-        // Sky color
-        vec3 skyColor = vec3(0.1, 0.2, 0.3);
-        fragColor = vec4(skyColor, 1.0);
+        fragColor = vec4(SKY_COLOR, 1.0);
     }
 }
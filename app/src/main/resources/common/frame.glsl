@@ -0,0 +1,9 @@
+// Camera and frame state, filled once per frame by the renderer
+layout(std140) uniform Frame {
+    mat4 uView;
+    mat4 uProjection;
+    vec3 uCameraPosition;
+    float uTime;
+    vec3 uCameraOrientation;
+    vec2 uResolution;
+};
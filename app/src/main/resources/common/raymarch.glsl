@@ -0,0 +1,95 @@
+// The parts the ray marching fragment shaders share. The including shader defines sceneSDF and
+// its own rayMarch and shading. MAX_STEPS and QUALITY may be defined before this is included,
+// by the shader or by the variant being compiled.
+
+#include "common/frame.glsl"
+
+uniform vec3 uLightPosition;
+uniform int uReproject; // 1 to start marching near where the last frame's hits reproject to
+uniform sampler2D uStartDepth; // Reprojected hit distance over MAX_DIST, 1.0 where none landed
+
+#ifndef MAX_STEPS
+#define MAX_STEPS 100
+#endif
+// 0 to skip shadows, 1 to march a shadow ray towards the light
+#ifndef QUALITY
+#define QUALITY 1
+#endif
+
+const float MAX_DIST = 100.0;
+const float EPSILON = 0.001;
+// How far before the reprojected hit to start, as a fraction of it and in absolute terms
+const float REPROJECTION_SLACK = 0.02;
+const float REPROJECTION_MARGIN = 0.05;
+const vec3 SKY_COLOR = vec3(0.1, 0.2, 0.3);
+
+float sceneSDF(vec3 p);
+
+// Rotates a point around the y axis
+vec3 rotateY(vec3 p, float angle) {
+    float c = cos(angle);
+    float s = sin(angle);
+    return vec3(
+        c * p.x + s * p.z,
+        p.y,
+        -s * p.x + c * p.z
+    );
+}
+
+// The direction of the ray through a point of the image plane, which is 1.5 in front of the
+// camera
+vec3 cameraRay(vec2 uv) {
+    vec3 forward = uCameraOrientation;
+    vec3 up = vec3(0.0, 1.0, 0.0);
+    vec3 right = normalize(cross(forward, up));
+    vec3 cameraUp = normalize(cross(right, forward));
+    return normalize(uv.x * right + uv.y * cameraUp + 1.5 * forward);
+}
+
+// Calculate normal at a point
+vec3 calcNormal(vec3 p) {
+    const float h = 0.0001;
+    const vec2 k = vec2(1, -1);
+    return normalize(
+        k.xyy * sceneSDF(p + k.xyy * h) +
+        k.yxy * sceneSDF(p + k.yxy * h) +
+        k.yyx * sceneSDF(p + k.yyx * h) +
+        k.xxx * sceneSDF(p + k.xxx * h)
+    );
+}
+
+// Distance along the ray to start marching: just before last frame's hit, if one reprojected
+// onto this pixel, and otherwise at the camera
+float marchStart(vec3 ro, vec3 rd, inout int steps) {
+    if (uReproject != 1) return 0.0;
+    float reprojected = texelFetch(uStartDepth, ivec2(gl_FragCoord.xy), 0).r;
+    if (reprojected >= 1.0) return 0.0; // Disoccluded
+
+    float start = max(reprojected * MAX_DIST * (1.0 - REPROJECTION_SLACK) - REPROJECTION_MARGIN,
+        0.0);
+    // The distance changes sign across the surface, so a sign change means the start is already
+    // past it and the whole ray must be marched
+    steps += 2;
+    if (sceneSDF(ro) * sceneSDF(ro + start * rd) <= 0.0) return 0.0;
+    return start;
+}
+
+// How much of the light reaches a point: 1.0 if it is lit, 0.1 in shadow
+float shadow(vec3 p) {
+#if QUALITY >= 1
+    float distToLight = length(uLightPosition - p);
+    vec3 dirToLight = normalize(uLightPosition - p);
+
+    // March from point towards light
+    float t = 0.02; // Start a bit away from the surface
+    for (int i = 0; i < 32; i++) {
+        float h = sceneSDF(p + dirToLight * t);
+        if (h < 0.001) {
+            return 0.1;
+        }
+        if (t >= distToLight) break;
+        t += h;
+    }
+#endif
+    return 1.0;
+}
@@ -0,0 +1,5 @@
+#version 330 core
+
+// Only the depth of the reprojected points is kept
+void main() {
+}
@@ -0,0 +1,33 @@
+#version 330 core
+
+// Moves each pixel's hit from the previous frame to where it appears in this frame. One point is
+// drawn per pixel of the previous frame, with no vertex attributes.
+
+uniform sampler2D uPreviousHits; // Distance along the ray of each pixel's hit, last frame
+uniform vec2 uPreviousSize; // The viewport last frame was marched in, the texture's lower left
+uniform mat4 uPreviousCameraToWorld; // Inverse of the previous view matrix
+uniform float uFocalLength; // Distance from the eye to the image plane, as in the ray marchers
+uniform float uMaxDistance; // Rays that travel this far hit nothing
+
+#include "common/frame.glsl"
+
+void main() {
+    ivec2 size = ivec2(uPreviousSize);
+    ivec2 pixel = ivec2(gl_VertexID % size.x, gl_VertexID / size.x);
+    float hit = texelFetch(uPreviousHits, pixel, 0).r;
+
+    // The ray through the pixel center, in the previous camera's coordinates
+    vec2 uv = (vec2(pixel) + 0.5) / vec2(size) * 2.0 - 1.0;
+    vec3 direction = normalize(vec3(uv, -uFocalLength));
+    vec3 world = (uPreviousCameraToWorld * vec4(hit * direction, 1.0)).xyz;
+    vec3 p = (uView * vec4(world, 1.0)).xyz;
+
+    if (hit >= uMaxDistance || p.z >= 0.0) {
+        // Nothing was hit, or the hit is now behind the camera: clip the point away
+        gl_Position = vec4(2.0, 2.0, 2.0, 1.0);
+        return;
+    }
+
+    // Depth is the distance along the new ray, so the nearest hit wins the depth test
+    gl_Position = vec4(uFocalLength * p.xy / -p.z, length(p) / uMaxDistance * 2.0 - 1.0, 1.0);
+}
@@ -4,9 +4,10 @@ in vec2 fragCoord; // Input from the vertex shader
 out vec4 fragColor;
 
 uniform vec2 uRange; // Range for x and y, e.g., (-2, 2)
-uniform float uTime; // Approximation threshold for the curve
 uniform float uParam;
 
+#include "common/frame.glsl"
+
 #define PI 3.1415926535897932384626433832795
 
 float colormap_red(float x) {
@@ -19,8 +19,7 @@ uniform sampler2D tex0;
 uniform vec4 lightColor;
 // Gets the position of the light from the main function
 uniform vec3 lightPos;
-// Gets the position of the camera from the main function
-uniform vec3 camPos;
+#include "common/frame.glsl"
 
 void main()
 {
@@ -35,7 +34,7 @@ void main()
     // specular lighting
     // Phong lighting
     float specularLight = 0.50f;
-    vec3 viewDirection = normalize(camPos - crntPos);
+    vec3 viewDirection = normalize(uCameraPosition - crntPos);
     vec3 reflectionDirection = reflect(-lightDirection, normal);
     float specAmount = pow(max(dot(viewDirection, reflectionDirection), 0.0f), 8);
     float specular = specAmount * specularLight;
@@ -3,9 +3,10 @@
 layout (location = 0) in vec3 aPos;
 
 uniform mat4 model;
-uniform mat4 camMatrix;
+
+#include "common/frame.glsl"
 
 void main()
 {
-    gl_Position = camMatrix * model * vec4(aPos, 1.0f);
+    gl_Position = uProjection * uView * model * vec4(aPos, 1.0f);
 }
\ No newline at end of file
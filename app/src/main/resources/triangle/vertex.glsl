@@ -19,8 +19,7 @@ out vec3 Normal;
 // Outputs the current position for the Fragment Shader
 out vec3 crntPos;
 
-// Imports the camera matrix from the main function
-uniform mat4 camMatrix;
+#include "common/frame.glsl"
 // Imports the model matrix from the main function
 uniform mat4 model;
 
@@ -30,7 +29,7 @@ void main()
     // calculates current position
     crntPos = vec3(model * vec4(aPos, 1.0f));
     // Outputs the positions/coordinates of all vertices
-    gl_Position = camMatrix * vec4(crntPos, 1.0);
+    gl_Position = uProjection * uView * vec4(crntPos, 1.0);
 
     // Assigns the colors from the Vertex Data to "color"
     color = aColor;
@@ -1,5 +1,6 @@
 package net.fredrikmeyer.opengl;
 
+import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
@@ -183,4 +184,80 @@ class CameraTest {
         assertTrue(rotatedOrientation.y > 0, "Y component should be positive after rotating up");
         assertTrue(rotatedOrientation.z < 0, "Z component should remain negative");
     }
+
+    @Test
+    void testVersionChangesWithTheView() {
+        long version = camera.getVersion();
+        camera.getPosition();
+        camera.getOrientation();
+        assertEquals(version, camera.getVersion(), "Reading the camera should not change it");
+
+        camera.moveForward(1.0f);
+        assertNotEquals(version, camera.getVersion());
+        version = camera.getVersion();
+        camera.rotateHorizontal(0.5f);
+        assertNotEquals(version, camera.getVersion());
+        version = camera.getVersion();
+        camera.zoom(0.5f);
+        assertNotEquals(version, camera.getVersion());
+        version = camera.getVersion();
+        camera.reset();
+        assertNotEquals(version, camera.getVersion());
+    }
+
+    @Test
+    void testViewMatrixMatchesTheRayMarchersRays() {
+        camera.moveForward(2.0f);
+        camera.rotateHorizontal(0.4f);
+        camera.rotateVertical(-0.3f);
+
+        // The ray through (u, v) as the ray marching shaders build it
+        Vector3f forward = camera.getOrientation();
+        Vector3f right = forward.cross(new Vector3f(0, 1, 0), new Vector3f()).normalize();
+        Vector3f up = right.cross(forward, new Vector3f()).normalize();
+        float u = 0.25f;
+        float v = -0.5f;
+        Vector3f ray = new Vector3f(right).mul(u).add(new Vector3f(up).mul(v))
+            .add(new Vector3f(forward).mul(1.5f)).normalize();
+        Vector3f hit = camera.getPosition().add(ray.mul(3.0f));
+
+        Vector3f inCamera = camera.viewMatrix(new Matrix4f()).transformPosition(hit);
+        Vector3f expected = new Vector3f(u, v, -1.5f).normalize().mul(3.0f);
+        assertEquals(expected.x, inCamera.x, DELTA);
+        assertEquals(expected.y, inCamera.y, DELTA);
+        assertEquals(expected.z, inCamera.z, DELTA);
+    }
+
+    @Test
+    void testCopiesPositionAndOrientationIntoGivenVectors() {
+        camera.moveForward(1.0f);
+        camera.rotateHorizontal(0.5f);
+        Vector3f position = new Vector3f();
+        Vector3f orientation = new Vector3f();
+
+        assertSame(position, camera.position(position));
+        assertSame(orientation, camera.orientation(orientation));
+        assertEquals(camera.getPosition(), position);
+        assertEquals(camera.getOrientation(), orientation);
+
+        // The copies do not follow the camera
+        camera.moveForward(1.0f);
+        assertNotEquals(camera.getPosition(), position);
+    }
+
+    @Test
+    void testProjectionMatrix() {
+        Camera wide = new Camera(2.0f, new Vector3f(0, 0, 0));
+        Matrix4f projection = wide.projectionMatrix(new Matrix4f());
+
+        // The view is along the negative z axis, and its center stays in the center
+        Vector3f center = projection.transformProject(new Vector3f(0, 0, -2.0f), new Vector3f());
+        assertEquals(0.0f, center.x, DELTA);
+        assertEquals(0.0f, center.y, DELTA);
+        // A wide window shows more horizontally than vertically
+        assertEquals(projection.m11() / 2.0f, projection.m00(), DELTA);
+
+        wide.zoom(0.5f);
+        assertNotEquals(projection, wide.projectionMatrix(new Matrix4f()));
+    }
 }
@@ -0,0 +1,35 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+
+class DirectBufferPoolTest {
+
+    @Test
+    void testTryAcquireReturnsNullWhenAllBuffersAreInUse() {
+        DirectBufferPool pool = new DirectBufferPool(2);
+        ByteBuffer first = pool.tryAcquire(16);
+        ByteBuffer second = pool.tryAcquire(16);
+        assertNotNull(first);
+        assertNotNull(second);
+
+        assertNull(pool.tryAcquire(16), "A full pool does not wait");
+
+        pool.release(first);
+        ByteBuffer reused = pool.tryAcquire(8);
+        assertSame(first, reused);
+        assertEquals(0, reused.position());
+        assertEquals(8, reused.limit());
+    }
+
+    @Test
+    void testReplacesFreeBuffersThatAreTooSmall() {
+        DirectBufferPool pool = new DirectBufferPool(1);
+        pool.release(pool.acquire(16));
+
+        ByteBuffer larger = pool.acquire(64);
+        assertEquals(64, larger.remaining());
+    }
+}
@@ -0,0 +1,98 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class FramePacerTest {
+
+    private static final long PERIOD = 10_000_000;
+
+    // A clock that only moves when the pacer sleeps, or by a microsecond when it is read
+    private long now = 1_000_000_000L;
+    private final List<Long> sleeps = new ArrayList<>();
+
+    private FramePacer limiter() {
+        return new FramePacer(FramePacer.Mode.LIMITED, PERIOD, () -> now += 1_000, nanos -> {
+            sleeps.add(nanos);
+            now += nanos;
+        });
+    }
+
+    @Test
+    void testLimiterSleepsThenSpinsUntilTheDeadline() {
+        FramePacer pacer = limiter();
+        long start = now;
+
+        long lateness = pacer.awaitNextFrame();
+
+        assertTrue(lateness >= 0 && lateness < 2_000, "lateness was " + lateness);
+        assertTrue(now - start >= PERIOD);
+        // Sleeps end early enough to leave the last stretch to spinning
+        assertEquals(1, sleeps.size());
+        assertTrue(sleeps.get(0) <= PERIOD - FramePacer.SPIN_NANOS);
+    }
+
+    @Test
+    void testDeadlinesDoNotDriftWithFrameTime() {
+        FramePacer pacer = limiter();
+        // The schedule starts with the first frame
+        pacer.awaitNextFrame();
+        long start = now;
+
+        for (int frame = 1; frame <= 5; frame++) {
+            // Rendering takes a varying amount of time
+            now += frame * 1_000_000L;
+            pacer.awaitNextFrame();
+            long expected = start + frame * PERIOD;
+            assertTrue(now >= expected && now < expected + 5_000, "frame " + frame);
+        }
+    }
+
+    @Test
+    void testLateFramesKeepTheScheduleUnlessAWholePeriodBehind() {
+        FramePacer pacer = limiter();
+        pacer.awaitNextFrame();
+        long start = now;
+
+        // A little late: no wait, and the next deadline stays on the schedule
+        now += PERIOD + 2_000_000;
+        assertEquals(-1, pacer.awaitNextFrame());
+        pacer.awaitNextFrame();
+        assertTrue(now >= start + 2 * PERIOD && now < start + 2 * PERIOD + 5_000);
+
+        // Far behind: start over instead of rendering a burst of frames
+        now += 5 * PERIOD;
+        assertEquals(-1, pacer.awaitNextFrame());
+        long resync = now;
+        pacer.awaitNextFrame();
+        assertTrue(now - resync >= PERIOD - 5_000);
+    }
+
+    @Test
+    void testOtherModesNeverWait() {
+        for (FramePacer pacer : List.of(FramePacer.vsync(), FramePacer.adaptiveVsync(),
+            FramePacer.uncapped())) {
+            assertEquals(-1, pacer.awaitNextFrame());
+            assertEquals(0, pacer.periodNanos());
+        }
+    }
+
+    @Test
+    void testSwapIntervals() {
+        assertEquals(1, FramePacer.vsync().swapInterval(true));
+        assertEquals(-1, FramePacer.adaptiveVsync().swapInterval(true));
+        assertEquals(1, FramePacer.adaptiveVsync().swapInterval(false));
+        assertEquals(0, FramePacer.uncapped().swapInterval(true));
+        assertEquals(0, FramePacer.limited(30).swapInterval(true));
+        assertEquals(16_666_667, FramePacer.limited(60).periodNanos());
+    }
+
+    @Test
+    void testRejectsInvalidFrameRate() {
+        assertThrows(IllegalArgumentException.class, () -> FramePacer.limited(0));
+        assertThrows(IllegalArgumentException.class, () -> FramePacer.limited(Double.NaN));
+    }
+}
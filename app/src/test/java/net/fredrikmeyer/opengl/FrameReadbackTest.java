@@ -0,0 +1,102 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import static org.lwjgl.opengl.GL11.GL_COLOR_BUFFER_BIT;
+import static org.lwjgl.opengl.GL11.GL_RGBA8;
+import static org.lwjgl.opengl.GL11.glClear;
+import static org.lwjgl.opengl.GL11.glClearColor;
+import static org.lwjgl.opengl.GL30.GL_COLOR_ATTACHMENT0;
+import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_RENDERBUFFER;
+import static org.lwjgl.opengl.GL30.glBindFramebuffer;
+import static org.lwjgl.opengl.GL30.glBindRenderbuffer;
+import static org.lwjgl.opengl.GL30.glDeleteFramebuffers;
+import static org.lwjgl.opengl.GL30.glDeleteRenderbuffers;
+import static org.lwjgl.opengl.GL30.glFramebufferRenderbuffer;
+import static org.lwjgl.opengl.GL30.glGenFramebuffers;
+import static org.lwjgl.opengl.GL30.glGenRenderbuffers;
+import static org.lwjgl.opengl.GL30.glRenderbufferStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for FrameReadback. These need an OpenGL context and are skipped when none is available.
+ */
+class FrameReadbackTest {
+
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 8;
+
+    private GlTestContext context;
+    private int framebuffer;
+    private int renderbuffer;
+    private final List<Integer> deliveredRed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        context = GlTestContext.create();
+
+        // Render into an offscreen target so the readback does not depend on window visibility
+        renderbuffer = glGenRenderbuffers();
+        glBindRenderbuffer(GL_RENDERBUFFER, renderbuffer);
+        glRenderbufferStorage(GL_RENDERBUFFER, GL_RGBA8, WIDTH, HEIGHT);
+        framebuffer = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, framebuffer);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER,
+            renderbuffer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (context != null) {
+            glBindFramebuffer(GL_FRAMEBUFFER, 0);
+            glDeleteFramebuffers(framebuffer);
+            glDeleteRenderbuffers(renderbuffer);
+            context.close();
+        }
+    }
+
+    private void renderAndCapture(FrameReadback readback, int red) {
+        glClearColor(red / 255f, 0f, 0f, 1f);
+        glClear(GL_COLOR_BUFFER_BIT);
+        readback.capture(WIDTH, HEIGHT, (pixels, width, height) -> {
+            assertEquals(WIDTH, width);
+            assertEquals(HEIGHT, height);
+            assertTrue(pixels.remaining() >= WIDTH * HEIGHT * 4);
+            deliveredRed.add(pixels.get(0) & 0xFF);
+        });
+    }
+
+    @Test
+    void testAsynchronousReadbackDeliversFramesInOrder() {
+        FrameReadback readback = new FrameReadback(2, new ImageFlipper());
+        assertTrue(readback.isAsynchronous());
+
+        for (int i = 0; i < 6; i++) {
+            renderAndCapture(readback, i * 40);
+            // Never more frames in flight than the ring can hold
+            assertTrue(readback.pendingFrames() <= 2);
+        }
+        readback.cleanup();
+
+        assertEquals(List.of(0, 40, 80, 120, 160, 200), deliveredRed);
+        assertEquals(0, readback.pendingFrames());
+    }
+
+    @Test
+    void testSynchronousFallbackDeliversImmediately() {
+        FrameReadback readback = new FrameReadback(0, new ImageFlipper());
+        assertFalse(readback.isAsynchronous());
+
+        renderAndCapture(readback, 200);
+
+        assertEquals(List.of(200), deliveredRed);
+        assertEquals(0, readback.pendingFrames());
+        readback.cleanup();
+    }
+}
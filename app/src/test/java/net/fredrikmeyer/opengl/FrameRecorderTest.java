@@ -0,0 +1,171 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+import org.lwjgl.BufferUtils;
+
+class FrameRecorderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // A bottom-up RGBA frame, as it comes from the readback, where the pixel at (x, y) counted
+    // from the top is (x, y, seed, 255)
+    private static ByteBuffer frame(int width, int height, int seed) {
+        ByteBuffer pixels = BufferUtils.createByteBuffer(width * height * 4);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int offset = ((height - 1 - y) * width + x) * 4;
+                pixels.put(offset, (byte) x).put(offset + 1, (byte) y)
+                    .put(offset + 2, (byte) seed).put(offset + 3, (byte) 255);
+            }
+        }
+        return pixels;
+    }
+
+    private static ByteBuffer solidFrame(int width, int height, int r, int g, int b) {
+        ByteBuffer pixels = BufferUtils.createByteBuffer(width * height * 4);
+        for (int i = 0; i < width * height; i++) {
+            pixels.put(i * 4, (byte) r).put(i * 4 + 1, (byte) g).put(i * 4 + 2, (byte) b)
+                .put(i * 4 + 3, (byte) 255);
+        }
+        return pixels;
+    }
+
+    @Test
+    void testRawRecorderWritesFramesTopDown() throws IOException {
+        RawFrameRecorder recorder = new RawFrameRecorder(tempDir.resolve("recording"), 20);
+        recorder.accept(frame(3, 2, 7), 3, 2);
+        recorder.accept(frame(3, 2, 9), 3, 2);
+        String path = recorder.finish().join();
+
+        assertEquals(tempDir.resolve("recording_3x2_20fps.rgba").toString(), path);
+        byte[] bytes = Files.readAllBytes(Path.of(path));
+        assertEquals(2 * 3 * 2 * 4, bytes.length);
+        // Second frame, second row, third pixel
+        int offset = 24 + (1 * 3 + 2) * 4;
+        assertArrayEquals(new byte[]{2, 1, 9, (byte) 255},
+            Arrays.copyOfRange(bytes, offset, offset + 4));
+    }
+
+    @Test
+    void testRecorderSkipsFramesOfDifferentSize() throws IOException {
+        RawFrameRecorder recorder = new RawFrameRecorder(tempDir.resolve("recording"), 20);
+        recorder.accept(frame(4, 4, 0), 4, 4);
+        recorder.accept(frame(2, 2, 0), 2, 2);
+        recorder.accept(frame(4, 4, 1), 4, 4);
+        String path = recorder.finish().join();
+
+        assertEquals(2, recorder.frameCount());
+        assertEquals(2 * 4 * 4 * 4, Files.size(Path.of(path)));
+    }
+
+    @Test
+    void testFinishWithoutFramesReturnsNull() {
+        Y4mFrameRecorder recorder = new Y4mFrameRecorder(tempDir.resolve("empty.y4m"), 20);
+
+        assertNull(recorder.finish().join());
+        assertFalse(Files.exists(tempDir.resolve("empty.y4m")));
+        assertThrows(IllegalStateException.class, recorder::finish);
+    }
+
+    @Test
+    void testY4mRecorderWritesHeaderAndPlanes() throws IOException {
+        Path file = tempDir.resolve("recording.y4m");
+        Y4mFrameRecorder recorder = new Y4mFrameRecorder(file, 20);
+        // An odd size, so the last chroma row and column cover a single pixel row or column
+        recorder.accept(solidFrame(3, 3, 255, 255, 255), 3, 3);
+        recorder.accept(solidFrame(3, 3, 0, 0, 255), 3, 3);
+        recorder.finish().join();
+
+        byte[] bytes = Files.readAllBytes(file);
+        String header = "YUV4MPEG2 W3 H3 F20:1 Ip A1:1 C420jpeg XCOLORRANGE=FULL\n";
+        int frameSize = "FRAME\n".length() + Y4mFrameRecorder.planesSize(3, 3);
+        assertEquals(9 + 2 * 4, Y4mFrameRecorder.planesSize(3, 3));
+        assertEquals(header.length() + 2 * frameSize, bytes.length);
+        assertEquals(header + "FRAME\n",
+            new String(bytes, 0, header.length() + 6, StandardCharsets.US_ASCII));
+
+        // White has full brightness and no color
+        int white = header.length() + 6;
+        for (int i = 0; i < 9; i++) {
+            assertEquals(255, bytes[white + i] & 0xFF);
+        }
+        for (int i = 9; i < 17; i++) {
+            assertEquals(128, bytes[white + i] & 0xFF);
+        }
+
+        // Pure blue is dark, with U at its maximum and V just below neutral
+        int blue = white + frameSize;
+        assertEquals(29, bytes[blue] & 0xFF);
+        assertEquals(255, bytes[blue + 9] & 0xFF);
+        assertEquals(107, bytes[blue + 13] & 0xFF);
+    }
+
+    @Test
+    void testPngSequenceRecorderWritesNumberedFrames() throws IOException {
+        Path directory = tempDir.resolve("sequence");
+        PngSequenceRecorder recorder = new PngSequenceRecorder(directory, executor, 2);
+        for (int f = 0; f < 5; f++) {
+            recorder.accept(frame(6, 4, f * 40), 6, 4);
+        }
+        String path = recorder.finish().join();
+
+        assertEquals(directory.toString(), path);
+        for (int f = 0; f < 5; f++) {
+            BufferedImage image = ImageIO.read(
+                directory.resolve(String.format("frame_%05d.png", f)).toFile());
+            assertEquals(6, image.getWidth());
+            assertEquals(4, image.getHeight());
+            assertEquals(0xFF000000 | (5 << 16) | (3 << 8) | (f * 40), image.getRGB(5, 3));
+            assertEquals(0xFF000000 | (f * 40), image.getRGB(0, 0));
+        }
+        assertFalse(Files.exists(directory.resolve("frame_00005.png")));
+    }
+
+    @Test
+    void testPipelinedRecorderKeepsFrameOrderWhenTheSourceIsReused() throws IOException {
+        PipelinedFrameRecorder recorder = new PipelinedFrameRecorder(
+            new RawFrameRecorder(tempDir.resolve("recording"), 30), 2);
+        // Like a readback buffer, the same buffer is overwritten for every frame
+        ByteBuffer source = BufferUtils.createByteBuffer(2 * 2 * 4);
+        for (int f = 0; f < 6; f++) {
+            source.put(0, frame(2, 2, f), 0, source.capacity());
+            recorder.accept(source, 2, 2);
+        }
+        String path = recorder.finish().join();
+
+        byte[] bytes = Files.readAllBytes(Path.of(path));
+        assertEquals(6 * 2 * 2 * 4, bytes.length);
+        for (int f = 0; f < 6; f++) {
+            assertEquals(f, bytes[f * 16 + 2], "frame " + f);
+        }
+        assertThrows(IllegalStateException.class, recorder::finish);
+    }
+}
@@ -0,0 +1,47 @@
+package net.fredrikmeyer.opengl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameUniformsTest {
+
+    @Test
+    void testValuesAreWrittenAtTheirStd140Offsets() {
+        ByteBuffer data = ByteBuffer.allocateDirect(FrameUniforms.SIZE)
+            .order(ByteOrder.nativeOrder());
+        Matrix4f view = new Matrix4f().translate(1, 2, 3);
+        Matrix4f projection = new Matrix4f().perspective(1.0f, 1.5f, 0.1f, 100f);
+
+        FrameUniforms.write(data, view, projection, new Vector3f(4, 5, 6),
+            new Vector3f(0, 1, 0), 7.5f, 640, 480);
+
+        assertEquals(0, data.position(), "The buffer is uploaded from its position");
+        assertEquals(view, new Matrix4f().set(FrameUniforms.VIEW_OFFSET, data));
+        assertEquals(projection, new Matrix4f().set(FrameUniforms.PROJECTION_OFFSET, data));
+        assertEquals(new Vector3f(4, 5, 6),
+            new Vector3f().set(FrameUniforms.CAMERA_POSITION_OFFSET, data));
+        assertEquals(7.5f, data.getFloat(FrameUniforms.TIME_OFFSET));
+        assertEquals(new Vector3f(0, 1, 0),
+            new Vector3f().set(FrameUniforms.CAMERA_ORIENTATION_OFFSET, data));
+        assertEquals(640f, data.getFloat(FrameUniforms.RESOLUTION_OFFSET));
+        assertEquals(480f, data.getFloat(FrameUniforms.RESOLUTION_OFFSET + Float.BYTES));
+    }
+
+    @Test
+    void testLayoutFollowsStd140() {
+        // Matrices and vec3s are aligned to 16 bytes, and a vec2 to 8
+        assertEquals(0, FrameUniforms.PROJECTION_OFFSET % 16);
+        assertEquals(0, FrameUniforms.CAMERA_POSITION_OFFSET % 16);
+        assertEquals(FrameUniforms.CAMERA_POSITION_OFFSET + 3 * Float.BYTES,
+            FrameUniforms.TIME_OFFSET);
+        assertEquals(0, FrameUniforms.CAMERA_ORIENTATION_OFFSET % 16);
+        assertEquals(0, FrameUniforms.RESOLUTION_OFFSET % 8);
+        assertTrue(FrameUniforms.RESOLUTION_OFFSET >= FrameUniforms.CAMERA_ORIENTATION_OFFSET + 12);
+        assertEquals(0, FrameUniforms.SIZE % 16);
+        assertTrue(FrameUniforms.SIZE >= FrameUniforms.RESOLUTION_OFFSET + 2 * Float.BYTES);
+    }
+}
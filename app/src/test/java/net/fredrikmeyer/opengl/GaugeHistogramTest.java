@@ -0,0 +1,71 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GaugeHistogramTest {
+
+    @Test
+    void testEmptyHistogram() {
+        GaugeHistogram histogram = new GaugeHistogram(4.0, 0.001);
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.min());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.mean());
+        assertEquals(0, histogram.percentile(50));
+    }
+
+    @Test
+    void testPercentilesStayWithinOneBucket() {
+        GaugeHistogram histogram = new GaugeHistogram(4.0, 0.001);
+        // Scales from 0.5 to 1.0 in steps of a ten-thousandth
+        for (int i = 0; i <= 5000; i++) {
+            histogram.record(0.5 + i / 10_000.0);
+        }
+
+        for (double p : new double[]{10, 50, 95, 99}) {
+            double expected = 0.5 + p / 100 * 0.5;
+            assertEquals(expected, histogram.percentile(p), 0.001 + 1e-9, "p" + p);
+        }
+        assertEquals(0.5, histogram.min());
+        assertEquals(1.0, histogram.max());
+        assertEquals(1.0, histogram.percentile(100));
+        assertEquals(0.75, histogram.mean(), 1e-9);
+    }
+
+    @Test
+    void testValuesOutsideTheRangeKeepExactExtremes() {
+        GaugeHistogram histogram = new GaugeHistogram(10.0, 1.0);
+        histogram.record(-2.5);
+        histogram.record(5.0);
+        histogram.record(250.0);
+
+        assertEquals(3, histogram.count());
+        assertEquals(-2.5, histogram.min());
+        assertEquals(250.0, histogram.max());
+        // The upper end of the bucket the median falls in
+        assertEquals(6.0, histogram.percentile(50));
+        assertEquals(250.0, histogram.percentile(100));
+    }
+
+    @Test
+    void testReset() {
+        GaugeHistogram histogram = new GaugeHistogram(100.0, 0.25);
+        histogram.record(40.5);
+        histogram.reset();
+        histogram.record(12.25);
+
+        assertEquals(1, histogram.count());
+        assertEquals(12.25, histogram.min());
+        assertEquals(12.25, histogram.percentile(50));
+    }
+
+    @Test
+    void testRejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new GaugeHistogram(1.0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new GaugeHistogram(1.0, 2.0));
+        GaugeHistogram histogram = new GaugeHistogram(1.0, 0.1);
+        assertThrows(IllegalArgumentException.class, () -> histogram.percentile(101));
+    }
+}
@@ -0,0 +1,280 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+
+class GifEncoderTest {
+
+    private static ImageReader openGif(byte[] gif) throws IOException {
+        ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(gif));
+        ImageReader reader = ImageIO.getImageReadersBySuffix("gif").next();
+        reader.setInput(input);
+        return reader;
+    }
+
+    private static ByteBuffer solidFrame(int width, int height, int rgb) {
+        ByteBuffer rgba = ByteBuffer.allocate(width * height * 4);
+        for (int i = 0; i < width * height; i++) {
+            rgba.putInt(i * 4, (rgb << 8) | 0xFF);
+        }
+        return rgba;
+    }
+
+    @Test
+    void testRandomIndicesRoundTripExactly() throws IOException {
+        // 256 distinct colors in random order exercise every code width and table resets
+        int width = 320;
+        int height = 200;
+        int[] colors = new int[256];
+        for (int i = 0; i < 256; i++) {
+            // One color per 15-bit bin, not at the bin's corner
+            int red = ((i & 31) << 3) | 3;
+            int green = ((i >> 5) << 5) | 5;
+            int blue = (i * 7 & 31) << 3;
+            colors[i] = (red << 16) | (green << 8) | blue;
+        }
+        Random random = new Random(42);
+        ByteBuffer rgba = ByteBuffer.allocate(width * height * 4);
+        int[] expected = new int[width * height];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = colors[random.nextInt(256)];
+            rgba.putInt(i * 4, (expected[i] << 8) | 0xFF);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GifEncoder encoder = new GifEncoder(out, 50, true, GifEncoder.Dither.NONE,
+            GifPalette.of(colors));
+        encoder.writeFrame(rgba, width, height);
+        encoder.finish();
+
+        BufferedImage decoded = openGif(out.toByteArray()).read(0);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], decoded.getRGB(i % width, i / width) & 0xFFFFFF,
+                "pixel " + i);
+        }
+    }
+
+    @Test
+    void testWritesAnimationReadableByImageIO() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GifEncoder encoder = new GifEncoder(out, 50, true, GifEncoder.Dither.NONE);
+        encoder.writeFrame(solidFrame(16, 8, 0xFF0000), 16, 8);
+        encoder.writeFrame(solidFrame(16, 8, 0x00FF00), 16, 8);
+        encoder.writeFrame(solidFrame(16, 8, 0x0000FF), 16, 8);
+        encoder.finish();
+
+        ImageReader reader = openGif(out.toByteArray());
+        assertEquals(3, reader.getNumImages(true));
+        assertEquals(16, reader.getWidth(0));
+        assertEquals(8, reader.getHeight(0));
+        // The palette comes from the first frame; later frames bring their own colors
+        assertEquals(0xFF0000, reader.read(0).getRGB(3, 3) & 0xFFFFFF);
+        assertEquals(0x0000FF, reader.read(2).getRGB(3, 3) & 0xFFFFFF);
+    }
+
+    @Test
+    void testPaletteKeepsDistinctColorsExact() {
+        ByteBuffer rgba = ByteBuffer.allocate(4 * 4);
+        int[] colors = {0x123456, 0xFEDCBA, 0x010203, 0x808080};
+        for (int i = 0; i < colors.length; i++) {
+            rgba.putInt(i * 4, (colors[i] << 8) | 0xFF);
+        }
+
+        GifPalette palette = new GifPalette.Builder().add(rgba, colors.length, 1).build(256);
+
+        assertEquals(4, palette.size());
+        assertEquals(2, palette.bitDepth());
+        for (int color : colors) {
+            int index = palette.nearest(color >> 16, (color >> 8) & 0xFF, color & 0xFF);
+            assertEquals(color, palette.color(index));
+        }
+    }
+
+    @Test
+    void testPaletteAveragesColorsOfOneBin() {
+        ByteBuffer rgba = ByteBuffer.allocate(4 * 4);
+        // Two pixels of each color, which differ below the 5 bits per channel of the histogram
+        int[] colors = {0x000000, 0x000000, 0x070707, 0x070707};
+        for (int i = 0; i < colors.length; i++) {
+            rgba.putInt(i * 4, (colors[i] << 8) | 0xFF);
+        }
+
+        GifPalette palette = new GifPalette.Builder().add(rgba, colors.length, 1).build(256);
+
+        assertEquals(1, palette.size());
+        assertEquals(0x040404, palette.color(0));
+        assertEquals(palette.map(0, 0, 0), palette.map(7, 7, 7));
+    }
+
+    @Test
+    void testDitheringApproximatesGradient() throws IOException {
+        int width = 64;
+        int height = 16;
+        ByteBuffer rgba = ByteBuffer.allocate(width * height * 4);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int gray = x * 255 / (width - 1);
+                rgba.putInt((y * width + x) * 4, (gray << 24) | (gray << 16) | (gray << 8) | 0xFF);
+            }
+        }
+        GifPalette blackAndWhite = GifPalette.of(0x000000, 0xFFFFFF);
+
+        for (GifEncoder.Dither dither : GifEncoder.Dither.values()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            GifEncoder encoder = new GifEncoder(out, 50, false, dither, blackAndWhite);
+            encoder.writeFrame(rgba, width, height);
+            encoder.finish();
+
+            BufferedImage decoded = openGif(out.toByteArray()).read(0);
+            long sum = 0;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    sum += decoded.getRGB(x, y) & 0xFF;
+                }
+            }
+            double mean = (double) sum / (width * height);
+            assertEquals(127.5, mean, 20.0, dither + " mean brightness");
+        }
+    }
+
+    private static ByteBuffer frameWithSquare(int squareX, boolean withDot) {
+        ByteBuffer rgba = solidFrame(16, 8, 0x404040);
+        for (int y = 2; y < 5; y++) {
+            for (int x = squareX; x < squareX + 3; x++) {
+                rgba.putInt((y * 16 + x) * 4, 0xFF0000FF);
+            }
+        }
+        if (withDot) {
+            rgba.putInt((5 * 16 + 12) * 4, 0x0000FFFF);
+        }
+        return rgba;
+    }
+
+    // Draws every frame over the previous one the way a viewer does for disposal "do not dispose"
+    private static int[][] composite(ImageReader reader, int width, int height)
+        throws IOException {
+        int frames = reader.getNumImages(true);
+        int[][] canvases = new int[frames][];
+        int[] canvas = new int[width * height];
+        for (int i = 0; i < frames; i++) {
+            IIOMetadataNode root = (IIOMetadataNode) reader.getImageMetadata(i)
+                .getAsTree("javax_imageio_gif_image_1.0");
+            IIOMetadataNode descriptor =
+                (IIOMetadataNode) root.getElementsByTagName("ImageDescriptor").item(0);
+            int left = Integer.parseInt(descriptor.getAttribute("imageLeftPosition"));
+            int top = Integer.parseInt(descriptor.getAttribute("imageTopPosition"));
+            BufferedImage image = reader.read(i);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    int argb = image.getRGB(x, y);
+                    if ((argb >>> 24) != 0) {
+                        canvas[(top + y) * width + left + x] = argb & 0xFFFFFF;
+                    }
+                }
+            }
+            canvases[i] = canvas.clone();
+        }
+        return canvases;
+    }
+
+    @Test
+    void testDeltaFramesCompositeToOriginalFrames() throws IOException {
+        ByteBuffer[] frames = {
+            frameWithSquare(2, true),
+            frameWithSquare(4, true),
+            frameWithSquare(4, true),
+            frameWithSquare(4, false)
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GifEncoder encoder = new GifEncoder(out, 50, true, GifEncoder.Dither.NONE, true);
+        for (ByteBuffer frame : frames) {
+            encoder.writeFrame(frame, 16, 8);
+        }
+        encoder.finish();
+
+        ImageReader reader = openGif(out.toByteArray());
+        assertEquals(4, reader.getNumImages(true));
+        // Only the columns the square left and entered, the unchanged frame, and the dot
+        assertEquals(16, reader.getWidth(0));
+        assertEquals(5, reader.getWidth(1));
+        assertEquals(3, reader.getHeight(1));
+        assertEquals(1, reader.getWidth(2));
+        assertEquals(1, reader.getWidth(3));
+        assertEquals(1, reader.getHeight(3));
+
+        int[][] composited = composite(reader, 16, 8);
+        for (int i = 0; i < frames.length; i++) {
+            for (int p = 0; p < 16 * 8; p++) {
+                assertEquals(frames[i].getInt(p * 4) >>> 8, composited[i][p],
+                    "frame " + i + ", pixel " + p);
+            }
+        }
+    }
+
+    @Test
+    void testLaterColorsSurviveSingleColorFirstFrame() throws IOException {
+        // A fade in from black: the palette built from the first frame has one color
+        int width = 32;
+        int height = 16;
+        ByteBuffer gradient = ByteBuffer.allocate(width * height * 4);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / (width - 1);
+                int b = y * 255 / (height - 1);
+                gradient.putInt((y * width + x) * 4, (r << 24) | (0x80 << 16) | (b << 8) | 0xFF);
+            }
+        }
+
+        for (boolean deltaFrames : new boolean[]{false, true}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            GifEncoder encoder = new GifEncoder(out, 50, true, GifEncoder.Dither.NONE,
+                deltaFrames);
+            encoder.writeFrame(solidFrame(width, height, 0), width, height);
+            encoder.writeFrame(gradient, width, height);
+            encoder.finish();
+
+            int[][] composited = composite(openGif(out.toByteArray()), width, height);
+            for (int p = 0; p < width * height; p++) {
+                int expected = gradient.getInt(p * 4) >>> 8;
+                for (int shift = 0; shift < 24; shift += 8) {
+                    assertEquals((expected >> shift) & 0xFF, (composited[1][p] >> shift) & 0xFF,
+                        16, "delta frames " + deltaFrames + ", pixel " + p);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDeltaFramesRejectFullPalette() {
+        int[] colors = new int[256];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = i;
+        }
+        GifEncoder encoder = new GifEncoder(new ByteArrayOutputStream(), 50, true,
+            GifEncoder.Dither.NONE, true, GifPalette.of(colors));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> encoder.writeFrame(solidFrame(4, 4, 0), 4, 4));
+    }
+
+    @Test
+    void testRejectsFramesOfDifferentSize() throws IOException {
+        GifEncoder encoder = new GifEncoder(new ByteArrayOutputStream(), 50, true,
+            GifEncoder.Dither.NONE);
+        encoder.writeFrame(solidFrame(4, 4, 0), 4, 4);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> encoder.writeFrame(solidFrame(8, 4, 0), 8, 4));
+    }
+}
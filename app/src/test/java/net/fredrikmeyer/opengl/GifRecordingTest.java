@@ -109,6 +109,34 @@ class GifRecordingTest {
         assertTrue((Boolean) isRecordingField.get(manager));
     }
 
+    @Test
+    void testStartRecordingTwiceKeepsTheFrameRecorder() throws Exception {
+        Field frameRecorderField = ScreenshotManager.class.getDeclaredField("frameRecorder");
+        frameRecorderField.setAccessible(true);
+
+        manager.setRecordingFormat(RecordingFormat.Y4M);
+        manager.startRecording();
+        Object recorder = frameRecorderField.get(manager);
+        assertNotNull(recorder);
+
+        manager.startRecording();
+        assertSame(recorder, frameRecorderField.get(manager));
+        manager.stopRecording().join();
+    }
+
+    @Test
+    void testCleanupStopsRecording() throws Exception {
+        Field frameRecorderField = ScreenshotManager.class.getDeclaredField("frameRecorder");
+        frameRecorderField.setAccessible(true);
+
+        manager.setRecordingFormat(RecordingFormat.Y4M);
+        manager.startRecording();
+        manager.cleanup();
+
+        assertFalse(manager.isRecording());
+        assertNull(frameRecorderField.get(manager));
+    }
+
     @Test
     void testCleanup() throws Exception {
         // Test that cleanup shuts down the ExecutorService
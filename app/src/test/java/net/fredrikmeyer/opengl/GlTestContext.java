@@ -0,0 +1,92 @@
+package net.fredrikmeyer.opengl;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.lwjgl.glfw.GLFW.GLFW_ANY_PLATFORM;
+import static org.lwjgl.glfw.GLFW.GLFW_CONTEXT_CREATION_API;
+import static org.lwjgl.glfw.GLFW.GLFW_CONTEXT_VERSION_MAJOR;
+import static org.lwjgl.glfw.GLFW.GLFW_CONTEXT_VERSION_MINOR;
+import static org.lwjgl.glfw.GLFW.GLFW_FALSE;
+import static org.lwjgl.glfw.GLFW.GLFW_OPENGL_CORE_PROFILE;
+import static org.lwjgl.glfw.GLFW.GLFW_OPENGL_FORWARD_COMPAT;
+import static org.lwjgl.glfw.GLFW.GLFW_OPENGL_PROFILE;
+import static org.lwjgl.glfw.GLFW.GLFW_OSMESA_CONTEXT_API;
+import static org.lwjgl.glfw.GLFW.GLFW_PLATFORM;
+import static org.lwjgl.glfw.GLFW.GLFW_PLATFORM_NULL;
+import static org.lwjgl.glfw.GLFW.GLFW_TRUE;
+import static org.lwjgl.glfw.GLFW.GLFW_VISIBLE;
+import static org.lwjgl.glfw.GLFW.glfwCreateWindow;
+import static org.lwjgl.glfw.GLFW.glfwDefaultWindowHints;
+import static org.lwjgl.glfw.GLFW.glfwDestroyWindow;
+import static org.lwjgl.glfw.GLFW.glfwInit;
+import static org.lwjgl.glfw.GLFW.glfwInitHint;
+import static org.lwjgl.glfw.GLFW.glfwMakeContextCurrent;
+import static org.lwjgl.glfw.GLFW.glfwTerminate;
+import static org.lwjgl.glfw.GLFW.glfwWindowHint;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+import org.lwjgl.opengl.GL;
+
+/**
+ * Creates an invisible OpenGL 3.2 core context for tests.
+ *
+ * <p>The build runs tests with {@code LIBGL_ALWAYS_SOFTWARE} set, so on Linux the context is
+ * backed by Mesa's llvmpipe renderer. Without a display, GLFW's null platform is tried together
+ * with OSMesa. If neither works, the calling test is skipped rather than failed.
+ */
+final class GlTestContext implements AutoCloseable {
+
+    private final long window;
+
+    private GlTestContext(long window) {
+        this.window = window;
+    }
+
+    /**
+     * Creates a context and makes it current on the calling thread, or aborts the test if no
+     * context can be created on this machine.
+     *
+     * @return the new context
+     */
+    static GlTestContext create() {
+        long window = tryCreateWindow(false);
+        if (window == NULL) {
+            window = tryCreateWindow(true);
+        }
+        assumeTrue(window != NULL, "No OpenGL context available");
+
+        glfwMakeContextCurrent(window);
+        GL.createCapabilities();
+        return new GlTestContext(window);
+    }
+
+    private static long tryCreateWindow(boolean offscreen) {
+        glfwInitHint(GLFW_PLATFORM, offscreen ? GLFW_PLATFORM_NULL : GLFW_ANY_PLATFORM);
+        if (!glfwInit()) {
+            return NULL;
+        }
+
+        glfwDefaultWindowHints();
+        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 3);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 2);
+        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+        glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
+        if (offscreen) {
+            glfwWindowHint(GLFW_CONTEXT_CREATION_API, GLFW_OSMESA_CONTEXT_API);
+        }
+
+        long window = glfwCreateWindow(64, 64, "test", NULL, NULL);
+        if (window == NULL) {
+            glfwTerminate();
+        }
+        return window;
+    }
+
+    @Override
+    public void close() {
+        GL.setCapabilities(null);
+        glfwMakeContextCurrent(NULL);
+        glfwDestroyWindow(window);
+        glfwTerminate();
+    }
+}
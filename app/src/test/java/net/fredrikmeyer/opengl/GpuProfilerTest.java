@@ -0,0 +1,71 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import static org.lwjgl.opengl.GL11.GL_COLOR_BUFFER_BIT;
+import static org.lwjgl.opengl.GL11.glClear;
+import static org.lwjgl.opengl.GL11.glFinish;
+
+/**
+ * Tests for GpuProfiler. These need an OpenGL context with timer queries, such as llvmpipe, and
+ * are skipped when none is available.
+ */
+class GpuProfilerTest {
+
+    private GlTestContext context;
+    private RenderMetrics metrics;
+    private GpuProfiler profiler;
+
+    @BeforeEach
+    void setUp() {
+        context = GlTestContext.create();
+        metrics = new RenderMetrics();
+        profiler = new GpuProfiler(metrics);
+        assumeTrue(profiler.isSupported(), "Timer queries not supported");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (context != null) {
+            profiler.cleanup();
+            context.close();
+        }
+    }
+
+    @Test
+    void testFinishedQueriesAreRecordedUnderTheScopeName() {
+        GpuProfiler.Scope clear = profiler.scope("clear");
+        assertSame(clear, profiler.scope("clear"));
+
+        for (int frame = 0; frame < 6; frame++) {
+            profiler.collect();
+            profiler.begin(clear);
+            glClear(GL_COLOR_BUFFER_BIT);
+            profiler.end(clear);
+        }
+        glFinish();
+        profiler.collect();
+
+        RenderMetrics.Summary summary = metrics.gpuSummaries().get("clear");
+        assertNotNull(summary);
+        // Every frame was either measured or skipped, never waited for
+        assertEquals(6, summary.count() + clear.skippedMeasurements());
+        assertTrue(summary.count() > 0);
+        assertTrue(summary.max() >= 0);
+    }
+
+    @Test
+    void testScopesCannotBeNested() {
+        GpuProfiler.Scope outer = profiler.scope("outer");
+        GpuProfiler.Scope inner = profiler.scope("inner");
+
+        profiler.begin(outer);
+        assertThrows(IllegalStateException.class, () -> profiler.begin(inner));
+        assertThrows(IllegalStateException.class, () -> profiler.end(inner));
+        profiler.end(outer);
+    }
+}
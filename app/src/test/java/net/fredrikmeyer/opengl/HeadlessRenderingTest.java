@@ -0,0 +1,155 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import static org.lwjgl.glfw.GLFW.glfwTerminate;
+import static org.lwjgl.opengl.GL11.GL_NO_ERROR;
+import static org.lwjgl.opengl.GL11.GL_RGBA;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
+import static org.lwjgl.opengl.GL11.GL_VIEWPORT;
+import static org.lwjgl.opengl.GL11.glGetError;
+import static org.lwjgl.opengl.GL11.glGetIntegerv;
+import static org.lwjgl.opengl.GL11.glReadPixels;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+
+/**
+ * Tests for rendering with a headless Window. These need an OpenGL context and are skipped when
+ * none is available.
+ */
+class HeadlessRenderingTest {
+
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 24;
+
+    private Window window;
+
+    @BeforeEach
+    void setUp() {
+        window = Window.headless(new WindowDimensions(WIDTH, HEIGHT));
+        try {
+            window.init();
+        } catch (RuntimeException e) {
+            window = null;
+        }
+        assumeTrue(window != null, "No OpenGL context available");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (window != null) {
+            GL.setCapabilities(null);
+            window.destroy();
+            glfwTerminate();
+        }
+    }
+
+    @Test
+    void testRendersIntoFramebufferOfRequestedSize() {
+        Framebuffer framebuffer = window.getFramebuffer();
+        assertTrue(window.isHeadless());
+        assertNotNull(framebuffer);
+        assertEquals(WIDTH, framebuffer.getWidth());
+        assertEquals(HEIGHT, framebuffer.getHeight());
+
+        int[] viewport = new int[4];
+        glGetIntegerv(GL_VIEWPORT, viewport);
+        assertArrayEquals(new int[]{0, 0, WIDTH, HEIGHT}, viewport);
+    }
+
+    @Test
+    void testRenderFramesDrivesTheSceneWithoutVsync() {
+        CountingScene scene = new CountingScene();
+        Renderer renderer = new Renderer(window, scene, new ScreenshotManager());
+
+        renderer.renderFrames(5);
+
+        assertEquals(5, scene.frames);
+        assertEquals(4, renderer.getMetrics().summary(RenderMetrics.Stage.FRAME).count());
+
+        // The renderer's clear color ended up in the offscreen framebuffer
+        ByteBuffer pixel = BufferUtils.createByteBuffer(4);
+        glReadPixels(WIDTH / 2, HEIGHT / 2, 1, 1, GL_RGBA, GL_UNSIGNED_BYTE, pixel);
+        assertEquals(Math.round(0.17f * 255), pixel.get(2) & 0xFF, 1);
+        renderer.cleanup();
+    }
+
+    @Test
+    void testRenderFramesCanRunAgainUntilCleanup() {
+        CountingScene scene = new CountingScene();
+        Renderer renderer = new Renderer(window, scene, new ScreenshotManager());
+
+        renderer.renderFrames(3);
+        renderer.renderFrames(2);
+
+        // The second run used the uniform buffer and queries of the first
+        assertEquals(GL_NO_ERROR, glGetError());
+        assertEquals(5, scene.frames);
+        renderer.cleanup();
+    }
+
+    @Test
+    void testBatchRenderAdvancesTheSceneByTheFixedTimeStep() {
+        CountingScene scene = new CountingScene();
+        Renderer renderer = new Renderer(window, scene, new ScreenshotManager());
+        List<Integer> frameSizes = new ArrayList<>();
+        FrameRecorder recorder = new FrameRecorder() {
+            @Override
+            public void accept(ByteBuffer pixels, int width, int height) {
+                frameSizes.add(width * height);
+            }
+
+            @Override
+            public CompletableFuture<String> finish() {
+                return CompletableFuture.completedFuture("frames");
+            }
+        };
+
+        BatchRenderer.Result result = new BatchRenderer(window, renderer)
+            .render(7, 0.25f, recorder);
+
+        assertEquals(7, scene.frames);
+        assertEquals(7 * 0.25f, scene.time, 1e-6);
+        assertEquals(7, frameSizes.size());
+        assertEquals(WIDTH * HEIGHT, frameSizes.get(6));
+        assertEquals("frames", result.output());
+        assertTrue(result.renderedFramesPerSecond() > 0);
+        renderer.cleanup();
+    }
+
+    @Test
+    void testRejectsNegativeFrameCount() {
+        Renderer renderer = new Renderer(window, new CountingScene(), new ScreenshotManager());
+
+        assertThrows(IllegalArgumentException.class, () -> renderer.renderFrames(-1));
+    }
+
+    private static final class CountingScene implements IScene {
+
+        private int frames = 0;
+        private float time = 0;
+
+        @Override
+        public void update(float deltaTime) {
+            frames++;
+            time += deltaTime;
+        }
+
+        @Override
+        public void render() {
+        }
+
+        @Override
+        public void cleanup() {
+        }
+    }
+}
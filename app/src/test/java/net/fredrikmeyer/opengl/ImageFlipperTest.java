@@ -0,0 +1,71 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import org.lwjgl.BufferUtils;
+
+class ImageFlipperTest {
+
+    // A 2x3 RGBA image, bottom row first, where every byte encodes (row, column, channel)
+    private static ByteBuffer bottomUpImage() {
+        ByteBuffer buffer = BufferUtils.createByteBuffer(2 * 3 * 4);
+        for (int row = 0; row < 3; row++) {
+            for (int x = 0; x < 2; x++) {
+                for (int channel = 0; channel < 4; channel++) {
+                    buffer.put((byte) (row * 16 + x * 4 + channel));
+                }
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Test
+    void testFlipRowsReversesRowOrder() {
+        ByteBuffer src = bottomUpImage();
+        ByteBuffer dst = BufferUtils.createByteBuffer(src.capacity());
+
+        ImageFlipper.flipRows(src, dst, 2 * 4, 3);
+
+        for (int y = 0; y < 3; y++) {
+            for (int i = 0; i < 8; i++) {
+                assertEquals(src.get((2 - y) * 8 + i), dst.get(y * 8 + i));
+            }
+        }
+        // Positions are left untouched
+        assertEquals(0, src.position());
+        assertEquals(0, dst.position());
+    }
+
+    @Test
+    void testFlipRowsToArgb() {
+        ByteBuffer src = bottomUpImage();
+        int[] argb = new int[6];
+
+        ImageFlipper.flipRowsToArgb(src, argb, 2, 3);
+
+        // Top-left pixel comes from the last row of the source: R=32, G=33, B=34, A=35
+        assertEquals((35 << 24) | (32 << 16) | (33 << 8) | 34, argb[0]);
+        // Bottom-right pixel comes from the first row of the source: R=4, G=5, B=6, A=7
+        assertEquals((7 << 24) | (4 << 16) | (5 << 8) | 6, argb[5]);
+        assertEquals(0, src.position());
+    }
+
+    @Test
+    void testScratchBufferIsReused() {
+        ImageFlipper flipper = new ImageFlipper();
+
+        ByteBuffer large = flipper.scratchBuffer(4, 4);
+        assertEquals(64, large.limit());
+
+        // A smaller request must not reallocate
+        ByteBuffer small = flipper.scratchBuffer(2, 2);
+        assertSame(large, small);
+        assertEquals(16, small.limit());
+        assertEquals(0, small.position());
+
+        // A larger request grows the buffer
+        assertTrue(flipper.scratchBuffer(8, 8).capacity() >= 256);
+    }
+}
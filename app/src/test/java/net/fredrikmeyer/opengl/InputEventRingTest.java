@@ -0,0 +1,158 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class InputEventRingTest {
+
+    // Records drained events as strings
+    private static final class Recorder implements InputEventRing.Handler {
+
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void key(int key, int scancode, int action, int mods) {
+            events.add("key " + key + " " + scancode + " " + action + " " + mods);
+        }
+
+        @Override
+        public void mouseButton(int button, int action, int mods) {
+            events.add("button " + button + " " + action + " " + mods);
+        }
+
+        @Override
+        public void cursorPos(double xpos, double ypos) {
+            events.add("cursor " + xpos + " " + ypos);
+        }
+
+        @Override
+        public void scroll(double xoffset, double yoffset) {
+            events.add("scroll " + xoffset + " " + yoffset);
+        }
+    }
+
+    @Test
+    void testEventsAreDrainedInOrder() {
+        InputEventRing ring = new InputEventRing(8);
+        ring.offerKey(87, 17, 1, 0);
+        ring.offerMouseButton(0, 1, 2);
+        ring.offerCursorPos(10.5, 20.25);
+        ring.offerScroll(0, -1);
+
+        Recorder recorder = new Recorder();
+        assertEquals(4, ring.drain(recorder));
+        assertEquals(List.of("key 87 17 1 0", "button 0 1 2", "cursor 10.5 20.25",
+            "scroll 0.0 -1.0"), recorder.events);
+        assertEquals(0, ring.drain(recorder));
+    }
+
+    @Test
+    void testFullRingDropsNewEvents() {
+        InputEventRing ring = new InputEventRing(4);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i < 4, ring.offerScroll(i, 0));
+        }
+        assertEquals(2, ring.droppedEvents());
+
+        Recorder recorder = new Recorder();
+        ring.drain(recorder);
+        assertEquals("scroll 3.0 0.0", recorder.events.get(3));
+
+        // Draining makes room again, and slots are reused
+        assertTrue(ring.offerScroll(9, 0));
+        ring.drain(recorder);
+        assertEquals("scroll 9.0 0.0", recorder.events.get(4));
+    }
+
+    @Test
+    void testEventsArriveIntactAcrossThreads() throws InterruptedException {
+        InputEventRing ring = new InputEventRing(64);
+        int count = 200_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!ring.offerCursorPos(i, i + 0.5)) {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+
+        double[] next = new double[1];
+        InputEventRing.Handler handler = new InputEventRing.Handler() {
+            @Override
+            public void key(int key, int scancode, int action, int mods) {
+                fail("unexpected key event");
+            }
+
+            @Override
+            public void mouseButton(int button, int action, int mods) {
+                fail("unexpected mouse button event");
+            }
+
+            @Override
+            public void cursorPos(double xpos, double ypos) {
+                assertEquals(next[0], xpos);
+                assertEquals(next[0] + 0.5, ypos);
+                next[0]++;
+            }
+
+            @Override
+            public void scroll(double xoffset, double yoffset) {
+                fail("unexpected scroll event");
+            }
+        };
+
+        producer.start();
+        while (next[0] < count) {
+            if (ring.drain(handler) == 0) {
+                Thread.yield();
+            }
+        }
+        producer.join();
+        assertEquals(count, next[0]);
+    }
+
+    @Test
+    void testAwaitReturnsWhenAnEventIsOffered() throws InterruptedException {
+        InputEventRing ring = new InputEventRing(8);
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ring.offerKey(1, 2, 3, 4);
+        });
+
+        producer.start();
+        long start = System.nanoTime();
+        Recorder recorder = new Recorder();
+        while (recorder.events.isEmpty()) {
+            ring.await(10, TimeUnit.SECONDS);
+            ring.drain(recorder);
+        }
+        producer.join();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5),
+            "await should end when the event arrives, not at the timeout");
+    }
+
+    @Test
+    void testWakeConsumerBeforeAwaitIsNotLost() {
+        InputEventRing ring = new InputEventRing(8);
+        ring.await(0, TimeUnit.NANOSECONDS);
+        ring.wakeConsumer();
+
+        long start = System.nanoTime();
+        ring.await(10, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    void testRejectsCapacityThatIsNotAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new InputEventRing(0));
+        assertThrows(IllegalArgumentException.class, () -> new InputEventRing(12));
+    }
+}
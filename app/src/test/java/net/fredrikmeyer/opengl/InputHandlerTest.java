@@ -8,6 +8,9 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import static org.lwjgl.glfw.GLFW.*;
 
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
 class InputHandlerTest {
 
     // Mock classes for Window and ScreenshotManager
@@ -104,21 +107,21 @@ class InputHandlerTest {
     private static class MockScreenshotManager extends ScreenshotManager {
 
         private boolean screenshotTaken = false;
-        private long lastWindowHandle = 0;
+        private Window lastWindow;
 
         @Override
-        public String takeScreenshot(long window) {
+        public CompletableFuture<Path> takeScreenshot(Window window) {
             screenshotTaken = true;
-            lastWindowHandle = window;
-            return "mock-screenshot.png";
+            lastWindow = window;
+            return CompletableFuture.completedFuture(Path.of("mock-screenshot.png"));
         }
 
         public boolean wasScreenshotTaken() {
             return screenshotTaken;
         }
 
-        public long getLastWindowHandle() {
-            return lastWindowHandle;
+        public Window getLastWindow() {
+            return lastWindow;
         }
     }
 
@@ -149,6 +152,16 @@ class InputHandlerTest {
         assertTrue(window.shouldClose());
     }
 
+    @Test
+    void testKeysRequestARedraw() {
+        // A new window always wants its first frame
+        assertTrue(window.consumeRedrawRequest());
+        assertFalse(window.consumeRedrawRequest());
+
+        window.simulateKeyPress(GLFW_KEY_Z, GLFW_RELEASE);
+        assertTrue(window.consumeRedrawRequest());
+    }
+
     @Test
     void testF2KeyTakesScreenshot() {
         // Test that pressing F2 key takes a screenshot
@@ -159,7 +172,7 @@ class InputHandlerTest {
 
         // Verify screenshot was taken
         assertTrue(screenshotManager.wasScreenshotTaken());
-        assertEquals(1, screenshotManager.getLastWindowHandle());
+        assertSame(window, screenshotManager.getLastWindow());
     }
 
     @Test
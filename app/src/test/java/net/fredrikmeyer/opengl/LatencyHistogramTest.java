@@ -0,0 +1,83 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.min());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.mean());
+        assertEquals(0, histogram.percentile(99));
+    }
+
+    @Test
+    void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(50, histogram.percentile(50));
+        assertEquals(95, histogram.percentile(95));
+        assertEquals(100, histogram.percentile(100));
+        assertEquals(1, histogram.min());
+        assertEquals(50.5, histogram.mean(), 1e-9);
+    }
+
+    @Test
+    void testPercentilesStayWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // Frame times from 1 ms to 10 ms in 1 microsecond steps
+        for (long nanos = 1_000_000; nanos <= 10_000_000; nanos += 1_000) {
+            histogram.record(nanos);
+        }
+
+        for (double p : new double[]{10, 50, 95, 99, 99.9}) {
+            double expected = 1_000_000 + p / 100 * 9_000_000;
+            long actual = histogram.percentile(p);
+            assertTrue(Math.abs(actual - expected) / expected < 1.0 / 64,
+                "p" + p + " was " + actual + ", expected about " + expected);
+        }
+        assertEquals(10_000_000, histogram.max());
+        assertEquals(10_000_000, histogram.percentile(100));
+    }
+
+    @Test
+    void testVeryLongDurationsKeepExactMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(16_000_000);
+        histogram.record(LatencyHistogram.HIGHEST_TRACKABLE_NANOS * 4);
+        histogram.record(-5);
+
+        assertEquals(3, histogram.count());
+        assertEquals(0, histogram.min());
+        assertEquals(LatencyHistogram.HIGHEST_TRACKABLE_NANOS * 4, histogram.max());
+        assertTrue(histogram.percentile(100) >= LatencyHistogram.HIGHEST_TRACKABLE_NANOS);
+    }
+
+    @Test
+    void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_000);
+        histogram.reset();
+        histogram.record(2_000);
+
+        assertEquals(1, histogram.count());
+        assertEquals(2_000, histogram.max());
+        assertEquals(2_000, histogram.percentile(50), 2_000 / 64.0);
+    }
+
+    @Test
+    void testRejectsInvalidPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThrows(IllegalArgumentException.class, () -> histogram.percentile(101));
+        assertThrows(IllegalArgumentException.class, () -> histogram.percentile(-1));
+    }
+}
@@ -0,0 +1,123 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+class ParallelGifEncoderTest {
+
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    // A static gradient with a square moving every other frame, so delta frames have regions of
+    // every kind: full, partial and empty
+    private static List<BufferedImage> frames(int count, int width, int height) {
+        List<BufferedImage> frames = new ArrayList<>();
+        for (int f = 0; f < count; f++) {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            int squareX = f / 2 % width;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int r = x * 255 / width;
+                    int g = y * 255 / height;
+                    int b = (x ^ y) & 0xFF;
+                    if (x >= squareX && x < squareX + 6 && y >= 4 && y < 10) {
+                        r = 255 - r;
+                        b = 255;
+                    }
+                    image.setRGB(x, y, 0xFF000000 | (r << 16) | (g << 8) | b);
+                }
+            }
+            frames.add(image);
+        }
+        return frames;
+    }
+
+    private static byte[] encodeSequentially(List<BufferedImage> frames, GifEncoder.Dither dither,
+        boolean deltaFrames) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // With all frames at hand, the parallel encoder builds the palette from all of them
+        GifEncoder encoder = new GifEncoder(out, 50, true, dither, deltaFrames,
+            GifEncoder.paletteOf(frames, deltaFrames));
+        for (BufferedImage frame : frames) {
+            encoder.writeFrame(frame);
+        }
+        encoder.finish();
+        return out.toByteArray();
+    }
+
+    @Test
+    void testOutputMatchesSequentialEncoder() throws IOException {
+        // More frames than the in-flight window, so the sequencer has to refill it
+        List<BufferedImage> frames = frames(40, 48, 32);
+
+        for (GifEncoder.Dither dither : GifEncoder.Dither.values()) {
+            for (boolean deltaFrames : new boolean[]{false, true}) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                new ParallelGifEncoder(pool, 50, true, dither, deltaFrames).encode(frames, out);
+
+                assertArrayEquals(encodeSequentially(frames, dither, deltaFrames),
+                    out.toByteArray(), dither + ", delta frames " + deltaFrames);
+            }
+        }
+    }
+
+    @Test
+    void testRgbaFramesMatchImages() throws IOException {
+        List<BufferedImage> frames = frames(12, 48, 32);
+        List<ByteBuffer> rgba = new ArrayList<>();
+        for (BufferedImage frame : frames) {
+            rgba.add(GifFrameCompressor.toRgba(frame, null));
+        }
+
+        for (boolean deltaFrames : new boolean[]{false, true}) {
+            ParallelGifEncoder encoder = new ParallelGifEncoder(pool, 50, true,
+                GifEncoder.Dither.ORDERED, deltaFrames);
+            ByteArrayOutputStream fromImages = new ByteArrayOutputStream();
+            encoder.encode(frames, fromImages);
+            ByteArrayOutputStream fromRgba = new ByteArrayOutputStream();
+            encoder.encode(rgba, 48, 32, fromRgba);
+
+            assertArrayEquals(fromImages.toByteArray(), fromRgba.toByteArray(),
+                "delta frames " + deltaFrames);
+        }
+    }
+
+    @Test
+    void testRejectsFramesOfDifferentSize() {
+        List<BufferedImage> frames = frames(2, 8, 8);
+        frames.add(new BufferedImage(4, 8, BufferedImage.TYPE_INT_ARGB));
+        ParallelGifEncoder encoder = new ParallelGifEncoder(pool, 50, true,
+            GifEncoder.Dither.NONE, false);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> encoder.encode(frames, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void testRejectsEmptyRecording() {
+        ParallelGifEncoder encoder = new ParallelGifEncoder(pool, 50, true,
+            GifEncoder.Dither.NONE, false);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> encoder.encode(List.of(), new ByteArrayOutputStream()));
+    }
+}
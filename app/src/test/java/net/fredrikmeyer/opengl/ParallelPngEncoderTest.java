@@ -0,0 +1,128 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import javax.imageio.ImageIO;
+import org.lwjgl.BufferUtils;
+
+class ParallelPngEncoderTest {
+
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    // The color of the pixel at (x, y) counted from the top, a mix of smooth gradients, which
+    // favor the predicting filters, and noise
+    private static int argb(int x, int y) {
+        int r = x * 3 & 0xFF;
+        int g = y * 5 & 0xFF;
+        int b = (int) ((x * 31 + y * 17) * 2654435761L >>> 13) & 0xFF;
+        int a = 128 + (x + y) % 128;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    // A bottom-up RGBA readback of the test image
+    private static ByteBuffer readback(int width, int height) {
+        // RGBA bytes are big-endian ints
+        ByteBuffer pixels = BufferUtils.createByteBuffer(width * height * 4)
+            .order(ByteOrder.BIG_ENDIAN);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels.putInt(((height - 1 - y) * width + x) * 4,
+                    Integer.rotateLeft(argb(x, y), 8));
+            }
+        }
+        return pixels;
+    }
+
+    private BufferedImage encodeAndDecode(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ParallelPngEncoder(pool).encode(readback(width, height), width, height, out);
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    void testImageRoundTripsAcrossBands() throws IOException {
+        // Several full bands and a partial one
+        int width = 37;
+        int height = ParallelPngEncoder.BAND_ROWS * 3 + 5;
+        BufferedImage image = encodeAndDecode(width, height);
+
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(argb(x, y), image.getRGB(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void testSingleRowImage() throws IOException {
+        BufferedImage image = encodeAndDecode(5, 1);
+
+        for (int x = 0; x < 5; x++) {
+            assertEquals(argb(x, 0), image.getRGB(x, 0));
+        }
+    }
+
+    @Test
+    void testOutputDoesNotDependOnPoolSize() throws IOException {
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        try {
+            new ParallelPngEncoder(pool).encode(readback(64, 200), 64, 200, parallel);
+            new ParallelPngEncoder(singleThread).encode(readback(64, 200), 64, 200, single);
+        } finally {
+            singleThread.shutdownNow();
+        }
+
+        assertArrayEquals(single.toByteArray(), parallel.toByteArray());
+    }
+
+    @Test
+    void testCombinedChecksumMatchesWholeChecksum() {
+        byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7 + i / 300);
+        }
+        Adler32 whole = new Adler32();
+        whole.update(data);
+        Adler32 first = new Adler32();
+        first.update(data, 0, 40_000);
+        Adler32 second = new Adler32();
+        second.update(data, 40_000, 60_000);
+
+        assertEquals(whole.getValue(),
+            ParallelPngEncoder.combineAdler32(first.getValue(), second.getValue(), 60_000));
+    }
+
+    @Test
+    void testRejectsEmptyImage() {
+        ParallelPngEncoder encoder = new ParallelPngEncoder(pool);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> encoder.encode(BufferUtils.createByteBuffer(4), 0, 1,
+                new ByteArrayOutputStream()));
+    }
+}
@@ -0,0 +1,61 @@
+package net.fredrikmeyer.opengl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgramBinaryCacheTest {
+
+    private static final String DRIVER = "Vendor\nRenderer\n3.2.0";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testKeyDependsOnTheSourcesAndTheDriver() {
+        String key = ProgramBinaryCache.key("vertex", "fragment", DRIVER);
+        assertEquals(64, key.length());
+        assertTrue(key.matches("[0-9a-f]+"));
+        assertEquals(key, ProgramBinaryCache.key("vertex", "fragment", DRIVER));
+
+        assertNotEquals(key, ProgramBinaryCache.key("vertex ", "fragment", DRIVER));
+        assertNotEquals(key, ProgramBinaryCache.key("vertex", "fragment2", DRIVER));
+        assertNotEquals(key, ProgramBinaryCache.key("vertex", "fragment", DRIVER + ".1"));
+        assertNotEquals(key, ProgramBinaryCache.key("vertexf", "ragment", DRIVER),
+            "Text that moves between the sources changes the key");
+    }
+
+    @Test
+    void testEntriesAreReadBack() throws IOException {
+        Path file = tempDir.resolve("programs").resolve("entry.bin");
+        byte[] binary = {1, 2, 3, 4, 5};
+        ProgramBinaryCache.writeEntry(file, new ProgramBinaryCache.Entry(0x8E21, binary));
+
+        ProgramBinaryCache.Entry entry = ProgramBinaryCache.readEntry(file);
+        assertNotNull(entry);
+        assertEquals(0x8E21, entry.format());
+        assertArrayEquals(binary, entry.binary());
+
+        ProgramBinaryCache.writeEntry(file, new ProgramBinaryCache.Entry(7, new byte[]{9}));
+        assertArrayEquals(new byte[]{9}, ProgramBinaryCache.readEntry(file).binary());
+        try (var files = Files.list(file.getParent())) {
+            assertEquals(1, files.count(), "No temporary files are left behind");
+        }
+    }
+
+    @Test
+    void testOtherFilesAreNoEntries() throws IOException {
+        Path file = tempDir.resolve("entry.bin");
+        Files.write(file, new byte[]{1, 2, 3});
+        assertNull(ProgramBinaryCache.readEntry(file));
+
+        ProgramBinaryCache.writeEntry(file, new ProgramBinaryCache.Entry(1, new byte[]{1, 2, 3}));
+        byte[] truncated = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(truncated, truncated.length - 1));
+        assertNull(ProgramBinaryCache.readEntry(file));
+    }
+}
@@ -0,0 +1,71 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+class ProgressiveAccumulatorTest {
+
+    private static final int TILES =
+        ProgressiveAccumulator.TILE_COLUMNS * ProgressiveAccumulator.TILE_ROWS;
+
+    @Test
+    void testFirstFrameCoversEveryTile() {
+        ProgressiveAccumulator accumulator = new ProgressiveAccumulator(4);
+        assertEquals(0, accumulator.sampleCount());
+
+        assertEquals(TILES, accumulator.scheduleTiles());
+        assertEquals(1, accumulator.sampleCount());
+        assertFalse(accumulator.isConverged());
+    }
+
+    @Test
+    void testLaterFramesRefineTilesInTurn() {
+        ProgressiveAccumulator accumulator = new ProgressiveAccumulator(4);
+        accumulator.scheduleTiles();
+
+        // Each refining frame draws a bounded share of the image
+        int frames = 0;
+        while (!accumulator.isConverged()) {
+            int tiles = accumulator.scheduleTiles();
+            assertTrue(tiles > 0 && tiles <= ProgressiveAccumulator.TILES_PER_FRAME);
+            frames++;
+        }
+        assertEquals(3 * TILES / ProgressiveAccumulator.TILES_PER_FRAME, frames);
+        assertEquals(4, accumulator.sampleCount());
+        assertEquals(0, accumulator.scheduleTiles(), "a converged image needs no more samples");
+    }
+
+    @Test
+    void testResetStartsOver() {
+        ProgressiveAccumulator accumulator = new ProgressiveAccumulator(1);
+        accumulator.scheduleTiles();
+        assertTrue(accumulator.isConverged());
+
+        accumulator.reset();
+        assertFalse(accumulator.isConverged());
+        assertEquals(TILES, accumulator.scheduleTiles());
+    }
+
+    @Test
+    void testJitterStartsAtThePixelCenterAndStaysInThePixel() {
+        assertEquals(0, ProgressiveAccumulator.jitter(0, 2));
+        assertEquals(0, ProgressiveAccumulator.jitter(0, 3));
+
+        Set<Float> offsets = new HashSet<>();
+        for (int sample = 0; sample < 16; sample++) {
+            float x = ProgressiveAccumulator.jitter(sample, 2);
+            float y = ProgressiveAccumulator.jitter(sample, 3);
+            assertTrue(x >= -0.5f && x < 0.5f && y >= -0.5f && y < 0.5f);
+            offsets.add(x * 1000 + y);
+        }
+        assertEquals(16, offsets.size(), "samples should not repeat");
+    }
+
+    @Test
+    void testRejectsNonPositiveSampleCount() {
+        assertThrows(IllegalArgumentException.class, () -> new ProgressiveAccumulator(0));
+    }
+}
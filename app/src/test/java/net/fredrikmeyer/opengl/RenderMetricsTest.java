@@ -0,0 +1,112 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+
+class RenderMetricsTest {
+
+    @Test
+    void testSummaryIsInMilliseconds() {
+        RenderMetrics metrics = new RenderMetrics();
+        for (int i = 0; i < 99; i++) {
+            metrics.record(RenderMetrics.Stage.FRAME, 16_000_000);
+        }
+        metrics.record(RenderMetrics.Stage.FRAME, 50_000_000);
+
+        RenderMetrics.Summary summary = metrics.summary(RenderMetrics.Stage.FRAME);
+        assertEquals(100, summary.count());
+        assertEquals(16.0, summary.p50(), 16.0 / 64);
+        assertEquals(16.0, summary.p99(), 16.0 / 64);
+        assertEquals(50.0, summary.max(), 1e-9);
+        assertEquals(16.34, summary.mean(), 1e-9);
+    }
+
+    @Test
+    void testStagesAreRecordedSeparately() {
+        RenderMetrics metrics = new RenderMetrics();
+        metrics.record(RenderMetrics.Stage.RENDER, 2_000_000);
+        metrics.record(RenderMetrics.Stage.SWAP, 14_000_000);
+
+        Map<RenderMetrics.Stage, RenderMetrics.Summary> summaries = metrics.summaries();
+        assertEquals(RenderMetrics.Stage.values().length, summaries.size());
+        assertEquals(0, summaries.get(RenderMetrics.Stage.CAPTURE).count());
+        assertEquals(2.0, summaries.get(RenderMetrics.Stage.RENDER).max(), 1e-9);
+        assertEquals(14.0, summaries.get(RenderMetrics.Stage.SWAP).max(), 1e-9);
+    }
+
+    @Test
+    void testLoggingAnIntervalKeepsTheTotals() {
+        RenderMetrics metrics = new RenderMetrics();
+        metrics.record(RenderMetrics.Stage.UPDATE, 1_000_000);
+        metrics.logInterval();
+        metrics.record(RenderMetrics.Stage.UPDATE, 3_000_000);
+
+        assertEquals(2, metrics.summary(RenderMetrics.Stage.UPDATE).count());
+        assertEquals(3.0, metrics.summary(RenderMetrics.Stage.UPDATE).max(), 1e-9);
+    }
+
+    @Test
+    void testGpuScopesAreKeptInFirstSeenOrder() {
+        RenderMetrics metrics = new RenderMetrics();
+        metrics.recordGpu("render", 4_000_000);
+        metrics.recordGpu("capture", 500_000);
+        metrics.recordGpu("render", 6_000_000);
+
+        Map<String, RenderMetrics.Summary> summaries = metrics.gpuSummaries();
+        assertEquals(List.of("render", "capture"), List.copyOf(summaries.keySet()));
+        assertEquals(2, summaries.get("render").count());
+        assertEquals(6.0, summaries.get("render").max(), 1e-9);
+        assertEquals(0.5, summaries.get("capture").max(), 1e-9);
+    }
+
+    @Test
+    void testPacingJitterIsKeptApartFromTheStages() {
+        RenderMetrics metrics = new RenderMetrics();
+        metrics.recordPacingJitter(20_000);
+        metrics.recordPacingJitter(80_000);
+        metrics.logInterval();
+
+        assertEquals(2, metrics.pacingJitter().count());
+        assertEquals(0.08, metrics.pacingJitter().max(), 1e-9);
+        assertEquals(0, metrics.summary(RenderMetrics.Stage.PACE).count());
+    }
+
+    @Test
+    void testResolutionScaleIsRecorded() {
+        RenderMetrics metrics = new RenderMetrics();
+        assertEquals(1.0, metrics.resolutionScale());
+        metrics.recordResolutionScale(0.5);
+        metrics.recordResolutionScale(0.75);
+        metrics.recordResolutionScale(0.75);
+        metrics.logInterval();
+
+        assertEquals(0.75, metrics.resolutionScale());
+        assertEquals(0.75, metrics.medianResolutionScale(), 0.001);
+    }
+
+    @Test
+    void testMarchStepsAreRecorded() {
+        RenderMetrics metrics = new RenderMetrics();
+        assertEquals(0, metrics.medianMarchSteps());
+        metrics.recordMarchSteps(40.5);
+        metrics.recordMarchSteps(12.25);
+        metrics.recordMarchSteps(12.25);
+        metrics.logInterval();
+        metrics.logSummary();
+
+        assertEquals(12.25, metrics.medianMarchSteps(), 0.25);
+    }
+
+    @Test
+    void testTimeToFirstFrameIsRecorded() {
+        RenderMetrics metrics = new RenderMetrics();
+        assertEquals(-1, metrics.timeToFirstFrame());
+        metrics.recordTimeToFirstFrame(350_000_000L);
+        metrics.logSummary();
+
+        assertEquals(350_000_000L, metrics.timeToFirstFrame());
+    }
+}
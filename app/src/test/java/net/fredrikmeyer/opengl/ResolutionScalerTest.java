@@ -0,0 +1,98 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResolutionScalerTest {
+
+    private static final long BUDGET = 10_000_000;
+
+    // GPU time of a scene that costs the same per pixel: 16 ms at full resolution
+    private static long gpuTime(double scale) {
+        return Math.round(16_000_000 * scale * scale);
+    }
+
+    @Test
+    void testStartsAtFullResolutionWithinTheLimits() {
+        assertEquals(1.0, new ResolutionScaler(BUDGET, 0.5, 1.0).scale());
+        assertEquals(0.8, new ResolutionScaler(BUDGET, 0.5, 0.8).scale());
+        assertEquals(1.2, new ResolutionScaler(BUDGET, 1.2, 2.0).scale());
+    }
+
+    @Test
+    void testConvergesOnTheBudget() {
+        ResolutionScaler scaler = new ResolutionScaler(BUDGET, 0.25, 1.0);
+        for (int i = 0; i < 100; i++) {
+            scaler.update(gpuTime(scaler.scale()));
+        }
+        long time = gpuTime(scaler.scale());
+        assertTrue(time <= BUDGET, "over budget at scale " + scaler.scale());
+        assertTrue(time >= ResolutionScaler.HOLD_FRACTION * BUDGET * 0.95,
+            "far under budget at scale " + scaler.scale());
+    }
+
+    @Test
+    void testShrinksFasterThanItGrows() {
+        ResolutionScaler scaler = new ResolutionScaler(BUDGET, 0.25, 1.0);
+        double shrunk = scaler.update(2 * BUDGET);
+        double lost = 1.0 - shrunk;
+
+        double grown = scaler.update(BUDGET / 2);
+        assertTrue(grown > shrunk);
+        assertTrue(grown - shrunk < lost, "grew back " + (grown - shrunk) + " of " + lost);
+    }
+
+    @Test
+    void testHoldsTheScaleJustUnderBudget() {
+        ResolutionScaler scaler = new ResolutionScaler(BUDGET, 0.25, 1.0);
+        scaler.update(2 * BUDGET);
+        double scale = scaler.scale();
+        assertEquals(scale, scaler.update(BUDGET * 9 / 10));
+        assertEquals(scale, scaler.update(0));
+    }
+
+    @Test
+    void testKeepsTheScaleWhileAStillImageIsRefined() {
+        ResolutionScaler scaler = new ResolutionScaler(BUDGET, 0.25, 2.0);
+        for (int i = 0; i < 100; i++) {
+            scaler.update(gpuTime(scaler.scale()));
+        }
+        ProgressiveAccumulator accumulator = new ProgressiveAccumulator(16);
+        int tiles = ProgressiveAccumulator.TILE_COLUMNS * ProgressiveAccumulator.TILE_ROWS;
+
+        // Refining frames cost a fraction of a full one, and a new scale starts over
+        double scale = scaler.scale();
+        for (int frame = 0; frame < 1000 && !accumulator.isConverged(); frame++) {
+            boolean refining = accumulator.isRefining();
+            int drawn = accumulator.scheduleTiles();
+            scaler.update(gpuTime(scaler.scale()) * drawn / tiles, refining);
+            if (scaler.scale() != scale) {
+                scale = scaler.scale();
+                accumulator.reset();
+            }
+        }
+        assertTrue(accumulator.isConverged(), "restarted at scale " + scaler.scale());
+    }
+
+    @Test
+    void testStaysWithinTheLimits() {
+        ResolutionScaler scaler = new ResolutionScaler(BUDGET, 0.5, 1.5);
+        for (int i = 0; i < 50; i++) {
+            scaler.update(100 * BUDGET);
+        }
+        assertEquals(0.5, scaler.scale());
+        assertEquals(320, scaler.scaledSize(640));
+        for (int i = 0; i < 500; i++) {
+            scaler.update(1);
+        }
+        assertEquals(1.5, scaler.scale());
+        assertEquals(962, scaler.maxScaledSize(641));
+    }
+
+    @Test
+    void testRejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new ResolutionScaler(0, 0.5, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new ResolutionScaler(BUDGET, 0, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new ResolutionScaler(BUDGET, 1.0, 0.5));
+    }
+}
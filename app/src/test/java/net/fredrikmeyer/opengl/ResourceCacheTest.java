@@ -0,0 +1,153 @@
+package net.fredrikmeyer.opengl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceCacheTest {
+
+    private final List<SharedBuffer> loaded = new ArrayList<>();
+    private final AtomicInteger freed = new AtomicInteger();
+
+    // Loads a binary resource of as many bytes as its name says
+    private SharedBuffer load(String name) {
+        ByteBuffer bytes = ByteBuffer.allocateDirect(Integer.parseInt(name));
+        SharedBuffer buffer = new SharedBuffer(bytes, freed::incrementAndGet);
+        loaded.add(buffer);
+        return buffer;
+    }
+
+    @Test
+    void testRepeatedRequestsHit() {
+        AtomicInteger loads = new AtomicInteger();
+        ResourceCache cache = new ResourceCache(1024, name -> {
+            loads.incrementAndGet();
+            return "text of " + name;
+        }, this::load);
+
+        assertEquals("text of a", cache.text("a"));
+        assertEquals("text of a", cache.text("a"));
+        assertEquals("text of b", cache.text("b"));
+
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(2L * ("text of a".length() + "text of b".length()), cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        ResourceCache cache = new ResourceCache(250, name -> name, this::load);
+        cache.binary("100").release();
+        cache.binary("101").release();
+        cache.binary("100").release(); // Now the most recently used
+        cache.binary("102").release();
+
+        assertEquals(1, cache.evictions());
+        assertEquals(202, cache.size());
+        assertTrue(loaded.get(1).isFreed(), "The least recently used buffer is freed");
+        assertFalse(loaded.get(0).isFreed());
+
+        cache.binary("100").release();
+        assertEquals(3, cache.misses(), "The kept buffer is not loaded again");
+    }
+
+    @Test
+    void testResourcesLargerThanTheBudgetAreNotKept() {
+        ResourceCache cache = new ResourceCache(250, name -> name, this::load);
+        cache.binary("100").release();
+        cache.binary("101").release();
+
+        SharedBuffer large = cache.binary("300");
+        assertEquals(300, large.buffer().remaining());
+        assertEquals(0, cache.evictions(), "The cached resources are kept");
+        assertEquals(201, cache.size());
+
+        large.release();
+        assertTrue(large.isFreed(), "Only the caller held the large buffer");
+        cache.binary("300").release();
+        cache.binary("100").release();
+        assertEquals(4, cache.misses());
+    }
+
+    @Test
+    void testEvictedBuffersAreFreedWhenReleased() {
+        ResourceCache cache = new ResourceCache(150, name -> name, this::load);
+        SharedBuffer held = cache.binary("100");
+        cache.binary("101").release();
+
+        assertEquals(1, cache.evictions());
+        assertEquals(0, freed.get(), "A buffer a caller holds stays allocated");
+        assertEquals(100, held.buffer().remaining());
+
+        held.release();
+        assertEquals(1, freed.get());
+        assertThrows(IllegalStateException.class, held::buffer);
+
+        cache.clear();
+        assertEquals(2, freed.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testConcurrentRequestsShareOneLoad() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ResourceCache cache = new ResourceCache(1024, name -> {
+            loads.incrementAndGet();
+            started.countDown();
+            try {
+                assertTrue(finish.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return name;
+        }, this::load);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.text("shared")));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> cache.text("shared")));
+            }
+            // Let the other requests reach the cache before the load finishes
+            Thread.sleep(100);
+            finish.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("shared", result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.misses());
+        assertEquals(3, cache.hits());
+    }
+
+    @Test
+    void testFailedLoadsAreNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        ResourceCache cache = new ResourceCache(1024, name -> {
+            if (loads.incrementAndGet() == 1) {
+                throw new RuntimeException("Resource not found: " + name);
+            }
+            return name;
+        }, this::load);
+
+        assertThrows(RuntimeException.class, () -> cache.text("a"));
+        assertEquals("a", cache.text("a"));
+        assertEquals(2, cache.misses());
+    }
+}
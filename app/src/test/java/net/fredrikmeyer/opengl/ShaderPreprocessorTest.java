@@ -0,0 +1,83 @@
+package net.fredrikmeyer.opengl;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShaderPreprocessorTest {
+
+    private static ShaderPreprocessor preprocessor(Map<String, String> files) {
+        return new ShaderPreprocessor(name -> {
+            String source = files.get(name);
+            if (source == null) {
+                throw new RuntimeException("No such file: " + name);
+            }
+            return source;
+        });
+    }
+
+    @Test
+    void testIncludesAreExpandedOnce() {
+        ShaderPreprocessor preprocessor = preprocessor(Map.of(
+            "main.glsl",
+            "#version 330 core\n#include \"a.glsl\"\n#include \"b.glsl\"\nvoid main() {}",
+            "a.glsl", "#include \"b.glsl\"\nfloat a;",
+            "b.glsl", "float b;"));
+
+        ShaderPreprocessor.Source source = preprocessor.process("main.glsl", Map.of());
+
+        assertEquals(List.of("main.glsl", "a.glsl", "b.glsl"), source.files());
+        assertEquals("""
+            #version 330 core
+            #line 1 1
+            #line 1 2
+            float b;
+            #line 2 1
+            float a;
+            #line 3 0
+
+            void main() {}""", source.text());
+    }
+
+    @Test
+    void testDefinesFollowTheVersionInOrder() {
+        ShaderPreprocessor preprocessor = preprocessor(Map.of(
+            "main.glsl", "\n#version 330 core\nvoid main() {}"));
+
+        String text = preprocessor.process("main.glsl", Map.of("QUALITY", "0", "AUTO_ROTATE", "1"))
+            .text();
+
+        assertEquals("""
+
+            #version 330 core
+            #define AUTO_ROTATE 1
+            #define QUALITY 0
+            #line 3 0
+            void main() {}""", text);
+    }
+
+    @Test
+    void testBadIncludesAreRejected() {
+        ShaderPreprocessor preprocessor = preprocessor(Map.of(
+            "unquoted.glsl", "#include a.glsl",
+            "versioned.glsl", "#include \"version.glsl\"",
+            "version.glsl", "#version 330 core"));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> preprocessor.process("unquoted.glsl", Map.of()));
+        assertThrows(IllegalArgumentException.class,
+            () -> preprocessor.process("versioned.glsl", Map.of()));
+    }
+
+    @Test
+    void testSharedRayMarchingCodeIsIncluded() {
+        String source = new ResourceLoader().loadShaderSource("raymarching/fragment.glsl",
+            Map.of("AUTO_ROTATE", "1"));
+
+        assertFalse(source.contains("#include"));
+        assertTrue(source.contains("vec3 calcNormal(vec3 p)"));
+        assertTrue(source.contains("uniform Frame"));
+        assertTrue(source.startsWith("#version 330 core\n#define AUTO_ROTATE 1\n"));
+    }
+}
@@ -0,0 +1,43 @@
+package net.fredrikmeyer.opengl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShaderWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEditedSourcesAreQueued() throws IOException, InterruptedException {
+        Path directory = Files.createDirectories(tempDir.resolve("scene"));
+        Files.writeString(directory.resolve("vertex.glsl"), "vertex 1");
+        Files.writeString(directory.resolve("fragment.glsl"), "fragment 1");
+        Files.writeString(directory.resolve("other.glsl"), "other 1");
+
+        try (ShaderWatcher watcher = ShaderWatcher.start(tempDir)) {
+            CountDownLatch changed = new CountDownLatch(1);
+            watcher.setChangeListener(changed::countDown);
+            watcher.watch(null, "scene/vertex.glsl", "scene/fragment.glsl");
+
+            Files.writeString(directory.resolve("other.glsl"), "other 2");
+            Files.writeString(directory.resolve("fragment.glsl"), "fragment 2");
+
+            ShaderWatcher.Reload reload = watcher.reloads().poll(10, TimeUnit.SECONDS);
+            assertNotNull(reload, "An edit of a watched source queues a reload");
+            assertEquals("vertex 1", reload.vertexShader());
+            assertEquals("fragment 2", reload.fragmentShader());
+            assertTrue(changed.await(1, TimeUnit.SECONDS));
+
+            Files.writeString(directory.resolve("other.glsl"), "other 3");
+            assertNull(watcher.reloads().poll(500, TimeUnit.MILLISECONDS),
+                "Sources no shader uses are ignored");
+        }
+    }
+}
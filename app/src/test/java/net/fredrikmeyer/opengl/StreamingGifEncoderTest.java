@@ -0,0 +1,208 @@
+package net.fredrikmeyer.opengl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+class StreamingGifEncoderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService executor;
+    private ForkJoinPool pool;
+    private File outputFile;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        pool = new ForkJoinPool(4);
+        outputFile = tempDir.resolve("animation.gif").toFile();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    private static BufferedImage frame(int argb) {
+        BufferedImage image = new BufferedImage(8, 6, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 8; x++) {
+                image.setRGB(x, y, argb);
+            }
+        }
+        return image;
+    }
+
+    private static ImageReader openGif(File file) throws IOException {
+        ImageInputStream input = ImageIO.createImageInputStream(file);
+        ImageReader reader = ImageIO.getImageReadersBySuffix("gif").next();
+        reader.setInput(input);
+        return reader;
+    }
+
+    // Occupies the single executor thread so queued frames pile up until the latch is released
+    private CountDownLatch stallEncoder() {
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return latch;
+    }
+
+    @Test
+    void testWritesAllFrames() throws Exception {
+        StreamingGifEncoder encoder = StreamingGifEncoder.start(outputFile, 50, 2,
+            BackpressurePolicy.BLOCK, GifEncoder.Dither.NONE, false, executor, pool);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(encoder.submit(frame(0xFF000000 | (i * 40) << 16)));
+        }
+
+        String path = encoder.finish().get();
+
+        assertEquals(outputFile.getPath(), path);
+        ImageReader reader = openGif(outputFile);
+        assertEquals(5, reader.getNumImages(true));
+        assertEquals(8, reader.getWidth(0));
+        assertEquals(6, reader.getHeight(0));
+    }
+
+    @Test
+    void testReusesBuffersOfWrittenFrames() throws Exception {
+        StreamingGifEncoder encoder = StreamingGifEncoder.start(outputFile, 50, 2,
+            BackpressurePolicy.BLOCK, GifEncoder.Dither.NONE, true, executor, pool);
+        List<ByteBuffer> submitted = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ByteBuffer rgba = encoder.frameBuffer(8, 6);
+            for (int p = 0; p < 8 * 6; p++) {
+                rgba.putInt(p * 4, (i * 40) << 24 | 0xFF);
+            }
+            submitted.add(rgba);
+            assertTrue(encoder.submit(rgba, 8, 6));
+        }
+        assertEquals(outputFile.getPath(), encoder.finish().get());
+
+        ByteBuffer reused = encoder.frameBuffer(8, 6);
+        assertTrue(submitted.stream().anyMatch(rgba -> rgba == reused),
+            "A written frame's buffer is handed out again");
+        assertEquals(8 * 6 * 4, reused.remaining());
+        assertEquals(3, openGif(outputFile).getNumImages(true));
+    }
+
+    @Test
+    void testOutputMatchesSequentialEncoder() throws Exception {
+        StreamingGifEncoder encoder = StreamingGifEncoder.start(outputFile, 50, 2,
+            BackpressurePolicy.BLOCK, GifEncoder.Dither.FLOYD_STEINBERG, true, executor, pool);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        GifSequenceWriter writer = new GifSequenceWriter(expected, 50, true,
+            GifEncoder.Dither.FLOYD_STEINBERG, true);
+        // More frames than the compressors have in flight
+        for (int i = 0; i < 40; i++) {
+            BufferedImage frame = frame(0xFF000000 | (i / 2 * 6) << 8);
+            frame.setRGB(i % 8, 3, 0xFFFFFFFF);
+            writer.writeToSequence(frame);
+            assertTrue(encoder.submit(frame));
+        }
+        writer.close();
+
+        assertEquals(outputFile.getPath(), encoder.finish().get());
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(outputFile.toPath()));
+    }
+
+    @Test
+    void testNoFramesWritesNoFile() throws Exception {
+        StreamingGifEncoder encoder = StreamingGifEncoder.start(outputFile, 50, 2,
+            BackpressurePolicy.DROP, GifEncoder.Dither.NONE, false, executor, pool);
+
+        assertNull(encoder.finish().get());
+        assertFalse(outputFile.exists());
+    }
+
+    @Test
+    void testDropPolicyDiscardsFramesWhenFull() throws Exception {
+        CountDownLatch latch = stallEncoder();
+        StreamingGifEncoder encoder = StreamingGifEncoder.start(outputFile, 50, 3,
+            BackpressurePolicy.DROP, GifEncoder.Dither.NONE, false, executor, pool);
+
+        int accepted = 0;
+        for (int i = 0; i < 5; i++) {
+            if (encoder.submit(frame(0xFFFF0000))) {
+                accepted++;
+            }
+        }
+        latch.countDown();
+        encoder.finish().get();
+
+        assertEquals(3, accepted);
+        assertEquals(2, encoder.droppedFrames());
+        assertEquals(3, openGif(outputFile).getNumImages(true));
+    }
+
+    @Test
+    void testDownscalePolicyKeepsFramesAtReducedSize() throws Exception {
+        CountDownLatch latch = stallEncoder();
+        StreamingGifEncoder encoder = StreamingGifEncoder.start(outputFile, 50, 2,
+            BackpressurePolicy.DOWNSCALE, GifEncoder.Dither.NONE, false, executor, pool);
+
+        int accepted = 0;
+        for (int i = 0; i < 6; i++) {
+            if (encoder.submit(frame(0xFF0000FF))) {
+                accepted++;
+            }
+        }
+        latch.countDown();
+        encoder.finish().get();
+
+        // One full frame reaches the half-full mark, four quarter-size frames fill the rest
+        assertEquals(5, accepted);
+        assertEquals(4, encoder.downscaledFrames());
+        assertEquals(1, encoder.droppedFrames());
+
+        // Downscaled frames are written back at full size
+        ImageReader reader = openGif(outputFile);
+        assertEquals(5, reader.getNumImages(true));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(8, reader.getWidth(i));
+            assertEquals(6, reader.getHeight(i));
+        }
+    }
+
+    @Test
+    void testHalveAveragesBlocks() {
+        ByteBuffer rgba = ByteBuffer.allocate(2 * 2 * 4);
+        rgba.putInt(0, 0x000000FF);
+        rgba.putInt(4, 0x000000FF);
+        rgba.putInt(8, 0xFFFFFFFF);
+        rgba.putInt(12, 0xFFFFFFFF);
+
+        ByteBuffer half = StreamingGifEncoder.halve(rgba, 2, 2);
+
+        assertEquals(4, half.remaining());
+        assertEquals(0x808080FF, half.getInt(0));
+    }
+}
@@ -0,0 +1,87 @@
+package net.fredrikmeyer.opengl;
+
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class UniformCacheTest {
+
+    @Test
+    void testNamesAreLookedUp() {
+        String[] names = new String[40];
+        int[] locations = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "u" + i;
+            locations[i] = 100 + i;
+        }
+        UniformCache cache = new UniformCache(names, locations);
+
+        assertEquals(names.length, cache.size());
+        for (int i = 0; i < names.length; i++) {
+            int slot = cache.slot("u" + i);
+            assertEquals(i, slot);
+            assertEquals(100 + i, cache.location(slot));
+        }
+        assertEquals(-1, cache.slot("uMissing"));
+    }
+
+    @Test
+    void testOnlyChangedValuesNeedSetting() {
+        UniformCache cache = new UniformCache(new String[]{"uPosition"}, new int[]{3});
+        assertTrue(cache.update(0, 1.0f, 2.0f, 3.0f), "The first value must always be set");
+        assertFalse(cache.update(0, 1.0f, 2.0f, 3.0f));
+        assertTrue(cache.update(0, 1.0f, 2.0f, 4.0f));
+        assertFalse(cache.update(0, 1.0f, 2.0f, 4.0f));
+        assertTrue(cache.update(0, 1.0f, 2.0f), "A value of another size is a change");
+    }
+
+    @Test
+    void testIntsAndFloatsAreToldApart() {
+        UniformCache cache = new UniformCache(new String[]{"uFlag"}, new int[]{0});
+        assertTrue(cache.update(0, 1));
+        assertFalse(cache.update(0, 1));
+        assertTrue(cache.update(0, Float.intBitsToFloat(1)));
+        assertTrue(cache.update(0, 1));
+    }
+
+    @Test
+    void testMatricesAreCompared() {
+        UniformCache cache = new UniformCache(new String[]{"uView"}, new int[]{0});
+        Matrix4f matrix = new Matrix4f().translate(1, 2, 3);
+        assertTrue(cache.update(0, matrix));
+        assertFalse(cache.update(0, new Matrix4f(matrix)));
+        assertTrue(cache.update(0, matrix.rotateY(0.1f)));
+    }
+
+    @Test
+    void testRejectsDuplicateNames() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new UniformCache(new String[]{"uTime", "uTime"}, new int[]{0, 1}));
+        assertThrows(IllegalArgumentException.class,
+            () -> new UniformCache(new String[]{"uTime"}, new int[0]));
+    }
+
+    @Test
+    void testValuesAreCopiedByName() {
+        UniformCache previous = new UniformCache(new String[]{"uTime", "uView", "uFlag"},
+            new int[]{0, 1, 2});
+        Matrix4f view = new Matrix4f().translate(1, 2, 3);
+        previous.update(0, 0.5f);
+        previous.update(1, view);
+        previous.update(2, 3);
+        UniformCache next = new UniformCache(new String[]{"uFlag", "uView"}, new int[]{7, 8});
+
+        int flag = next.slot(previous.name(2));
+        assertTrue(next.copy(flag, previous, 2));
+        assertEquals(-1, next.components(flag));
+        assertEquals(3, Float.floatToRawIntBits(next.value(flag, 0)));
+        assertFalse(next.update(flag, 3), "The copied value is known");
+
+        int viewSlot = next.slot(previous.name(1));
+        assertTrue(next.copy(viewSlot, previous, 1));
+        assertEquals(16, next.components(viewSlot));
+        assertEquals(view.m30(), next.value(viewSlot, 12));
+        assertFalse(next.update(viewSlot, view));
+        assertEquals(-1, next.slot(previous.name(0)));
+    }
+}
@@ -6,8 +6,15 @@ import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 class UtilsTest {
 
@@ -53,7 +60,33 @@ class UtilsTest {
         // in the test environment
     }
 
-    // Note: To properly test these methods, we would need to add test resources to the test classpath
-    // or use a framework that allows us to mock the ClassLoader. For now, we're just testing
-    // the error handling behavior.
+    @Test
+    void testResourcesAreLoadedFromDirectoriesAndJars() throws IOException {
+        byte[] content = new byte[100_000];
+        new Random(42).nextBytes(content);
+        Files.write(resourcesDir.resolve("data.bin"), content);
+        Path jar = tempDir.resolve("resources.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            output.putNextEntry(new JarEntry("data.bin"));
+            output.write(content);
+            output.closeEntry();
+        }
+
+        long before = Utils.nativeResourceBytes();
+        for (URL root : List.of(resourcesDir.toUri().toURL(), jar.toUri().toURL())) {
+            try (URLClassLoader classLoader = new URLClassLoader(new URL[]{root}, null)) {
+                SharedBuffer loaded = Utils.loadResourceByteBuffer(classLoader, "data.bin");
+                assertEquals(before + content.length, Utils.nativeResourceBytes(),
+                    "The memory is counted while the buffer is held");
+
+                ByteBuffer bytes = loaded.buffer();
+                byte[] read = new byte[bytes.remaining()];
+                bytes.get(read);
+                assertArrayEquals(content, read, "Loaded from " + root);
+
+                loaded.release();
+                assertEquals(before, Utils.nativeResourceBytes(), "Released memory is freed");
+            }
+        }
+    }
 }